@@ -0,0 +1,128 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.NullInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.norconex.collector.fs.benchmark.FileTrees.Shape;
+import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.fetch.impl.GenericFileDocumentFetcher;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.io.CachedInputStream;
+import com.norconex.commons.lang.io.CachedStreamFactory;
+
+/**
+ * Document fetching, as performed by the document fetch stage,
+ * followed by a full read of the content like the importer does.
+ * One operation fetches and reads one file, cycling through
+ * many small files or a few large ones.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DocumentFetchBenchmark {
+
+    /**
+     * Generated files.
+     */
+    public enum FileSet {
+        /** 10,000 files of 4KB. */
+        SMALL(10000, 4 * 1024),
+        /** 4 files of 256MB. */
+        LARGE(4, 256 * 1024 * 1024);
+        private final int count;
+        private final long size;
+        FileSet(int count, long size) {
+            this.count = count;
+            this.size = size;
+        }
+    }
+
+    // Same as collector defaults
+    private static final long MAX_MEMORY_POOL = 1024L * 1024L * 1024L;
+    private static final long MAX_MEMORY_INSTANCE = 100L * 1024L * 1024L;
+
+    @Param({"SMALL", "LARGE"})
+    public FileSet fileSet;
+    @Param({"false", "true"})
+    public boolean streamLocalFiles;
+
+    private StandardFileSystemManager manager;
+    private Path root;
+    private FileObject[] fileObjects;
+    private int index;
+    private CachedStreamFactory streamFactory;
+    private final GenericFileDocumentFetcher fetcher =
+            new GenericFileDocumentFetcher();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = FileTrees.create(Shape.FLAT, fileSet.count, fileSet.size);
+        manager = new StandardFileSystemManager();
+        manager.init();
+        fileObjects = FileTrees.resolveFiles(manager, root);
+        streamFactory = new CachedStreamFactory(
+                MAX_MEMORY_POOL, MAX_MEMORY_INSTANCE);
+        fetcher.setStreamLocalFiles(streamLocalFiles);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        FileTrees.delete(root);
+    }
+
+    @Benchmark
+    public long fetchDocument() throws IOException {
+        FileObject file = fileObjects[index];
+        index = (index + 1) % fileObjects.length;
+        FileDocument doc = new FileDocument(file.getName().getURI(),
+                streamFactory.newInputStream(new NullInputStream(0)));
+        fetcher.fetchDocument(file, LocalFileStat.stat(file), doc);
+        CachedInputStream content = doc.getContent();
+        try {
+            content.rewind();
+            return IOUtils.copyLarge(content, new NullOutputStream());
+        } finally {
+            content.dispose();
+        }
+    }
+}
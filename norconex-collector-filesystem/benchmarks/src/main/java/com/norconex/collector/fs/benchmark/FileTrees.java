@@ -0,0 +1,162 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemManager;
+
+/**
+ * Generates local file trees to benchmark against.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public final class FileTrees {
+
+    /**
+     * Shape of a generated file tree.
+     */
+    public enum Shape {
+        /** All files in a single folder. */
+        FLAT,
+        /** 
+         * A few files and sub-folders in each folder, filled level by 
+         * level, up to a maximum depth. 
+         */
+        DEEP
+    }
+
+    // Files and sub-folders per folder in deep trees
+    private static final int DEEP_FOLDER_FILES = 10;
+    private static final int DEEP_SUB_FOLDERS = 4;
+    // Keeps paths well under file system limits (10 levels hold over
+    // 10 million files)
+    private static final int DEEP_MAX_DEPTH = 10;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileTrees() {
+        super();
+    }
+
+    /**
+     * Creates a file tree in a new temporary folder.
+     * @param shape tree shape
+     * @param fileCount total number of files
+     * @param fileSize size of each file in bytes
+     * @return tree root folder
+     * @throws IOException could not create tree
+     */
+    public static Path create(Shape shape, int fileCount, long fileSize)
+            throws IOException {
+        Path root = Files.createTempDirectory("fs-benchmark-");
+        byte[] bytes = new byte[BUFFER_SIZE];
+        new Random(fileCount).nextBytes(bytes);
+        // Sub-folders are created breadth first, once their parent is full
+        Deque<Path> subFolders = new ArrayDeque<>();
+        Path folder = root;
+        int folderFiles = 0;
+        for (int i = 0; i < fileCount; i++) {
+            if (shape == Shape.DEEP && folderFiles == DEEP_FOLDER_FILES) {
+                if (folder.getNameCount() 
+                        - root.getNameCount() < DEEP_MAX_DEPTH) {
+                    for (int j = 0; j < DEEP_SUB_FOLDERS; j++) {
+                        subFolders.add(folder.resolve("folder-" + j));
+                    }
+                }
+                // Folders at maximum depth take the remaining files
+                if (!subFolders.isEmpty()) {
+                    folder = Files.createDirectory(subFolders.poll());
+                    folderFiles = 0;
+                }
+            }
+            writeFile(folder.resolve("file-" + i + ".txt"), bytes, fileSize);
+            folderFiles++;
+        }
+        return root;
+    }
+
+    /**
+     * Resolves the file objects of all files under a folder.
+     * @param manager file system manager
+     * @param root root folder
+     * @return file objects
+     * @throws IOException could not list or resolve files
+     */
+    public static FileObject[] resolveFiles(
+            final FileSystemManager manager, Path root) throws IOException {
+        final List<FileObject> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(
+                    Path file, BasicFileAttributes attrs) throws IOException {
+                files.add(manager.resolveFile(file.toUri().toString()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files.toArray(new FileObject[files.size()]);
+    }
+
+    /**
+     * Deletes a file tree.
+     * @param root root folder
+     * @throws IOException could not delete tree
+     */
+    public static void delete(Path root) throws IOException {
+        if (root == null) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(
+                    Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult postVisitDirectory(
+                    Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void writeFile(Path file, byte[] bytes, long size)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long remaining = size;
+            while (remaining > 0) {
+                ByteBuffer buf = ByteBuffer.wrap(
+                        bytes, 0, (int) Math.min(remaining, bytes.length));
+                remaining -= channel.write(buf);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.norconex.collector.fs.benchmark.FileTrees.Shape;
+import com.norconex.collector.fs.util.FolderChildrenLister;
+import com.norconex.collector.fs.util.FolderChildrenLister.ChildAttributesHandler;
+import com.norconex.collector.fs.util.FolderChildrenLister.ChildHandler;
+
+/**
+ * Folder expansion, as performed by the folder paths extractor stage.
+ * One operation expands every folder of a generated tree:
+ * the regular way (resolving all children), while streaming children,
+ * and while obtaining children attributes for folder checksums.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FolderExpansionBenchmark {
+
+    @Param({"FLAT", "DEEP"})
+    public Shape shape;
+    @Param({"10000"})
+    public int fileCount;
+
+    private StandardFileSystemManager manager;
+    private Path root;
+    private FileObject rootFolder;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = FileTrees.create(shape, fileCount, 0);
+        manager = new StandardFileSystemManager();
+        manager.init();
+        rootFolder = manager.resolveFile(root.toUri().toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        FileTrees.delete(root);
+    }
+
+    @Benchmark
+    public void getChildren(Blackhole bh) throws FileSystemException {
+        getChildren(rootFolder, bh);
+    }
+    private void getChildren(FileObject folder, Blackhole bh)
+            throws FileSystemException {
+        // Do not measure children cached from a previous invocation
+        folder.refresh();
+        for (FileObject child : folder.getChildren()) {
+            bh.consume(child.getURL().toString());
+            if (child.getType() == FileType.FOLDER) {
+                getChildren(child, bh);
+            }
+        }
+    }
+
+    @Benchmark
+    public void listChildren(final Blackhole bh) throws FileSystemException {
+        List<String> folders = new ArrayList<>();
+        folders.add(rootFolder.getName().getURI());
+        while (!folders.isEmpty()) {
+            final List<String> subFolders = new ArrayList<>();
+            for (String folder : folders) {
+                FolderChildrenLister.listChildren(manager.resolveFile(folder),
+                        true, new ChildHandler() {
+                    @Override
+                    public boolean childFound(
+                            String childReference, FileType childType) {
+                        if (childType == FileType.FOLDER) {
+                            subFolders.add(childReference);
+                        } else {
+                            bh.consume(childReference);
+                        }
+                        return true;
+                    }
+                });
+            }
+            folders = subFolders;
+        }
+    }
+
+    @Benchmark
+    public void listChildAttributes(final Blackhole bh)
+            throws FileSystemException {
+        List<String> folders = new ArrayList<>();
+        folders.add(rootFolder.getName().getURI());
+        while (!folders.isEmpty()) {
+            final List<String> subFolders = new ArrayList<>();
+            for (String folder : folders) {
+                FolderChildrenLister.listChildren(manager.resolveFile(folder),
+                        new ChildAttributesHandler() {
+                    @Override
+                    public boolean childFound(String childReference,
+                            FileType childType, long size, long lastModified) {
+                        if (childType == FileType.FOLDER) {
+                            subFolders.add(childReference);
+                        } else {
+                            bh.consume(childReference);
+                            bh.consume(size);
+                            bh.consume(lastModified);
+                        }
+                        return true;
+                    }
+                });
+            }
+            folders = subFolders;
+        }
+    }
+}
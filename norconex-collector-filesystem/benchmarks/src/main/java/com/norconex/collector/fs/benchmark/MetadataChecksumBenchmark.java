@@ -0,0 +1,94 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.norconex.collector.fs.benchmark.FileTrees.Shape;
+import com.norconex.collector.fs.checksum.impl.FileMetadataChecksummer;
+import com.norconex.collector.fs.doc.FileMetadata;
+import com.norconex.collector.fs.fetch.impl.GenericFileMetadataFetcher;
+import com.norconex.collector.fs.util.LocalFileStat;
+
+/**
+ * Metadata checksum creation, as performed by the metadata checksum stage.
+ * One operation creates the checksum of one file metadata, cycling
+ * through metadata fetched beforehand from a generated tree.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataChecksumBenchmark {
+
+    @Param({"10000"})
+    public int fileCount;
+
+    private FileMetadata[] metadatas;
+    private int index;
+    private final FileMetadataChecksummer checksummer =
+            new FileMetadataChecksummer();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path root = FileTrees.create(Shape.FLAT, fileCount, 1024);
+        StandardFileSystemManager manager = new StandardFileSystemManager();
+        try {
+            manager.init();
+            GenericFileMetadataFetcher fetcher =
+                    new GenericFileMetadataFetcher();
+            FileObject[] files = FileTrees.resolveFiles(manager, root);
+            metadatas = new FileMetadata[files.length];
+            for (int i = 0; i < files.length; i++) {
+                FileObject file = files[i];
+                metadatas[i] = new FileMetadata(file.getName().getURI());
+                fetcher.fetchMetadata(
+                        file, LocalFileStat.stat(file), metadatas[i]);
+            }
+        } finally {
+            manager.close();
+            FileTrees.delete(root);
+        }
+    }
+
+    @Benchmark
+    public String createMetadataChecksum() {
+        FileMetadata metadata = metadatas[index];
+        index = (index + 1) % metadatas.length;
+        return checksummer.createMetadataChecksum(metadata);
+    }
+}
@@ -0,0 +1,109 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.norconex.collector.fs.benchmark.FileTrees.Shape;
+import com.norconex.collector.fs.fetch.impl.GenericFileMetadataFetcher;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.map.Properties;
+
+/**
+ * Metadata fetching, as performed by the metadata fetcher stage.
+ * One operation fetches the metadata of one file, cycling through
+ * the files of a generated tree.  Files are fetched with local
+ * attributes read at once (like the stage does for local files),
+ * or the generic Commons VFS way.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataFetchBenchmark {
+
+    @Param({"FLAT", "DEEP"})
+    public Shape shape;
+    @Param({"10000"})
+    public int fileCount;
+
+    private StandardFileSystemManager manager;
+    private Path root;
+    private FileObject[] files;
+    private int index;
+    private final GenericFileMetadataFetcher fetcher =
+            new GenericFileMetadataFetcher();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = FileTrees.create(shape, fileCount, 1024);
+        manager = new StandardFileSystemManager();
+        manager.init();
+        files = FileTrees.resolveFiles(manager, root);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.close();
+        FileTrees.delete(root);
+    }
+
+    @Benchmark
+    public Properties fetchLocalStat() throws FileSystemException {
+        FileObject file = nextFile();
+        Properties metadata = new Properties();
+        fetcher.fetchMetadata(file, LocalFileStat.stat(file), metadata);
+        return metadata;
+    }
+
+    @Benchmark
+    public Properties fetchGeneric() throws FileSystemException {
+        FileObject file = nextFile();
+        // Not cached from a previous invocation
+        file.refresh();
+        Properties metadata = new Properties();
+        fetcher.fetchMetadata(file, null, metadata);
+        return metadata;
+    }
+
+    private FileObject nextFile() {
+        FileObject file = files[index];
+        index = (index + 1) % files.length;
+        return file;
+    }
+}
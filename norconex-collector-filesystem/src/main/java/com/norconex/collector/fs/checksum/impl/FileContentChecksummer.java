@@ -0,0 +1,158 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.checksum.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.norconex.collector.core.checksum.AbstractMetadataChecksummer;
+import com.norconex.collector.core.checksum.IMetadataChecksummer;
+import com.norconex.collector.fs.doc.FileMetadata;
+import com.norconex.commons.lang.map.Properties;
+import com.norconex.commons.lang.xml.EnhancedXMLStreamWriter;
+
+/**
+ * <p>
+ * Implementation of {@link IMetadataChecksummer} based on the raw
+ * content of files, for cases where a file last modified date cannot
+ * be trusted (e.g., tools preserving modified dates).
+ * The file content is hashed with a fast non-cryptographic algorithm
+ * (CRC32 by default, or Adler32) as soon as it is fetched,
+ * before being parsed by the importer.  The checksum is made of
+ * that hash and of the content size, separated with an underscore
+ * (e.g. "5f2c81a0_123").
+ * </p>
+ * <p>
+ * Since the content has to be fetched first, unmodified files are
+ * detected right after the document fetch instead of right after
+ * the metadata fetch.  It still saves importing (parsing) unmodified
+ * files.  The content hash is stored in the
+ * {@link FileMetadata#COLLECTOR_CONTENT_HASH} field.
+ * </p>
+ * <h3>XML configuration usage:</h3>
+ * <pre>
+ *  &lt;metadataChecksummer
+ *      class="com.norconex.collector.fs.checksum.impl.FileContentChecksummer"
+ *      algorithm="[CRC32|ADLER32]"
+ *      keep="[false|true]"
+ *      targetField="(field to store checksum)" /&gt;
+ * </pre>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class FileContentChecksummer extends AbstractMetadataChecksummer {
+
+    /**
+     * Content hash algorithm.
+     */
+    public enum Algorithm {
+        /** CRC-32 */
+        CRC32,
+        /** Adler-32 (faster, weaker for small files). */
+        ADLER32
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Algorithm algorithm = Algorithm.CRC32;
+
+    /**
+     * Gets the content hash algorithm. Default is CRC32.
+     * @return algorithm
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+    /**
+     * Sets the content hash algorithm.
+     * @param algorithm algorithm (<code>null</code> uses CRC32)
+     */
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Hashes content by reading it in full. The stream is not closed.
+     * @param content content to hash
+     * @return content hash and size, separated with an underscore
+     * @throws IOException could not read content
+     */
+    public String hashContent(InputStream content) throws IOException {
+        Checksum checksum = newChecksum();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            checksum.update(buffer, 0, read);
+            size += read;
+        }
+        return Long.toHexString(checksum.getValue()) + "_" + size;
+    }
+
+    /*default*/ Checksum newChecksum() {
+        if (algorithm == Algorithm.ADLER32) {
+            return new Adler32();
+        }
+        return new CRC32();
+    }
+
+    @Override
+    protected String doCreateMetaChecksum(Properties metadata) {
+        return metadata.getString(FileMetadata.COLLECTOR_CONTENT_HASH);
+    }
+
+    @Override
+    protected void loadChecksummerFromXML(XMLConfiguration xml) {
+        String alg = xml.getString("[@algorithm]", null);
+        if (StringUtils.isNotBlank(alg)) {
+            setAlgorithm(Algorithm.valueOf(alg.trim().toUpperCase(Locale.ENGLISH)));
+        }
+    }
+
+    @Override
+    protected void saveChecksummerToXML(EnhancedXMLStreamWriter writer)
+            throws XMLStreamException {
+        if (algorithm != null) {
+            writer.writeAttribute("algorithm", algorithm.toString());
+        }
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return EqualsBuilder.reflectionEquals(this, other, false);
+    }
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(
+                this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
@@ -0,0 +1,231 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.checksum.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.checksum.AbstractMetadataChecksummer;
+import com.norconex.collector.core.checksum.IMetadataChecksummer;
+import com.norconex.collector.fs.doc.FileMetadata;
+import com.norconex.commons.lang.map.Properties;
+import com.norconex.commons.lang.xml.EnhancedXMLStreamWriter;
+
+/**
+ * <p>
+ * Implementation of {@link IMetadataChecksummer} sampling the raw
+ * content of files, meant for very large files (e.g., videos, disk
+ * images) where hashing the full content on every run is too expensive.
+ * The checksum is a CRC32 hash of fixed-size blocks read at
+ * the beginning, at the end, and at a number of evenly spaced offsets
+ * in between, followed by the file size (e.g. "5f2c81a0_123").
+ * Files no bigger than all blocks combined are hashed in full.
+ * I/O cost is the same for every file, regardless of its size.
+ * </p>
+ * <p>
+ * Blocks are read with random access where the file system supports it
+ * (e.g., local, SMB/CIFS, SFTP). Otherwise, the content is read
+ * sequentially, skipping what is not sampled.
+ * Changes falling entirely outside sampled blocks, without changing
+ * the file size, are not detected.
+ * The hash is computed right after the metadata is fetched, before
+ * the document is fetched, and stored in the
+ * {@link FileMetadata#COLLECTOR_SAMPLE_HASH} field.
+ * </p>
+ * <h3>XML configuration usage:</h3>
+ * <pre>
+ *  &lt;metadataChecksummer
+ *      class="com.norconex.collector.fs.checksum.impl.FileSampleChecksummer"
+ *      blockSize="(size in bytes of each sampled block, default 65536)"
+ *      samples="(number of blocks between the first and last ones,
+ *                default 8)"
+ *      keep="[false|true]"
+ *      targetField="(field to store checksum)" /&gt;
+ * </pre>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class FileSampleChecksummer extends AbstractMetadataChecksummer {
+
+    private static final Logger LOG =
+            LogManager.getLogger(FileSampleChecksummer.class);
+
+    /** Default sampled block size in bytes. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    /** Default number of blocks between the first and last ones. */
+    public static final int DEFAULT_SAMPLES = 8;
+
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private int samples = DEFAULT_SAMPLES;
+
+    /**
+     * Gets the size of each sampled block.
+     * Default is {@value #DEFAULT_BLOCK_SIZE}.
+     * @return block size in bytes
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+    /**
+     * Sets the size of each sampled block.
+     * @param blockSize block size in bytes
+     */
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+    /**
+     * Gets the number of blocks sampled between the first and last ones.
+     * Default is {@value #DEFAULT_SAMPLES}.
+     * @return number of samples
+     */
+    public int getSamples() {
+        return samples;
+    }
+    /**
+     * Sets the number of blocks sampled between the first and last ones.
+     * @param samples number of samples
+     */
+    public void setSamples(int samples) {
+        this.samples = samples;
+    }
+
+    /**
+     * Hashes sampled blocks of a file content.  A file shorter than the 
+     * given size (e.g., modified since its size was obtained) is 
+     * sampled up to its end.
+     * @param fileObject the file to sample
+     * @param size the file size
+     * @return sample hash and size, separated with an underscore
+     * @throws IOException could not read file
+     */
+    public String hashSamples(FileObject fileObject, long size)
+            throws IOException {
+        int block = Math.max(1, blockSize);
+        int middle = Math.max(0, samples);
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[block];
+        long[] offsets = sampleOffsets(size, block, middle);
+        FileContent content = fileObject.getContent();
+        RandomAccessContent rac = null;
+        try {
+            rac = content.getRandomAccessContent(RandomAccessMode.READ);
+        } catch (FileSystemException e) {
+            LOG.debug("Random access not supported, reading sequentially: "
+                    + fileObject);
+        }
+        if (rac != null) {
+            try {
+                long length = Math.min(size, rac.length());
+                for (long offset : offsets) {
+                    int len = (int) Math.min(block, length - offset);
+                    if (len <= 0) {
+                        break;
+                    }
+                    rac.seek(offset);
+                    rac.readFully(buffer, 0, len);
+                    crc.update(buffer, 0, len);
+                }
+            } finally {
+                rac.close();
+            }
+        } else {
+            try (InputStream is = content.getInputStream()) {
+                long position = 0;
+                for (long offset : offsets) {
+                    if (IOUtils.skip(is, offset - position) 
+                            < offset - position) {
+                        break;
+                    }
+                    int expected = (int) Math.min(block, size - offset);
+                    int len = IOUtils.read(is, buffer, 0, expected);
+                    crc.update(buffer, 0, len);
+                    position = offset + len;
+                    if (len < expected) {
+                        break;
+                    }
+                }
+            }
+        }
+        return Long.toHexString(crc.getValue()) + "_" + size;
+    }
+
+    // Contiguous blocks when the file is too small to be sampled
+    /*default*/ static long[] sampleOffsets(
+            long size, int block, int middle) {
+        if (size <= (long) block * (middle + 2)) {
+            long[] offsets = new long[(int) ((size + block - 1) / block)];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = (long) i * block;
+            }
+            return offsets;
+        }
+        long[] offsets = new long[middle + 2];
+        long last = size - block;
+        for (int i = 0; i < offsets.length - 1; i++) {
+            offsets[i] = last / (middle + 1) * i;
+        }
+        offsets[offsets.length - 1] = last;
+        return offsets;
+    }
+
+    @Override
+    protected String doCreateMetaChecksum(Properties metadata) {
+        return metadata.getString(FileMetadata.COLLECTOR_SAMPLE_HASH);
+    }
+
+    @Override
+    protected void loadChecksummerFromXML(XMLConfiguration xml) {
+        setBlockSize(xml.getInt("[@blockSize]", getBlockSize()));
+        setSamples(xml.getInt("[@samples]", getSamples()));
+    }
+
+    @Override
+    protected void saveChecksummerToXML(EnhancedXMLStreamWriter writer)
+            throws XMLStreamException {
+        writer.writeAttributeInteger("blockSize", getBlockSize());
+        writer.writeAttributeInteger("samples", getSamples());
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return EqualsBuilder.reflectionEquals(this, other, false);
+    }
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(
+                this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
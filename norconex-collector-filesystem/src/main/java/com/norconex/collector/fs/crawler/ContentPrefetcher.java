@@ -0,0 +1,339 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileType;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.doc.FileMetadata;
+import com.norconex.collector.fs.fetch.FetcherUtil;
+import com.norconex.collector.fs.util.LocalFileStat;
+
+/**
+ * Fetches queued files ahead of their processing, on a dedicated pool
+ * of threads, so their content is already cached when crawler
+ * threads fetch documents.  Files are fetched with the configured 
+ * document fetcher: crawler threads get the same fetch state, content
+ * and metadata they would have obtained themselves.
+ * Files are not prefetched when all prefetch threads are busy with 
+ * enough files waiting, or when prefetched content waiting to be 
+ * processed exceeds the maximum number of bytes.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class ContentPrefetcher {
+
+    private static final Logger LOG =
+            LogManager.getLogger(ContentPrefetcher.class);
+
+    // Maximum files waiting to be prefetched per prefetch thread
+    private static final int PENDING_PER_THREAD = 4;
+    private static final int SHUTDOWN_WAIT_SECONDS = 10;
+
+    private final FilesystemCrawler crawler;
+    private final long maxBytes;
+    private final ThreadPoolExecutor pool;
+    private final ConcurrentMap<String, Prefetch> prefetches =
+            new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param crawler the crawler
+     * @param numThreads number of prefetch threads
+     * @param maxBytes maximum number of bytes prefetched and not yet
+     *        processed
+     */
+    public ContentPrefetcher(
+            FilesystemCrawler crawler, int numThreads, long maxBytes) {
+        super();
+        this.crawler = crawler;
+        this.maxBytes = maxBytes;
+        int threads = Math.max(1, numThreads);
+        this.pool = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+                        threads * PENDING_PER_THREAD),
+                new PrefetchThreadFactory(crawler.getId()));
+    }
+
+    /**
+     * Schedules a file to be prefetched, unless too many files are 
+     * already waiting to be.
+     * @param reference file reference
+     */
+    public void prefetch(String reference) {
+        if (bytes.get() >= maxBytes || prefetches.containsKey(reference)) {
+            return;
+        }
+        Prefetch prefetch = new Prefetch(reference);
+        if (prefetches.putIfAbsent(reference, prefetch) != null) {
+            return;
+        }
+        try {
+            pool.execute(prefetch.future);
+        } catch (RejectedExecutionException e) {
+            prefetches.remove(reference, prefetch);
+        }
+    }
+
+    /**
+     * Takes a prefetched file into the given document: its content, 
+     * content type and encoding, and metadata set by the document 
+     * fetcher.  If the file is being prefetched, waits for it to be done.
+     * A prefetched file is only taken if the file size and last modified 
+     * date found in the document metadata still match it.
+     * @param doc the document to fetch
+     * @return the document fetcher crawl state, or <code>null</code> if
+     *         the file was not prefetched and still has to be fetched
+     */
+    public CrawlState take(FileDocument doc) {
+        Prefetch prefetch = prefetches.remove(doc.getReference());
+        if (prefetch == null) {
+            // never scheduled, not a miss
+            return null;
+        }
+        FileMetadata metadata = doc.getMetadata();
+        FileDocument fetched = claim(prefetch);
+        if (fetched != null && !(Objects.equals(
+                Long.toString(prefetch.size),
+                metadata.getString(FileMetadata.COLLECTOR_SIZE))
+                && Objects.equals(Long.toString(prefetch.lastModified),
+                        metadata.getString(
+                                FileMetadata.COLLECTOR_LASTMODIFIED)))) {
+            LOG.debug("Prefetched file has changed: " + doc.getReference());
+            fetched.getContent().dispose();
+            fetched = null;
+        }
+        if (fetched == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        doc.setContent(fetched.getContent());
+        if (fetched.getContentType() != null) {
+            doc.setContentType(fetched.getContentType());
+        }
+        if (fetched.getContentEncoding() != null) {
+            doc.setContentEncoding(fetched.getContentEncoding());
+        }
+        metadata.putAll(fetched.getMetadata());
+        return prefetch.state;
+    }
+
+    /**
+     * Discards a prefetched file, if any (e.g., when the file was 
+     * rejected before being fetched).
+     * @param reference file reference
+     */
+    public void discard(String reference) {
+        discard(prefetches.remove(reference));
+    }
+
+    private FileDocument claim(Prefetch prefetch) {
+        if (prefetch == null || prefetch.started.compareAndSet(false, true)) {
+            // not prefetched, or not started yet and now never will
+            return null;
+        }
+        try {
+            return prefetch.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LOG.debug("Could not prefetch: " + prefetch.reference, e);
+            return null;
+        } finally {
+            bytes.addAndGet(-prefetch.reserved);
+        }
+    }
+
+    /**
+     * Gets the number of files waiting to be prefetched.
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+    /**
+     * Gets the number of times a prefetched file was used.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    /**
+     * Gets the number of times a file scheduled to be prefetched could
+     * not be used (e.g., not prefetched yet, failed, or changed since).
+     * Files never scheduled are not counted.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Stops prefetching and discards all prefetched files not
+     * yet processed, including those being prefetched.
+     */
+    public void close() {
+        for (String reference : prefetches.keySet()) {
+            Prefetch prefetch = prefetches.remove(reference);
+            if (prefetch != null) {
+                prefetch.cancel();
+            }
+        }
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    private void discard(Prefetch prefetch) {
+        FileDocument fetched = claim(prefetch);
+        if (fetched != null) {
+            fetched.getContent().dispose();
+        }
+    }
+
+    private boolean reserve(long size) {
+        while (true) {
+            long current = bytes.get();
+            if (current + size > maxBytes) {
+                return false;
+            }
+            if (bytes.compareAndSet(current, current + size)) {
+                return true;
+            }
+        }
+    }
+
+    private class Prefetch implements Callable<FileDocument> {
+        private final String reference;
+        private final FutureTask<FileDocument> future =
+                new FutureTask<>(this);
+        private final AtomicBoolean started = new AtomicBoolean();
+        private long size = -1;
+        private long lastModified = -1;
+        private long reserved;
+        private CrawlState state;
+        // Guarded by this, to dispose of it when cancelled
+        private FileDocument document;
+        private boolean cancelled;
+        public Prefetch(String reference) {
+            super();
+            this.reference = reference;
+        }
+        @Override
+        public FileDocument call() throws Exception {
+            if (!started.compareAndSet(false, true)) {
+                return null;
+            }
+            FileObject file = crawler.resolveFile(reference);
+            // same size and date as the metadata fetcher gets
+            LocalFileStat localStat = LocalFileStat.stat(file);
+            if (localStat != null) {
+                if (localStat.getType() != FileType.FILE) {
+                    return null;
+                }
+                size = localStat.getSize();
+                lastModified = localStat.getLastModified();
+            } else {
+                if (file.getType() != FileType.FILE) {
+                    return null;
+                }
+                FileContent content = file.getContent();
+                size = content.getSize();
+                lastModified = content.getLastModifiedTime();
+            }
+            if (!reserve(size)) {
+                return null;
+            }
+            reserved = size;
+            FileDocument doc = new FileDocument(reference, 
+                    crawler.getStreamFactory().newInputStream());
+            CrawlState fetchState;
+            try {
+                fetchState = FetcherUtil.fetchDocument(
+                        crawler.getCrawlerConfig().getDocumentFetcher(), 
+                        file, localStat, doc);
+                // read a copy to force caching and close the file
+                IOUtils.copy(doc.getContent(), new NullOutputStream());
+            } catch (Exception e) {
+                doc.getContent().dispose();
+                throw e;
+            }
+            synchronized (this) {
+                if (cancelled) {
+                    doc.getContent().dispose();
+                    return null;
+                }
+                state = fetchState;
+                document = doc;
+            }
+            return doc;
+        }
+        private void cancel() {
+            future.cancel(true);
+            synchronized (this) {
+                cancelled = true;
+                if (document != null) {
+                    document.getContent().dispose();
+                    document = null;
+                }
+            }
+        }
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory {
+        private final String crawlerId;
+        private final AtomicInteger count = new AtomicInteger();
+        public PrefetchThreadFactory(String crawlerId) {
+            super();
+            this.crawlerId = crawlerId;
+        }
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,
+                    crawlerId + "#prefetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,4 +1,4 @@
-/* Copyright 2013-2017 Norconex Inc.
+/* Copyright 2013-2018 Norconex Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -14,22 +14,27 @@
  */
 package com.norconex.collector.fs.crawler;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemManager;
+import org.apache.commons.vfs2.FileType;
 import org.apache.commons.vfs2.impl.StandardFileSystemManager;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -37,20 +42,31 @@ import org.apache.log4j.Logger;
 import com.norconex.collector.core.CollectorException;
 import com.norconex.collector.core.crawler.AbstractCrawler;
 import com.norconex.collector.core.crawler.ICrawler;
+import com.norconex.collector.core.crawler.ICrawlerConfig.OrphansStrategy;
+import com.norconex.collector.core.crawler.event.CrawlerEvent;
 import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.CrawlState;
 import com.norconex.collector.core.data.ICrawlData;
 import com.norconex.collector.core.data.store.ICrawlDataStore;
 import com.norconex.collector.core.pipeline.BasePipelineContext;
 import com.norconex.collector.core.pipeline.importer.ImporterPipelineContext;
+import com.norconex.collector.fs.data.FileCrawlData;
+import com.norconex.collector.fs.data.SeedMetadata;
 import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.fetch.IFileMetadataFetcher;
 import com.norconex.collector.fs.option.IFilesystemOptionsProvider;
 import com.norconex.collector.fs.pipeline.committer.FileCommitterPipeline;
 import com.norconex.collector.fs.pipeline.committer.FileCommitterPipelineContext;
 import com.norconex.collector.fs.pipeline.importer.FileImporterPipeline;
 import com.norconex.collector.fs.pipeline.importer.FileImporterPipelineContext;
 import com.norconex.collector.fs.pipeline.queue.FileQueuePipeline;
+import com.norconex.collector.fs.pipeline.queue.QueueBatchWriter;
+import com.norconex.collector.fs.pipeline.stats.PipelineStats;
+import com.norconex.commons.lang.file.FileUtil;
+import com.norconex.commons.lang.pipeline.IPipelineStage;
 import com.norconex.importer.doc.ImporterDocument;
 import com.norconex.importer.response.ImporterResponse;
+import com.norconex.jef4.status.IJobStatus;
 import com.norconex.jef4.status.JobStatusUpdater;
 import com.norconex.jef4.suite.JobSuite;
 
@@ -66,6 +82,15 @@ public class FilesystemCrawler extends AbstractCrawler {
     
     private StandardFileSystemManager fileManager;
     private IFilesystemOptionsProvider optionsProvider;
+    private volatile FolderWalker folderWalker;
+    private ContentPrefetcher contentPrefetcher;
+    private Semaphore importPermits;
+    private ImportExecutor importExecutor;
+    private ScheduledExecutorService queueBatchTimer;
+    private PipelineStats pipelineStats;
+    private FolderListingThrottle folderListingThrottle;
+    private FolderWatcher folderWatcher;
+    private StartPathsQueuer startPathsQueuer;
 
     /**
      * Constructor.
@@ -86,6 +111,95 @@ public class FilesystemCrawler extends AbstractCrawler {
     public FileSystemManager getFileManager() {
         return fileManager;
     }
+
+    /**
+     * Gets the prefetcher reading the content of queued files ahead
+     * of their processing.
+     * @return content prefetcher or <code>null</code> if not enabled
+     * @since 2.9.0
+     */
+    public ContentPrefetcher getContentPrefetcher() {
+        return contentPrefetcher;
+    }
+
+    /**
+     * Gets the permits crawler threads must acquire to import documents,
+     * limiting how many can import at once.
+     * @return import permits or <code>null</code> if not limited
+     * @since 2.9.0
+     */
+    public Semaphore getImportPermits() {
+        return importPermits;
+    }
+
+    /**
+     * Gets the executor importing documents on dedicated threads,
+     * handed off by crawler threads.
+     * @return import executor or <code>null</code> if crawler threads 
+     *         import documents themselves
+     * @since 2.9.0
+     */
+    public ImportExecutor getImportExecutor() {
+        return importExecutor;
+    }
+
+    /**
+     * Gets the execution statistics of pipeline stages.
+     * @return pipeline statistics or <code>null</code> if not enabled
+     * @since 2.9.0
+     */
+    public PipelineStats getPipelineStats() {
+        return pipelineStats;
+    }
+
+    /**
+     * Gets the throttle pausing folder listing when too many references
+     * are queued.
+     * @return folder listing throttle or <code>null</code> if not enabled
+     * @since 2.9.0
+     */
+    public FolderListingThrottle getFolderListingThrottle() {
+        return folderListingThrottle;
+    }
+
+    /**
+     * Gets the watcher of crawled local folders.
+     * @return folder watcher or <code>null</code> if not enabled
+     * @since 2.9.0
+     */
+    public FolderWatcher getFolderWatcher() {
+        return folderWatcher;
+    }
+    
+    /**
+     * Creates a writer queueing references in batches, when enabled
+     * with {@link FilesystemCrawlerConfig#getQueueBatchSize()}.
+     * @param crawlDataStore crawl data store
+     * @return queue batch writer or <code>null</code> if references
+     *         are queued one by one
+     * @since 2.9.0
+     */
+    public QueueBatchWriter createQueueBatchWriter(
+            ICrawlDataStore crawlDataStore) {
+        if (getCrawlerConfig().getQueueBatchSize() <= 0) {
+            return null;
+        }
+        return createQueueBatchWriter(
+                crawlDataStore, getCrawlerConfig().getQueueBatchSize());
+    }
+    /**
+     * Creates a writer queueing references in batches of the given size,
+     * regardless of {@link FilesystemCrawlerConfig#getQueueBatchSize()}.
+     * @param crawlDataStore crawl data store
+     * @param batchSize maximum number of references per batch
+     * @return queue batch writer
+     * @since 2.9.0
+     */
+    public QueueBatchWriter createQueueBatchWriter(
+            ICrawlDataStore crawlDataStore, int batchSize) {
+        return new QueueBatchWriter(this, crawlDataStore, batchSize, 
+                getCrawlerConfig().getQueueBatchTimeout(), queueBatchTimer);
+    }
     
     @Override
     protected void prepareExecution(
@@ -93,8 +207,73 @@ public class FilesystemCrawler extends AbstractCrawler {
             ICrawlDataStore crawlDataStore, boolean resume) {
 
         initializeFileSystemManager();
+        // No thread is started until a batch has to be timed
+        queueBatchTimer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, getId() + "#queuebatch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (getCrawlerConfig().getPrefetchThreads() > 0) {
+            contentPrefetcher = new ContentPrefetcher(this,
+                    getCrawlerConfig().getPrefetchThreads(),
+                    getCrawlerConfig().getPrefetchMaxBytes());
+        }
+        if (getCrawlerConfig().getImportThreads() > 0) {
+            if (getCrawlerConfig().isImportHandOff()) {
+                importExecutor = new ImportExecutor(getId(), 
+                        getCrawlerConfig().getImportThreads(),
+                        getCrawlerConfig().getNumThreads());
+            } else {
+                importPermits = new Semaphore(
+                        getCrawlerConfig().getImportThreads(), true);
+            }
+        }
+        if (getCrawlerConfig().isPipelineStats()) {
+            pipelineStats = new PipelineStats(getId(),
+                    getCrawlerConfig().getPipelineStatsLogInterval());
+        }
+        if (getCrawlerConfig().getQueueHighWaterMark() > 0) {
+            folderListingThrottle = new FolderListingThrottle(
+                    getCrawlerConfig().getQueueHighWaterMark(),
+                    getCrawlerConfig().getNumThreads(),
+                    new File(getCrawlerConfig().getWorkDir(), 
+                            "listingcursors/" + FileUtil.toSafeFileName(
+                                    getId()) + ".properties"),
+                    resume);
+        }
+        if (getCrawlerConfig().isWatchFolders()) {
+            folderWatcher = new FolderWatcher(
+                    this, getCrawlerConfig().getWatchQuietPeriod(),
+                    new File(getCrawlerConfig().getWorkDir(), 
+                            "watchedfolders/" + FileUtil.toSafeFileName(
+                                    getId()) + ".txt"),
+                    resume);
+        }
         
-        if (!resume) {
+        boolean queueStartPaths = !resume;
+        // The folder walker always queues in background, so crawler
+        // threads do not wait for the whole tree to be walked.
+        if (getCrawlerConfig().getStartPathsThreads() > 0
+                || getCrawlerConfig().isFolderWalker()) {
+            File pendingFile = new File(getCrawlerConfig().getWorkDir(), 
+                    "startpaths/" + FileUtil.toSafeFileName(getId()) 
+                            + ".pending");
+            if (resume && pendingFile.exists()) {
+                LOG.info(getId() + ": Start paths were not all queued when "
+                        + "the crawler was stopped, queueing them again.");
+                queueStartPaths = true;
+            }
+            if (queueStartPaths) {
+                startPathsQueuer = new StartPathsQueuer(getId(), 
+                        getCrawlerConfig().getStartPathsThreads(), 
+                        pendingFile);
+            }
+        }
+        if (queueStartPaths) {
             queueStartPaths(crawlDataStore);
         }
     }
@@ -111,6 +290,24 @@ public class FilesystemCrawler extends AbstractCrawler {
     }
     
     private void queueStartPaths(ICrawlDataStore crawlDataStore) {
+        FilesystemCrawlerConfig cfg = getCrawlerConfig();
+        if (cfg.isFolderWalker()) {
+            folderWalker = new FolderWalker(this, crawlDataStore,
+                    cfg.getFolderWalkerThreads(), cfg.getMaxDepth());
+        }
+        if (startPathsQueuer != null) {
+            startPathsQueuer.start(startPathsTasks(crawlDataStore), 
+                    new Runnable() {
+                @Override
+                public void run() {
+                    if (folderWalker != null) {
+                        folderWalker.awaitCompletion();
+                        folderWalker = null;
+                    }
+                }
+            });
+            return;
+        }
         int urlCount = 0;
         urlCount += queueStartPathsRegular(crawlDataStore);
         urlCount += queueStartPathsSeedFiles(crawlDataStore);
@@ -118,6 +315,14 @@ public class FilesystemCrawler extends AbstractCrawler {
         LOG.info(NumberFormat.getNumberInstance().format(urlCount)
                 + " start paths identified.");
     }
+    private void queueStartPath(
+            String startPath, ICrawlDataStore crawlDataStore) {
+        if (folderWalker != null) {
+            folderWalker.walk(startPath);
+        } else {
+            executeQueuePipeline(new BaseCrawlData(startPath), crawlDataStore);
+        }
+    }
     private int queueStartPathsRegular(final ICrawlDataStore crawlDataStore) {   
         // Queue regular start urls
         String[] startPaths = getCrawlerConfig().getStartPaths();
@@ -132,10 +337,50 @@ public class FilesystemCrawler extends AbstractCrawler {
             if (!startPath.contains("://")) {
                 startPath = new File(startPath).getAbsolutePath();
             }
-            executeQueuePipeline(new BaseCrawlData(startPath), crawlDataStore);
+            queueStartPath(startPath, crawlDataStore);
         }
         return startPaths.length;
     }
+    // One task per source of start paths, to queue them in parallel
+    private List<Callable<Integer>> startPathsTasks(
+            final ICrawlDataStore crawlDataStore) {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return queueStartPathsRegular(crawlDataStore);
+            }
+        });
+        String[] pathsFiles = getCrawlerConfig().getPathsFiles();
+        if (pathsFiles != null) {
+            for (final String pathsFile : pathsFiles) {
+                tasks.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return queueStartPathsSeedFile(
+                                pathsFile, crawlDataStore);
+                    }
+                });
+            }
+        }
+        IStartPathsProvider[] providers = 
+                getCrawlerConfig().getStartPathsProviders();
+        if (providers != null) {
+            for (final IStartPathsProvider provider : providers) {
+                if (provider == null) {
+                    continue;
+                }
+                tasks.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return queueStartPathsProvider(
+                                provider, crawlDataStore);
+                    }
+                });
+            }
+        }
+        return tasks;
+    }
     private int queueStartPathsSeedFiles(final ICrawlDataStore crawlDataStore) {
         String[] pathsFiles = getCrawlerConfig().getPathsFiles();
         if (pathsFiles == null) {
@@ -143,25 +388,42 @@ public class FilesystemCrawler extends AbstractCrawler {
         }
         int pathCount = 0;
         for (int i = 0; i < pathsFiles.length; i++) {
-            String pathsFile = pathsFiles[i];
-            LineIterator it = null;
-            try (InputStream is = new FileInputStream(pathsFile)) {
-                it = IOUtils.lineIterator(is, StandardCharsets.UTF_8);
-                while (it.hasNext()) {
-                    String startPath = it.nextLine();
-                    executeQueuePipeline(
-                            new BaseCrawlData(startPath), crawlDataStore);
-                    pathCount++;
-                }
-            } catch (IOException e) {
-                throw new CollectorException(
-                        "Could not process paths file: " + pathsFile, e);
-            } finally {
-                LineIterator.closeQuietly(it);
+            pathCount += queueStartPathsSeedFile(
+                    pathsFiles[i], crawlDataStore);
+        }
+        return pathCount;
+    }
+    // Stops early when the crawler is stopped while queueing in background
+    private int queueStartPathsSeedFile(
+            String pathsFile, ICrawlDataStore crawlDataStore) {
+        int pathCount = 0;
+        try (SeedFileReader reader = 
+                new SeedFileReader(new File(pathsFile))) {
+            SeedFileReader.Seed seed;
+            while (!Thread.currentThread().isInterrupted()
+                    && (seed = reader.next()) != null) {
+                queueSeed(seed, crawlDataStore);
+                pathCount++;
             }
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Could not process paths file: " + pathsFile, e);
         }
         return pathCount;
     }
+    // Seeds known to be files are not walked
+    private void queueSeed(
+            SeedFileReader.Seed seed, ICrawlDataStore crawlDataStore) {
+        SeedMetadata metadata = seed.getMetadata();
+        if (metadata == null || (folderWalker != null 
+                && metadata.getType() != FileType.FILE)) {
+            queueStartPath(seed.getPath(), crawlDataStore);
+        } else {
+            FileCrawlData crawlData = new FileCrawlData(seed.getPath());
+            crawlData.setSeedMetadata(metadata);
+            executeQueuePipeline(crawlData, crawlDataStore);
+        }
+    }
     
     private int queueStartPathsProviders(final ICrawlDataStore crawlDataStore) {
         IStartPathsProvider[] providers = 
@@ -174,12 +436,17 @@ public class FilesystemCrawler extends AbstractCrawler {
             if (provider == null) {
                 continue;
             }
-            Iterator<String> it = provider.provideStartPaths();
-            while (it.hasNext()) {
-                executeQueuePipeline(
-                        new BaseCrawlData(it.next()), crawlDataStore);
-                count++;
-            }
+            count += queueStartPathsProvider(provider, crawlDataStore);
+        }
+        return count;
+    }
+    private int queueStartPathsProvider(IStartPathsProvider provider,
+            ICrawlDataStore crawlDataStore) {
+        int count = 0;
+        Iterator<String> it = provider.provideStartPaths();
+        while (!Thread.currentThread().isInterrupted() && it.hasNext()) {
+            queueStartPath(it.next(), crawlDataStore);
+            count++;
         }
         return count;
     }
@@ -193,6 +460,108 @@ public class FilesystemCrawler extends AbstractCrawler {
         new FileQueuePipeline().execute(context);
     }
 
+    // Wakes up the crawler waiting for start paths queued in background.
+    @Override
+    public void fireCrawlerEvent(
+            String eventType, ICrawlData crawlData, Object subject) {
+        super.fireCrawlerEvent(eventType, crawlData, subject);
+        StartPathsQueuer queuer = startPathsQueuer;
+        if (queuer != null 
+                && CrawlerEvent.DOCUMENT_QUEUED.equals(eventType)) {
+            queuer.queued();
+        }
+    }
+
+    // Start paths queued in background are processed as they get queued.
+    // When watching folders, changes are processed until stopped.
+    // Documents handed off to import threads are only done processing
+    // once imported and committed.
+    @Override
+    protected void processReferences(ICrawlDataStore crawlDataStore,
+            JobStatusUpdater statusUpdater, JobSuite suite, boolean delete) {
+        super.processReferences(crawlDataStore, statusUpdater, suite, delete);
+        if (!delete) {
+            processLateReferences(crawlDataStore, statusUpdater, suite);
+        }
+        if (importExecutor != null) {
+            importExecutor.awaitIdle();
+        }
+    }
+    private void processLateReferences(ICrawlDataStore crawlDataStore,
+            JobStatusUpdater statusUpdater, JobSuite suite) {
+        // Crawler threads end whenever the queue is empty, so they are
+        // started again while start paths are being queued.
+        if (startPathsQueuer != null) {
+            while (startPathsQueuer.awaitQueued(crawlDataStore)) {
+                super.processReferences(
+                        crawlDataStore, statusUpdater, suite, false);
+            }
+        }
+        if (folderWatcher == null) {
+            return;
+        }
+        // Orphans are only handled once stopped otherwise, which
+        // can be long after all files were crawled.
+        processOrphans(crawlDataStore, statusUpdater, suite);
+        LOG.info(getId() + ": Watching " + folderWatcher.getFolderCount()
+                + " folders for changes.");
+        // Deleted files go through the same deletion as orphans.
+        while (folderWatcher.awaitChanges(crawlDataStore)) {
+            if (folderWatcher.queueDeletions(crawlDataStore) > 0) {
+                super.processReferences(
+                        crawlDataStore, statusUpdater, suite, true);
+            }
+            if (folderWatcher.queueChanges(crawlDataStore) > 0) {
+                super.processReferences(
+                        crawlDataStore, statusUpdater, suite, false);
+            }
+        }
+    }
+
+    // Same as the crawler does with orphans once references are processed,
+    // leaving none for it to handle when stopped.
+    private void processOrphans(ICrawlDataStore crawlDataStore,
+            JobStatusUpdater statusUpdater, JobSuite suite) {
+        OrphansStrategy strategy = getCrawlerConfig().getOrphansStrategy();
+        if (strategy != OrphansStrategy.DELETE
+                && strategy != OrphansStrategy.PROCESS) {
+            return;
+        }
+        boolean delete = strategy == OrphansStrategy.DELETE;
+        int count = 0;
+        Iterator<ICrawlData> it = crawlDataStore.getCacheIterator();
+        while (it.hasNext()) {
+            ICrawlData crawlData = it.next();
+            if (delete) {
+                crawlDataStore.queue(crawlData);
+            } else {
+                executeQueuePipeline(crawlData, crawlDataStore);
+            }
+            count++;
+        }
+        if (count > 0) {
+            LOG.info(getId() + ": " + (delete ? "Deleting " : "Processing ")
+                    + count + " orphan files before watching folders.");
+            super.processReferences(
+                    crawlDataStore, statusUpdater, suite, delete);
+        }
+    }
+
+    @Override
+    public void stop(IJobStatus jobStatus, JobSuite suite) {
+        super.stop(jobStatus, suite);
+        if (startPathsQueuer != null) {
+            startPathsQueuer.stop();
+        }
+        FolderWalker walker = folderWalker;
+        if (walker != null) {
+            walker.stop();
+        }
+        if (folderWatcher != null) {
+            folderWatcher.close();
+        }
+    }
+
     @Override
     protected ImporterDocument wrapDocument(ICrawlData crawlData,
             ImporterDocument document) {
@@ -208,23 +577,158 @@ public class FilesystemCrawler extends AbstractCrawler {
         
         FileObject fileObject = null;
         try {
-            if (optionsProvider == null) {
-                fileObject = fileManager.resolveFile(crawlData.getReference());
-            } else {
-                fileObject = fileManager.resolveFile(crawlData.getReference(), 
-                        optionsProvider.getFilesystemOptions(fileObject));
-            }
+            fileObject = resolveFile(crawlData.getReference());
         } catch (FileSystemException e) {
             resolveFileException(crawlData.getReference(), e);
         }
         FileImporterPipelineContext fileContext = 
                 new FileImporterPipelineContext(importerContext);
         fileContext.setFileObject(fileObject);
-        new FileImporterPipeline(
-                getCrawlerConfig().isKeepDownloads()).execute(fileContext);
+        try {
+            new FileImporterPipeline(
+                    getCrawlerConfig().isKeepDownloads()).execute(fileContext);
+        } finally {
+            // Prefetched content not taken (e.g., rejected file)
+            if (contentPrefetcher != null) {
+                contentPrefetcher.discard(crawlData.getReference());
+            }
+        }
         return fileContext.getImporterResponse();
     }
 
+    /**
+     * Hands off a document ready to be imported to an import thread,
+     * without waiting for it to be imported.  The import thread imports
+     * the document with the given stage, commits it, and records it as 
+     * processed.  The document content and crawl data are detached from
+     * the supplied context, which is left holding an empty document 
+     * marked as unmodified: the calling crawler thread is done with it.
+     * Since the crawler thread records it as processed right away, 
+     * it is recorded with its previous checksums (none if new) until 
+     * the import thread records it again with the outcome of its import.
+     * Should the crawler be stopped abruptly before then, the next
+     * crawl sees the document as modified and processes it again.
+     * @param ctx importer pipeline context
+     * @param importStage stage importing the document
+     * @return <code>true</code> if handed off, <code>false</code> if
+     *         documents are not handed off (not enabled or crawler 
+     *         stopping), in which case the caller must import it
+     * @since 2.9.0
+     */
+    public boolean handOffImport(FileImporterPipelineContext ctx, 
+            final IPipelineStage<ImporterPipelineContext> importStage) {
+        ImportExecutor executor = getImportExecutor();
+        if (executor == null) {
+            return false;
+        }
+        final FileImporterPipelineContext importContext = 
+                new FileImporterPipelineContext(ctx);
+        importContext.setCrawlData((BaseCrawlData) ctx.getCrawlData().clone());
+        importContext.setDocument(new FileDocument(ctx.getDocument()));
+        if (!executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                importHandedOff(importContext, importStage);
+            }
+        })) {
+            return false;
+        }
+        ctx.getDocument().setContent(getStreamFactory().newInputStream());
+        BaseCrawlData crawlData = ctx.getCrawlData();
+        BaseCrawlData cachedCrawlData = ctx.getCachedCrawlData();
+        if (cachedCrawlData != null) {
+            crawlData.setMetaChecksum(cachedCrawlData.getMetaChecksum());
+            crawlData.setContentChecksum(
+                    cachedCrawlData.getContentChecksum());
+        } else {
+            crawlData.setMetaChecksum(null);
+            crawlData.setContentChecksum(null);
+        }
+        crawlData.setState(CrawlState.UNMODIFIED);
+        return true;
+    }
+    // Does on an import thread what crawler threads do after import.
+    private void importHandedOff(FileImporterPipelineContext ctx,
+            IPipelineStage<ImporterPipelineContext> importStage) {
+        BaseCrawlData crawlData = ctx.getCrawlData();
+        ICrawlDataStore store = ctx.getCrawlDataStore();
+        try {
+            importStage.execute(ctx);
+            ImporterResponse response = ctx.getImporterResponse();
+            if (response != null) {
+                processHandedOffResponse(response, store, 
+                        crawlData, ctx.getCachedCrawlData());
+                return;
+            }
+            if (crawlData.getState().isNewOrModified()) {
+                crawlData.setState(CrawlState.REJECTED);
+            }
+            store.processed(crawlData);
+        } catch (Exception e) {
+            LOG.error(getId() + ": Could not import: " 
+                    + crawlData.getReference(), e);
+            crawlData.setState(CrawlState.ERROR);
+            fireCrawlerEvent(CrawlerEvent.REJECTED_ERROR, crawlData, e);
+            store.processed(crawlData);
+        } finally {
+            disposeContent(ctx.getDocument());
+        }
+    }
+    private void processHandedOffResponse(ImporterResponse response, 
+            ICrawlDataStore store, BaseCrawlData crawlData, 
+            BaseCrawlData cachedCrawlData) {
+        ImporterDocument doc = response.getDocument();
+        try {
+            if (response.isSuccess()) {
+                fireCrawlerEvent(
+                        CrawlerEvent.DOCUMENT_IMPORTED, crawlData, response);
+                executeCommitterPipeline(this, wrapDocument(crawlData, doc), 
+                        store, crawlData, cachedCrawlData);
+            } else {
+                crawlData.setState(CrawlState.REJECTED);
+                fireCrawlerEvent(
+                        CrawlerEvent.REJECTED_IMPORT, crawlData, response);
+            }
+            store.processed(crawlData);
+        } finally {
+            disposeContent(doc);
+        }
+        for (ImporterResponse child : response.getNestedResponses()) {
+            BaseCrawlData embeddedData = createEmbeddedCrawlData(
+                    child.getReference(), crawlData);
+            processHandedOffResponse(child, store, embeddedData, 
+                    (BaseCrawlData) store.getCached(child.getReference()));
+        }
+    }
+    private void disposeContent(ImporterDocument doc) {
+        if (doc == null || doc.getContent() == null) {
+            return;
+        }
+        try {
+            doc.getContent().dispose();
+        } catch (Exception e) {
+            LOG.error(getId() + ": Could not dispose of content: " 
+                    + doc.getReference(), e);
+        }
+    }
+
+    /**
+     * Resolves a file object from a reference, using the file system
+     * options from the configured options provider, if any.
+     * @param reference file reference
+     * @return file object
+     * @throws FileSystemException could not resolve file
+     * @since 2.9.0
+     */
+    /*default*/ FileObject resolveFile(String reference)
+            throws FileSystemException {
+        if (optionsProvider == null) {
+            return fileManager.resolveFile(reference);
+        }
+        return fileManager.resolveFile(reference, 
+                optionsProvider.getFilesystemOptions(null));
+    }
+
     @Override
     protected BaseCrawlData createEmbeddedCrawlData(String embeddedReference,
             ICrawlData parentCrawlData) {
@@ -252,6 +756,42 @@ public class FilesystemCrawler extends AbstractCrawler {
     @Override
     protected void cleanupExecution(JobStatusUpdater statusUpdater,
             JobSuite suite, ICrawlDataStore refStore) {
+        // Data kept by a fetcher is only valid for a crawl
+        IFileMetadataFetcher metaFetcher = 
+                getCrawlerConfig().getMetadataFetcher();
+        if (metaFetcher instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) metaFetcher);
+        }
+        if (contentPrefetcher != null) {
+            LOG.info(getId() + ": Content prefetch: "
+                    + contentPrefetcher.getHitCount() + " hits, "
+                    + contentPrefetcher.getMissCount() + " misses.");
+            contentPrefetcher.close();
+            contentPrefetcher = null;
+        }
+        if (importExecutor != null) {
+            importExecutor.close();
+            LOG.info(getId() + ": Import executor: " 
+                    + importExecutor.getStatus());
+            importExecutor = null;
+        }
+        importPermits = null;
+        if (pipelineStats != null) {
+            pipelineStats.close();
+            pipelineStats = null;
+        }
+        if (folderWatcher != null) {
+            folderWatcher.close();
+            folderWatcher = null;
+        }
+        if (startPathsQueuer != null) {
+            startPathsQueuer.stop();
+            startPathsQueuer = null;
+        }
+        if (queueBatchTimer != null) {
+            queueBatchTimer.shutdownNow();
+            queueBatchTimer = null;
+        }
         fileManager.close();
     }
 
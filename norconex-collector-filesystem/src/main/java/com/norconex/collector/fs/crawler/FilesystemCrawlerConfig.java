@@ -53,13 +53,74 @@ public class FilesystemCrawlerConfig extends AbstractCrawlerConfig {
 
     private static final Logger LOG = 
             LogManager.getLogger(FilesystemCrawlerConfig.class);
+
+    /**
+     * Default number of folder children queued at once.
+     * @since 2.9.0
+     */
+    public static final int DEFAULT_FOLDER_BATCH_SIZE = 100;
+    /**
+     * Default number of folder walker threads.
+     * @since 2.9.0
+     */
+    public static final int DEFAULT_FOLDER_WALKER_THREADS = 4;
     
+    /**
+     * Default maximum number of bytes prefetched and not yet processed.
+     * @since 2.9.0
+     */
+    public static final long DEFAULT_PREFETCH_MAX_BYTES = 
+            100L * 1024L * 1024L;
+
+    /**
+     * Default milliseconds between pipeline statistics summaries logged.
+     * @since 2.9.0
+     */
+    public static final long DEFAULT_PIPELINE_STATS_LOG_INTERVAL = 
+            60L * 1000L;
+
+    /**
+     * Default milliseconds without new folder events before queueing
+     * changed files.
+     * @since 2.9.0
+     */
+    public static final long DEFAULT_WATCH_QUIET_PERIOD = 1000L;
+
+    /**
+     * Default milliseconds after which a started batch of references
+     * to queue is written.
+     * @since 2.9.0
+     */
+    public static final long DEFAULT_QUEUE_BATCH_TIMEOUT = 1000L;
+
     private String[] startPaths;
     private String[] pathsFiles;
     private IStartPathsProvider[] startPathsProviders;
     
     private boolean keepDownloads;
 
+    private boolean folderStreaming;
+    private int folderBatchSize = DEFAULT_FOLDER_BATCH_SIZE;
+
+    private boolean folderWalker;
+    private int folderWalkerThreads = DEFAULT_FOLDER_WALKER_THREADS;
+    private int maxDepth = -1;
+
+    private boolean folderChecksum;
+    private int prefetchThreads;
+    private long prefetchMaxBytes = DEFAULT_PREFETCH_MAX_BYTES;
+    private int importThreads;
+    private boolean importHandOff;
+    private boolean pipelineStats;
+    private long pipelineStatsLogInterval = 
+            DEFAULT_PIPELINE_STATS_LOG_INTERVAL;
+    private int queueHighWaterMark;
+    private boolean watchFolders;
+    private long watchQuietPeriod = DEFAULT_WATCH_QUIET_PERIOD;
+    private int startPathsThreads;
+    private int queueBatchSize;
+    private long queueBatchTimeout = DEFAULT_QUEUE_BATCH_TIMEOUT;
+    private boolean archiveEntries;
     private IFilesystemOptionsProvider optionsProvider = 
             new GenericFilesystemOptionsProvider();
 
@@ -121,6 +182,455 @@ public class FilesystemCrawlerConfig extends AbstractCrawlerConfig {
         this.keepDownloads = keepDownloads;
     }
 
+    /**
+     * Gets whether folder children are streamed as they are listed
+     * instead of being all resolved first. When streaming, children
+     * of local and SMB folders are read lazily from the file system
+     * and queued in batches of {@link #getFolderBatchSize()}, keeping
+     * memory usage low on folders holding a very large number of files.
+     * Default is <code>false</code>.
+     * @return <code>true</code> if streaming folder children
+     * @since 2.9.0
+     */
+    public boolean isFolderStreaming() {
+        return folderStreaming;
+    }
+    /**
+     * Sets whether folder children are streamed as they are listed
+     * instead of being all resolved first.
+     * @param folderStreaming <code>true</code> to stream folder children
+     * @since 2.9.0
+     */
+    public void setFolderStreaming(boolean folderStreaming) {
+        this.folderStreaming = folderStreaming;
+    }
+    /**
+     * Gets the maximum number of folder children held in memory before
+     * being queued, when streaming folder children.  Each batch is
+     * written to the crawl data store at once.  Also how often the
+     * {@link #getQueueHighWaterMark()} is checked.
+     * Default is {@value #DEFAULT_FOLDER_BATCH_SIZE}.
+     * @return batch size
+     * @since 2.9.0
+     */
+    public int getFolderBatchSize() {
+        return folderBatchSize;
+    }
+    /**
+     * Sets the maximum number of folder children held in memory before
+     * being queued, when streaming folder children.
+     * @param folderBatchSize batch size
+     * @since 2.9.0
+     */
+    public void setFolderBatchSize(int folderBatchSize) {
+        this.folderBatchSize = folderBatchSize;
+    }
+
+    /**
+     * Gets whether start path folders are walked by a dedicated pool
+     * of threads.  When <code>true</code>, folder trees are traversed 
+     * in parallel from each start path and all files found are queued 
+     * ahead of the crawler threads, which process them while folders 
+     * are still being walked.  Folders themselves are not queued, but
+     * folders rejected by reference filters are not walked.
+     * Default is <code>false</code>
+     * (folders are expanded by crawler threads as they get processed).
+     * @return <code>true</code> if using a folder walker
+     * @since 2.9.0
+     */
+    public boolean isFolderWalker() {
+        return folderWalker;
+    }
+    /**
+     * Sets whether start path folders are walked by a dedicated pool
+     * of threads.
+     * @param folderWalker <code>true</code> to use a folder walker
+     * @since 2.9.0
+     */
+    public void setFolderWalker(boolean folderWalker) {
+        this.folderWalker = folderWalker;
+    }
+    /**
+     * Gets the number of threads used to walk folders when
+     * {@link #isFolderWalker()} is <code>true</code>.
+     * Default is {@value #DEFAULT_FOLDER_WALKER_THREADS}.
+     * @return number of folder walker threads
+     * @since 2.9.0
+     */
+    public int getFolderWalkerThreads() {
+        return folderWalkerThreads;
+    }
+    /**
+     * Sets the number of threads used to walk folders when
+     * {@link #isFolderWalker()} is <code>true</code>.
+     * @param folderWalkerThreads number of folder walker threads
+     * @since 2.9.0
+     */
+    public void setFolderWalkerThreads(int folderWalkerThreads) {
+        this.folderWalkerThreads = folderWalkerThreads;
+    }
+    /**
+     * Gets the maximum number of sub-folder levels walked under a 
+     * start path folder.  Zero only crawls files directly under
+     * a start path folder.  Only applies when 
+     * {@link #isFolderWalker()} is <code>true</code>.
+     * Default is -1 (unlimited).
+     * @return maximum depth
+     * @since 2.9.0
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    /**
+     * Sets the maximum number of sub-folder levels walked under a 
+     * start path folder.  Only applies when 
+     * {@link #isFolderWalker()} is <code>true</code>.
+     * @param maxDepth maximum depth (-1 for unlimited)
+     * @since 2.9.0
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Gets whether unmodified folders are detected on incremental runs to
+     * avoid processing their files one by one.  A folder checksum made
+     * of the folder last modified date and the name, type, size and 
+     * last modified date of each child is kept in the crawl data store.
+     * When it matches the one from the previous run, files directly 
+     * under that folder are not queued and are instead carried forward 
+     * as unmodified from the previous run, unless rejected by reference
+     * filters.  Files are still queued when metadata filters are set.
+     * Sub-folders are always processed. With folder streaming, folders 
+     * are listed twice: once for the checksum and once to stream their 
+     * children. Has no effect on folders walked by the folder walker.
+     * Default is <code>false</code>.
+     * @return <code>true</code> if using folder checksums
+     * @since 2.9.0
+     */
+    public boolean isFolderChecksum() {
+        return folderChecksum;
+    }
+    /**
+     * Sets whether unmodified folders are detected on incremental runs to
+     * avoid processing their files one by one.
+     * @param folderChecksum <code>true</code> to use folder checksums
+     * @since 2.9.0
+     */
+    public void setFolderChecksum(boolean folderChecksum) {
+        this.folderChecksum = folderChecksum;
+    }
+
+    /**
+     * Gets the number of threads fetching newly queued files ahead of 
+     * their processing, with the configured document fetcher, so crawler 
+     * threads find their content already read.  Useful with high-latency
+     * file systems.  Only files not crawled on a previous run are 
+     * prefetched. Prefetched content no longer matching the file size 
+     * or last modified date when processed is discarded.
+     * Default is 0 (disabled).
+     * @return number of prefetch threads
+     * @since 2.9.0
+     */
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+    /**
+     * Sets the number of threads reading the content of newly queued 
+     * files ahead of their processing.
+     * @param prefetchThreads number of prefetch threads (0 to disable)
+     * @since 2.9.0
+     */
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+    /**
+     * Gets the maximum number of bytes being prefetched or prefetched 
+     * and not yet processed.  Files are not prefetched when it would 
+     * exceed this budget.
+     * Default is {@value #DEFAULT_PREFETCH_MAX_BYTES}.
+     * @return maximum number of bytes
+     * @since 2.9.0
+     */
+    public long getPrefetchMaxBytes() {
+        return prefetchMaxBytes;
+    }
+    /**
+     * Sets the maximum number of bytes being prefetched or prefetched 
+     * and not yet processed.
+     * @param prefetchMaxBytes maximum number of bytes
+     * @since 2.9.0
+     */
+    public void setPrefetchMaxBytes(long prefetchMaxBytes) {
+        this.prefetchMaxBytes = prefetchMaxBytes;
+    }
+
+    /**
+     * Gets the maximum number of threads importing (parsing)
+     * documents at once.  Allows for many crawler threads waiting on 
+     * file system I/O (e.g., slow network shares) without as many
+     * threads competing for CPU while importing. Crawler threads 
+     * exceeding this number wait before importing, unless
+     * {@link #isImportHandOff()} is <code>true</code>.
+     * Default is 0 (as many as crawler threads).
+     * @return maximum number of importing threads
+     * @since 2.9.0
+     */
+    public int getImportThreads() {
+        return importThreads;
+    }
+    /**
+     * Sets the maximum number of threads importing (parsing)
+     * documents at once.
+     * @param importThreads maximum number of importing threads 
+     *        (0 for no maximum)
+     * @since 2.9.0
+     */
+    public void setImportThreads(int importThreads) {
+        this.importThreads = importThreads;
+    }
+
+    /**
+     * Gets whether crawler threads hand off documents to dedicated
+     * import threads, as many as {@link #getImportThreads()}.
+     * Import threads import and commit documents, while crawler threads
+     * move on to fetching the next ones without waiting.  Crawler 
+     * threads only wait when as many documents as crawler threads are
+     * already waiting to be imported.  Has no effect unless 
+     * {@link #getImportThreads()} is greater than zero.
+     * Default is <code>false</code>.
+     * @return <code>true</code> if documents are imported on 
+     *         dedicated threads
+     * @since 2.9.0
+     */
+    public boolean isImportHandOff() {
+        return importHandOff;
+    }
+    /**
+     * Sets whether crawler threads hand off documents to dedicated
+     * import threads.
+     * @param importHandOff <code>true</code> to import documents on
+     *        dedicated threads
+     * @since 2.9.0
+     */
+    public void setImportHandOff(boolean importHandOff) {
+        this.importHandOff = importHandOff;
+    }
+
+    /**
+     * Gets whether to record execution statistics (execution count,
+     * throughput and time histogram) of each importer and committer 
+     * pipeline stage, per file system scheme.  Statistics are exposed 
+     * as JMX MBeans and logged at regular intervals.
+     * Default is <code>false</code>.
+     * @return <code>true</code> if recording pipeline statistics
+     * @since 2.9.0
+     */
+    public boolean isPipelineStats() {
+        return pipelineStats;
+    }
+    /**
+     * Sets whether to record execution statistics of each importer and 
+     * committer pipeline stage, per file system scheme.
+     * @param pipelineStats <code>true</code> to record pipeline statistics
+     * @since 2.9.0
+     */
+    public void setPipelineStats(boolean pipelineStats) {
+        this.pipelineStats = pipelineStats;
+    }
+    /**
+     * Gets the number of milliseconds between pipeline statistics
+     * summaries logged, when recording pipeline statistics.
+     * Default is {@value #DEFAULT_PIPELINE_STATS_LOG_INTERVAL}.
+     * @return milliseconds between summaries (0 to only log one at the end)
+     * @since 2.9.0
+     */
+    public long getPipelineStatsLogInterval() {
+        return pipelineStatsLogInterval;
+    }
+    /**
+     * Sets the number of milliseconds between pipeline statistics
+     * summaries logged.
+     * @param pipelineStatsLogInterval milliseconds between summaries 
+     *        (0 to only log one at the end)
+     * @since 2.9.0
+     */
+    public void setPipelineStatsLogInterval(long pipelineStatsLogInterval) {
+        this.pipelineStatsLogInterval = pipelineStatsLogInterval;
+    }
+
+    /**
+     * Gets the number of queued references at which folder listing 
+     * pauses until enough of them are processed. Keeps memory and crawl 
+     * data store size bounded when expanding folders holding a very 
+     * large number of files.  The queue size is checked every
+     * {@link #getFolderBatchSize()} children queued, whether folders 
+     * are expanded by crawler threads or walked by the folder walker.
+     * When {@link #isFolderStreaming()} is <code>true</code>, the 
+     * listing position of paused folders is saved so a stopped crawler
+     * resumes listing where it was.
+     * Default is 0 (no limit).
+     * @return queue high-water mark
+     * @since 2.9.0
+     */
+    public int getQueueHighWaterMark() {
+        return queueHighWaterMark;
+    }
+    /**
+     * Sets the number of queued references at which folder listing 
+     * pauses until enough of them are processed.
+     * @param queueHighWaterMark queue high-water mark (0 for no limit)
+     * @since 2.9.0
+     */
+    public void setQueueHighWaterMark(int queueHighWaterMark) {
+        this.queueHighWaterMark = queueHighWaterMark;
+    }
+
+    /**
+     * Gets whether the crawler keeps running once all files were 
+     * processed, watching local folders for changes.  Folders are 
+     * watched as they get crawled.  Created, modified or deleted files
+     * are then queued and processed without walking start paths again,
+     * until the crawler is stopped.  Deleted files are deleted the same
+     * way orphans are, and orphans are handled before watching starts
+     * rather than once stopped.  Watched folders are recorded in the 
+     * work directory, so a resumed crawler watches them again.
+     * Only local folders are watched.
+     * Default is <code>false</code>.
+     * @return <code>true</code> if watching folders
+     * @since 2.9.0
+     */
+    public boolean isWatchFolders() {
+        return watchFolders;
+    }
+    /**
+     * Sets whether the crawler keeps running once all files were 
+     * processed, watching local folders for changes.
+     * @param watchFolders <code>true</code> to watch folders
+     * @since 2.9.0
+     */
+    public void setWatchFolders(boolean watchFolders) {
+        this.watchFolders = watchFolders;
+    }
+    /**
+     * Gets the number of milliseconds without new folder events before 
+     * changed files are queued, so bursts of events (e.g., a file being
+     * copied) result in files being processed once.
+     * Default is {@value #DEFAULT_WATCH_QUIET_PERIOD}.
+     * @return milliseconds
+     * @since 2.9.0
+     */
+    public long getWatchQuietPeriod() {
+        return watchQuietPeriod;
+    }
+    /**
+     * Sets the number of milliseconds without new folder events before 
+     * changed files are queued.
+     * @param watchQuietPeriod milliseconds
+     * @since 2.9.0
+     */
+    public void setWatchQuietPeriod(long watchQuietPeriod) {
+        this.watchQuietPeriod = watchQuietPeriod;
+    }
+
+    /**
+     * Gets the number of threads queueing start paths in the background,
+     * in parallel across regular start paths, paths files and start
+     * paths providers, while crawler threads are already processing
+     * what was queued.  When 0, all start paths are queued before
+     * crawler threads start, unless {@link #isFolderWalker()} is 
+     * <code>true</code> (one thread is then used).  A crawler stopped before all start paths
+     * were queued queues them all again when resumed (already
+     * queued or processed ones are skipped).
+     * Default is 0.
+     * @return number of threads
+     * @since 2.9.0
+     */
+    public int getStartPathsThreads() {
+        return startPathsThreads;
+    }
+    /**
+     * Sets the number of threads queueing start paths in the background.
+     * @param startPathsThreads number of threads
+     * @since 2.9.0
+     */
+    public void setStartPathsThreads(int startPathsThreads) {
+        this.startPathsThreads = startPathsThreads;
+    }
+
+    /**
+     * Gets the maximum number of folder children written at once to the
+     * crawl data store when queued.  Children of a folder accepted by
+     * reference filters are accumulated and written in batches, with a
+     * single write when the crawl data store supports it (e.g., compact,
+     * mapped and Mongo crawl data stores), instead of one write per child.  Applies to folders listed by crawler threads
+     * and by the folder walker.  When 0, children are queued one by one.
+     * Default is 0.
+     * @return maximum batch size
+     * @since 2.9.0
+     */
+    public int getQueueBatchSize() {
+        return queueBatchSize;
+    }
+    /**
+     * Sets the maximum number of folder children written at once to the
+     * crawl data store when queued.
+     * @param queueBatchSize maximum batch size
+     * @since 2.9.0
+     */
+    public void setQueueBatchSize(int queueBatchSize) {
+        this.queueBatchSize = queueBatchSize;
+    }
+    /**
+     * Gets the number of milliseconds after which a batch of folder
+     * children being accumulated is written, even if not full, so
+     * children of folders slow to list do not wait too long before
+     * being queued.  Batches are always written once a folder is 
+     * listed.  Default is {@value #DEFAULT_QUEUE_BATCH_TIMEOUT}.
+     * @return milliseconds
+     * @since 2.9.0
+     */
+    public long getQueueBatchTimeout() {
+        return queueBatchTimeout;
+    }
+    /**
+     * Sets the number of milliseconds after which a batch of folder
+     * children being accumulated is written, even if not full.
+     * @param queueBatchTimeout milliseconds
+     * @since 2.9.0
+     */
+    public void setQueueBatchTimeout(long queueBatchTimeout) {
+        this.queueBatchTimeout = queueBatchTimeout;
+    }
+
+    /**
+     * Gets whether zip archives (files ending with ".zip", ".jar", 
+     * ".war" or ".ear") are crawled like folders, each entry being 
+     * queued and processed as its own document.  Only the archive 
+     * central directory is read to find entries, and each entry is
+     * read straight from the archive when processed, without copying
+     * or extracting the archive first.  Entries get their CRC-32, 
+     * compressed size and compression method as file attributes.
+     * Archives must be on a file system supporting random access
+     * (e.g., local or SMB/CIFS), and archives that cannot be read this
+     * way (including archives within archives) are processed as 
+     * regular files.  Default is <code>false</code>.
+     * @return <code>true</code> if crawling archive entries
+     * @since 2.9.0
+     */
+    public boolean isArchiveEntries() {
+        return archiveEntries;
+    }
+    /**
+     * Sets whether zip archives are crawled like folders, each entry 
+     * being queued and processed as its own document.
+     * @param archiveEntries <code>true</code> to crawl archive entries
+     * @since 2.9.0
+     */
+    public void setArchiveEntries(boolean archiveEntries) {
+        this.archiveEntries = archiveEntries;
+    }
+
     /**
      * Gets the file system options provider. Default is
      * {@link GenericFilesystemOptionsProvider}.
@@ -205,6 +715,35 @@ public class FilesystemCrawlerConfig extends AbstractCrawlerConfig {
             EnhancedXMLStreamWriter writer = new EnhancedXMLStreamWriter(out);
 
             writer.writeElementBoolean("keepDownloads", isKeepDownloads());
+            writer.writeElementBoolean("folderStreaming", isFolderStreaming());
+            writer.writeElementInteger("folderBatchSize", getFolderBatchSize());
+            writer.writeElementBoolean("folderWalker", isFolderWalker());
+            writer.writeElementInteger(
+                    "folderWalkerThreads", getFolderWalkerThreads());
+            writer.writeElementInteger("maxDepth", getMaxDepth());
+            writer.writeElementBoolean("folderChecksum", isFolderChecksum());
+            writer.writeElementInteger(
+                    "prefetchThreads", getPrefetchThreads());
+            writer.writeElementLong(
+                    "prefetchMaxBytes", getPrefetchMaxBytes());
+            writer.writeElementInteger("importThreads", getImportThreads());
+            writer.writeElementBoolean("importHandOff", isImportHandOff());
+            writer.writeElementBoolean("pipelineStats", isPipelineStats());
+            writer.writeElementLong("pipelineStatsLogInterval", 
+                    getPipelineStatsLogInterval());
+            writer.writeElementInteger(
+                    "queueHighWaterMark", getQueueHighWaterMark());
+            writer.writeElementBoolean("watchFolders", isWatchFolders());
+            writer.writeElementLong(
+                    "watchQuietPeriod", getWatchQuietPeriod());
+            writer.writeElementInteger(
+                    "startPathsThreads", getStartPathsThreads());
+            writer.writeElementInteger(
+                    "queueBatchSize", getQueueBatchSize());
+            writer.writeElementLong(
+                    "queueBatchTimeout", getQueueBatchTimeout());
+            writer.writeElementBoolean(
+                    "archiveEntries", isArchiveEntries());
             writer.writeStartElement("startPaths");
             
             String[] paths = getStartPaths();
@@ -282,7 +821,38 @@ public class FilesystemCrawlerConfig extends AbstractCrawlerConfig {
     
     private void loadSimpleSettings(XMLConfiguration xml) {
         setKeepDownloads(xml.getBoolean("keepDownloads", isKeepDownloads()));
+        setFolderStreaming(
+                xml.getBoolean("folderStreaming", isFolderStreaming()));
+        setFolderBatchSize(
+                xml.getInt("folderBatchSize", getFolderBatchSize()));
+        setFolderWalker(xml.getBoolean("folderWalker", isFolderWalker()));
+        setFolderWalkerThreads(
+                xml.getInt("folderWalkerThreads", getFolderWalkerThreads()));
+        setMaxDepth(xml.getInt("maxDepth", getMaxDepth()));
 
+        setFolderChecksum(
+                xml.getBoolean("folderChecksum", isFolderChecksum()));
+        setPrefetchThreads(
+                xml.getInt("prefetchThreads", getPrefetchThreads()));
+        setPrefetchMaxBytes(
+                xml.getLong("prefetchMaxBytes", getPrefetchMaxBytes()));
+        setImportThreads(xml.getInt("importThreads", getImportThreads()));
+        setImportHandOff(xml.getBoolean("importHandOff", isImportHandOff()));
+        setPipelineStats(xml.getBoolean("pipelineStats", isPipelineStats()));
+        setPipelineStatsLogInterval(xml.getLong(
+                "pipelineStatsLogInterval", getPipelineStatsLogInterval()));
+        setQueueHighWaterMark(xml.getInt(
+                "queueHighWaterMark", getQueueHighWaterMark()));
+        setWatchFolders(xml.getBoolean("watchFolders", isWatchFolders()));
+        setWatchQuietPeriod(xml.getLong(
+                "watchQuietPeriod", getWatchQuietPeriod()));
+        setStartPathsThreads(xml.getInt(
+                "startPathsThreads", getStartPathsThreads()));
+        setQueueBatchSize(xml.getInt("queueBatchSize", getQueueBatchSize()));
+        setQueueBatchTimeout(xml.getLong(
+                "queueBatchTimeout", getQueueBatchTimeout()));
+        setArchiveEntries(
+                xml.getBoolean("archiveEntries", isArchiveEntries()));
         String[] startPathsArray = xml.getStringArray("startPaths.path");
         setStartPaths(defaultIfEmpty(startPathsArray, getStartPaths()));
         
@@ -331,6 +901,26 @@ public class FilesystemCrawlerConfig extends AbstractCrawlerConfig {
         return new EqualsBuilder()
                 .appendSuper(super.equals(castOther))
                 .append(keepDownloads, castOther.keepDownloads)
+                .append(folderStreaming, castOther.folderStreaming)
+                .append(folderBatchSize, castOther.folderBatchSize)
+                .append(folderWalker, castOther.folderWalker)
+                .append(folderWalkerThreads, castOther.folderWalkerThreads)
+                .append(maxDepth, castOther.maxDepth)
+                .append(folderChecksum, castOther.folderChecksum)
+                .append(prefetchThreads, castOther.prefetchThreads)
+                .append(prefetchMaxBytes, castOther.prefetchMaxBytes)
+                .append(importThreads, castOther.importThreads)
+                .append(importHandOff, castOther.importHandOff)
+                .append(pipelineStats, castOther.pipelineStats)
+                .append(pipelineStatsLogInterval, 
+                        castOther.pipelineStatsLogInterval)
+                .append(queueHighWaterMark, castOther.queueHighWaterMark)
+                .append(watchFolders, castOther.watchFolders)
+                .append(watchQuietPeriod, castOther.watchQuietPeriod)
+                .append(startPathsThreads, castOther.startPathsThreads)
+                .append(queueBatchSize, castOther.queueBatchSize)
+                .append(queueBatchTimeout, castOther.queueBatchTimeout)
+                .append(archiveEntries, castOther.archiveEntries)
                 .append(startPaths, castOther.startPaths)
                 .append(pathsFiles, castOther.pathsFiles)
                 .append(startPathsProviders, castOther.startPathsProviders)
@@ -348,6 +938,25 @@ public class FilesystemCrawlerConfig extends AbstractCrawlerConfig {
         return new HashCodeBuilder()
                 .appendSuper(super.hashCode())
                 .append(keepDownloads)
+                .append(folderStreaming)
+                .append(folderBatchSize)
+                .append(folderWalker)
+                .append(folderWalkerThreads)
+                .append(maxDepth)
+                .append(folderChecksum)
+                .append(prefetchThreads)
+                .append(prefetchMaxBytes)
+                .append(importThreads)
+                .append(importHandOff)
+                .append(pipelineStats)
+                .append(pipelineStatsLogInterval)
+                .append(queueHighWaterMark)
+                .append(watchFolders)
+                .append(watchQuietPeriod)
+                .append(startPathsThreads)
+                .append(queueBatchSize)
+                .append(queueBatchTimeout)
+                .append(archiveEntries)
                 .append(startPaths)
                 .append(pathsFiles)
                 .append(startPathsProviders)
@@ -365,6 +974,25 @@ public class FilesystemCrawlerConfig extends AbstractCrawlerConfig {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
                 .appendSuper(super.toString())
                 .append("keepDownloads", keepDownloads)
+                .append("folderStreaming", folderStreaming)
+                .append("folderBatchSize", folderBatchSize)
+                .append("folderWalker", folderWalker)
+                .append("folderWalkerThreads", folderWalkerThreads)
+                .append("maxDepth", maxDepth)
+                .append("folderChecksum", folderChecksum)
+                .append("prefetchThreads", prefetchThreads)
+                .append("prefetchMaxBytes", prefetchMaxBytes)
+                .append("importThreads", importThreads)
+                .append("importHandOff", importHandOff)
+                .append("pipelineStats", pipelineStats)
+                .append("pipelineStatsLogInterval", pipelineStatsLogInterval)
+                .append("queueHighWaterMark", queueHighWaterMark)
+                .append("watchFolders", watchFolders)
+                .append("watchQuietPeriod", watchQuietPeriod)
+                .append("startPathsThreads", startPathsThreads)
+                .append("queueBatchSize", queueBatchSize)
+                .append("queueBatchTimeout", queueBatchTimeout)
+                .append("archiveEntries", archiveEntries)
                 .append("startPaths", startPaths)
                 .append("pathsFiles", pathsFiles)
                 .append("startPathsProviders", startPathsProviders)
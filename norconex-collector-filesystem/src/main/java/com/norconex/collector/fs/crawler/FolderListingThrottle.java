@@ -0,0 +1,258 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+/**
+ * Pauses folder listing while the number of queued references is at or
+ * above a high-water mark, so expanding very large folders does not
+ * fill the crawl data store faster than files get processed.
+ * While paused, the listing position of a folder is saved to a cursor
+ * file, so the listing can skip what was already queued when a stopped
+ * crawler is resumed.
+ * To always leave crawler threads to process the queue, no more than
+ * all crawler threads but one can be paused at once.  Threads other than
+ * crawler threads (e.g., folder walker threads) can all be paused.
+ * A paused listing also resumes when the queue stops shrinking for 
+ * a while (e.g., the crawler is being stopped).
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class FolderListingThrottle {
+
+    private static final Logger LOG =
+            LogManager.getLogger(FolderListingThrottle.class);
+
+    private static final long CHECK_INTERVAL = 200;
+    private static final long STALL_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    private final int highWaterMark;
+    private final long checkInterval;
+    private final long stallTimeout;
+    private final Semaphore pauseSlots;
+    private final File cursorFile;
+    private final Properties cursors = new Properties();
+
+    /**
+     * Constructor.
+     * @param highWaterMark queue size at which folder listing pauses
+     * @param numThreads number of crawler threads
+     * @param cursorFile file where listing cursors are saved
+     * @param resume whether the crawler is resuming, in which case
+     *        saved cursors are loaded, otherwise they are deleted
+     */
+    public FolderListingThrottle(int highWaterMark, int numThreads,
+            File cursorFile, boolean resume) {
+        this(highWaterMark, numThreads, cursorFile, resume, 
+                CHECK_INTERVAL, STALL_TIMEOUT);
+    }
+    // Queue checking and stall intervals in milliseconds.
+    /*default*/ FolderListingThrottle(int highWaterMark, int numThreads,
+            File cursorFile, boolean resume, 
+            long checkInterval, long stallTimeout) {
+        super();
+        this.highWaterMark = highWaterMark;
+        this.checkInterval = checkInterval;
+        this.stallTimeout = stallTimeout;
+        this.pauseSlots = new Semaphore(Math.max(0, numThreads - 1));
+        this.cursorFile = cursorFile;
+        if (resume && cursorFile.isFile()) {
+            try (InputStream is = Files.newInputStream(cursorFile.toPath())) {
+                cursors.load(is);
+            } catch (IOException e) {
+                throw new CollectorException(
+                        "Cannot load listing cursors: " + cursorFile, e);
+            }
+            LOG.info("Loaded " + cursors.size() + " folder listing cursors.");
+        } else if (cursorFile.exists() && !cursorFile.delete()) {
+            LOG.warn("Could not delete listing cursors: " + cursorFile);
+        }
+    }
+
+    /**
+     * Gets whether the number of queued references is at or above the
+     * high-water mark.
+     * @param crawlDataStore crawl data store
+     * @return <code>true</code> if listing should pause
+     */
+    public boolean isHighWater(ICrawlDataStore crawlDataStore) {
+        return crawlDataStore.getQueueSize() >= highWaterMark;
+    }
+
+    /**
+     * Saves the listing position of a folder and waits until the number
+     * of queued references falls below the high-water mark.  Returns
+     * right away when too many crawler threads are already paused.
+     * @param crawlDataStore crawl data store
+     * @param folder folder reference
+     * @param count number of children listed so far
+     * @param lastChild last child listed
+     */
+    public void pause(ICrawlDataStore crawlDataStore,
+            String folder, long count, String lastChild) {
+        if (!pauseSlots.tryAcquire()) {
+            return;
+        }
+        try {
+            saveCursor(folder, count + " " + lastChild);
+            LOG.debug("Folder listing paused at " + count
+                    + " children: " + folder);
+            awaitQueue(crawlDataStore, folder);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectorException(
+                    "Interrupted while listing: " + folder, e);
+        } finally {
+            pauseSlots.release();
+        }
+    }
+    /**
+     * Waits until the number of queued references falls below the 
+     * high-water mark, for crawler threads listing a folder all at once,
+     * whose listing position is not saved.  Returns right away when too 
+     * many crawler threads are already paused.
+     * @param crawlDataStore crawl data store
+     * @param folder folder reference
+     */
+    public void pause(ICrawlDataStore crawlDataStore, String folder) {
+        if (!pauseSlots.tryAcquire()) {
+            return;
+        }
+        try {
+            LOG.debug("Folder listing paused: " + folder);
+            awaitQueue(crawlDataStore, folder);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectorException(
+                    "Interrupted while listing: " + folder, e);
+        } finally {
+            pauseSlots.release();
+        }
+    }
+    /**
+     * Waits until the number of queued references falls below the 
+     * high-water mark, for threads other than crawler threads, which
+     * can all be paused.  The listing position is not saved.
+     * Returns early when the thread is interrupted, keeping its 
+     * interrupted status.
+     * @param crawlDataStore crawl data store
+     * @param folder folder reference
+     */
+    public void pauseWalker(ICrawlDataStore crawlDataStore, String folder) {
+        try {
+            LOG.debug("Folder walking paused: " + folder);
+            awaitQueue(crawlDataStore, folder);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitQueue(ICrawlDataStore crawlDataStore, String folder)
+            throws InterruptedException {
+        int lowest = crawlDataStore.getQueueSize();
+        long lastShrink = System.currentTimeMillis();
+        while (lowest >= highWaterMark) {
+            Thread.sleep(checkInterval);
+            int size = crawlDataStore.getQueueSize();
+            long now = System.currentTimeMillis();
+            if (size < lowest) {
+                lowest = size;
+                lastShrink = now;
+            } else if (now - lastShrink > stallTimeout) {
+                LOG.info("Queue not shrinking, resuming listing: " + folder);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets how many children of a folder were listed before the crawler
+     * was stopped, if it was stopped while the folder listing was
+     * paused.
+     * @param folder folder reference
+     * @return number of children listed, or 0
+     */
+    public long getCursorCount(String folder) {
+        String cursor = getCursor(folder);
+        return NumberUtils.toLong(
+                StringUtils.substringBefore(cursor, " "), 0);
+    }
+    /**
+     * Gets the last child of a folder listed before the crawler
+     * was stopped, if it was stopped while the folder listing was
+     * paused.
+     * @param folder folder reference
+     * @return last child listed or <code>null</code>
+     */
+    public String getCursorLastChild(String folder) {
+        return StringUtils.substringAfter(getCursor(folder), " ");
+    }
+
+    /**
+     * Forgets the listing position of a folder, once fully listed.
+     * @param folder folder reference
+     */
+    public void done(String folder) {
+        synchronized (cursors) {
+            if (cursors.remove(folder) != null) {
+                storeCursors();
+            }
+        }
+    }
+
+    private String getCursor(String folder) {
+        synchronized (cursors) {
+            return cursors.getProperty(folder);
+        }
+    }
+    private void saveCursor(String folder, String cursor) {
+        synchronized (cursors) {
+            cursors.setProperty(folder, cursor);
+            storeCursors();
+        }
+    }
+    // Written to a temporary file first so a stop never leaves it partial
+    private void storeCursors() {
+        File tmpFile = new File(cursorFile.getPath() + ".tmp");
+        try {
+            Files.createDirectories(cursorFile.getAbsoluteFile()
+                    .getParentFile().toPath());
+            try (OutputStream os = Files.newOutputStream(tmpFile.toPath())) {
+                cursors.store(os, "Folder listing cursors");
+            }
+            Files.move(tmpFile.toPath(), cursorFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.warn("Could not save listing cursors: " + cursorFile, e);
+        }
+    }
+}
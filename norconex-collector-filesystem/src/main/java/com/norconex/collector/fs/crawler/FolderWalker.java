@@ -0,0 +1,265 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.crawler.event.CrawlerEvent;
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.core.pipeline.BasePipelineContext;
+import com.norconex.collector.core.pipeline.queue.ReferenceFiltersStage;
+import com.norconex.collector.fs.pipeline.queue.FileQueuePipeline;
+import com.norconex.collector.fs.util.FolderChildrenLister;
+import com.norconex.collector.fs.util.FolderChildrenLister.ChildHandler;
+
+/**
+ * Walks folders from start paths in parallel, queueing every file found
+ * without waiting for crawler threads to expand folders one at a time.
+ * Folders themselves are not queued, but only folders accepted by
+ * reference filters are walked.  Walking pauses while the 
+ * {@link FolderListingThrottle} high-water mark is reached, if any.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ class FolderWalker {
+
+    private static final Logger LOG = LogManager.getLogger(FolderWalker.class);
+
+    // Maximum start paths waiting to be walked per walker thread
+    private static final int PENDING_PER_THREAD = 4;
+
+    private final FilesystemCrawler crawler;
+    private final ICrawlDataStore crawlDataStore;
+    private final int maxDepth;
+    private final ForkJoinPool pool;
+    private final int maxPending;
+    private final Semaphore pending;
+    private final AtomicLong fileCount = new AtomicLong();
+    private final AtomicLong folderCount = new AtomicLong();
+    private final ReferenceFiltersStage folderFilters =
+            new ReferenceFiltersStage();
+    private volatile boolean stopped;
+
+    /**
+     * Constructor.
+     * @param crawler the crawler
+     * @param crawlDataStore where to queue files
+     * @param numThreads number of walker threads
+     * @param maxDepth maximum folder depth (-1 for unlimited)
+     */
+    /*default*/ FolderWalker(FilesystemCrawler crawler,
+            ICrawlDataStore crawlDataStore, int numThreads, int maxDepth) {
+        super();
+        this.crawler = crawler;
+        this.crawlDataStore = crawlDataStore;
+        this.maxDepth = maxDepth;
+        int threads = Math.max(1, numThreads);
+        this.pool = new ForkJoinPool(threads);
+        this.maxPending = threads * PENDING_PER_THREAD;
+        this.pending = new Semaphore(maxPending);
+    }
+
+    /**
+     * Schedules a start path to be walked.  Blocks when too many start
+     * paths are waiting to be walked.
+     * @param startPath the start path
+     */
+    public void walk(String startPath) {
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectorException(
+                    "Interrupted while walking start paths.", e);
+        }
+        pool.execute(new StartPathTask(startPath));
+    }
+
+    /**
+     * Waits for all scheduled start paths to be walked and releases
+     * walker threads.
+     * @return number of files queued
+     */
+    public long awaitCompletion() {
+        try {
+            pending.acquire(maxPending);
+            pending.release(maxPending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectorException(
+                    "Interrupted while walking start paths.", e);
+        } finally {
+            pool.shutdown();
+        }
+        LOG.info(crawler.getId() + ": Folder walker queued "
+                + fileCount.get() + " files from "
+                + folderCount.get() + " folders.");
+        return fileCount.get();
+    }
+
+    /**
+     * Stops walking folders.  Folders being listed stop being listed
+     * and their sub-folders are not walked.
+     */
+    public void stop() {
+        stopped = true;
+        pool.shutdownNow();
+    }
+
+    // Folders go through the same reference filters as queued files.
+    private boolean isAccepted(String folderReference) {
+        return folderFilters.execute(new BasePipelineContext(crawler,
+                crawlDataStore, new BaseCrawlData(folderReference)));
+    }
+
+    private void queue(String reference) {
+        crawler.executeQueuePipeline(
+                new BaseCrawlData(reference), crawlDataStore);
+        fileCount.incrementAndGet();
+    }
+    private void queue(FileQueuePipeline queuePipeline, String reference) {
+        queuePipeline.execute(new BasePipelineContext(
+                crawler, crawlDataStore, new BaseCrawlData(reference)));
+        fileCount.incrementAndGet();
+    }
+
+    private class StartPathTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String startPath;
+        public StartPathTask(String startPath) {
+            super();
+            this.startPath = startPath;
+        }
+        @Override
+        protected void compute() {
+            try {
+                FileObject file = crawler.resolveFile(startPath);
+                if (file.getType() == FileType.FOLDER) {
+                    if (isAccepted(startPath)) {
+                        new FolderTask(file, 0).invoke();
+                    }
+                } else {
+                    queue(startPath);
+                }
+            } catch (FileSystemException | RuntimeException e) {
+                LOG.error("Cannot walk start path: " + startPath, e);
+                crawler.fireCrawlerEvent(CrawlerEvent.REJECTED_ERROR,
+                        new BaseCrawlData(startPath), this);
+            } finally {
+                pending.release();
+            }
+        }
+    }
+
+    private class FolderTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final FileObject folder;
+        private final int depth;
+        public FolderTask(FileObject folder, int depth) {
+            super();
+            this.folder = folder;
+            this.depth = depth;
+        }
+        @Override
+        protected void compute() {
+            final List<String> subFolders = new ArrayList<>();
+            // before listing, so no change is missed
+            FolderWatcher watcher = crawler.getFolderWatcher();
+            if (watcher != null) {
+                watcher.watch(folder);
+            }
+            final FileQueuePipeline queuePipeline = new FileQueuePipeline(
+                    crawler.createQueueBatchWriter(crawlDataStore));
+            final MutableLong count = new MutableLong();
+            try {
+                FolderChildrenLister.listChildren(
+                        folder, true, new ChildHandler() {
+                    @Override
+                    public boolean childFound(
+                            String childReference, FileType childType) {
+                        if (childType != FileType.FOLDER) {
+                            queue(queuePipeline, childReference);
+                            count.increment();
+                            throttle(queuePipeline, count.longValue());
+                        } else if (isAccepted(childReference)) {
+                            subFolders.add(childReference);
+                        }
+                        return !stopped;
+                    }
+                });
+            } catch (FileSystemException e) {
+                LOG.error("Cannot walk folder: " + folder, e);
+                crawler.fireCrawlerEvent(CrawlerEvent.REJECTED_ERROR,
+                        new BaseCrawlData(folder.getName().getURI()), this);
+                return;
+            } finally {
+                queuePipeline.flush();
+            }
+            folderCount.incrementAndGet();
+            if (stopped) {
+                return;
+            }
+
+            if (maxDepth >= 0 && depth >= maxDepth) {
+                if (!subFolders.isEmpty()) {
+                    LOG.debug("Maximum depth reached, not walking "
+                            + subFolders.size() + " sub-folders of: "
+                            + folder);
+                }
+                return;
+            }
+            List<FolderTask> tasks = new ArrayList<>(subFolders.size());
+            for (String subFolder : subFolders) {
+                try {
+                    tasks.add(new FolderTask(
+                            crawler.resolveFile(subFolder), depth + 1));
+                } catch (FileSystemException e) {
+                    LOG.error("Cannot resolve folder: " + subFolder, e);
+                    crawler.fireCrawlerEvent(CrawlerEvent.REJECTED_ERROR,
+                            new BaseCrawlData(subFolder), this);
+                }
+            }
+            invokeAll(tasks);
+        }
+        // Checked every folder batch size files queued
+        private void throttle(FileQueuePipeline queuePipeline, long count) {
+            FolderListingThrottle throttle = 
+                    crawler.getFolderListingThrottle();
+            if (throttle == null || count % Math.max(1, crawler
+                    .getCrawlerConfig().getFolderBatchSize()) != 0) {
+                return;
+            }
+            queuePipeline.flush();
+            if (throttle.isHighWater(crawlDataStore)) {
+                throttle.pauseWalker(
+                        crawlDataStore, folder.getName().getURI());
+            }
+        }
+    }
+}
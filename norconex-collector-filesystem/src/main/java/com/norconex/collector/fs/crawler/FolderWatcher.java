@@ -0,0 +1,386 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.fs.util.FileObjectUtil;
+import com.norconex.collector.fs.util.FolderChildrenLister;
+import com.norconex.collector.fs.util.FolderChildrenLister.ChildHandler;
+
+/**
+ * Watches local folders for files being created, modified or deleted,
+ * so they can be queued again without walking all start paths.
+ * Events received in bursts are coalesced: changes are only queued
+ * once no new event was received for a quiet period (or ten quiet
+ * periods after the first event, when they keep coming), and each
+ * changed file is queued once, however many events it had.
+ * When events were lost (overflow), the folder they were for is
+ * listed again and all its files are queued.
+ * Deleted files are queued apart from other changes, to be deleted
+ * the same way orphans are.
+ * Watched folders are recorded in a file, so a resumed crawler watches
+ * again the folders crawled before it was stopped.
+ * Only folders on the local file system can be watched.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class FolderWatcher {
+
+    private static final Logger LOG = LogManager.getLogger(FolderWatcher.class);
+
+    private static final int MAX_QUIET_PERIODS = 10;
+
+    private final FilesystemCrawler crawler;
+    private final long quietPeriod;
+    private final WatchService watchService;
+    // keys are only added with their folder, so events never come first
+    private final Map<WatchKey, WatchedFolder> folders = new HashMap<>();
+    // last change wins (e.g., created then deleted), true unless deleted
+    private final Map<String, Boolean> changes = new LinkedHashMap<>();
+    private final File foldersFile;
+    private Writer foldersWriter;
+    private volatile boolean full;
+
+    /**
+     * Constructor.
+     * @param crawler the crawler
+     * @param quietPeriod milliseconds without new events before queueing
+     *        changes
+     * @param foldersFile file where watched folders are recorded
+     * @param resume whether the crawler is resuming, in which case
+     *        recorded folders are watched again, otherwise they are
+     *        forgotten
+     */
+    public FolderWatcher(FilesystemCrawler crawler, long quietPeriod,
+            File foldersFile, boolean resume) {
+        super();
+        this.crawler = crawler;
+        this.quietPeriod = quietPeriod;
+        this.foldersFile = foldersFile;
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            Files.createDirectories(foldersFile.getAbsoluteFile()
+                    .getParentFile().toPath());
+            if (resume && foldersFile.isFile()) {
+                watchRecordedFolders();
+            } else {
+                Files.deleteIfExists(foldersFile.toPath());
+            }
+            foldersWriter = Files.newBufferedWriter(foldersFile.toPath(),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new CollectorException("Cannot create folder watcher.", e);
+        }
+    }
+
+    /**
+     * Starts watching a folder, if local.  Sub-folders are not watched.
+     * @param folder the folder
+     */
+    public void watch(FileObject folder) {
+        if (register(folder)) {
+            record(folder.getName().getURI());
+        }
+    }
+
+    // Returns true if the folder was not already watched
+    private boolean register(FileObject folder) {
+        Path path = FileObjectUtil.toLocalPath(folder);
+        if (path == null || full) {
+            return false;
+        }
+        try {
+            synchronized (folders) {
+                WatchKey key = path.register(watchService,
+                        ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                return folders.put(key, new WatchedFolder(folder, path))
+                        == null;
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        } catch (IOException e) {
+            // Usually a system limit being reached (e.g., Linux
+            // "fs.inotify.max_user_watches")
+            full = true;
+            LOG.warn(crawler.getId() + ": Cannot watch more folders ("
+                    + getFolderCount() + " watched), changes in other folders "
+                    + "will only be found on the next crawl: " + path, e);
+        }
+        return false;
+    }
+
+    // Flushed each time, so folders are not forgotten if the crawler
+    // is killed
+    private void record(String folderReference) {
+        synchronized (changes) {
+            if (foldersWriter == null) {
+                return;
+            }
+            try {
+                foldersWriter.write(folderReference);
+                foldersWriter.write('\n');
+                foldersWriter.flush();
+            } catch (IOException e) {
+                LOG.warn(crawler.getId() + ": Cannot record watched folder: "
+                        + folderReference, e);
+            }
+        }
+    }
+
+    private void watchRecordedFolders() throws IOException {
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(
+                foldersFile.toPath(), StandardCharsets.UTF_8)) {
+            String reference;
+            while ((reference = reader.readLine()) != null) {
+                if (StringUtils.isBlank(reference)) {
+                    continue;
+                }
+                FileObject folder = crawler.resolveFile(reference);
+                if (folder.getType() == FileType.FOLDER && register(folder)) {
+                    count++;
+                }
+            }
+        }
+        LOG.info(crawler.getId() + ": Watching again " + count
+                + " folders crawled before the crawler was stopped.");
+    }
+
+    /**
+     * Gets the number of folders being watched.
+     * @return folder count
+     */
+    public int getFolderCount() {
+        synchronized (folders) {
+            return folders.size();
+        }
+    }
+
+    /**
+     * Waits for changes.  Blocks until at least one event is received
+     * and the quiet period elapsed.  Changes are then queued with
+     * {@link #queueDeletions(ICrawlDataStore)} and
+     * {@link #queueChanges(ICrawlDataStore)}.
+     * @param crawlDataStore crawl data store
+     * @return <code>false</code> if this watcher was closed
+     */
+    public boolean awaitChanges(ICrawlDataStore crawlDataStore) {
+        try {
+            WatchKey key = watchService.take();
+            long deadline = System.currentTimeMillis()
+                    + MAX_QUIET_PERIODS * quietPeriod;
+            while (key != null) {
+                collectEvents(key, crawlDataStore);
+                if (System.currentTimeMillis() >= deadline) {
+                    break;
+                }
+                key = watchService.poll(quietPeriod, TimeUnit.MILLISECONDS);
+            }
+        } catch (ClosedWatchServiceException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queues deleted files that were processed by this crawl or the
+     * previous one, to be processed as deletions.  Deleted files never
+     * processed are ignored.
+     * @param crawlDataStore where to queue deleted files
+     * @return number of files queued
+     */
+    public int queueDeletions(ICrawlDataStore crawlDataStore) {
+        int count = 0;
+        synchronized (changes) {
+            for (Entry<String, Boolean> change : changes.entrySet()) {
+                String reference = change.getKey();
+                if (!change.getValue() && !isBusy(reference, crawlDataStore)
+                        && (crawlDataStore.isProcessed(reference)
+                                || crawlDataStore.getCached(reference)
+                                        != null)) {
+                    crawlDataStore.queue(new BaseCrawlData(reference));
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            LOG.info(crawler.getId() + ": " + count
+                    + " deleted files queued from watched folders.");
+        }
+        return count;
+    }
+
+    /**
+     * Queues created or modified files, and clears all changes.
+     * References already processed by this crawl went through reference
+     * filters and are queued again directly.
+     * @param crawlDataStore where to queue changed files
+     * @return number of files queued
+     */
+    public int queueChanges(ICrawlDataStore crawlDataStore) {
+        int count = 0;
+        synchronized (changes) {
+            for (Entry<String, Boolean> change : changes.entrySet()) {
+                String reference = change.getKey();
+                if (!change.getValue() || isBusy(reference, crawlDataStore)) {
+                    continue;
+                }
+                if (crawlDataStore.isProcessed(reference)) {
+                    crawlDataStore.queue(new BaseCrawlData(reference));
+                } else {
+                    crawler.executeQueuePipeline(
+                            new BaseCrawlData(reference), crawlDataStore);
+                }
+                count++;
+            }
+            changes.clear();
+        }
+        if (count > 0) {
+            LOG.info(crawler.getId() + ": " + count
+                    + " changed files queued from watched folders.");
+        }
+        return count;
+    }
+
+    private boolean isBusy(String reference, ICrawlDataStore store) {
+        return store.isQueued(reference) || store.isActive(reference);
+    }
+
+    /**
+     * Stops watching folders.  Waiting for changes returns right away.
+     */
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.error("Cannot close folder watcher.", e);
+        }
+        synchronized (folders) {
+            folders.clear();
+        }
+        synchronized (changes) {
+            IOUtils.closeQuietly(foldersWriter);
+            foldersWriter = null;
+        }
+    }
+
+    private void collectEvents(WatchKey key, ICrawlDataStore store) {
+        WatchedFolder watched;
+        synchronized (folders) {
+            watched = folders.get(key);
+        }
+        if (watched == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            try {
+                if (event.kind() == OVERFLOW) {
+                    LOG.info(crawler.getId() + ": Folder changes were lost, "
+                            + "listing it again: " + watched.folder);
+                    collectChildren(watched.folder, store);
+                    continue;
+                }
+                Path name = (Path) event.context();
+                // folders are only modified by their own children changes
+                if (event.kind() == ENTRY_MODIFY
+                        && Files.isDirectory(watched.path.resolve(name))) {
+                    continue;
+                }
+                String reference = FileObjectUtil.resolveChildReference(
+                        watched.folder, name.toString());
+                synchronized (changes) {
+                    changes.remove(reference);
+                    changes.put(reference, event.kind() != ENTRY_DELETE);
+                }
+            } catch (FileSystemException e) {
+                LOG.error("Cannot resolve changed file in: "
+                        + watched.folder, e);
+            }
+        }
+        // not valid anymore when the folder is gone
+        if (!key.reset()) {
+            synchronized (folders) {
+                folders.remove(key);
+            }
+        }
+    }
+
+    // New sub-folders are collected, known ones have their own watch
+    private void collectChildren(FileObject folder, final ICrawlDataStore store)
+            throws FileSystemException {
+        FolderChildrenLister.listChildren(folder, new ChildHandler() {
+            @Override
+            public boolean childFound(
+                    String childReference, FileType childType) {
+                if (childType != FileType.FOLDER
+                        || !store.isProcessed(childReference)) {
+                    synchronized (changes) {
+                        changes.put(childReference, Boolean.TRUE);
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    private static class WatchedFolder {
+        private final FileObject folder;
+        private final Path path;
+        public WatchedFolder(FileObject folder, Path path) {
+            super();
+            this.folder = folder;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+
+import com.norconex.collector.core.CollectorException;
+
+/**
+ * Runs CPU-bound import work on a dedicated pool of threads, separate
+ * from crawler threads mostly waiting on file system I/O.
+ * Crawler threads hand off documents to import and move on to the next
+ * ones without waiting.  At most "queue capacity" documents can wait
+ * to be imported: beyond that, handing off waits for import threads
+ * to catch up, which stops crawler threads from fetching more documents.
+ * Import tasks run with the logging context (MDC) and context class
+ * loader of the thread that handed them off.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class ImportExecutor {
+
+    private static final Logger LOG = 
+            LogManager.getLogger(ImportExecutor.class);
+
+    private static final int SHUTDOWN_WAIT_SECONDS = 10;
+    private static final long STATUS_LOG_INTERVAL = 
+            TimeUnit.MINUTES.toMillis(1);
+
+    private final String crawlerId;
+    private final ThreadPoolExecutor pool;
+    private final Semaphore slots;
+    private final AtomicLong importCount = new AtomicLong();
+    private final AtomicLong queuedNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong nextStatusLog = new AtomicLong(
+            System.currentTimeMillis() + STATUS_LOG_INTERVAL);
+    private int pendingCount;
+
+    /**
+     * Constructor.
+     * @param crawlerId crawler id, used to name import threads
+     * @param numThreads number of import threads
+     * @param queueCapacity maximum number of documents waiting to be
+     *        imported (normally the number of crawler threads)
+     */
+    public ImportExecutor(
+            String crawlerId, int numThreads, int queueCapacity) {
+        super();
+        this.crawlerId = crawlerId;
+        int threads = Math.max(1, numThreads);
+        this.pool = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ImportThreadFactory(crawlerId));
+        this.slots = new Semaphore(threads + Math.max(1, queueCapacity), true);
+    }
+
+    /**
+     * Hands off an import task to an import thread, without waiting for
+     * it to run. Waits for room in the queue when it is full.
+     * The task is expected to handle its own failures: exceptions it
+     * throws are only logged.
+     * @param task import task
+     * @return <code>true</code> if handed off, <code>false</code> if this
+     *         executor is closed, in which case the task was not run
+     */
+    public boolean submit(final Runnable task) {
+        if (pool.isShutdown()) {
+            return false;
+        }
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectorException(
+                    "Interrupted while waiting to hand off import.", e);
+        }
+        synchronized (this) {
+            pendingCount++;
+        }
+        try {
+            pool.execute(new HandOffTask(task));
+        } catch (RejectedExecutionException e) {
+            done();
+            return false;
+        }
+        updateMaxQueueDepth(pool.getQueue().size());
+        logStatusIfDue();
+        return true;
+    }
+
+    /**
+     * Waits for all handed off tasks to be done.
+     */
+    public synchronized void awaitIdle() {
+        while (pendingCount > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CollectorException(
+                        "Interrupted while waiting for imports.", e);
+            }
+        }
+    }
+
+    private void done() {
+        synchronized (this) {
+            pendingCount--;
+            notifyAll();
+        }
+        slots.release();
+    }
+
+    private void updateMaxQueueDepth(int depth) {
+        int max = maxQueueDepth.get();
+        while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+            max = maxQueueDepth.get();
+        }
+    }
+
+    private void logStatusIfDue() {
+        long due = nextStatusLog.get();
+        long now = System.currentTimeMillis();
+        if (now >= due && nextStatusLog.compareAndSet(
+                due, now + STATUS_LOG_INTERVAL)) {
+            LOG.info(crawlerId + ": Import executor: " + getStatus());
+        }
+    }
+
+    /**
+     * Gets a summary of this executor activity, for logging.
+     * @return status summary
+     */
+    public String getStatus() {
+        return getQueueDepth() + " queued, "
+                + getActiveCount() + " importing, "
+                + getImportCount() + " imports, "
+                + getMaxQueueDepth() + " maximum queue depth, "
+                + getAverageQueueMillis() + " ms average queue time.";
+    }
+
+    /**
+     * Gets the number of documents waiting to be imported.
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+    /**
+     * Gets the highest number of documents that were waiting to be
+     * imported at once.
+     * @return maximum queue depth
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+    /**
+     * Gets the number of documents being imported.
+     * @return active import count
+     */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+    /**
+     * Gets the number of documents handed off and not yet imported,
+     * whether waiting or being imported.
+     * @return pending import count
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+    /**
+     * Gets the number of documents imported so far.
+     * @return import count
+     */
+    public long getImportCount() {
+        return importCount.get();
+    }
+    /**
+     * Gets the average time documents waited in queue before
+     * being imported.
+     * @return average wait time in milliseconds
+     */
+    public long getAverageQueueMillis() {
+        long count = importCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(queuedNanos.get() / count);
+    }
+
+    /**
+     * Stops accepting documents and waits a moment for those already
+     * handed off to be imported, before stopping import threads.
+     */
+    public void close() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(
+                    SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn(crawlerId + ": Import threads still running, "
+                        + "interrupting them.");
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs a task with the context of the thread that handed it off.
+    private class HandOffTask implements Runnable {
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+        private final ClassLoader classLoader = 
+                Thread.currentThread().getContextClassLoader();
+        private final Map<String, Object> mdc = copyMDC();
+        public HandOffTask(Runnable task) {
+            super();
+            this.task = task;
+        }
+        @Override
+        public void run() {
+            queuedNanos.addAndGet(System.nanoTime() - queuedAt);
+            Thread thread = Thread.currentThread();
+            ClassLoader threadClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            for (Entry<String, Object> entry : mdc.entrySet()) {
+                MDC.put(entry.getKey(), entry.getValue());
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error(crawlerId + ": Import task failed.", e);
+            } finally {
+                MDC.clear();
+                thread.setContextClassLoader(threadClassLoader);
+                importCount.incrementAndGet();
+                done();
+            }
+        }
+    }
+
+    private static Map<String, Object> copyMDC() {
+        Map<String, Object> copy = new HashMap<>();
+        Hashtable<?, ?> context = MDC.getContext();
+        if (context != null) {
+            for (Entry<?, ?> entry : context.entrySet()) {
+                copy.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        }
+        return copy;
+    }
+
+    private static class ImportThreadFactory implements ThreadFactory {
+        private final String crawlerId;
+        private final AtomicInteger count = new AtomicInteger();
+        public ImportThreadFactory(String crawlerId) {
+            super();
+            this.crawlerId = crawlerId;
+        }
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,
+                    crawlerId + "#import-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
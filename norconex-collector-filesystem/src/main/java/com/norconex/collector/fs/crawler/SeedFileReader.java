@@ -0,0 +1,422 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DateUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.vfs2.FileType;
+
+import com.norconex.collector.fs.data.SeedMetadata;
+
+/**
+ * <p>
+ * Reads start paths from a seed file (paths file), optionally with
+ * the size, last modified date and type of each path.
+ * The format is derived from the file extension, ignoring a
+ * <code>.gz</code> extension, which means the file is gzip-compressed:
+ * </p>
+ * <ul>
+ *   <li><code>.tsv</code>: tab-separated values, with a header row.</li>
+ *   <li><code>.csv</code>: comma-separated values, with a header row.
+ *       Values can be quoted with double quotes.</li>
+ *   <li><code>.jsonl</code>, <code>.json</code>: one flat JSON object
+ *       per line.</li>
+ *   <li>Anything else: one path per line.</li>
+ * </ul>
+ * <p>
+ * Column names (or JSON keys) are <code>path</code> (required),
+ * <code>size</code> (in bytes), <code>lastModified</code> (or
+ * <code>mtime</code>) and <code>type</code> (<code>file</code> or
+ * <code>folder</code>). Other columns are ignored.  Blank lines are
+ * skipped.  Files with one of these extensions but with a first line
+ * that is not a header with a <code>path</code> column (or not a JSON
+ * object) are read as one path per line.
+ * </p>
+ * <p>
+ * The last modified date is either a number of seconds or milliseconds
+ * since epoch (numbers too small to be milliseconds after 1973 are
+ * seconds, and can have decimals), or an ISO 8601 date, such as
+ * <code>2017-07-14T02:40:00.000Z</code>.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ class SeedFileReader implements Closeable {
+
+    private enum Format { PLAIN, TSV, CSV, JSON }
+
+    // 100 billion seconds is in year 5138, milliseconds in year 1973
+    private static final long MAX_SECONDS = 100000000000L;
+    private static final String[] DATE_PATTERNS = {
+        "yyyy-MM-dd'T'HH:mm:ss.SSSXXX",
+        "yyyy-MM-dd'T'HH:mm:ssXXX",
+        "yyyy-MM-dd'T'HH:mm:ss.SSS",
+        "yyyy-MM-dd'T'HH:mm:ss",
+        "yyyy-MM-dd",
+    };
+
+    private final File file;
+    private final BufferedReader reader;
+    private Format format;
+    private boolean started;
+    private String[] columns;
+    private int lineNumber;
+
+    /**
+     * Constructor.
+     * @param file the seed file
+     * @throws IOException could not open file
+     */
+    public SeedFileReader(File file) throws IOException {
+        super();
+        this.file = file;
+        String name = file.getName().toLowerCase(Locale.ENGLISH);
+        InputStream is = new FileInputStream(file);
+        if (name.endsWith(".gz")) {
+            is = new GZIPInputStream(is);
+            name = StringUtils.removeEnd(name, ".gz");
+        }
+        this.reader = new BufferedReader(
+                new InputStreamReader(is, StandardCharsets.UTF_8));
+        if (name.endsWith(".tsv")) {
+            format = Format.TSV;
+        } else if (name.endsWith(".csv")) {
+            format = Format.CSV;
+        } else if (name.endsWith(".jsonl") || name.endsWith(".json")) {
+            format = Format.JSON;
+        } else {
+            format = Format.PLAIN;
+        }
+    }
+
+    /**
+     * Reads the next seed.
+     * @return the next seed or <code>null</code> if there are no more
+     * @throws IOException could not read or parse the seed file
+     */
+    public Seed next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+            boolean first = !started;
+            started = true;
+            // one path per line, whatever the extension
+            if (first && format == Format.JSON
+                    && !line.trim().startsWith("{")) {
+                format = Format.PLAIN;
+            }
+            if (format == Format.PLAIN) {
+                return new Seed(line, null);
+            }
+            if (format == Format.JSON) {
+                return toSeed(parseJson(line));
+            }
+            List<String> values = format == Format.TSV
+                    ? splitTsv(line) : splitCsv(line);
+            if (first) {
+                if (!isHeader(values)) {
+                    format = Format.PLAIN;
+                    return new Seed(line, null);
+                }
+                columns = values.toArray(new String[values.size()]);
+                continue;
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < columns.length && i < values.size(); i++) {
+                fields.put(columns[i], values.get(i));
+            }
+            return toSeed(fields);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static boolean isHeader(List<String> values) {
+        for (String value : values) {
+            if ("path".equalsIgnoreCase(StringUtils.trim(value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //--- Seed -----------------------------------------------------------------
+
+    /**
+     * A start path, with its seed metadata when any.
+     */
+    public static class Seed {
+        private final String path;
+        private final SeedMetadata metadata;
+        public Seed(String path, SeedMetadata metadata) {
+            super();
+            this.path = path;
+            this.metadata = metadata;
+        }
+        public String getPath() {
+            return path;
+        }
+        /**
+         * Gets seed metadata.
+         * @return seed metadata or <code>null</code> if none
+         */
+        public SeedMetadata getMetadata() {
+            return metadata;
+        }
+    }
+
+    private Seed toSeed(Map<String, String> fields) throws IOException {
+        Map<String, String> lower = new HashMap<>();
+        for (Map.Entry<String, String> en : fields.entrySet()) {
+            lower.put(StringUtils.trimToEmpty(en.getKey()).toLowerCase(
+                    Locale.ENGLISH), StringUtils.trimToNull(en.getValue()));
+        }
+        String path = lower.get("path");
+        if (path == null) {
+            throw error("No path", null);
+        }
+        String lastModified = lower.get("lastmodified");
+        if (lastModified == null) {
+            lastModified = lower.get("mtime");
+        }
+        try {
+            Long size = lower.get("size") == null
+                    ? null : Long.valueOf(lower.get("size"));
+            SeedMetadata metadata = new SeedMetadata(size,
+                    toTime(lastModified), toType(lower.get("type")));
+            if (size == null && metadata.getLastModified() == null
+                    && metadata.getType() == null) {
+                metadata = null;
+            }
+            return new Seed(path, metadata);
+        } catch (IllegalArgumentException e) {
+            throw error("Invalid value", e);
+        }
+    }
+    private static Long toTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (NumberUtils.isDigits(value)) {
+            long time = Long.parseLong(value);
+            return time < MAX_SECONDS ? time * 1000 : time;
+        }
+        // e.g., seconds with decimals from "find -printf %T@"
+        if (value.matches("\\d+\\.\\d+")) {
+            BigDecimal time = new BigDecimal(value);
+            if (time.compareTo(BigDecimal.valueOf(MAX_SECONDS)) < 0) {
+                time = time.movePointRight(3);
+            }
+            return time.longValue();
+        }
+        try {
+            return DateUtils.parseDateStrictly(
+                    value, Locale.ENGLISH, DATE_PATTERNS).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + value, e);
+        }
+    }
+    private static FileType toType(String value) {
+        if (value == null) {
+            return null;
+        }
+        String type = value.toLowerCase(Locale.ENGLISH);
+        if ("file".equals(type) || "f".equals(type)) {
+            return FileType.FILE;
+        }
+        if ("folder".equals(type) || "directory".equals(type)
+                || "dir".equals(type) || "d".equals(type)) {
+            return FileType.FOLDER;
+        }
+        throw new IllegalArgumentException("Unknown file type: " + value);
+    }
+    private IOException error(String message, Exception e) {
+        return new IOException(message + " at line " + lineNumber
+                + " of seed file: " + file, e);
+    }
+
+    //--- Parsing --------------------------------------------------------------
+
+    private static List<String> splitTsv(String line) {
+        List<String> values = new ArrayList<>();
+        for (String value : StringUtils.splitPreserveAllTokens(line, '\t')) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    // Double quotes enclose values holding commas, and are escaped
+    // by doubling them.
+    private List<String> splitCsv(String line) throws IOException {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch != '"') {
+                    value.append(ch);
+                } else if (i + 1 < line.length()
+                        && line.charAt(i + 1) == '"') {
+                    value.append(ch);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(ch);
+            }
+        }
+        if (quoted) {
+            throw error("Unterminated quote", null);
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    // Flat objects only: values are strings, numbers, booleans or null.
+    private Map<String, String> parseJson(String line) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        JsonCursor c = new JsonCursor(line);
+        c.expect('{');
+        if (c.peek() == '}') {
+            return fields;
+        }
+        do {
+            String key = c.readString();
+            c.expect(':');
+            fields.put(key, c.peek() == '"' ? c.readString() : c.readToken());
+        } while (c.next() == ',');
+        c.back();
+        c.expect('}');
+        return fields;
+    }
+
+    private class JsonCursor {
+        private final String json;
+        private int pos;
+        public JsonCursor(String json) {
+            super();
+            this.json = json;
+        }
+        public char peek() throws IOException {
+            skipWhitespace();
+            if (pos >= json.length()) {
+                throw error("Unexpected end of JSON", null);
+            }
+            return json.charAt(pos);
+        }
+        public char next() throws IOException {
+            char ch = peek();
+            pos++;
+            return ch;
+        }
+        public void back() {
+            pos--;
+        }
+        public void expect(char ch) throws IOException {
+            if (next() != ch) {
+                throw error("Expected '" + ch + "' in JSON", null);
+            }
+        }
+        public String readString() throws IOException {
+            expect('"');
+            StringBuilder b = new StringBuilder();
+            while (pos < json.length()) {
+                char ch = json.charAt(pos++);
+                if (ch == '"') {
+                    return b.toString();
+                }
+                if (ch != '\\') {
+                    b.append(ch);
+                    continue;
+                }
+                if (pos >= json.length()) {
+                    break;
+                }
+                char esc = json.charAt(pos++);
+                switch (esc) {
+                case 'b': b.append('\b'); break;
+                case 'f': b.append('\f'); break;
+                case 'n': b.append('\n'); break;
+                case 'r': b.append('\r'); break;
+                case 't': b.append('\t'); break;
+                case 'u':
+                    try {
+                        b.append((char) Integer.parseInt(
+                                json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException
+                            | IndexOutOfBoundsException e) {
+                        throw error("Invalid JSON escape", e);
+                    }
+                    pos += 4;
+                    break;
+                default: b.append(esc); break;
+                }
+            }
+            throw error("Unterminated JSON string", null);
+        }
+        // number, boolean or null
+        public String readToken() throws IOException {
+            skipWhitespace();
+            int start = pos;
+            while (pos < json.length() && ",}".indexOf(json.charAt(pos)) == -1
+                    && !Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            String token = json.substring(start, pos);
+            if (token.isEmpty()) {
+                throw error("Missing JSON value", null);
+            }
+            return "null".equals(token) ? null : token;
+        }
+        private void skipWhitespace() {
+            while (pos < json.length()
+                    && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+/**
+ * Queues start paths on background threads, so crawler threads process
+ * them as they get queued instead of waiting for all of them to be
+ * queued.  Each source of start paths (regular start paths, each
+ * paths file and each start paths provider) is read by its own task,
+ * up to the number of threads at once.
+ * Crawlers waiting for start paths are woken up as soon as one is
+ * queued (see {@link #queued()}) or all are queued.
+ * A marker file exists until all start paths were queued, telling a
+ * resumed crawler it has to queue them again.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ class StartPathsQueuer {
+
+    private static final Logger LOG =
+            LogManager.getLogger(StartPathsQueuer.class);
+
+    private final String crawlerId;
+    private final File pendingFile;
+    private final ExecutorService pool;
+    private final CountDownLatch completion = new CountDownLatch(1);
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // only signaled when someone waits, as every queued reference signals
+    private volatile boolean waiting;
+    private final AtomicInteger remaining = new AtomicInteger();
+    private final AtomicInteger pathCount = new AtomicInteger();
+    private final AtomicReference<Exception> failure =
+            new AtomicReference<>();
+    private volatile boolean stopped;
+
+    /**
+     * Constructor.
+     * @param crawlerId crawler id, used to name threads
+     * @param numThreads number of threads
+     * @param pendingFile marker file existing until all start paths
+     *        are queued
+     */
+    /*default*/ StartPathsQueuer(
+            String crawlerId, int numThreads, File pendingFile) {
+        super();
+        this.crawlerId = crawlerId;
+        this.pendingFile = pendingFile;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, numThreads),
+                new StartPathsThreadFactory(crawlerId));
+    }
+
+    /**
+     * Starts queueing start paths.
+     * @param tasks tasks queueing start paths, each returning how many
+     *        start paths it queued
+     * @param whenQueued invoked once all tasks are done
+     */
+    public void start(List<Callable<Integer>> tasks,
+            final Runnable whenQueued) {
+        try {
+            Files.createDirectories(pendingFile.getAbsoluteFile()
+                    .getParentFile().toPath());
+            if (!pendingFile.exists()) {
+                Files.createFile(pendingFile.toPath());
+            }
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot create start paths marker: " + pendingFile, e);
+        }
+        remaining.set(tasks.size());
+        if (tasks.isEmpty()) {
+            complete(whenQueued);
+            return;
+        }
+        for (final Callable<Integer> task : tasks) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        pathCount.addAndGet(task.call());
+                    } catch (Exception e) {
+                        if (!stopped) {
+                            LOG.error(crawlerId
+                                    + ": Could not queue start paths.", e);
+                            failure.compareAndSet(null, e);
+                        }
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            complete(whenQueued);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Signals a reference was queued, waking up whoever waits for
+     * references to be queued.  Must be invoked after the reference 
+     * is queued.
+     */
+    public void queued() {
+        if (waiting) {
+            signal();
+        }
+    }
+
+    /**
+     * Waits for references to be queued, or for all start paths to be
+     * queued.
+     * @param crawlDataStore crawl data store
+     * @return <code>true</code> if references are queued,
+     *         <code>false</code> if all start paths were queued and
+     *         processed, or if stopped
+     */
+    public boolean awaitQueued(ICrawlDataStore crawlDataStore) {
+        lock.lock();
+        try {
+            // set before checking the queue, so references queued 
+            // after the check are signaled
+            waiting = true;
+            while (!stopped && completion.getCount() > 0
+                    && crawlDataStore.isQueueEmpty()) {
+                changed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting = false;
+            lock.unlock();
+        }
+        if (stopped) {
+            return false;
+        }
+        if (completion.getCount() == 0 && failure.get() != null) {
+            throw new CollectorException(
+                    "Could not queue all start paths.", failure.get());
+        }
+        return !crawlDataStore.isQueueEmpty();
+    }
+
+    /**
+     * Stops queueing start paths.  The marker file is kept, so they
+     * are queued again when the crawler is resumed.
+     */
+    public void stop() {
+        stopped = true;
+        pool.shutdownNow();
+        signal();
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void complete(Runnable whenQueued) {
+        try {
+            whenQueued.run();
+        } catch (RuntimeException e) {
+            if (!stopped) {
+                LOG.error(crawlerId + ": Could not queue start paths.", e);
+                failure.compareAndSet(null, e);
+            }
+        } finally {
+            if (!stopped && failure.get() == null) {
+                if (!pendingFile.delete()) {
+                    LOG.warn("Could not delete start paths marker: "
+                            + pendingFile);
+                }
+                LOG.info(crawlerId + ": " + NumberFormat.getNumberInstance()
+                        .format(pathCount.get())
+                        + " start paths identified.");
+            }
+            completion.countDown();
+            signal();
+            pool.shutdown();
+        }
+    }
+
+    private static class StartPathsThreadFactory implements ThreadFactory {
+        private final String crawlerId;
+        private final AtomicInteger count = new AtomicInteger();
+        public StartPathsThreadFactory(String crawlerId) {
+            super();
+            this.crawlerId = crawlerId;
+        }
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,
+                    crawlerId + "#startpaths-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.ICrawlData;
+
+/**
+ * Crawl data of a file, which can carry metadata obtained from a seed
+ * file until the file is processed.
+ * Crawl data stores not knowing about seed metadata simply drop it,
+ * in which case the file metadata is fetched as usual.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class FileCrawlData extends BaseCrawlData {
+
+    private static final long serialVersionUID = 1L;
+
+    private SeedMetadata seedMetadata;
+
+    public FileCrawlData() {
+        super();
+    }
+    public FileCrawlData(String reference) {
+        super(reference);
+    }
+
+    /**
+     * Gets the metadata obtained from a seed file.
+     * @return seed metadata or <code>null</code> if none
+     */
+    public SeedMetadata getSeedMetadata() {
+        return seedMetadata;
+    }
+    /**
+     * Sets the metadata obtained from a seed file.
+     * @param seedMetadata seed metadata
+     */
+    public void setSeedMetadata(SeedMetadata seedMetadata) {
+        this.seedMetadata = seedMetadata;
+    }
+
+    /**
+     * Gets the seed metadata of any crawl data.
+     * @param crawlData crawl data
+     * @return seed metadata or <code>null</code> if none
+     */
+    public static SeedMetadata getSeedMetadata(ICrawlData crawlData) {
+        if (crawlData instanceof FileCrawlData) {
+            return ((FileCrawlData) crawlData).getSeedMetadata();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof FileCrawlData)) {
+            return false;
+        }
+        FileCrawlData castOther = (FileCrawlData) other;
+        return new EqualsBuilder()
+                .appendSuper(super.equals(castOther))
+                .append(seedMetadata, castOther.seedMetadata)
+                .isEquals();
+    }
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+                .appendSuper(super.hashCode())
+                .append(seedMetadata)
+                .toHashCode();
+    }
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .appendSuper(super.toString())
+                .append("seedMetadata", seedMetadata)
+                .toString();
+    }
+}
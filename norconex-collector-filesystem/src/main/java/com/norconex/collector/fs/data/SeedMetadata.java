@@ -0,0 +1,107 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.commons.vfs2.FileType;
+
+/**
+ * File size, last modified date and type obtained from a seed file
+ * (e.g., a storage inventory) and carried by queued
+ * {@link FileCrawlData}, so they do not have to be fetched from the
+ * file system to find out whether a file changed.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public final class SeedMetadata implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long size;
+    private final Long lastModified;
+    // FileType is not serializable
+    private final String type;
+
+    /**
+     * Constructor.
+     * @param size file size in bytes, or <code>null</code>
+     * @param lastModified last modified date in milliseconds since epoch,
+     *        or <code>null</code>
+     * @param type {@link FileType#FILE}, {@link FileType#FOLDER},
+     *        or <code>null</code>
+     */
+    public SeedMetadata(Long size, Long lastModified, FileType type) {
+        super();
+        this.size = size;
+        this.lastModified = lastModified;
+        this.type = type == null ? null : type.getName();
+    }
+
+    /**
+     * Gets the file size.
+     * @return size in bytes, or <code>null</code>
+     */
+    public Long getSize() {
+        return size;
+    }
+    /**
+     * Gets the file last modified date.
+     * @return milliseconds since epoch, or <code>null</code>
+     */
+    public Long getLastModified() {
+        return lastModified;
+    }
+    /**
+     * Gets the file type.
+     * @return {@link FileType#FILE}, {@link FileType#FOLDER},
+     *         or <code>null</code>
+     */
+    public FileType getType() {
+        if (FileType.FILE.getName().equals(type)) {
+            return FileType.FILE;
+        }
+        if (FileType.FOLDER.getName().equals(type)) {
+            return FileType.FOLDER;
+        }
+        return null;
+    }
+
+    /**
+     * Gets whether both the file size and last modified date are known.
+     * @return <code>true</code> if size and last modified date are known
+     */
+    public boolean isComplete() {
+        return size != null && lastModified != null;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return EqualsBuilder.reflectionEquals(this, other, false);
+    }
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(
+                this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
@@ -0,0 +1,40 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store;
+
+import java.util.List;
+
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+/**
+ * Crawl data store able to queue many references at once, more
+ * efficiently than queueing them one by one (e.g., with a single
+ * bulk write to a database).
+ * Crawl data stores not implementing this interface get references
+ * queued one at a time.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public interface IBatchQueueCrawlDataStore extends ICrawlDataStore {
+
+    /**
+     * Queues crawl data of references not already queued, active
+     * or processed.
+     * @param crawlDataBatch crawl data to queue, with unique references
+     * @return crawl data that got queued
+     */
+    List<ICrawlData> queueBatch(List<ICrawlData> crawlDataBatch);
+}
@@ -0,0 +1,357 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.fs.data.store.IBatchQueueCrawlDataStore;
+
+/**
+ * Base {@link ICrawlDataStore} keeping references in a {@link PathTrie}
+ * and tracking which ones are queued, active or processed in primitive
+ * arrays indexed by reference numbers.  Where and how crawl data records
+ * are stored is left to subclasses.
+ * Each reference can have a current record, for the current crawl, and
+ * a cached record, from the previous crawl.
+ * Batches of references are queued under a single lock.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ abstract class AbstractCompactCrawlDataStore
+        implements IBatchQueueCrawlDataStore {
+
+    /*default*/ static final byte NONE = 0;
+    /*default*/ static final byte QUEUED = 1;
+    /*default*/ static final byte ACTIVE = 2;
+    /*default*/ static final byte VALID = 3;
+    /*default*/ static final byte INVALID = 4;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final PathTrie trie;
+    private final IntQueue queue = new IntQueue();
+
+    private byte[] sets = new byte[INITIAL_CAPACITY];
+    // record positions plus one (0 meaning no record)
+    private long[] currentRecords = new long[INITIAL_CAPACITY];
+    private long[] cachedRecords = new long[INITIAL_CAPACITY];
+
+    private int queuedCount;
+    private int activeCount;
+    private int processedCount;
+    private int cachedCount;
+
+    /**
+     * Constructor.
+     * @param trie trie holding references
+     */
+    /*default*/ AbstractCompactCrawlDataStore(PathTrie trie) {
+        super();
+        this.trie = trie;
+    }
+
+    /**
+     * Writes the current crawl data record of a reference.
+     * @param set the set the reference is being added to
+     * @param crawlData crawl data
+     * @return record position
+     */
+    protected abstract long writeRecord(byte set, ICrawlData crawlData);
+    /**
+     * Reads a crawl data record.
+     * @param position record position
+     * @param node reference node number
+     * @return crawl data
+     */
+    protected abstract BaseCrawlData readRecord(long position, int node);
+
+    @Override
+    public synchronized void queue(ICrawlData crawlData) {
+        int node = node(crawlData.getReference());
+        currentRecords[node] = writeRecord(QUEUED, crawlData) + 1;
+        if (sets[node] != QUEUED) {
+            setSet(node, QUEUED);
+            queue.add(node);
+        }
+    }
+
+    @Override
+    public synchronized List<ICrawlData> queueBatch(
+            List<ICrawlData> crawlDataBatch) {
+        List<ICrawlData> queued = new ArrayList<>(crawlDataBatch.size());
+        for (ICrawlData crawlData : crawlDataBatch) {
+            int node = trie.get(crawlData.getReference());
+            if (node == PathTrie.NONE || node >= sets.length
+                    || sets[node] == NONE) {
+                queue(crawlData);
+                queued.add(crawlData);
+            }
+        }
+        return queued;
+    }
+
+    @Override
+    public synchronized boolean isQueueEmpty() {
+        return queuedCount == 0;
+    }
+
+    @Override
+    public synchronized int getQueueSize() {
+        return queuedCount;
+    }
+
+    @Override
+    public synchronized boolean isQueued(String reference) {
+        return isInSet(reference, QUEUED);
+    }
+
+    @Override
+    public synchronized ICrawlData nextQueued() {
+        // references re-queued after processing are skipped
+        while (!queue.isEmpty()) {
+            int node = queue.remove();
+            if (sets[node] == QUEUED) {
+                setSet(node, ACTIVE);
+                return readRecord(currentRecords[node] - 1, node);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean isActive(String reference) {
+        return isInSet(reference, ACTIVE);
+    }
+
+    @Override
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    @Override
+    public synchronized ICrawlData getCached(String cacheReference) {
+        int node = trie.get(cacheReference);
+        if (node == PathTrie.NONE || node >= sets.length
+                || cachedRecords[node] == 0) {
+            return null;
+        }
+        return readRecord(cachedRecords[node] - 1, node);
+    }
+
+    @Override
+    public synchronized boolean isCacheEmpty() {
+        return cachedCount == 0;
+    }
+
+    @Override
+    public synchronized void processed(ICrawlData crawlData) {
+        int node = node(crawlData.getReference());
+        byte set = crawlData.getState() != null
+                && crawlData.getState().isGoodState() ? VALID : INVALID;
+        currentRecords[node] = writeRecord(set, crawlData) + 1;
+        setSet(node, set);
+    }
+
+    @Override
+    public synchronized boolean isProcessed(String referenceId) {
+        int node = trie.get(referenceId);
+        return node != PathTrie.NONE && node < sets.length
+                && isProcessed(sets[node]);
+    }
+
+    @Override
+    public synchronized int getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * Gets cached crawl data from the previous crawl that were not
+     * processed yet by the current crawl.
+     * @return cached crawl data iterator
+     */
+    @Override
+    public synchronized Iterator<ICrawlData> getCacheIterator() {
+        return new CacheIterator();
+    }
+
+    //--- Methods for subclasses -----------------------------------------------
+
+    /**
+     * Gets the trie holding references.
+     * @return path trie
+     */
+    protected PathTrie getTrie() {
+        return trie;
+    }
+
+    /**
+     * Gets the highest node number that may have records, plus one.
+     * @return upper node number bound
+     */
+    protected int getNodeLimit() {
+        return Math.min(trie.getLimit(), sets.length);
+    }
+
+    /**
+     * Gets the set a reference is in.
+     * @param node reference node number
+     * @return set
+     */
+    protected byte getSet(int node) {
+        return sets[node];
+    }
+
+    /**
+     * Gets the position of the current crawl data record of a reference.
+     * @param node reference node number
+     * @return record position or -1 if none
+     */
+    protected long getCurrentRecord(int node) {
+        return currentRecords[node] - 1;
+    }
+    /**
+     * Gets the position of the cached crawl data record of a reference.
+     * @param node reference node number
+     * @return record position or -1 if none
+     */
+    protected long getCachedRecord(int node) {
+        return cachedRecords[node] - 1;
+    }
+
+    /**
+     * Restores a reference current record and set, as saved by
+     * a previous crawl being resumed.  Active references are queued
+     * again.
+     * @param reference the reference
+     * @param set the set
+     * @param position current record position
+     */
+    protected void restoreCurrent(String reference, byte set, long position) {
+        int node = node(reference);
+        currentRecords[node] = position + 1;
+        if (set == QUEUED || set == ACTIVE) {
+            if (sets[node] != QUEUED) {
+                setSet(node, QUEUED);
+                queue.add(node);
+            }
+        } else {
+            setSet(node, set);
+        }
+    }
+    /**
+     * Restores a reference cached record.
+     * @param reference the reference
+     * @param position cached record position
+     */
+    protected void restoreCached(String reference, long position) {
+        int node = node(reference);
+        if (cachedRecords[node] == 0 && !isProcessed(sets[node])) {
+            cachedCount++;
+        }
+        cachedRecords[node] = position + 1;
+    }
+
+    /**
+     * Gets a summary of reference counts, for logging.
+     * @return counts summary
+     */
+    protected String getCountsSummary() {
+        return queuedCount + " queued, " + activeCount + " active, "
+                + processedCount + " processed, " + cachedCount + " cached";
+    }
+
+    /*default*/ static boolean isProcessed(byte set) {
+        return set == VALID || set == INVALID;
+    }
+
+    //--- Private methods ------------------------------------------------------
+
+    private int node(String reference) {
+        int node = trie.add(reference);
+        if (node >= sets.length) {
+            int newLength = Math.max(node + 1, sets.length * 2);
+            sets = Arrays.copyOf(sets, newLength);
+            currentRecords = Arrays.copyOf(currentRecords, newLength);
+            cachedRecords = Arrays.copyOf(cachedRecords, newLength);
+        }
+        return node;
+    }
+
+    private boolean isInSet(String reference, byte set) {
+        int node = trie.get(reference);
+        return node != PathTrie.NONE && node < sets.length
+                && sets[node] == set;
+    }
+
+    // Keeps counts in sync with set changes
+    private void setSet(int node, byte set) {
+        byte old = sets[node];
+        sets[node] = set;
+        queuedCount += count(old, set, QUEUED);
+        activeCount += count(old, set, ACTIVE);
+        int processedDelta = (isProcessed(set) ? 1 : 0)
+                - (isProcessed(old) ? 1 : 0);
+        processedCount += processedDelta;
+        if (cachedRecords[node] != 0) {
+            cachedCount -= processedDelta;
+        }
+    }
+    private static int count(byte old, byte set, byte counted) {
+        return (set == counted ? 1 : 0) - (old == counted ? 1 : 0);
+    }
+
+    //--- Cache iterator -------------------------------------------------------
+
+    private class CacheIterator implements Iterator<ICrawlData> {
+        private int node = nextNode(0);
+        @Override
+        public boolean hasNext() {
+            synchronized (AbstractCompactCrawlDataStore.this) {
+                return node != PathTrie.NONE;
+            }
+        }
+        @Override
+        public ICrawlData next() {
+            synchronized (AbstractCompactCrawlDataStore.this) {
+                if (node == PathTrie.NONE) {
+                    throw new NoSuchElementException();
+                }
+                ICrawlData crawlData =
+                        readRecord(cachedRecords[node] - 1, node);
+                node = nextNode(node);
+                return crawlData;
+            }
+        }
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        private int nextNode(int after) {
+            for (int n = after + 1; n < sets.length; n++) {
+                if (cachedRecords[n] != 0 && !isProcessed(sets[n])) {
+                    return n;
+                }
+            }
+            return PathTrie.NONE;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.norconex.collector.core.CollectorException;
+
+/**
+ * Append-only storage of byte blocks, kept outside the Java heap in
+ * fixed-size segments.  Each block is written with its length and is
+ * addressed by its position.  A block never spans two segments.
+ * Not thread-safe.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ abstract class ByteSegments {
+
+    private static final int LENGTH_BYTES = 4;
+
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private long position;
+
+    /**
+     * Constructor.
+     * @param segmentSize size of each segment in bytes
+     */
+    /*default*/ ByteSegments(int segmentSize) {
+        super();
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Creates a new segment.
+     * @param index segment index
+     * @param size segment size in bytes
+     * @return segment
+     */
+    protected abstract ByteBuffer newSegment(int index, int size);
+
+    /**
+     * Gets the size of each segment.
+     * @return segment size in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Gets the position where the next block will be written.
+     * @return position
+     */
+    public long getPosition() {
+        return position;
+    }
+    /**
+     * Sets the position where the next block will be written
+     * (e.g., after existing blocks were read back).
+     * @param position position
+     */
+    protected void setPosition(long position) {
+        this.position = position;
+    }
+
+    /**
+     * Appends a block.
+     * @param block the block to write
+     * @return block position
+     */
+    public long write(byte[] block) {
+        int length = LENGTH_BYTES + block.length;
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Block of " + block.length
+                    + " bytes exceeds segment size of " + segmentSize + ".");
+        }
+        position = blockPosition(position, block.length, segmentSize);
+        ByteBuffer buf = positioned(position);
+        buf.putInt(block.length);
+        buf.put(block);
+        long blockPosition = position;
+        position += length;
+        return blockPosition;
+    }
+
+    /**
+     * Reads a block.
+     * @param blockPosition block position
+     * @return the block
+     */
+    public byte[] read(long blockPosition) {
+        ByteBuffer buf = positioned(blockPosition);
+        byte[] block = new byte[buf.getInt()];
+        buf.get(block);
+        return block;
+    }
+
+    /**
+     * Reads the length of a block, or of what would be a block at
+     * the given position.
+     * @param blockPosition block position
+     * @return block length
+     */
+    protected int readLength(long blockPosition) {
+        return positioned(blockPosition).getInt();
+    }
+
+    /**
+     * Zeroes bytes from the given position to the end of its segment.
+     * @param from position of the first byte to zero
+     */
+    protected void clearSegmentEnd(long from) {
+        ByteBuffer buf = positioned(from);
+        while (buf.hasRemaining()) {
+            buf.put((byte) 0);
+        }
+    }
+
+    /**
+     * Gets where a block will be written when appended at the
+     * given position, skipping to the next segment if it does not fit
+     * in the remaining space.
+     * @param position append position
+     * @param blockLength block length, excluding its own length
+     * @param segmentSize size of each segment in bytes
+     * @return block position
+     */
+    /*default*/ static long blockPosition(
+            long position, int blockLength, int segmentSize) {
+        long offset = position % segmentSize;
+        if (offset + LENGTH_BYTES + blockLength > segmentSize) {
+            return position + segmentSize - offset;
+        }
+        return position;
+    }
+
+    /**
+     * Releases segments.
+     */
+    public void close() {
+        segments.clear();
+    }
+
+    // Duplicate so reads never change a shared buffer position
+    private ByteBuffer positioned(long pos) {
+        int index = (int) (pos / segmentSize);
+        while (segments.size() <= index) {
+            segments.add(newSegment(segments.size(), segmentSize));
+        }
+        ByteBuffer buf = segments.get(index).duplicate();
+        buf.position((int) (pos % segmentSize));
+        return buf;
+    }
+
+    /**
+     * Segments allocated in direct (off-heap) memory.
+     */
+    /*default*/ static class Direct extends ByteSegments {
+        /*default*/ Direct(int segmentSize) {
+            super(segmentSize);
+        }
+        @Override
+        protected ByteBuffer newSegment(int index, int size) {
+            return ByteBuffer.allocateDirect(size);
+        }
+    }
+
+    /**
+     * Segments mapped to consecutive regions of a file, which grows
+     * as new segments are mapped.  Written blocks are persisted by
+     * the operating system, or right away when forced.
+     */
+    /*default*/ static class Mapped extends ByteSegments {
+        private final FileChannel channel;
+        private final List<MappedByteBuffer> mapped = new ArrayList<>();
+        private int unforcedIndex;
+        /*default*/ Mapped(FileChannel channel, int segmentSize) {
+            super(segmentSize);
+            this.channel = channel;
+        }
+        @Override
+        protected ByteBuffer newSegment(int index, int size) {
+            try {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode
+                        .READ_WRITE, (long) index * size, size);
+                mapped.add(buf);
+                return buf;
+            } catch (IOException e) {
+                throw new CollectorException(
+                        "Cannot map file segment " + index + ".", e);
+            }
+        }
+        /**
+         * Writes to storage changes made to segments since last forced.
+         * Only the last forced segment and the ones after it can have
+         * changed since blocks are only appended.
+         */
+        public void force() {
+            for (int i = unforcedIndex; i < mapped.size(); i++) {
+                mapped.get(i).force();
+            }
+            unforcedIndex = Math.max(0, mapped.size() - 1);
+        }
+        @Override
+        public void close() {
+            mapped.clear();
+            super.close();
+        }
+    }
+}
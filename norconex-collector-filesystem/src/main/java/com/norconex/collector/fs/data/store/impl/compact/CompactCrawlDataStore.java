@@ -0,0 +1,198 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+/**
+ * <p>
+ * In-memory {@link ICrawlDataStore} using as little memory per
+ * reference as possible, for crawling a very large number of files.
+ * </p>
+ * <p>
+ * References are stored in a path trie, where each folder shared by
+ * many references is only stored once.  Crawl data is stored
+ * as compact byte records (with states and content types stored as
+ * numbers), in direct memory segments outside the Java heap.
+ * Which references are queued, active or processed, along with where
+ * their records are, is tracked in primitive arrays indexed by
+ * reference numbers.
+ * </p>
+ * <p>
+ * The store content is saved to a file when closed and loaded back
+ * when opened, for resuming a stopped crawler or for the next crawl
+ * to know about previously crawled references.
+ * Since nothing is saved before the store is closed, a crawler that
+ * did not end normally (e.g., killed) cannot be resumed and the next
+ * crawl will rely on the last saved crawl data instead.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class CompactCrawlDataStore extends AbstractCompactCrawlDataStore {
+
+    private static final Logger LOG =
+            LogManager.getLogger(CompactCrawlDataStore.class);
+
+    /** Default size of direct memory segments, in bytes. */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final String FILE_NAME = "crawldata.bin";
+    private static final long MAGIC = 0x4e5846534344534cL;
+    private static final int VERSION = 1;
+
+    private static final byte END = -1;
+    private static final int HAS_CURRENT = 1;
+    private static final int HAS_CACHED = 2;
+
+    private final File file;
+    private final ByteSegments segments;
+    private final CrawlDataCodec codec;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * @param dir directory where to save the store
+     * @param resume whether to resume a previous crawl
+     * @param segmentSize size of direct memory segments
+     */
+    public CompactCrawlDataStore(File dir, boolean resume, int segmentSize) {
+        this(dir, resume, new ByteSegments.Direct(segmentSize));
+    }
+    private CompactCrawlDataStore(
+            File dir, boolean resume, ByteSegments segments) {
+        super(new PathTrie(segments));
+        this.file = new File(dir, FILE_NAME);
+        this.segments = segments;
+        this.codec = new CrawlDataCodec(getTrie());
+        if (file.isFile()) {
+            load(resume);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            save();
+        } finally {
+            segments.close();
+        }
+    }
+
+    @Override
+    protected long writeRecord(byte set, ICrawlData crawlData) {
+        return segments.write(codec.encode(crawlData));
+    }
+    @Override
+    protected BaseCrawlData readRecord(long position, int node) {
+        return codec.decode(segments.read(position), getTrie().getPath(node));
+    }
+
+    //--- Save/Load ------------------------------------------------------------
+
+    private void save() {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.createDirectories(
+                    file.getAbsoluteFile().getParentFile().toPath());
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Files.newOutputStream(tmpFile.toPath())))) {
+                out.writeLong(MAGIC);
+                out.writeInt(VERSION);
+                for (int node = 1; node < getNodeLimit(); node++) {
+                    long current = getCurrentRecord(node);
+                    long cached = getCachedRecord(node);
+                    int flags = (current != -1 ? HAS_CURRENT : 0)
+                            | (cached != -1 ? HAS_CACHED : 0);
+                    if (flags == 0) {
+                        continue;
+                    }
+                    out.writeByte(getSet(node));
+                    out.writeByte(flags);
+                    if (current != -1) {
+                        CrawlDataCodec.write(out, readRecord(current, node));
+                    }
+                    if (cached != -1) {
+                        CrawlDataCodec.write(out, readRecord(cached, node));
+                    }
+                }
+                out.writeByte(END);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            LOG.info("Saved crawl data store: " + file);
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot save crawl data store: " + file, e);
+        }
+    }
+
+    // Previously valid references become the cache when not resuming
+    private void load(boolean resume) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                throw new CollectorException(
+                        "Unsupported crawl data store file: " + file);
+            }
+            byte set;
+            while ((set = in.readByte()) != END) {
+                int flags = in.readByte();
+                BaseCrawlData current = (flags & HAS_CURRENT) != 0
+                        ? CrawlDataCodec.read(in) : null;
+                BaseCrawlData cached = (flags & HAS_CACHED) != 0
+                        ? CrawlDataCodec.read(in) : null;
+                if (resume) {
+                    if (cached != null) {
+                        restoreCached(cached.getReference(),
+                                segments.write(codec.encode(cached)));
+                    }
+                    if (current != null) {
+                        restoreCurrent(current.getReference(), set,
+                                segments.write(codec.encode(current)));
+                    }
+                } else if (set == VALID && current != null) {
+                    restoreCached(current.getReference(),
+                            segments.write(codec.encode(current)));
+                }
+            }
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot load crawl data store: " + file, e);
+        }
+        LOG.info("Loaded crawl data store: " + file
+                + " (" + getCountsSummary() + ").");
+    }
+}
@@ -0,0 +1,49 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.File;
+
+import com.norconex.collector.core.crawler.ICrawlerConfig;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.core.data.store.ICrawlDataStoreFactory;
+import com.norconex.commons.lang.file.FileUtil;
+
+/**
+ * <p>
+ * Creates {@link CompactCrawlDataStore} instances, saved under the
+ * crawler working directory.  Meant for crawling a very large number
+ * of files with the smallest memory footprint per reference.
+ * Crawlers that did not end normally cannot be resumed.
+ * </p>
+ * <h3>XML configuration usage:</h3>
+ * <pre>
+ *  &lt;crawlDataStoreFactory
+ *      class="com.norconex.collector.fs.data.store.impl.compact.CompactCrawlDataStoreFactory" /&gt;
+ * </pre>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class CompactCrawlDataStoreFactory implements ICrawlDataStoreFactory {
+
+    @Override
+    public ICrawlDataStore createCrawlDataStore(
+            ICrawlerConfig config, boolean resume) {
+        File dir = new File(config.getWorkDir(), "crawlstore/compact/"
+                + FileUtil.toSafeFileName(config.getId()));
+        return new CompactCrawlDataStore(dir, resume,
+                CompactCrawlDataStore.DEFAULT_SEGMENT_SIZE);
+    }
+}
@@ -0,0 +1,270 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.vfs2.FileType;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.fs.data.FileCrawlData;
+import com.norconex.collector.fs.data.SeedMetadata;
+import com.norconex.commons.lang.file.ContentType;
+
+/**
+ * Encodes crawl data to bytes and back.  The compact form, kept in
+ * memory, holds the parent root reference as a {@link PathTrie} node
+ * number and states and content types as numbers in dictionaries,
+ * while the portable form spells them out.  References are not part
+ * of encoded crawl data.  Seed metadata of {@link FileCrawlData} is
+ * kept in both forms.
+ * Not thread-safe.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ class CrawlDataCodec {
+
+    private static final int NULL = -1;
+    private static final int FLAG_ROOT_PARENT = 1;
+    private static final int FLAG_SEED = 2;
+
+    private final PathTrie trie;
+    private final Dictionary states = new Dictionary();
+    private final Dictionary contentTypes = new Dictionary();
+
+    /**
+     * Constructor.
+     * @param trie the trie holding references
+     */
+    /*default*/ CrawlDataCodec(PathTrie trie) {
+        super();
+        this.trie = trie;
+    }
+
+    /**
+     * Encodes crawl data in compact form.
+     * @param crawlData crawl data
+     * @return encoded crawl data
+     */
+    public byte[] encode(ICrawlData crawlData) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            SeedMetadata seed = FileCrawlData.getSeedMetadata(crawlData);
+            out.writeByte((crawlData.isRootParentReference()
+                    ? FLAG_ROOT_PARENT : 0) | (seed != null ? FLAG_SEED : 0));
+            out.writeInt(crawlData.getParentRootReference() == null
+                    ? NULL : trie.add(crawlData.getParentRootReference()));
+            out.writeInt(states.add(toString(crawlData.getState())));
+            out.writeInt(contentTypes.add(
+                    toString(crawlData.getContentType())));
+            out.writeLong(toTime(crawlData.getCrawlDate()));
+            writeString(out, crawlData.getMetaChecksum());
+            writeString(out, crawlData.getContentChecksum());
+            writeSeed(out, seed);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new CollectorException("Cannot encode crawl data.", e);
+        }
+    }
+
+    /**
+     * Decodes crawl data from its compact form.
+     * @param encoded encoded crawl data
+     * @param reference crawl data reference
+     * @return crawl data
+     */
+    public BaseCrawlData decode(byte[] encoded, String reference) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(encoded));
+            int flags = in.readByte();
+            BaseCrawlData crawlData = (flags & FLAG_SEED) != 0
+                    ? new FileCrawlData(reference)
+                    : new BaseCrawlData(reference);
+            crawlData.setRootParentReference(
+                    (flags & FLAG_ROOT_PARENT) != 0);
+            int parentRoot = in.readInt();
+            if (parentRoot != NULL) {
+                crawlData.setParentRootReference(trie.getPath(parentRoot));
+            }
+            crawlData.setState(toState(states.get(in.readInt())));
+            crawlData.setContentType(
+                    toContentType(contentTypes.get(in.readInt())));
+            crawlData.setCrawlDate(toDate(in.readLong()));
+            crawlData.setMetaChecksum(readString(in));
+            crawlData.setContentChecksum(readString(in));
+            if (crawlData instanceof FileCrawlData) {
+                ((FileCrawlData) crawlData).setSeedMetadata(readSeed(in));
+            }
+            return crawlData;
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot decode crawl data: " + reference, e);
+        }
+    }
+
+    /**
+     * Writes crawl data in portable form, including its reference.
+     * @param out where to write
+     * @param crawlData crawl data
+     * @throws IOException could not write
+     */
+    public static void write(DataOutput out, ICrawlData crawlData)
+            throws IOException {
+        writeString(out, crawlData.getReference());
+        out.writeBoolean(crawlData.isRootParentReference());
+        writeString(out, crawlData.getParentRootReference());
+        writeString(out, toString(crawlData.getState()));
+        writeString(out, toString(crawlData.getContentType()));
+        out.writeLong(toTime(crawlData.getCrawlDate()));
+        writeString(out, crawlData.getMetaChecksum());
+        writeString(out, crawlData.getContentChecksum());
+        SeedMetadata seed = FileCrawlData.getSeedMetadata(crawlData);
+        out.writeBoolean(seed != null);
+        writeSeed(out, seed);
+    }
+
+    /**
+     * Reads crawl data in portable form.
+     * @param in where to read
+     * @return crawl data
+     * @throws IOException could not read
+     */
+    public static BaseCrawlData read(DataInput in) throws IOException {
+        String reference = readString(in);
+        boolean rootParent = in.readBoolean();
+        String parentRoot = readString(in);
+        String state = readString(in);
+        String contentType = readString(in);
+        long crawlDate = in.readLong();
+        String metaChecksum = readString(in);
+        String contentChecksum = readString(in);
+        BaseCrawlData crawlData;
+        if (in.readBoolean()) {
+            crawlData = new FileCrawlData(reference);
+            ((FileCrawlData) crawlData).setSeedMetadata(readSeed(in));
+        } else {
+            crawlData = new BaseCrawlData(reference);
+        }
+        crawlData.setRootParentReference(rootParent);
+        crawlData.setParentRootReference(parentRoot);
+        crawlData.setState(toState(state));
+        crawlData.setContentType(toContentType(contentType));
+        crawlData.setCrawlDate(toDate(crawlDate));
+        crawlData.setMetaChecksum(metaChecksum);
+        crawlData.setContentChecksum(contentChecksum);
+        return crawlData;
+    }
+
+    private static void writeSeed(DataOutput out, SeedMetadata seed)
+            throws IOException {
+        if (seed == null) {
+            return;
+        }
+        writeString(out, seed.getType() == null 
+                ? null : seed.getType().getName());
+        out.writeLong(toLong(seed.getSize()));
+        out.writeLong(toLong(seed.getLastModified()));
+    }
+    private static SeedMetadata readSeed(DataInput in) throws IOException {
+        String type = readString(in);
+        Long size = toLong(in.readLong());
+        Long lastModified = toLong(in.readLong());
+        return new SeedMetadata(size, lastModified, 
+                FileType.FILE.getName().equals(type) ? FileType.FILE
+                        : FileType.FOLDER.getName().equals(type) 
+                                ? FileType.FOLDER : null);
+    }
+
+    /*default*/ static void writeString(DataOutput out, String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    /*default*/ static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String toString(Object value) {
+        return value == null ? null : value.toString();
+    }
+    private static CrawlState toState(String state) {
+        return state == null ? null : CrawlState.valueOf(state);
+    }
+    private static ContentType toContentType(String contentType) {
+        return contentType == null ? null : ContentType.valueOf(contentType);
+    }
+    private static long toTime(Date date) {
+        return date == null ? Long.MIN_VALUE : date.getTime();
+    }
+    private static Date toDate(long time) {
+        return time == Long.MIN_VALUE ? null : new Date(time);
+    }
+    private static long toLong(Long value) {
+        return value == null ? Long.MIN_VALUE : value;
+    }
+    private static Long toLong(long value) {
+        return value == Long.MIN_VALUE ? null : value;
+    }
+
+    // Few distinct values, so a regular map will do
+    private static class Dictionary {
+        private final Map<String, Integer> numbers = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        public int add(String value) {
+            if (value == null) {
+                return NULL;
+            }
+            Integer number = numbers.get(value);
+            if (number == null) {
+                number = values.size();
+                values.add(value);
+                numbers.put(value, number);
+            }
+            return number;
+        }
+        public String get(int number) {
+            return number == NULL ? null : values.get(number);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+/**
+ * First-in-first-out queue of primitive integers, backed by a growing
+ * circular array.  Not thread-safe.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ class IntQueue {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] elements = new int[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    /**
+     * Adds a value at the end of the queue.
+     * @param value value to add
+     */
+    public void add(int value) {
+        if (size == elements.length) {
+            int[] grown = new int[elements.length * 2];
+            int firstPart = elements.length - head;
+            System.arraycopy(elements, head, grown, 0, firstPart);
+            System.arraycopy(elements, 0, grown, firstPart, head);
+            elements = grown;
+            head = 0;
+        }
+        elements[(head + size) % elements.length] = value;
+        size++;
+    }
+
+    /**
+     * Removes the value at the beginning of the queue.
+     * @return value
+     * @throws IllegalStateException if the queue is empty
+     */
+    public int remove() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty.");
+        }
+        int value = elements[head];
+        head = (head + 1) % elements.length;
+        size--;
+        return value;
+    }
+
+    /**
+     * Gets whether the queue is empty.
+     * @return <code>true</code> if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of values in the queue.
+     * @return queue size
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,436 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+/**
+ * <p>
+ * Embedded {@link ICrawlDataStore} keeping crawl data in a single
+ * memory-mapped log file, for crawling a very large number of files
+ * without an external database.
+ * </p>
+ * <p>
+ * Every queued or processed reference gets its crawl data appended
+ * to the log, with a checksum.  Only references are kept in memory,
+ * in a path trie, along with which set each one is in and where its
+ * crawl data is in the log.  Crawl data is read back from the mapped
+ * log, which the operating system pages in and out of memory as needed.
+ * </p>
+ * <p>
+ * Since appended crawl data survive the crawler process,
+ * a crawler that did not end normally (e.g., killed) can be resumed.
+ * When opened, the log is replayed up to its last intact entry to
+ * rebuild what is in memory.  Appended entries are forced to disk
+ * in batches of <code>syncBatchSize</code> entries, limiting what can
+ * be lost on an operating system crash or power failure.
+ * </p>
+ * <p>
+ * When starting a new crawl, the crawl data of previously valid
+ * references is copied to a new log file, as the cache.
+ * Older log files are then deleted.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class MappedCrawlDataStore extends AbstractCompactCrawlDataStore {
+
+    private static final Logger LOG =
+            LogManager.getLogger(MappedCrawlDataStore.class);
+
+    /** Default size of log file segments mapped at once, in bytes. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /** Default number of log entries between forcing them to disk. */
+    public static final int DEFAULT_SYNC_BATCH_SIZE = 1000;
+
+    private static final Pattern FILE_PATTERN =
+            Pattern.compile("crawldata-(\\d+)\\.log");
+    private static final long MAGIC = 0x4e5846534d44534cL;
+    private static final int VERSION = 1;
+    private static final int LENGTH_BYTES = 4;
+    private static final int CHECKSUM_BYTES = 4;
+
+    // Entry types other than sets
+    private static final byte CACHED = 10;
+    private static final byte HEADER = 11;
+
+    private final File file;
+    private final int syncBatchSize;
+    private final ByteSegments names;
+    private final RandomAccessFile raf;
+    private final ByteSegments.Mapped log;
+    private int unsyncedCount;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * @param dir directory where to store log files
+     * @param resume whether to resume a previous crawl
+     * @param segmentSize size of log file segments mapped at once
+     * @param syncBatchSize number of log entries between forcing them
+     *        to disk (0 to leave it to the operating system)
+     */
+    public MappedCrawlDataStore(File dir, boolean resume,
+            int segmentSize, int syncBatchSize) {
+        this(prepareLogFile(dir, resume, segmentSize),
+                new ByteSegments.Direct(segmentSize),
+                segmentSize, syncBatchSize);
+    }
+    private MappedCrawlDataStore(File file, ByteSegments names,
+            int segmentSize, int syncBatchSize) {
+        super(new PathTrie(names));
+        this.file = file;
+        this.names = names;
+        this.syncBatchSize = syncBatchSize;
+        try {
+            this.raf = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot open crawl data store: " + file, e);
+        }
+        this.log = new ByteSegments.Mapped(raf.getChannel(), segmentSize);
+        replay();
+    }
+
+    /**
+     * Gets the log file currently written to.
+     * @return log file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Forces appended log entries to disk.
+     */
+    public synchronized void sync() {
+        log.force();
+        unsyncedCount = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            sync();
+            raf.close();
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot close crawl data store: " + file, e);
+        } finally {
+            log.close();
+            names.close();
+        }
+    }
+
+    @Override
+    protected long writeRecord(byte set, ICrawlData crawlData) {
+        long position = log.write(toEntry(set, crawlData));
+        if (syncBatchSize > 0 && ++unsyncedCount >= syncBatchSize) {
+            sync();
+        }
+        return position;
+    }
+    @Override
+    protected BaseCrawlData readRecord(long position, int node) {
+        byte[] entry = log.read(position);
+        try {
+            return CrawlDataCodec.read(new DataInputStream(
+                    new ByteArrayInputStream(entry, 1,
+                            entry.length - 1 - CHECKSUM_BYTES)));
+        } catch (IOException e) {
+            throw new CollectorException("Cannot read crawl data at "
+                    + position + " in " + file, e);
+        }
+    }
+
+    //--- Log replay -----------------------------------------------------------
+
+    // Entries are read until one is missing, truncated or corrupted
+    private void replay() {
+        int segmentSize = log.getSegmentSize();
+        long size;
+        try {
+            size = raf.length();
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot read crawl data store: " + file, e);
+        }
+        long position = 0;
+        long end = 0;
+        while (position < size) {
+            long offset = position % segmentSize;
+            // skip space left at the end of segments
+            if (segmentSize - offset < LENGTH_BYTES) {
+                position += segmentSize - offset;
+                continue;
+            }
+            int length = log.readLength(position);
+            if (length == 0 && offset != 0) {
+                position += segmentSize - offset;
+                continue;
+            }
+            if (length < 1 + CHECKSUM_BYTES
+                    || offset + LENGTH_BYTES + length > segmentSize) {
+                break;
+            }
+            byte[] entry = log.read(position);
+            if (!isIntact(entry)) {
+                LOG.warn("Crawl data store entry at " + position
+                        + " is corrupted, ignoring it and what follows: "
+                        + file);
+                break;
+            }
+            replayEntry(position, entry);
+            position += LENGTH_BYTES + length;
+            end = position;
+        }
+
+        log.setPosition(end);
+        if (end == 0) {
+            writeHeader();
+        } else if (end < size) {
+            // so partially written entries are not mistaken for new ones
+            log.clearSegmentEnd(end);
+        }
+        LOG.info("Opened crawl data store: " + file
+                + " (" + getCountsSummary() + ").");
+    }
+
+    private void replayEntry(long position, byte[] entry) {
+        byte type = entry[0];
+        if (position == 0) {
+            if (type != HEADER || !isSupportedHeader(entry)) {
+                throw new CollectorException(
+                        "Unsupported crawl data store file: " + file);
+            }
+            return;
+        }
+        String reference = readReference(entry);
+        if (type == CACHED) {
+            restoreCached(reference, position);
+        } else {
+            restoreCurrent(reference, type, position);
+        }
+    }
+
+    private void writeHeader() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(HEADER);
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+            log.write(withChecksum(bytes));
+            sync();
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot write crawl data store header: " + file, e);
+        }
+    }
+
+    //--- Log files ------------------------------------------------------------
+
+    // Returns the log file to use, after copying valid references to a
+    // new one as the cache when not resuming
+    private static File prepareLogFile(
+            File dir, boolean resume, int segmentSize) {
+        try {
+            Files.createDirectories(dir.toPath());
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot create crawl data store directory: " + dir, e);
+        }
+        File latest = null;
+        long latestGeneration = -1;
+        File[] files = dir.listFiles();
+        for (File f : files == null ? new File[] {} : files) {
+            Matcher m = FILE_PATTERN.matcher(f.getName());
+            if (!m.matches()) {
+                // left over from an interrupted copy
+                deleteQuietly(f);
+                continue;
+            }
+            long generation = Long.parseLong(m.group(1));
+            if (generation > latestGeneration) {
+                deleteQuietly(latest);
+                latest = f;
+                latestGeneration = generation;
+            } else {
+                deleteQuietly(f);
+            }
+        }
+        if (latest == null) {
+            return logFile(dir, 0);
+        }
+        if (resume) {
+            return latest;
+        }
+        File next = logFile(dir, latestGeneration + 1);
+        copyCache(latest, next, segmentSize);
+        deleteQuietly(latest);
+        return next;
+    }
+
+    private static void copyCache(File from, File to, int segmentSize) {
+        File tmpFile = new File(to.getPath() + ".tmp");
+        MappedCrawlDataStore previous = new MappedCrawlDataStore(
+                from, new ByteSegments.Direct(segmentSize), segmentSize, 0);
+        int count = 0;
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+                LogWriter writer = new LogWriter(new DataOutputStream(
+                        new BufferedOutputStream(fos)), segmentSize);
+                writer.write(previous.log.read(0));
+                for (int node = 1; node < previous.getNodeLimit(); node++) {
+                    if (previous.getSet(node) == VALID) {
+                        writer.write(toEntry(CACHED, previous.readRecord(
+                                previous.getCurrentRecord(node), node)));
+                        count++;
+                    }
+                }
+                writer.flush();
+                fos.getChannel().force(true);
+            }
+            Files.move(tmpFile.toPath(), to.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot copy crawl data store cache to: " + to, e);
+        } finally {
+            previous.close();
+        }
+        LOG.info("Cached " + count + " valid references from " + from
+                + " to " + to);
+    }
+
+    private static File logFile(File dir, long generation) {
+        return new File(dir, "crawldata-" + generation + ".log");
+    }
+
+    // Mapped files cannot be deleted on some systems until unmapped,
+    // in which case they will be deleted the next time
+    private static void deleteQuietly(File f) {
+        if (f != null && !f.delete()) {
+            LOG.debug("Could not delete crawl data store file: " + f);
+        }
+    }
+
+    //--- Entries --------------------------------------------------------------
+
+    // Entry: type, crawl data, checksum of both
+    private static byte[] toEntry(byte type, ICrawlData crawlData) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            CrawlDataCodec.write(out, crawlData);
+            out.flush();
+            return withChecksum(bytes);
+        } catch (IOException e) {
+            throw new CollectorException("Cannot encode crawl data: "
+                    + crawlData.getReference(), e);
+        }
+    }
+    private static byte[] withChecksum(ByteArrayOutputStream bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        int checksum = (int) crc.getValue();
+        bytes.write(checksum >>> 24);
+        bytes.write(checksum >>> 16);
+        bytes.write(checksum >>> 8);
+        bytes.write(checksum);
+        return bytes.toByteArray();
+    }
+    private static boolean isIntact(byte[] entry) {
+        int length = entry.length - CHECKSUM_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(entry, 0, length);
+        int checksum = ((entry[length] & 0xff) << 24)
+                | ((entry[length + 1] & 0xff) << 16)
+                | ((entry[length + 2] & 0xff) << 8)
+                | (entry[length + 3] & 0xff);
+        return checksum == (int) crc.getValue();
+    }
+    private boolean isSupportedHeader(byte[] entry) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(entry, 1, entry.length - 1));
+            return in.readLong() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    // The reference is the first crawl data field
+    private String readReference(byte[] entry) {
+        try {
+            return CrawlDataCodec.readString(new DataInputStream(
+                    new ByteArrayInputStream(entry, 1, entry.length - 1)));
+        } catch (IOException e) {
+            throw new CollectorException(
+                    "Cannot read crawl data reference in " + file, e);
+        }
+    }
+
+    // Writes entries the same way mapped segments do, to a stream
+    private static class LogWriter {
+        private final DataOutputStream out;
+        private final int segmentSize;
+        private long position;
+        public LogWriter(DataOutputStream out, int segmentSize) {
+            super();
+            this.out = out;
+            this.segmentSize = segmentSize;
+        }
+        public void write(byte[] entry) throws IOException {
+            long blockPosition = ByteSegments.blockPosition(
+                    position, entry.length, segmentSize);
+            for (; position < blockPosition; position++) {
+                out.writeByte(0);
+            }
+            out.writeInt(entry.length);
+            out.write(entry);
+            position += LENGTH_BYTES + entry.length;
+        }
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
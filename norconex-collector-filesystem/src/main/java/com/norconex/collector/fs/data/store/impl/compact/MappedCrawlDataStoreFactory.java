@@ -0,0 +1,146 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.norconex.collector.core.crawler.ICrawlerConfig;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.core.data.store.ICrawlDataStoreFactory;
+import com.norconex.commons.lang.config.IXMLConfigurable;
+import com.norconex.commons.lang.config.XMLConfigurationUtil;
+import com.norconex.commons.lang.file.FileUtil;
+import com.norconex.commons.lang.xml.EnhancedXMLStreamWriter;
+
+/**
+ * <p>
+ * Creates {@link MappedCrawlDataStore} instances, stored under the
+ * crawler working directory.  An embedded alternative to the Mongo
+ * crawl data store for crawling a very large number of files, without
+ * having to install a database.  Crawlers that did not end normally
+ * can be resumed.
+ * </p>
+ * <p>
+ * The log file is mapped to memory in segments of
+ * <code>segmentSize</code> bytes (default is 64MB), which also limits
+ * the size of a single crawl data entry.  Appended entries are forced
+ * to disk every <code>syncBatchSize</code> entries (default is 1000).
+ * Use 0 to leave it to the operating system, which is the fastest
+ * but may lose more entries if the operating system crashes (a crawler
+ * process ending abruptly does not lose any).
+ * </p>
+ * <h3>XML configuration usage:</h3>
+ * <pre>
+ *  &lt;crawlDataStoreFactory
+ *      class="com.norconex.collector.fs.data.store.impl.compact.MappedCrawlDataStoreFactory"
+ *      segmentSize="(size in bytes)"
+ *      syncBatchSize="(number of entries)" /&gt;
+ * </pre>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class MappedCrawlDataStoreFactory
+        implements ICrawlDataStoreFactory, IXMLConfigurable {
+
+    private int segmentSize = MappedCrawlDataStore.DEFAULT_SEGMENT_SIZE;
+    private int syncBatchSize = MappedCrawlDataStore.DEFAULT_SYNC_BATCH_SIZE;
+
+    /**
+     * Gets the size of log file segments mapped at once.
+     * @return segment size in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+    /**
+     * Sets the size of log file segments mapped at once.
+     * @param segmentSize segment size in bytes
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+    /**
+     * Gets the number of log entries between forcing them to disk.
+     * @return number of entries (0 if left to the operating system)
+     */
+    public int getSyncBatchSize() {
+        return syncBatchSize;
+    }
+    /**
+     * Sets the number of log entries between forcing them to disk.
+     * @param syncBatchSize number of entries (0 to leave it to the
+     *        operating system)
+     */
+    public void setSyncBatchSize(int syncBatchSize) {
+        this.syncBatchSize = syncBatchSize;
+    }
+
+    @Override
+    public ICrawlDataStore createCrawlDataStore(
+            ICrawlerConfig config, boolean resume) {
+        File dir = new File(config.getWorkDir(), "crawlstore/mapped/"
+                + FileUtil.toSafeFileName(config.getId()));
+        return new MappedCrawlDataStore(
+                dir, resume, segmentSize, syncBatchSize);
+    }
+
+    @Override
+    public void loadFromXML(Reader in) throws IOException {
+        XMLConfiguration xml = XMLConfigurationUtil.newXMLConfiguration(in);
+        setSegmentSize(xml.getInt("[@segmentSize]", getSegmentSize()));
+        setSyncBatchSize(xml.getInt("[@syncBatchSize]", getSyncBatchSize()));
+    }
+
+    @Override
+    public void saveToXML(Writer out) throws IOException {
+        try {
+            EnhancedXMLStreamWriter writer = new EnhancedXMLStreamWriter(out);
+            writer.writeStartElement("crawlDataStoreFactory");
+            writer.writeAttribute("class", getClass().getCanonicalName());
+            writer.writeAttributeInteger("segmentSize", getSegmentSize());
+            writer.writeAttributeInteger("syncBatchSize", getSyncBatchSize());
+            writer.writeEndElement();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot save as XML.", e);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return EqualsBuilder.reflectionEquals(this, other, false);
+    }
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(
+                this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
@@ -0,0 +1,175 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assigns a number to every path (reference) by storing each path as
+ * a node made of its parent path node and its last segment name.
+ * Paths sharing the same parent folders share the nodes of these
+ * folders, so each folder name is only stored once.  Node names
+ * are kept in {@link ByteSegments}, while the tree structure and a
+ * hash index of children are kept in primitive arrays.
+ * Node numbers start at 1 and are contiguous.
+ * Not thread-safe.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+/*default*/ class PathTrie {
+
+    /*default*/ static final int NONE = -1;
+    private static final int ROOT = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final char SEPARATOR = '/';
+
+    private final ByteSegments names;
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private long[] namePositions = new long[INITIAL_CAPACITY];
+    // open addressing, holding node numbers (0 being empty)
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private int size = 1;
+
+    /**
+     * Constructor.
+     * @param names where to store node names
+     */
+    /*default*/ PathTrie(ByteSegments names) {
+        super();
+        this.names = names;
+        parents[ROOT] = NONE;
+    }
+
+    /**
+     * Gets the highest node number assigned, plus one.
+     * @return upper node number bound
+     */
+    public int getLimit() {
+        return size;
+    }
+
+    /**
+     * Gets the node number of a path, adding it if needed.
+     * @param path the path
+     * @return node number
+     */
+    public int add(String path) {
+        return find(path, true);
+    }
+    /**
+     * Gets the node number of a path.
+     * @param path the path
+     * @return node number or {@link #NONE} if the path was never added
+     */
+    public int get(String path) {
+        return find(path, false);
+    }
+
+    /**
+     * Gets the path of a node.
+     * @param node node number
+     * @return path
+     */
+    public String getPath(int node) {
+        List<String> segments = new ArrayList<>();
+        for (int n = node; n != ROOT; n = parents[n]) {
+            segments.add(new String(
+                    names.read(namePositions[n]), StandardCharsets.UTF_8));
+        }
+        StringBuilder b = new StringBuilder();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            b.append(segments.get(i));
+            if (i > 0) {
+                b.append(SEPARATOR);
+            }
+        }
+        return b.toString();
+    }
+
+    private int find(String path, boolean add) {
+        int node = ROOT;
+        int start = 0;
+        while (true) {
+            int end = path.indexOf(SEPARATOR, start);
+            String segment = end == -1
+                    ? path.substring(start) : path.substring(start, end);
+            node = findChild(node,
+                    segment.getBytes(StandardCharsets.UTF_8), add);
+            if (node == NONE || end == -1) {
+                return node;
+            }
+            start = end + 1;
+        }
+    }
+
+    private int findChild(int parent, byte[] name, boolean add) {
+        int hash = hash(parent, name);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int child = table[slot];
+            if (hashes[child] == hash && parents[child] == parent
+                    && Arrays.equals(names.read(namePositions[child]), name)) {
+                return child;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!add) {
+            return NONE;
+        }
+        int child = size++;
+        ensureCapacity(size);
+        parents[child] = parent;
+        hashes[child] = hash;
+        namePositions[child] = names.write(name);
+        table[slot] = child;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return child;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > parents.length) {
+            int newLength = Math.max(capacity, parents.length * 2);
+            parents = Arrays.copyOf(parents, newLength);
+            hashes = Arrays.copyOf(hashes, newLength);
+            namePositions = Arrays.copyOf(namePositions, newLength);
+        }
+    }
+
+    private void rehash(int newLength) {
+        int[] newTable = new int[newLength];
+        int mask = newLength - 1;
+        for (int node = 1; node < size; node++) {
+            int slot = hashes[node] & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = node;
+        }
+        table = newTable;
+    }
+
+    private static int hash(int parent, byte[] name) {
+        int h = parent * 31 + Arrays.hashCode(name);
+        // spread bits, like HashMap does
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,102 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.mongo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.BulkWriteUpsert;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.impl.mongo.IMongoSerializer;
+import com.norconex.collector.core.data.store.impl.mongo.IMongoSerializer.Stage;
+import com.norconex.collector.core.data.store.impl.mongo.MongoConnectionDetails;
+import com.norconex.collector.core.data.store.impl.mongo.MongoCrawlDataStore;
+import com.norconex.collector.fs.data.store.IBatchQueueCrawlDataStore;
+
+/**
+ * Mongo crawl data store queueing batches of references with a single
+ * unordered bulk write.  References already in the references collection
+ * (queued, active or processed) are left untouched.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class BatchQueueMongoCrawlDataStore extends MongoCrawlDataStore
+        implements IBatchQueueCrawlDataStore {
+
+    private final DBCollection collRefs;
+    private final IMongoSerializer serializer;
+
+    /**
+     * Constructor.
+     * @param resume whether to resume an aborted execution
+     * @param database Mongo database
+     * @param referencesCollectionName references collection name
+     * @param cachedCollectionName cached collection name
+     * @param serializer Mongo serializer
+     */
+    public BatchQueueMongoCrawlDataStore(boolean resume, DB database,
+            String referencesCollectionName, String cachedCollectionName,
+            IMongoSerializer serializer) {
+        super(resume, database, referencesCollectionName,
+                cachedCollectionName, serializer);
+        this.collRefs = database.getCollection(referencesCollectionName);
+        this.serializer = serializer;
+    }
+
+    /**
+     * Creates a store connected to the database of the given crawler.
+     * @param crawlerId crawler id
+     * @param resume whether to resume an aborted execution
+     * @param connDetails Mongo connection details
+     * @param serializer Mongo serializer
+     * @return crawl data store
+     */
+    public static BatchQueueMongoCrawlDataStore create(String crawlerId,
+            boolean resume, MongoConnectionDetails connDetails,
+            IMongoSerializer serializer) {
+        return new BatchQueueMongoCrawlDataStore(resume,
+                buildMongoDB(crawlerId, connDetails),
+                connDetails.getReferencesCollectionName(),
+                connDetails.getCachedCollectionName(), serializer);
+    }
+
+    // Inserted only if absent, so references queued concurrently
+    // (or in any other stage) are not overwritten.
+    @Override
+    public List<ICrawlData> queueBatch(List<ICrawlData> crawlDataBatch) {
+        List<ICrawlData> queued = new ArrayList<>();
+        if (crawlDataBatch.isEmpty()) {
+            return queued;
+        }
+        BulkWriteOperation bulk = collRefs.initializeUnorderedBulkOperation();
+        for (ICrawlData crawlData : crawlDataBatch) {
+            bulk.find(new BasicDBObject(IMongoSerializer.FIELD_REFERENCE,
+                    crawlData.getReference())).upsert().updateOne(
+                            new BasicDBObject("$setOnInsert",
+                                    serializer.toDBObject(
+                                            Stage.QUEUED, crawlData)));
+        }
+        BulkWriteResult result = bulk.execute();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            queued.add(crawlDataBatch.get(upsert.getIndex()));
+        }
+        return queued;
+    }
+}
@@ -14,6 +14,8 @@
  */
 package com.norconex.collector.fs.data.store.impl.mongo;
 
+import com.norconex.collector.core.crawler.ICrawlerConfig;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
 import com.norconex.collector.core.data.store.ICrawlDataStoreFactory;
 import com.norconex.collector.core.data.store.impl.mongo.AbstractMongoCrawlDataStoreFactory;
 import com.norconex.collector.core.data.store.impl.mongo.BaseMongoSerializer;
@@ -60,6 +62,10 @@ import com.norconex.commons.lang.encrypt.EncryptionUtil;
  * {@link #setReferencesCollectionName(String)} and 
  * {@link #setCachedCollectionName(String)}.
  * </p>
+ * <p>
+ * As of 2.9.0, created stores queue batches of references with a single
+ * bulk write (see {@link BatchQueueMongoCrawlDataStore}).
+ * </p>
  * 
  * <h4>Usage example:</h4>
  * <p>
@@ -79,6 +85,13 @@ import com.norconex.commons.lang.encrypt.EncryptionUtil;
 public class MongoCrawlDataStoreFactory 
         extends AbstractMongoCrawlDataStoreFactory {
 
+    @Override
+    public ICrawlDataStore createCrawlDataStore(
+            ICrawlerConfig config, boolean resume) {
+        return BatchQueueMongoCrawlDataStore.create(config.getId(), resume,
+                getConnectionDetails(), createMongoSerializer());
+    }
+
     @Override
     protected IMongoSerializer createMongoSerializer() {
         return new BaseMongoSerializer();
@@ -26,6 +26,12 @@ public class FileMetadata extends CollectorMetadata {
     public static final String COLLECTOR_SIZE = COLLECTOR_PREFIX + "filesize";
     public static final String COLLECTOR_LASTMODIFIED = 
             COLLECTOR_PREFIX + "lastmodified";
+    /** @since 2.9.0 */
+    public static final String COLLECTOR_CONTENT_HASH = 
+            COLLECTOR_PREFIX + "contenthash";
+    /** @since 2.9.0 */
+    public static final String COLLECTOR_SAMPLE_HASH = 
+            COLLECTOR_PREFIX + "samplehash";
     
 	public FileMetadata(String documentPath) {
 		super();
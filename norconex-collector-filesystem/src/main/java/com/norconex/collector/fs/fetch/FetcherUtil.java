@@ -0,0 +1,78 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.fetch;
+
+import org.apache.commons.vfs2.FileObject;
+
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.map.Properties;
+
+/**
+ * Invokes fetchers with local file attributes when they support it.
+ * For local files, metadata fetchers implementing 
+ * {@link ILocalFileMetadataFetcher} are only invoked through their
+ * method accepting local file attributes. The same goes for document 
+ * fetchers implementing {@link ILocalFileDocumentFetcher}.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public final class FetcherUtil {
+
+    private FetcherUtil() {
+        super();
+    }
+
+    /**
+     * Fetches metadata, with local file attributes when supported.
+     * @param fetcher metadata fetcher
+     * @param fileObject the file object representing the document
+     * @param localStat local file attributes or <code>null</code>
+     *        if not a local file
+     * @param metadata recipient for storing metadata
+     * @return crawl state
+     */
+    public static CrawlState fetchMetadata(IFileMetadataFetcher fetcher,
+            FileObject fileObject, LocalFileStat localStat, 
+            Properties metadata) {
+        if (localStat != null 
+                && fetcher instanceof ILocalFileMetadataFetcher) {
+            return ((ILocalFileMetadataFetcher) fetcher).fetchMetadata(
+                    fileObject, localStat, metadata);
+        }
+        return fetcher.fetchMetadada(fileObject, metadata);
+    }
+
+    /**
+     * Fetches a document, with local file attributes when supported.
+     * @param fetcher document fetcher
+     * @param fileObject the file object referencing the document
+     * @param localStat local file attributes or <code>null</code>
+     *        if not a local file
+     * @param doc the fetched document
+     * @return crawl state
+     */
+    public static CrawlState fetchDocument(IFileDocumentFetcher fetcher,
+            FileObject fileObject, LocalFileStat localStat, 
+            FileDocument doc) {
+        if (localStat != null 
+                && fetcher instanceof ILocalFileDocumentFetcher) {
+            return ((ILocalFileDocumentFetcher) fetcher).fetchDocument(
+                    fileObject, localStat, doc);
+        }
+        return fetcher.fetchDocument(fileObject, doc);
+    }
+}
@@ -0,0 +1,45 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.fetch;
+
+import org.apache.commons.vfs2.FileObject;
+
+import com.norconex.commons.lang.map.Properties;
+
+/**
+ * A metadata fetcher able to defer content type and encoding detection
+ * until the document is about to be fetched.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public interface ILazyContentTypeFetcher extends IFileMetadataFetcher {
+
+    /**
+     * Gets whether content type and encoding detection is deferred
+     * until the document gets fetched.
+     * @return <code>true</code> if detection is deferred
+     */
+    boolean isLazyContentType();
+
+    /**
+     * Fetches the content type and encoding of a document and stores
+     * them in the provided {@link Properties}.  Invoked before the 
+     * document is fetched when {@link #isLazyContentType()} is 
+     * <code>true</code>.
+     * @param fileObject the file object representing the document
+     * @param metadata recipient for storing metadata
+     */
+    void fetchContentInfo(FileObject fileObject, Properties metadata);
+}
@@ -0,0 +1,43 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.fetch;
+
+import org.apache.commons.vfs2.FileObject;
+
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.util.LocalFileStat;
+
+/**
+ * A document fetcher able to use local file attributes already obtained
+ * by the crawler, instead of reading them again. 
+ * For local files, only {@link #fetchDocument(FileObject, LocalFileStat,
+ * FileDocument)} gets invoked: subclasses overriding 
+ * {@link #fetchDocument(FileObject, FileDocument)} should override it too.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public interface ILocalFileDocumentFetcher extends IFileDocumentFetcher {
+
+    /**
+     * Fetches a local file document.
+     * @param fileObject the file object referencing the document
+     * @param localStat local file attributes (never <code>null</code>)
+     * @param doc the fetched document
+     * @return fetch response
+     */
+    CrawlState fetchDocument(FileObject fileObject, 
+            LocalFileStat localStat, FileDocument doc);
+}
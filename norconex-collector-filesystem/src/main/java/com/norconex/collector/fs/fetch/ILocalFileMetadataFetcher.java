@@ -0,0 +1,44 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.fetch;
+
+import org.apache.commons.vfs2.FileObject;
+
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.map.Properties;
+
+/**
+ * A metadata fetcher able to use local file attributes already obtained
+ * by the crawler, instead of reading them again. 
+ * For local files, only {@link #fetchMetadata(FileObject, LocalFileStat,
+ * Properties)} gets invoked: subclasses overriding 
+ * {@link #fetchMetadada(FileObject, Properties)} should override it too.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public interface ILocalFileMetadataFetcher extends IFileMetadataFetcher {
+
+    /**
+     * Fetches the document metadata for a local file and stores it in 
+     * the provided {@link Properties}.
+     * @param fileObject the file object representing the document
+     * @param localStat local file attributes (never <code>null</code>)
+     * @param metadata recipient for storing metadata
+     * @return crawl state
+     */
+    CrawlState fetchMetadata(FileObject fileObject, 
+            LocalFileStat localStat, Properties metadata);
+}
@@ -1,4 +1,4 @@
-/* Copyright 2017 Norconex Inc.
+/* Copyright 2017-2018 Norconex Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -14,6 +14,15 @@
  */
 package com.norconex.collector.fs.fetch.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.configuration.XMLConfiguration;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -21,6 +30,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
@@ -28,29 +38,120 @@ import com.norconex.collector.core.CollectorException;
 import com.norconex.collector.core.data.CrawlState;
 import com.norconex.collector.fs.data.FileCrawlState;
 import com.norconex.collector.fs.doc.FileDocument;
-import com.norconex.collector.fs.fetch.IFileDocumentFetcher;
+import com.norconex.collector.fs.fetch.ILocalFileDocumentFetcher;
+import com.norconex.collector.fs.util.LazyFileInputStream;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.config.IXMLConfigurable;
+import com.norconex.commons.lang.config.XMLConfigurationUtil;
+import com.norconex.commons.lang.xml.EnhancedXMLStreamWriter;
 
 /**
+ * <p>
  * Generic file system document fetcher. 
+ * </p>
+ * <p>
+ * By default, a document content is read in full as soon as it is
+ * fetched so it gets cached (in memory or in a temporary file) and 
+ * the source file is released right away.
+ * </p>
+ * <p>
+ * Since 2.9.0, you can set <code>streamLocalFiles</code> to 
+ * <code>true</code> to have regular local files handed to the importer 
+ * without that initial full read. The file is then opened only when 
+ * the importer first reads it, and read directly through a 
+ * {@link java.nio.channels.FileChannel}.  Since local files can be
+ * read again at no cost, it saves a complete pass over every file 
+ * before importing it. Files that are never read (e.g., rejected by a 
+ * document filter relying on the reference only) are never opened.
+ * This has no effect on other file systems.
+ * </p>
+ * <h3>XML configuration usage:</h3>
+ * <pre>
+ *  &lt;documentFetcher 
+ *      class="com.norconex.collector.fs.fetch.impl.GenericFileDocumentFetcher"
+ *      streamLocalFiles="[false|true]" /&gt;
+ * </pre>
  * @author Pascal Essiembre
  * @since 2.7.0
  */
-public class GenericFileDocumentFetcher implements IFileDocumentFetcher {
+public class GenericFileDocumentFetcher 
+        implements ILocalFileDocumentFetcher, IXMLConfigurable {
 
     private static final Logger LOG = 
             LogManager.getLogger(GenericFileDocumentFetcher.class);
     
+    private boolean streamLocalFiles;
+    
+    /**
+     * Gets whether regular local files are streamed directly to the
+     * importer, without first being read in full.
+     * @return <code>true</code> if streaming local files
+     * @since 2.9.0
+     */
+    public boolean isStreamLocalFiles() {
+        return streamLocalFiles;
+    }
+    /**
+     * Sets whether regular local files are streamed directly to the
+     * importer, without first being read in full.
+     * @param streamLocalFiles <code>true</code> to stream local files
+     * @since 2.9.0
+     */
+    public void setStreamLocalFiles(boolean streamLocalFiles) {
+        this.streamLocalFiles = streamLocalFiles;
+    }
+
     @Override
     public CrawlState fetchDocument(FileObject fileObject, FileDocument doc) {
+        LocalFileStat localStat;
+        try {
+            localStat = LocalFileStat.stat(fileObject);
+        } catch (FileSystemException e) {
+            LOG.error("Cannot fetch document: " + doc.getReference()
+                    + " (" + e.getMessage() + ")");
+            throw new CollectorException(e);
+        }
+        return fetchDocument(fileObject, localStat, doc);
+    }
+
+    /**
+     * Fetches file system document, using already obtained local file
+     * attributes when available.  Local files are then read directly,
+     * without first checking their existence or type again.
+     * @param fileObject the file object referencing the document
+     * @param localStat local file attributes, or <code>null</code> if 
+     *        not a local file
+     * @param doc the fetched document
+     * @return fetch response
+     * @since 2.9.0
+     */
+    @Override
+    public CrawlState fetchDocument(
+            FileObject fileObject, LocalFileStat localStat, FileDocument doc) {
         
         LOG.debug("Fetching document: " + doc.getReference());
         
         try {
-            if (!fileObject.exists()) {
-                return FileCrawlState.NOT_FOUND;
+            InputStream is;
+            if (localStat != null) {
+                if (!localStat.exists()) {
+                    return FileCrawlState.NOT_FOUND;
+                }
+                if (streamLocalFiles && localStat.isRegularFile()) {
+                    doc.setContent(doc.getContent().getStreamFactory()
+                            .newInputStream(new LazyFileInputStream(
+                                    localStat.getPath())));
+                    return CrawlState.NEW;
+                }
+                is = Files.newInputStream(localStat.getPath());
+            } else {
+                if (!fileObject.exists()) {
+                    return FileCrawlState.NOT_FOUND;
+                }
+                is = fileObject.getContent().getInputStream();
             }
-            doc.setContent(doc.getContent().getStreamFactory().newInputStream(
-                    fileObject.getContent().getInputStream()));
+            doc.setContent(
+                    doc.getContent().getStreamFactory().newInputStream(is));
             //read a copy to force caching and then close the HTTP stream
             IOUtils.copy(doc.getContent(), new NullOutputStream());
             return CrawlState.NEW;
@@ -66,6 +167,29 @@ public class GenericFileDocumentFetcher implements IFileDocumentFetcher {
         }  
     }
 
+    @Override
+    public void loadFromXML(Reader in) throws IOException {
+        XMLConfiguration xml = XMLConfigurationUtil.newXMLConfiguration(in);
+        setStreamLocalFiles(xml.getBoolean(
+                "[@streamLocalFiles]", isStreamLocalFiles()));
+    }
+
+    @Override
+    public void saveToXML(Writer out) throws IOException {
+        try {
+            EnhancedXMLStreamWriter writer = new EnhancedXMLStreamWriter(out);
+            writer.writeStartElement("documentFetcher");
+            writer.writeAttribute("class", getClass().getCanonicalName());
+            writer.writeAttributeBoolean(
+                    "streamLocalFiles", isStreamLocalFiles());
+            writer.writeEndElement();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot save as XML.", e);
+        }        
+    }
+    
     @Override
     public boolean equals(final Object other) {
         return EqualsBuilder.reflectionEquals(this, other, false);
@@ -1,4 +1,4 @@
-/* Copyright 2017 Norconex Inc.
+/* Copyright 2017-2018 Norconex Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -14,8 +14,16 @@
  */
 package com.norconex.collector.fs.fetch.impl;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map.Entry;
 import java.util.Objects;
 
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.configuration.XMLConfiguration;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
@@ -32,55 +40,283 @@ import com.norconex.collector.core.CollectorException;
 import com.norconex.collector.core.data.CrawlState;
 import com.norconex.collector.fs.data.FileCrawlState;
 import com.norconex.collector.fs.doc.FileMetadata;
-import com.norconex.collector.fs.fetch.IFileMetadataFetcher;
+import com.norconex.collector.fs.fetch.ILazyContentTypeFetcher;
+import com.norconex.collector.fs.fetch.ILocalFileMetadataFetcher;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.config.IXMLConfigurable;
+import com.norconex.commons.lang.config.XMLConfigurationUtil;
 import com.norconex.commons.lang.map.Properties;
+import com.norconex.commons.lang.xml.EnhancedXMLStreamWriter;
 
 /**
+ * <p>
  * Generic file system document metadata fetcher. 
+ * </p>
+ * <p>
+ * As of 2.9.0, local file size, last modified date and attributes
+ * (POSIX or DOS, whichever is supported) are all read at once 
+ * instead of one file system call each.  Set 
+ * <code>localFileAttributes</code> to <code>true</code> to store these
+ * attributes (e.g., owner, permissions, hidden flag) as 
+ * <code>collector.attribute.*</code> metadata. Some of them 
+ * (e.g., last access time) change without the file being modified.
+ * </p>
+ * <p>
+ * SMB/CIFS file ACLs are normally read from each file.
+ * Since 2.9.0, you can set <code>inheritSmbAcl</code> to 
+ * <code>true</code> to have files given the ACL they inherit from their
+ * parent folder instead.  Only the folder security descriptor is read,
+ * once for all its files, saving one SMB request per file.  Explicit
+ * permissions of a file (denied ones included), or a file with 
+ * inheritance disabled, are then missed.  Only use it when files 
+ * rely on inherited permissions.
+ * </p>
+ * <p>
+ * Since 2.9.0, SMB ACLs and resolved SIDs are cached, up to
+ * <code>smbAclCacheSize</code> ACLs (default is 
+ * {@value #DEFAULT_SMB_ACL_CACHE_SIZE}) and <code>smbSidCacheSize</code>
+ * SIDs (default is {@value #DEFAULT_SMB_SID_CACHE_SIZE}).  Cached entries
+ * expire after <code>smbAclCacheTTL</code> milliseconds (default is 0,
+ * never expiring).  Caches are cleared when the crawler ends.
+ * </p>
+ * <p>
+ * Since 2.9.0, you can set <code>lazyContentType</code> to 
+ * <code>true</code> to defer content type and encoding detection until
+ * the document is about to be fetched. Some file systems have
+ * to access the file content to detect them. Files rejected 
+ * before being fetched (e.g., by metadata filters or because they
+ * are unmodified) are then never accessed for that purpose.
+ * Content type and encoding are not available to metadata filters 
+ * and metadata checksummers when lazy.
+ * </p>
+ * <h3>XML configuration usage:</h3>
+ * <pre>
+ *  &lt;metadataFetcher 
+ *      class="com.norconex.collector.fs.fetch.impl.GenericFileMetadataFetcher"
+ *      inheritSmbAcl="[false|true]"
+ *      smbAclCacheSize="(max number of cached ACLs)"
+ *      smbSidCacheSize="(max number of cached SIDs)"
+ *      smbAclCacheTTL="(milliseconds)"
+ *      lazyContentType="[false|true]"
+ *      localFileAttributes="[false|true]" /&gt;
+ * </pre>
  * @author Pascal Essiembre
  * @since 2.7.0
  */
-public class GenericFileMetadataFetcher implements IFileMetadataFetcher {
+public class GenericFileMetadataFetcher 
+        implements ILocalFileMetadataFetcher, ILazyContentTypeFetcher,
+                IXMLConfigurable, Closeable {
+
+    /** @since 2.9.0 */
+    public static final int DEFAULT_SMB_ACL_CACHE_SIZE = 1000;
+    /** @since 2.9.0 */
+    public static final int DEFAULT_SMB_SID_CACHE_SIZE = 10000;
 
     private static final Logger LOG = 
             LogManager.getLogger(GenericFileMetadataFetcher.class);
     
     private static Boolean smbAvailable = null;
     
+    private boolean inheritSmbAcl;
+    private int smbAclCacheSize = DEFAULT_SMB_ACL_CACHE_SIZE;
+    private int smbSidCacheSize = DEFAULT_SMB_SID_CACHE_SIZE;
+    private long smbAclCacheTTL;
+    private transient SmbAclFetcher smbAclFetcher;
+    private boolean lazyContentType;
+    private boolean localFileAttributes;
+    
+    /**
+     * Gets whether SMB files are given the ACL they inherit from their
+     * parent folder, without reading their own.
+     * @return <code>true</code> if using parent folder ACL
+     * @since 2.9.0
+     */
+    public boolean isInheritSmbAcl() {
+        return inheritSmbAcl;
+    }
+    /**
+     * Sets whether SMB files are given the ACL they inherit from their
+     * parent folder, without reading their own.  Explicit file 
+     * permissions are then missed.
+     * @param inheritSmbAcl <code>true</code> to use parent folder ACL
+     * @since 2.9.0
+     */
+    public void setInheritSmbAcl(boolean inheritSmbAcl) {
+        this.inheritSmbAcl = inheritSmbAcl;
+    }
+    /**
+     * Gets the maximum number of SMB ACLs cached.
+     * @return maximum number of cached ACLs
+     * @since 2.9.0
+     */
+    public int getSmbAclCacheSize() {
+        return smbAclCacheSize;
+    }
+    /**
+     * Sets the maximum number of SMB ACLs cached.
+     * @param smbAclCacheSize maximum number of cached ACLs
+     * @since 2.9.0
+     */
+    public synchronized void setSmbAclCacheSize(int smbAclCacheSize) {
+        this.smbAclCacheSize = smbAclCacheSize;
+        smbAclFetcher = null;
+    }
+    /**
+     * Gets the maximum number of resolved SMB SIDs cached.
+     * @return maximum number of cached SIDs
+     * @since 2.9.0
+     */
+    public int getSmbSidCacheSize() {
+        return smbSidCacheSize;
+    }
+    /**
+     * Sets the maximum number of resolved SMB SIDs cached.
+     * @param smbSidCacheSize maximum number of cached SIDs
+     * @since 2.9.0
+     */
+    public synchronized void setSmbSidCacheSize(int smbSidCacheSize) {
+        this.smbSidCacheSize = smbSidCacheSize;
+        smbAclFetcher = null;
+    }
+    /**
+     * Gets how long cached SMB ACLs and SIDs remain valid, in 
+     * milliseconds.
+     * @return time to live (0 for no expiry)
+     * @since 2.9.0
+     */
+    public long getSmbAclCacheTTL() {
+        return smbAclCacheTTL;
+    }
+    /**
+     * Sets how long cached SMB ACLs and SIDs remain valid, in 
+     * milliseconds.
+     * @param smbAclCacheTTL time to live (0 for no expiry)
+     * @since 2.9.0
+     */
+    public synchronized void setSmbAclCacheTTL(long smbAclCacheTTL) {
+        this.smbAclCacheTTL = smbAclCacheTTL;
+        smbAclFetcher = null;
+    }
+    /**
+     * Gets whether content type and encoding detection is deferred
+     * until the document gets fetched.
+     * @return <code>true</code> if detection is deferred
+     * @since 2.9.0
+     */
+    @Override
+    public boolean isLazyContentType() {
+        return lazyContentType;
+    }
+    /**
+     * Sets whether content type and encoding detection is deferred
+     * until the document gets fetched.
+     * @param lazyContentType <code>true</code> to defer detection
+     * @since 2.9.0
+     */
+    public void setLazyContentType(boolean lazyContentType) {
+        this.lazyContentType = lazyContentType;
+    }
+    /**
+     * Gets whether POSIX or DOS attributes of local files are stored
+     * as metadata.
+     * @return <code>true</code> if storing local file attributes
+     * @since 2.9.0
+     */
+    public boolean isLocalFileAttributes() {
+        return localFileAttributes;
+    }
+    /**
+     * Sets whether POSIX or DOS attributes of local files are stored
+     * as metadata.
+     * @param localFileAttributes <code>true</code> to store local file 
+     *        attributes
+     * @since 2.9.0
+     */
+    public void setLocalFileAttributes(boolean localFileAttributes) {
+        this.localFileAttributes = localFileAttributes;
+    }
+    
     @Override
     public CrawlState fetchMetadada(
             FileObject fileObject, Properties metadata) {
 
+        try {
+            return fetchMetadata(
+                    fileObject, LocalFileStat.stat(fileObject), metadata);
+        } catch (FileSystemException e) {
+            String msg = "Cannot fetch metadata: " + fileObject;
+            LOG.error(msg + " (" + e.getMessage() + ")");
+            LOG.debug(msg, e);
+            throw new CollectorException(e);
+        }
+    }
+
+    /**
+     * Fetches the document metadata for a path and stores it in the 
+     * provided {@link Properties}, using already obtained local file
+     * attributes when available.
+     * @param fileObject the file object representing the document
+     * @param localStat local file attributes, or <code>null</code> if 
+     *        not a local file
+     * @param metadata recipient for storing metadata
+     * @return crawl state
+     * @since 2.9.0
+     */
+    @Override
+    public CrawlState fetchMetadata(FileObject fileObject, 
+            LocalFileStat localStat, Properties metadata) {
+
         LOG.debug("Fetching file headers: " + fileObject);
         
         try {
-            if (!fileObject.exists()) {
+            if (localStat != null) {
+                if (!localStat.exists()) {
+                    return FileCrawlState.NOT_FOUND;
+                }
+            } else if (!fileObject.exists()) {
                 return FileCrawlState.NOT_FOUND;
             }
             
             if (isSmbFile(fileObject)) {
-                SmbAclFetcher.fetchACL(fileObject, metadata);
+                if (inheritSmbAcl) {
+                    getSmbAclFetcher().fetchInheritedACL(fileObject, metadata);
+                } else {
+                    getSmbAclFetcher().fetchACL(fileObject, metadata);
+                }
             }
             
             FileContent content = fileObject.getContent();
             //--- Enhance Metadata ---
-            metadata.addLong(
-                    FileMetadata.COLLECTOR_SIZE, content.getSize());
-            metadata.addLong(FileMetadata.COLLECTOR_LASTMODIFIED,
-                    content.getLastModifiedTime());
-            FileContentInfo info = content.getContentInfo();
-            if (info != null) {
-                metadata.addString(FileMetadata.COLLECTOR_CONTENT_ENCODING, 
-                        info.getContentEncoding());
-                metadata.addString(FileMetadata.COLLECTOR_CONTENT_TYPE, 
-                        info.getContentType());
+            if (localStat != null) {
+                metadata.addLong(
+                        FileMetadata.COLLECTOR_SIZE, localStat.getSize());
+                metadata.addLong(FileMetadata.COLLECTOR_LASTMODIFIED,
+                        localStat.getLastModified());
+            } else {
+                metadata.addLong(
+                        FileMetadata.COLLECTOR_SIZE, content.getSize());
+                metadata.addLong(FileMetadata.COLLECTOR_LASTMODIFIED,
+                        content.getLastModifiedTime());
             }
-            for (String attrName: content.getAttributeNames()) {
-                Object obj = content.getAttribute(attrName);
-                if (obj != null) {
-                    metadata.addString(FileMetadata.COLLECTOR_PREFIX 
-                            + "attribute." + attrName, 
-                                    Objects.toString(obj));
+            if (!lazyContentType) {
+                addContentInfo(content, metadata);
+            }
+            if (localStat != null) {
+                if (localFileAttributes) {
+                    for (Entry<String, String> en : 
+                            localStat.getAttributes().entrySet()) {
+                        metadata.addString(FileMetadata.COLLECTOR_PREFIX 
+                                + "attribute." + en.getKey(), en.getValue());
+                    }
+                }
+            } else {
+                for (String attrName: content.getAttributeNames()) {
+                    Object obj = content.getAttribute(attrName);
+                    if (obj != null) {
+                        metadata.addString(FileMetadata.COLLECTOR_PREFIX 
+                                + "attribute." + attrName, 
+                                        Objects.toString(obj));
+                    }
                 }
             }
             
@@ -100,6 +336,59 @@ public class GenericFileMetadataFetcher implements IFileMetadataFetcher {
         }
     }
     
+    /**
+     * Fetches the content type and encoding of a document and stores
+     * them in the provided {@link Properties}.  Meant to be invoked 
+     * when {@link #isLazyContentType()} is <code>true</code>, once 
+     * they are needed.
+     * @param fileObject the file object representing the document
+     * @param metadata recipient for storing metadata
+     * @since 2.9.0
+     */
+    @Override
+    public void fetchContentInfo(FileObject fileObject, Properties metadata) {
+        try {
+            addContentInfo(fileObject.getContent(), metadata);
+        } catch (FileSystemException e) {
+            LOG.error("Cannot fetch content type: " + fileObject
+                    + " (" + e.getMessage() + ")");
+            throw new CollectorException(e);
+        }
+    }
+    
+    private void addContentInfo(FileContent content, Properties metadata)
+            throws FileSystemException {
+        // For most file systems, content info is derived from the file 
+        // name, without accessing the file
+        FileContentInfo info = content.getContentInfo();
+        if (info != null) {
+            metadata.addString(FileMetadata.COLLECTOR_CONTENT_ENCODING, 
+                    info.getContentEncoding());
+            metadata.addString(FileMetadata.COLLECTOR_CONTENT_TYPE, 
+                    info.getContentType());
+        }
+    }
+    
+    private synchronized SmbAclFetcher getSmbAclFetcher() {
+        if (smbAclFetcher == null) {
+            smbAclFetcher = new SmbAclFetcher(
+                    smbAclCacheSize, smbSidCacheSize, smbAclCacheTTL);
+        }
+        return smbAclFetcher;
+    }
+
+    /**
+     * Discards cached SMB ACLs and SIDs.  Invoked when the crawler ends.
+     * This fetcher can still be used afterwards.
+     * @since 2.9.0
+     */
+    @Override
+    public synchronized void close() {
+        if (smbAclFetcher != null) {
+            smbAclFetcher.clear();
+        }
+    }
+
     //TODO move to Norconex Commons Lang
     private static boolean isSmbFile(FileObject fileObject) {
         if (smbAvailable == null) {
@@ -115,6 +404,47 @@ public class GenericFileMetadataFetcher implements IFileMetadataFetcher {
         }
         return smbAvailable && fileObject instanceof SmbFileObject;
     }
+
+    @Override
+    public void loadFromXML(Reader in) throws IOException {
+        XMLConfiguration xml = XMLConfigurationUtil.newXMLConfiguration(in);
+        setInheritSmbAcl(xml.getBoolean(
+                "[@inheritSmbAcl]", isInheritSmbAcl()));
+        setSmbAclCacheSize(xml.getInt(
+                "[@smbAclCacheSize]", getSmbAclCacheSize()));
+        setSmbSidCacheSize(xml.getInt(
+                "[@smbSidCacheSize]", getSmbSidCacheSize()));
+        setSmbAclCacheTTL(XMLConfigurationUtil.getDuration(
+                xml, "[@smbAclCacheTTL]", getSmbAclCacheTTL()));
+        setLazyContentType(xml.getBoolean(
+                "[@lazyContentType]", isLazyContentType()));
+        setLocalFileAttributes(xml.getBoolean(
+                "[@localFileAttributes]", isLocalFileAttributes()));
+    }
+
+    @Override
+    public void saveToXML(Writer out) throws IOException {
+        try {
+            EnhancedXMLStreamWriter writer = new EnhancedXMLStreamWriter(out);
+            writer.writeStartElement("metadataFetcher");
+            writer.writeAttribute("class", getClass().getCanonicalName());
+            writer.writeAttributeBoolean("inheritSmbAcl", isInheritSmbAcl());
+            writer.writeAttributeInteger(
+                    "smbAclCacheSize", getSmbAclCacheSize());
+            writer.writeAttributeInteger(
+                    "smbSidCacheSize", getSmbSidCacheSize());
+            writer.writeAttributeLong("smbAclCacheTTL", getSmbAclCacheTTL());
+            writer.writeAttributeBoolean(
+                    "lazyContentType", isLazyContentType());
+            writer.writeAttributeBoolean(
+                    "localFileAttributes", isLocalFileAttributes());
+            writer.writeEndElement();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot save as XML.", e);
+        }        
+    }
     
     @Override
     public boolean equals(final Object other) {
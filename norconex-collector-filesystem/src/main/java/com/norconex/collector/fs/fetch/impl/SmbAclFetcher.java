@@ -1,4 +1,4 @@
-/* Copyright 2017 Norconex Inc.
+/* Copyright 2017-2018 Norconex Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,14 +15,16 @@
 package com.norconex.collector.fs.fetch.impl;
 
 import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.UserAuthenticationData;
-import org.apache.commons.vfs2.UserAuthenticationData.Type;
-import org.apache.commons.vfs2.provider.smb.SmbFileName;
 import org.apache.commons.vfs2.provider.smb.SmbFileObject;
-import org.apache.commons.vfs2.provider.smb.SmbFileProvider;
-import org.apache.commons.vfs2.util.UserAuthenticatorUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
@@ -36,6 +38,18 @@ import jcifs.smb.SmbFile;
 
 /**
  * Use to obtain ACL from files when using SMB protocol.
+ * <p>
+ * Since 2.9.0, ACLs are cached by security descriptor (most files in a 
+ * folder share the same ACL) and SIDs are resolved to account names 
+ * in batches, with resolved names cached.  SIDs are never resolved
+ * one at a time.  Caches are specific to each instance, are limited in 
+ * size, and entries can expire after a given time.
+ * </p>
+ * <p>
+ * Since 2.9.0, files can also be given the ACL inherited from their 
+ * parent folder, read once per folder instead of once per file
+ * (see {@link #fetchInheritedACL(FileObject, Properties)}).
+ * </p>
  * @author Pascal Essiembre
  * @since 2.7.0
  */
@@ -54,93 +68,294 @@ import jcifs.smb.SmbFile;
     private static final String DOMAIN_NAME = ".domainName";
     private static final String ACCOUNT_NAME = ".accountName";
     
-    private SmbAclFetcher() {
+    // Key: security descriptor signature
+    private final Cache<List<AceInfo>> aclCache;
+    // Key: SID in "S-1-..." format
+    private final Cache<SidInfo> sidCache;
+    // Key: folder URI. Value: folder entries inherited by its files
+    private final Cache<ACE[]> folderAclCache;
+    
+    /**
+     * Constructor.
+     * @param aclCacheSize maximum number of ACLs cached, and of folders
+     *        with their inherited entries cached
+     * @param sidCacheSize maximum number of resolved SIDs cached
+     * @param cacheTTL how long cached entries remain valid, in 
+     *        milliseconds (0 for no expiry)
+     */
+    /*default*/ SmbAclFetcher(
+            int aclCacheSize, int sidCacheSize, long cacheTTL) {
         super();
+        this.aclCache = new Cache<>(aclCacheSize, cacheTTL);
+        this.sidCache = new Cache<>(sidCacheSize, cacheTTL);
+        this.folderAclCache = new Cache<>(aclCacheSize, cacheTTL);
+    }
+
+    /**
+     * Discards all cached ACLs and SIDs.
+     */
+    public void clear() {
+        aclCache.clear();
+        sidCache.clear();
+        folderAclCache.clear();
     }
 
-    public static void fetchACL(FileObject fileObject, Properties metadata) {
+    public void fetchACL(FileObject fileObject, Properties metadata) {
         if (fileObject instanceof SmbFileObject) {
             SmbFileObject smbFileObject = (SmbFileObject) fileObject;
             try {
-                SmbFile f = createSmbFile(smbFileObject);
-                ACE[] acl = f.getSecurity();
-                for (int i = 0; i < acl.length; i++) {
-                    storeSID(acl, metadata);
-                }
+                // Same SmbFile (and pooled credentials) as the file object
+                SmbFile f = smbFileObject.getSmbFile();
+                // SIDs are not resolved here, we do it ourselves
+                storeOwnACL(f, f.getSecurity(false), metadata);
             } catch (IOException e) {
                 LOG.error("Could not retreive SMB ACL data.", e);
             }
         }
     }
+
+    /**
+     * Stores the ACL a file inherits from its parent folder, without
+     * reading the file own security descriptor.  The parent folder
+     * descriptor is read once for all its files, and the folder entries
+     * applying to files are given to each of them.  Explicit entries
+     * of a file (denied ones included), or a file with inheritance 
+     * disabled, are missed: use {@link #fetchACL(FileObject, Properties)}
+     * for files with permissions of their own.
+     * @param fileObject the file to get the inherited ACL for
+     * @param metadata where to store the ACL
+     * @since 2.9.0
+     */
+    public void fetchInheritedACL(
+            FileObject fileObject, Properties metadata) {
+        if (!(fileObject instanceof SmbFileObject)) {
+            return;
+        }
+        try {
+            FileObject parent = fileObject.getParent();
+            if (!(parent instanceof SmbFileObject)) {
+                fetchACL(fileObject, metadata);
+                return;
+            }
+            String folderKey = parent.getName().getURI();
+            SmbFile f = ((SmbFileObject) parent).getSmbFile();
+            // Read once per folder, even when SIDs cannot be resolved
+            ACE[] acl = folderAclCache.get(folderKey);
+            if (acl == null) {
+                acl = inheritedByFiles(f.getSecurity(false));
+                folderAclCache.put(folderKey, acl);
+            }
+            String signature = "I:" + signature(acl);
+            List<AceInfo> aces = aclCache.get(signature);
+            if (aces == null) {
+                aces = toAceInfos(f, acl, signature, true);
+            }
+            storeACL(aces, metadata);
+        } catch (IOException e) {
+            LOG.error("Could not retreive SMB inherited ACL data.", e);
+        }
+    }
     
-    private static void storeSID(ACE[] acls, Properties metadata) {
-        for (int i = 0; i < acls.length; i++) {
-            ACE acl = acls[i];
-            SID sid = acl.getSID();
-            metadata.setString(key(i, ACE), acl.toString());
-            metadata.setString(key(i, SID), sid.toString());
-            metadata.setString(key(i, SID_TEXT), sid.toDisplayString());
-            metadata.setInt(key(i, TYPE), sid.getType());
-            metadata.setString(key(i, TYPE_TEXT), sid.getTypeText());
-            metadata.setString(
-                    key(i, DOMAIN_SID), sid.getDomainSid().toString());
-            metadata.setString(key(i, DOMAIN_NAME), sid.getDomainName());
-            metadata.setString(key(i, ACCOUNT_NAME), sid.getAccountName());
+    private void storeOwnACL(SmbFile f, ACE[] acl, Properties metadata) 
+            throws IOException {
+        String signature = signature(acl);
+        List<AceInfo> aces = aclCache.get(signature);
+        if (aces == null) {
+            aces = toAceInfos(f, acl, signature, false);
+        }
+        storeACL(aces, metadata);
+    }
+    
+    // Folder entries inherited by files (object inherit)
+    private static ACE[] inheritedByFiles(ACE[] folderAcl) {
+        List<ACE> aces = new ArrayList<>(folderAcl.length);
+        for (ACE ace : folderAcl) {
+            if ((ace.getFlags() & ACE.FLAGS_OBJECT_INHERIT) != 0) {
+                aces.add(ace);
+            }
+        }
+        return aces.toArray(new ACE[aces.size()]);
+    }
+    
+    private static void storeACL(List<AceInfo> aces, Properties metadata) {
+        for (int i = 0; i < aces.size(); i++) {
+            AceInfo ace = aces.get(i);
+            SidInfo sid = ace.sid;
+            metadata.setString(key(i, ACE), ace.text);
+            metadata.setString(key(i, SID), sid.sid);
+            metadata.setString(key(i, SID_TEXT), sid.displayText);
+            metadata.setInt(key(i, TYPE), sid.type);
+            metadata.setString(key(i, TYPE_TEXT), sid.typeText);
+            metadata.setString(key(i, DOMAIN_SID), sid.domainSid);
+            metadata.setString(key(i, DOMAIN_NAME), sid.domainName);
+            metadata.setString(key(i, ACCOUNT_NAME), sid.accountName);
         }
     }
     private static String key(int index, String suffix) {
         return ACL_PREFIX + "[" + index + "]" + suffix;
     }
 
-    /*
-     * Adapted from SmbFileObject since there is otherwise no way to get
-     * the SmbFile from the Commons VFS sandbox SmbFile class and we need it 
-     * for ACL extract.  Should delete if a better way is provider by VFS.
-     */
-    private static SmbFile createSmbFile(FileObject fileObject)
-            throws IOException {
-
-        final SmbFileName smbFileName = (SmbFileName) fileObject.getName();
-
-        final String path = smbFileName.getUriWithoutAuth();
-
-        UserAuthenticationData authData = null;
-        SmbFile file;
-        try {
-            authData = UserAuthenticatorUtils.authenticate(
-                    fileObject.getFileSystem().getFileSystemOptions(),
-                           SmbFileProvider.AUTHENTICATOR_TYPES);
-
-            NtlmPasswordAuthentication auth = null;
-            if (authData != null) {
-                auth = new NtlmPasswordAuthentication(
-                        authToString(authData, UserAuthenticationData.DOMAIN, 
-                                smbFileName.getDomain()),
-                        authToString(authData, UserAuthenticationData.USERNAME, 
-                                smbFileName.getUserName()),
-                        authToString(authData, UserAuthenticationData.PASSWORD, 
-                                smbFileName.getPassword()));
+    // Identifies an ACL without resolving its SIDs
+    private static String signature(ACE[] acl) {
+        StringBuilder b = new StringBuilder();
+        for (ACE ace : acl) {
+            b.append(ace.isAllow() ? 'A' : 'D')
+                    .append(Integer.toHexString(ace.getAccessMask()))
+                    .append(':')
+                    .append(Integer.toHexString(ace.getFlags()))
+                    .append(':')
+                    .append(ace.getSID().toString())
+                    .append(';');
+        }
+        return b.toString();
+    }
+    
+    private List<AceInfo> toAceInfos(SmbFile f, ACE[] acl, 
+            String signature, boolean inheritedByFile) throws IOException {
+        Map<String, SidInfo> sids = new HashMap<>();
+        List<SID> unresolved = new ArrayList<>();
+        for (ACE ace : acl) {
+            String sidStr = ace.getSID().toString();
+            if (sids.containsKey(sidStr)) {
+                continue;
             }
+            SidInfo info = sidCache.get(sidStr);
+            sids.put(sidStr, info);
+            if (info == null) {
+                // Copies are not tied to the file server so they are never
+                // resolved again, one at a time, when reading their names.
+                unresolved.add(new SID(sidStr));
+            }
+        }
 
-            // if auth == null SmbFile uses default credentials
-            // ("jcifs.smb.client.domain", "?"), ("jcifs.smb.client.username", "GUEST"),
-            // ("jcifs.smb.client.password", BLANK);
-            // ANONYMOUS=("","","")
-            file = new SmbFile(path, auth);
-
-            if (file.isDirectory() && !file.toString().endsWith("/")) {
-                file = new SmbFile(path + "/", auth);
+        // Resolve all SIDs not already cached, in one call
+        boolean resolved = true;
+        if (!unresolved.isEmpty()) {
+            SID[] sidArray = unresolved.toArray(new SID[unresolved.size()]);
+            try {
+                SID.resolveSids(
+                        f.getServer(), toAuth(f.getPrincipal()), sidArray);
+            } catch (IOException e) {
+                LOG.error("Could not resolve SMB ACL SIDs: " + e.getMessage());
+                resolved = false;
             }
-            return file;
-        } finally {
-            UserAuthenticatorUtils.cleanup(authData); // might be null
+            for (SID sid : sidArray) {
+                SidInfo info = new SidInfo(sid);
+                sids.put(info.sid, info);
+                if (resolved) {
+                    sidCache.put(info.sid, info);
+                }
+            }
+        }
+        
+        List<AceInfo> aces = new ArrayList<>(acl.length);
+        for (ACE ace : acl) {
+            aces.add(new AceInfo(ace, 
+                    sids.get(ace.getSID().toString()), inheritedByFile));
+        }
+        aces = Collections.unmodifiableList(aces);
+        // Unresolved SIDs will be attempted again next time
+        if (resolved) {
+            aclCache.put(signature, aces);
         }
+        return aces;
     }
-
-    private static String authToString(
-            UserAuthenticationData authData, Type type, String part) {
-        return UserAuthenticatorUtils.toString(UserAuthenticatorUtils.getData(
-                authData, type, UserAuthenticatorUtils.toChar(part)));
+    
+    private static NtlmPasswordAuthentication toAuth(Principal principal) {
+        if (principal instanceof NtlmPasswordAuthentication) {
+            return (NtlmPasswordAuthentication) principal;
+        }
+        return null;
+    }
+    
+    // Least recently used entries are evicted first
+    private static final class Cache<V> {
+        private final Map<String, Entry<V>> map;
+        private final long ttl;
+        private Cache(final int maxSize, final long ttl) {
+            this.ttl = ttl;
+            this.map = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Entry<V>> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+        private synchronized V get(String key) {
+            Entry<V> entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (ttl > 0 && System.currentTimeMillis() - entry.time > ttl) {
+                map.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+        private synchronized void put(String key, V value) {
+            map.put(key, new Entry<>(value));
+        }
+        private synchronized void clear() {
+            map.clear();
+        }
+    }
+    private static final class Entry<V> {
+        private final V value;
+        private final long time = System.currentTimeMillis();
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+    
+    private static final class SidInfo {
+        private final String sid;
+        private final String displayText;
+        private final int type;
+        private final String typeText;
+        private final String domainSid;
+        private final String domainName;
+        private final String accountName;
+        private SidInfo(SID sid) {
+            this.sid = sid.toString();
+            this.displayText = sid.toDisplayString();
+            this.type = sid.getType();
+            this.typeText = sid.getTypeText();
+            this.domainSid = sid.getDomainSid().toString();
+            this.domainName = sid.getDomainName();
+            this.accountName = sid.getAccountName();
+        }
+    }
+    
+    private static final class AceInfo {
+        private final String text;
+        private final SidInfo sid;
+        // inheritedByFile: folder entry, as inherited by a file
+        private AceInfo(ACE ace, SidInfo sid, boolean inheritedByFile) {
+            this.sid = sid;
+            // Same as ACE#toString(), which would resolve the SID itself
+            StringBuilder b = new StringBuilder();
+            b.append(ace.isAllow() ? "Allow " : "Deny  ");
+            appendCol(b, sid.displayText, 25);
+            b.append(" 0x").append(String.format(
+                    "%08X", ace.getAccessMask())).append(' ');
+            if (inheritedByFile) {
+                // Same as the matching file entry: inherited, without
+                // inheritance flags of its own
+                b.append("Inherited ");
+                appendCol(b, "This folder only", 34);
+            } else {
+                b.append(ace.isInherited() ? "Inherited " : "Direct    ");
+                appendCol(b, ace.getApplyToText(), 34);
+            }
+            this.text = b.toString();
+        }
+        private static void appendCol(StringBuilder b, String str, int width) {
+            b.append(str);
+            for (int i = width - str.length(); i > 0; i--) {
+                b.append(' ');
+            }
+        }
     }
-
 }
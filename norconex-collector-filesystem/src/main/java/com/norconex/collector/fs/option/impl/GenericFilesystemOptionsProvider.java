@@ -42,6 +42,7 @@ import org.apache.commons.vfs2.provider.hdfs.HdfsFileSystemConfigBuilder;
 import org.apache.commons.vfs2.provider.http.HttpFileSystemConfigBuilder;
 import org.apache.commons.vfs2.provider.ram.RamFileSystemConfigBuilder;
 import org.apache.commons.vfs2.provider.sftp.SftpFileSystemConfigBuilder;
+import org.apache.commons.vfs2.provider.smb.SmbFileSystemConfigBuilder;
 import org.apache.commons.vfs2.provider.webdav.WebdavFileSystemConfigBuilder;
 import org.apache.commons.vfs2.util.EncryptUtil;
 import org.apache.hadoop.fs.Path;
@@ -181,6 +182,9 @@ import com.norconex.commons.lang.xml.EnhancedXMLStreamWriter;
  *      &lt;sftpTimeout&gt;(milliseconds)&lt;/sftpTimeout&gt;
  *      &lt;sftpUserDirIsRoot&gt;[false|true]&lt;/sftpUserDirIsRoot&gt;
  *
+ *      &lt;!-- SMB (since 2.9.0) --&gt;
+ *      &lt;smbCredentialsIdleTimeout&gt;(milliseconds)&lt;/smbCredentialsIdleTimeout&gt;
+ *
  *  &lt;/optionsProvider&gt;
  * </pre>
  * <h4>Usage example:</h4>
@@ -255,6 +259,9 @@ public class GenericFilesystemOptionsProvider
     private int sftpTimeout;
     private boolean sftpUserDirIsRoot;
 
+    // SMB
+    private long smbCredentialsIdleTimeout;
+
     
     public GenericFilesystemOptionsProvider() {
         super();
@@ -351,6 +358,11 @@ public class GenericFilesystemOptionsProvider
         sftp.setStrictHostKeyChecking(opts, sftpStrictHostKeyChecking);
         sftp.setTimeout(opts, sftpTimeout);
         sftp.setUserDirIsRoot(opts, sftpUserDirIsRoot);
+
+        // SMB
+        SmbFileSystemConfigBuilder smb = 
+                SmbFileSystemConfigBuilder.getInstance();
+        smb.setCredentialsIdleTimeout(opts, smbCredentialsIdleTimeout);
         
         buildOptions(opts);
         this.options = opts;
@@ -649,6 +661,28 @@ public class GenericFilesystemOptionsProvider
         this.sftpUserDirIsRoot = sftpUserDirIsRoot;
     }
 
+    /**
+     * Gets how long (in milliseconds) SMB credentials, resolved once
+     * per server, share and credentials, can remain unused before they
+     * are discarded and resolved again.  Zero (default) keeps them 
+     * until the crawler ends.
+     * @return credentials idle timeout
+     * @since 2.9.0
+     */
+    public long getSmbCredentialsIdleTimeout() {
+        return smbCredentialsIdleTimeout;
+    }
+    /**
+     * Sets how long (in milliseconds) SMB credentials, resolved once
+     * per server, share and credentials, can remain unused before they
+     * are discarded and resolved again.
+     * @param smbCredentialsIdleTimeout credentials idle timeout
+     * @since 2.9.0
+     */
+    public void setSmbCredentialsIdleTimeout(long smbCredentialsIdleTimeout) {
+        this.smbCredentialsIdleTimeout = smbCredentialsIdleTimeout;
+    }
+
     @Override
     public synchronized FileSystemOptions getFilesystemOptions(
             FileObject fileObject) {
@@ -668,6 +702,7 @@ public class GenericFilesystemOptionsProvider
         loadHTTP(xml);
         loadRAM(xml);
         loadSFTP(xml);
+        loadSMB(xml);
     }
     private void loadDefaultFileSystem(XMLConfiguration xml) {
         auth.domain = xml.getString("authDomain", auth.domain);
@@ -770,6 +805,10 @@ public class GenericFilesystemOptionsProvider
         sftpUserDirIsRoot = 
                 xml.getBoolean("sftpUserDirIsRoot", sftpUserDirIsRoot);
     }
+    private void loadSMB(XMLConfiguration xml) {
+        smbCredentialsIdleTimeout = XMLConfigurationUtil.getDuration(
+                xml, "smbCredentialsIdleTimeout", smbCredentialsIdleTimeout);
+    }
         
     @Override
     public void saveToXML(Writer out) throws IOException {
@@ -784,6 +823,7 @@ public class GenericFilesystemOptionsProvider
             saveHTTP(writer);
             saveRAM(writer);
             saveSFTP(writer);
+            saveSMB(writer);
             
             writer.writeEndElement();
             writer.flush();
@@ -874,6 +914,11 @@ public class GenericFilesystemOptionsProvider
         writer.writeElementInteger("sftpTimeout", sftpTimeout);
         writer.writeElementBoolean("sftpUserDirIsRoot", sftpUserDirIsRoot);
     }    
+    private void saveSMB(EnhancedXMLStreamWriter writer) 
+            throws XMLStreamException {
+        writer.writeElementLong(
+                "smbCredentialsIdleTimeout", smbCredentialsIdleTimeout);
+    }    
     
     @Override
     public boolean equals(final Object other) {
@@ -1,4 +1,4 @@
-/* Copyright 2013-2014 Norconex Inc.
+/* Copyright 2013-2018 Norconex Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,8 @@ import com.norconex.collector.core.pipeline.DocumentPipelineContext;
 import com.norconex.collector.core.pipeline.committer.CommitModuleStage;
 import com.norconex.collector.core.pipeline.committer.DocumentChecksumStage;
 import com.norconex.collector.fs.doc.IFileDocumentProcessor;
+import com.norconex.collector.fs.pipeline.stats.TimedStage;
+import com.norconex.commons.lang.pipeline.IPipelineStage;
 import com.norconex.commons.lang.pipeline.Pipeline;
 
 /**
@@ -28,9 +30,14 @@ import com.norconex.commons.lang.pipeline.Pipeline;
 public class FileCommitterPipeline extends Pipeline<DocumentPipelineContext> {
 
     public FileCommitterPipeline() {
-        addStage(new DocumentChecksumStage());
-        addStage(new DocumentPostProcessingStage());
-        addStage(new CommitModuleStage());
+        addStage(timed(new DocumentChecksumStage()));
+        addStage(timed(new DocumentPostProcessingStage()));
+        addStage(timed(new CommitModuleStage()));
+    }
+
+    private static TimedStage<DocumentPipelineContext> timed(
+            IPipelineStage<DocumentPipelineContext> stage) {
+        return new TimedStage<>(stage);
     }
     
     //--- Document Post-Processing ---------------------------------------------
@@ -1,4 +1,4 @@
-/* Copyright 2013-2017 Norconex Inc.
+/* Copyright 2013-2018 Norconex Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -14,17 +14,36 @@
  */
 package com.norconex.collector.fs.pipeline.importer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Semaphore;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.mutable.MutableBoolean;
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.commons.vfs2.Capability;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.provider.zipentry.ZipEntryFileProvider;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
 
 import com.norconex.collector.core.CollectorException;
 import com.norconex.collector.core.checksum.IMetadataChecksummer;
 import com.norconex.collector.core.crawler.event.CrawlerEvent;
 import com.norconex.collector.core.data.BaseCrawlData;
 import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
 import com.norconex.collector.core.pipeline.BasePipelineContext;
 import com.norconex.collector.core.pipeline.ChecksumStageUtil;
 import com.norconex.collector.core.pipeline.importer.DocumentFiltersStage;
@@ -32,13 +51,33 @@ import com.norconex.collector.core.pipeline.importer.ImportModuleStage;
 import com.norconex.collector.core.pipeline.importer.ImporterPipelineContext;
 import com.norconex.collector.core.pipeline.importer.ImporterPipelineUtil;
 import com.norconex.collector.core.pipeline.importer.SaveDocumentStage;
+import com.norconex.collector.core.pipeline.queue.ReferenceFiltersStage;
+import com.norconex.collector.fs.checksum.impl.FileContentChecksummer;
+import com.norconex.collector.fs.checksum.impl.FileMetadataChecksummer;
+import com.norconex.collector.fs.checksum.impl.FileSampleChecksummer;
+import com.norconex.collector.fs.crawler.ContentPrefetcher;
+import com.norconex.collector.fs.crawler.FolderListingThrottle;
+import com.norconex.collector.fs.crawler.FolderWatcher;
+import com.norconex.collector.fs.data.FileCrawlData;
+import com.norconex.collector.fs.data.FileCrawlState;
+import com.norconex.collector.fs.data.SeedMetadata;
 import com.norconex.collector.fs.doc.FileDocument;
 import com.norconex.collector.fs.doc.FileMetadata;
 import com.norconex.collector.fs.doc.IFileDocumentProcessor;
+import com.norconex.collector.fs.fetch.FetcherUtil;
+import com.norconex.collector.fs.fetch.IFileDocumentFetcher;
 import com.norconex.collector.fs.fetch.IFileMetadataFetcher;
+import com.norconex.collector.fs.fetch.ILazyContentTypeFetcher;
 import com.norconex.collector.fs.pipeline.queue.FileQueuePipeline;
+import com.norconex.collector.fs.pipeline.stats.TimedStage;
+import com.norconex.collector.fs.util.FolderChildrenLister;
+import com.norconex.collector.fs.util.FolderChildrenLister.ChildAttributesHandler;
+import com.norconex.collector.fs.util.FolderChildrenLister.ChildHandler;
+import com.norconex.collector.fs.util.LocalFileStat;
 import com.norconex.commons.lang.file.ContentType;
+import com.norconex.commons.lang.io.CachedInputStream;
 import com.norconex.commons.lang.map.Properties;
+import com.norconex.commons.lang.pipeline.IPipelineStage;
 import com.norconex.commons.lang.pipeline.Pipeline;
 
 /**
@@ -47,40 +86,75 @@ import com.norconex.commons.lang.pipeline.Pipeline;
  */
 public class FileImporterPipeline extends Pipeline<ImporterPipelineContext> {
 
+    private static final Logger LOG = 
+            LogManager.getLogger(FileImporterPipeline.class);
+
+    private static final String[] ARCHIVE_EXTENSIONS = 
+            { ".zip", ".jar", ".war", ".ear" };
+
     public FileImporterPipeline(boolean isKeepDownloads) {
-        addStage(new FolderPathsExtractorStage());
-        addStage(new FileMetadataFetcherStage());
-        addStage(new FileMetadataFiltersStage());
-        addStage(new FileMetadataChecksumStage());
-        addStage(new DocumentFetchStage());
+        addStage(timed(new FolderPathsExtractorStage()));
+        addStage(timed(new FileMetadataFetcherStage()));
+        addStage(timed(new FileMetadataFiltersStage()));
+        addStage(timed(new FileMetadataChecksumStage()));
+        addStage(timed(new DocumentFetchStage()));
+        addStage(timed(new FileContentChecksumStage()));
         if (isKeepDownloads) {
-            addStage(new SaveDocumentStage());
+            addStage(timed(new SaveDocumentStage()));
         }
-        addStage(new DocumentFiltersStage());
-        addStage(new DocumentPreProcessingStage());
-        addStage(new ImportModuleStage());
+        addStage(timed(new DocumentFiltersStage()));
+        addStage(timed(new DocumentPreProcessingStage()));
+        addStage(new HandOffImportModuleStage());
+    }
+
+    private static TimedStage<ImporterPipelineContext> timed(
+            IPipelineStage<ImporterPipelineContext> stage) {
+        return new TimedStage<>(stage);
     }
 
     //--- Folder Path Extractor ------------------------------------------------
     // Extract paths to queue them and stop processing this folder
     private static class FolderPathsExtractorStage 
             extends AbstractImporterStage {
+        private final ReferenceFiltersStage referenceFilters = 
+                new ReferenceFiltersStage();
         @Override
         public boolean executeStage(FileImporterPipelineContext ctx) {
+            // Seed metadata is only needed until the file is processed,
+            // so it is not kept with processed crawl data.
+            SeedMetadata seed = 
+                    FileCrawlData.getSeedMetadata(ctx.getCrawlData());
+            if (seed != null) {
+                ((FileCrawlData) ctx.getCrawlData()).setSeedMetadata(null);
+                ctx.setSeedMetadata(seed);
+                if (seed.getType() == FileType.FILE && !isArchive(ctx)) {
+                    return true;
+                }
+            }
             try {
                 FileObject file = ctx.getFileObject();
-                if (file.getType() == FileType.FOLDER) {
-                    FileObject[] files = file.getChildren();
-                    for (FileObject childFile : files) {
-                        BaseCrawlData crawlData = new BaseCrawlData(
-                                childFile.getURL().toString());
-                        BasePipelineContext newContext = 
-                                new BasePipelineContext(ctx.getCrawler(), 
-                                        ctx.getCrawlDataStore(), crawlData);
-                        new FileQueuePipeline().execute(newContext);
+                // Local files: all we need to know about them in one call
+                LocalFileStat localStat = LocalFileStat.stat(file);
+                ctx.setLocalFileStat(localStat);
+                FileType type = localStat != null 
+                        ? localStat.getType() : file.getType();
+                if (type == FileType.FOLDER) {
+                    // before listing, so no change is missed
+                    FolderWatcher watcher = 
+                            ctx.getCrawler().getFolderWatcher();
+                    if (watcher != null) {
+                        watcher.watch(file);
                     }
+                    queueFolder(ctx, file, localStat);
                     return false;
                 }
+                if (type == FileType.FILE && isArchive(ctx)) {
+                    FileObject archive = openArchive(ctx, file);
+                    if (archive != null) {
+                        queueFolder(ctx, archive, localStat);
+                        return false;
+                    }
+                }
                 return true;
             } catch (FileSystemException e) {
                 ctx.getCrawlData().setState(CrawlState.ERROR);
@@ -91,9 +165,296 @@ public class FileImporterPipeline extends Pipeline<ImporterPipelineContext> {
                                 + ctx.getCrawlData().getReference(), e);
             }
         }
+        private boolean isArchive(FileImporterPipelineContext ctx) {
+            return ctx.getConfig().isArchiveEntries() 
+                    && StringUtils.endsWithAny(StringUtils.lowerCase(
+                            ctx.getCrawlData().getReference(), Locale.ENGLISH),
+                                    ARCHIVE_EXTENSIONS);
+        }
+        // Archive entries are queued like folder children, with only
+        // the archive central directory being read. The file manager
+        // keeps the archive file system, so queued entries are resolved
+        // without reading it again. Returns null if the archive has to be
+        // processed as a regular file.
+        private FileObject openArchive(
+                FileImporterPipelineContext ctx, FileObject file) {
+            String ref = ctx.getCrawlData().getReference();
+            if (!file.getFileSystem().hasCapability(
+                    Capability.RANDOM_ACCESS_READ)) {
+                LOG.debug("No random access to archive, processing it as "
+                        + "a regular file: " + ref);
+                return null;
+            }
+            try {
+                return ctx.getCrawler().getFileManager().createFileSystem(
+                        ZipEntryFileProvider.SCHEME, file);
+            } catch (FileSystemException e) {
+                String msg = "Cannot read archive entries, processing it "
+                        + "as a regular file: " + ref;
+                LOG.warn(msg + " (" + e.getMessage() + ")");
+                LOG.debug(msg, e);
+                return null;
+            }
+        }
+        private void queueFolder(FileImporterPipelineContext ctx,
+                FileObject folder, LocalFileStat localStat)
+                        throws FileSystemException {
+            FileQueuePipeline queuePipeline = new FileQueuePipeline(
+                    ctx.getCrawler().createQueueBatchWriter(
+                            ctx.getCrawlDataStore()));
+            try {
+                queueChildren(ctx, folder, localStat, queuePipeline);
+            } finally {
+                queuePipeline.flush();
+            }
+        }
+        private void queueChildren(FileImporterPipelineContext ctx,
+                FileObject folder, LocalFileStat localStat, 
+                FileQueuePipeline queuePipeline) throws FileSystemException {
+            if (ctx.getConfig().isFolderStreaming()) {
+                // Listed twice with checksums: once to compute it, once 
+                // to stream children
+                boolean unmodified = ctx.getConfig().isFolderChecksum()
+                        && checkFolder(ctx, folder, localStat, null);
+                queueChildrenInBatches(ctx, folder, unmodified);
+            } else if (ctx.getConfig().isFolderChecksum()) {
+                queueModifiedChildren(ctx, folder, localStat, queuePipeline);
+            } else {
+                FileObject[] files = folder.getChildren();
+                long count = 0;
+                for (FileObject childFile : files) {
+                    queueChild(ctx, queuePipeline, 
+                            childFile.getURL().toString());
+                    throttle(ctx, queuePipeline, ++count);
+                }
+            }
+        }
+        // Pauses queueing children of a folder listed all at once while
+        // too many references are queued, checked every folder batch
+        // size children.  The listing position is not saved.
+        private void throttle(FileImporterPipelineContext ctx, 
+                FileQueuePipeline queuePipeline, long count) {
+            FolderListingThrottle throttle = 
+                    ctx.getCrawler().getFolderListingThrottle();
+            if (throttle == null || count % Math.max(
+                    1, ctx.getConfig().getFolderBatchSize()) != 0) {
+                return;
+            }
+            queuePipeline.flush();
+            if (throttle.isHighWater(ctx.getCrawlDataStore())) {
+                throttle.pause(ctx.getCrawlDataStore(), 
+                        ctx.getCrawlData().getReference());
+            }
+        }
+        // Files of a folder unchanged since the previous run are carried 
+        // forward instead of being queued. Sub-folders are always queued.
+        private void queueModifiedChildren(FileImporterPipelineContext ctx,
+                FileObject folder, LocalFileStat localStat,
+                FileQueuePipeline queuePipeline) throws FileSystemException {
+            Map<String, FileType> children = new LinkedHashMap<>();
+            boolean unmodified = checkFolder(ctx, folder, localStat, children);
+            long count = 0;
+            for (Entry<String, FileType> child : children.entrySet()) {
+                queueChild(ctx, queuePipeline, 
+                        child.getKey(), child.getValue(), unmodified);
+                throttle(ctx, queuePipeline, ++count);
+            }
+        }
+        // Compares the folder checksum with the one from the previous run
+        // and sets the folder state accordingly. Children are collected
+        // in the given map, if not null.
+        private boolean checkFolder(FileImporterPipelineContext ctx,
+                FileObject folder, LocalFileStat localStat, 
+                final Map<String, FileType> children) 
+                        throws FileSystemException {
+            final FolderChecksum checksum = new FolderChecksum(
+                    localStat != null ? localStat.getLastModified()
+                            : folder.getContent().getLastModifiedTime());
+            FolderChildrenLister.listChildren(
+                    folder, new ChildAttributesHandler() {
+                @Override
+                public boolean childFound(String childReference,
+                        FileType childType, long size, long lastModified) {
+                    checksum.add(childReference, childType, 
+                            size, lastModified);
+                    if (children != null) {
+                        children.put(childReference, childType);
+                    }
+                    return true;
+                }
+            });
+
+            // A good state keeps the folder checksum for the next run
+            String newChecksum = checksum.toString();
+            BaseCrawlData crawlData = ctx.getCrawlData();
+            crawlData.setMetaChecksum(newChecksum);
+            BaseCrawlData cachedData = ctx.getCachedCrawlData();
+            if (cachedData == null) {
+                crawlData.setState(CrawlState.NEW);
+                return false;
+            }
+            if (newChecksum.equals(cachedData.getMetaChecksum())) {
+                crawlData.setState(CrawlState.UNMODIFIED);
+                return true;
+            }
+            crawlData.setState(CrawlState.MODIFIED);
+            return false;
+        }
+        // Marks a file from the previous run as processed and unmodified.
+        // Returns false if it has to be queued instead: it was not valid 
+        // on the previous run, or metadata filters need its metadata.
+        private boolean carryForward(
+                FileImporterPipelineContext ctx, String reference) {
+            ICrawlDataStore store = ctx.getCrawlDataStore();
+            ICrawlData cachedData = store.getCached(reference);
+            if (cachedData == null 
+                    || ctx.getConfig().getMetadataFilters() != null) {
+                return false;
+            }
+            if (store.isQueued(reference) || store.isActive(reference)
+                    || store.isProcessed(reference)) {
+                return true;
+            }
+            // Same as when queued: rejected files are not processed
+            if (!referenceFilters.execute(new BasePipelineContext(
+                    ctx.getCrawler(), store, new BaseCrawlData(reference)))) {
+                return true;
+            }
+            BaseCrawlData crawlData = (BaseCrawlData) cachedData.clone();
+            crawlData.setState(CrawlState.UNMODIFIED);
+            store.processed(crawlData);
+            ctx.fireCrawlerEvent(
+                    CrawlerEvent.REJECTED_UNMODIFIED, crawlData, this);
+            return true;
+        }
+        private void queueChildrenInBatches(
+                final FileImporterPipelineContext ctx, FileObject folder,
+                boolean unmodified) throws FileSystemException {
+            FolderListingThrottle throttle = 
+                    ctx.getCrawler().getFolderListingThrottle();
+            String folderRef = ctx.getCrawlData().getReference();
+            if (throttle == null) {
+                queueChildrenInBatches(
+                        ctx, folder, unmodified, null, 0, null);
+                return;
+            }
+            // Skip children queued before the crawler was stopped, unless
+            // the listing order changed.
+            long skip = throttle.getCursorCount(folderRef);
+            if (!queueChildrenInBatches(ctx, folder, unmodified, throttle, 
+                    skip, throttle.getCursorLastChild(folderRef))) {
+                LOG.info("Folder listing order changed since crawler was "
+                        + "stopped, listing all children again: " 
+                        + folderRef);
+                queueChildrenInBatches(
+                        ctx, folder, unmodified, throttle, 0, null);
+            }
+            throttle.done(folderRef);
+        }
+        // Each batch of children is written to the crawl data store at 
+        // once, before checking the queue size.
+        // Returns false if the child at the skip position is not the 
+        // expected one, or if there are fewer children than to skip.
+        private boolean queueChildrenInBatches(
+                final FileImporterPipelineContext ctx, FileObject folder,
+                final boolean unmodified,
+                final FolderListingThrottle throttle, final long skip, 
+                final String skipLastChild) throws FileSystemException {
+            final int batchSize = 
+                    Math.max(1, ctx.getConfig().getFolderBatchSize());
+            final FileQueuePipeline queuePipeline = new FileQueuePipeline(
+                    ctx.getCrawler().createQueueBatchWriter(
+                            ctx.getCrawlDataStore(), batchSize));
+            final String folderRef = ctx.getCrawlData().getReference();
+            final MutableLong count = new MutableLong();
+            final MutableBoolean skipMismatch = new MutableBoolean();
+            try {
+                FolderChildrenLister.listChildren(folder, new ChildHandler() {
+                    @Override
+                    public boolean childFound(
+                            String childReference, FileType childType) {
+                        count.increment();
+                        if (count.longValue() <= skip) {
+                            if (count.longValue() == skip 
+                                && !childReference.equals(skipLastChild)) {
+                                skipMismatch.setTrue();
+                                return false;
+                            }
+                            return true;
+                        }
+                        queueChild(ctx, queuePipeline, 
+                                childReference, childType, unmodified);
+                        if ((count.longValue() - skip) % batchSize == 0) {
+                            queuePipeline.flush();
+                            if (throttle != null && throttle.isHighWater(
+                                    ctx.getCrawlDataStore())) {
+                                throttle.pause(ctx.getCrawlDataStore(), 
+                                        folderRef, count.longValue(), 
+                                        childReference);
+                            }
+                        }
+                        return true;
+                    }
+                });
+            } finally {
+                queuePipeline.flush();
+            }
+            return skipMismatch.isFalse() && count.longValue() >= skip;
+        }
+        // Files of an unmodified folder are carried forward when possible
+        private void queueChild(FileImporterPipelineContext ctx, 
+                FileQueuePipeline queuePipeline, String reference,
+                FileType type, boolean unmodifiedFolder) {
+            if (!unmodifiedFolder || type == FileType.FOLDER
+                    || !carryForward(ctx, reference)) {
+                queueChild(ctx, queuePipeline, reference);
+            }
+        }
+        private void queueChild(FileImporterPipelineContext ctx, 
+                FileQueuePipeline queuePipeline, String reference) {
+            BaseCrawlData crawlData = new BaseCrawlData(reference);
+            BasePipelineContext newContext = 
+                    new BasePipelineContext(ctx.getCrawler(), 
+                            ctx.getCrawlDataStore(), crawlData);
+            queuePipeline.execute(newContext);
+        }
     }    
 
     
+    // Checksum of a folder last modified date and of its children 
+    // attributes, regardless of the order they are listed in.
+    private static class FolderChecksum {
+        private final long lastModified;
+        private final MessageDigest digest;
+        private int count;
+        private long sumHigh;
+        private long sumLow;
+        public FolderChecksum(long lastModified) {
+            super();
+            this.lastModified = lastModified;
+            try {
+                this.digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new CollectorException(
+                        "MD5 algorithm not available.", e);
+            }
+        }
+        public void add(String reference, FileType type, 
+                long size, long lastModified) {
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest((reference 
+                    + '|' + type + '|' + size + '|' + lastModified)
+                            .getBytes(StandardCharsets.UTF_8)));
+            sumHigh += hash.getLong();
+            sumLow += hash.getLong();
+            count++;
+        }
+        @Override
+        public String toString() {
+            return "folder:" + lastModified + ":" + count + ":" 
+                    + Long.toHexString(sumHigh) + Long.toHexString(sumLow);
+        }
+    }
+
     //--- Metadata filters -----------------------------------------------------
     private static class FileMetadataFiltersStage 
             extends AbstractImporterStage {
@@ -134,48 +495,74 @@ public class FileImporterPipeline extends Pipeline<ImporterPipelineContext> {
             extends AbstractImporterStage {
         @Override
         public boolean executeStage(FileImporterPipelineContext ctx) {
-            BaseCrawlData crawlData = ctx.getCrawlData();
-            IFileMetadataFetcher metaFetcher = 
-                    ctx.getConfig().getMetadataFetcher();
-            FileMetadata metadata = ctx.getMetadata();
+            // Trust seed metadata to find out whether the file was modified
+            // when that is all the checksum is made of. Metadata is
+            // fetched once the file is known to be modified.
+            SeedMetadata seed = ctx.getSeedMetadata();
+            if (seed != null && seed.isComplete()
+                    && ctx.getConfig().getMetadataFilters() == null
+                    && ctx.getConfig().getMetadataChecksummer() 
+                            instanceof FileMetadataChecksummer) {
+                FileMetadata metadata = ctx.getMetadata();
+                metadata.addLong(FileMetadata.COLLECTOR_SIZE, seed.getSize());
+                metadata.addLong(FileMetadata.COLLECTOR_LASTMODIFIED, 
+                        seed.getLastModified());
+                ctx.getCrawlData().setState(FileCrawlState.NEW);
+                ctx.setMetadataDeferred(true);
+                return true;
+            }
+            return fetchMetadata(ctx);
+        }
+    }    
 
-            //TODO consider passing original metadata instead? 
-            Properties newMeta = new Properties(
-                    metadata.isCaseInsensitiveKeys());
-            FileObject fileObject = ctx.getFileObject();
-            
-            CrawlState state = metaFetcher.fetchMetadada(fileObject, newMeta);
+    private static boolean fetchMetadata(FileImporterPipelineContext ctx) {
+        BaseCrawlData crawlData = ctx.getCrawlData();
+        IFileMetadataFetcher metaFetcher = 
+                ctx.getConfig().getMetadataFetcher();
+        FileMetadata metadata = ctx.getMetadata();
 
-            metadata.putAll(newMeta);
+        //TODO consider passing original metadata instead? 
+        Properties newMeta = new Properties(
+                metadata.isCaseInsensitiveKeys());
+        FileObject fileObject = ctx.getFileObject();
+        
+        CrawlState state = FetcherUtil.fetchMetadata(
+                metaFetcher, fileObject, ctx.getLocalFileStat(), newMeta);
 
-            //--- Apply Metadata to document ---
-            // TODO are there headers to enhance first based on attributes
-            // (like http collector)?
-            FileDocument doc = ctx.getDocument();
-            if (doc.getContentType() == null) {
-                doc.setContentType(ContentType.valueOf(metadata.getString(
-                        FileMetadata.COLLECTOR_CONTENT_TYPE)));
-                doc.setContentEncoding(metadata.getString(
-                        FileMetadata.COLLECTOR_CONTENT_ENCODING));
-            }
+        metadata.putAll(newMeta);
 
-            crawlData.setState(state);
-            if (state.isGoodState()) {
-                ctx.fireCrawlerEvent(CrawlerEvent.DOCUMENT_METADATA_FETCHED, 
-                        crawlData, fileObject);
+        //--- Apply Metadata to document ---
+        // TODO are there headers to enhance first based on attributes
+        // (like http collector)?
+        applyContentInfo(ctx);
+
+        crawlData.setState(state);
+        if (state.isGoodState()) {
+            ctx.fireCrawlerEvent(CrawlerEvent.DOCUMENT_METADATA_FETCHED, 
+                    crawlData, fileObject);
+        } else {
+            String eventType;
+            if (state.isOneOf(CrawlState.NOT_FOUND)) {
+                eventType = CrawlerEvent.REJECTED_NOTFOUND;
             } else {
-                String eventType;
-                if (state.isOneOf(CrawlState.NOT_FOUND)) {
-                    eventType = CrawlerEvent.REJECTED_NOTFOUND;
-                } else {
-                    eventType = CrawlerEvent.REJECTED_BAD_STATUS;
-                }
-                ctx.fireCrawlerEvent(eventType, crawlData, fileObject);
-                return false;
+                eventType = CrawlerEvent.REJECTED_BAD_STATUS;
             }
-            return true;
+            ctx.fireCrawlerEvent(eventType, crawlData, fileObject);
+            return false;
         }
-    }    
+        return true;
+    }
+
+    private static void applyContentInfo(FileImporterPipelineContext ctx) {
+        FileDocument doc = ctx.getDocument();
+        FileMetadata metadata = ctx.getMetadata();
+        if (doc.getContentType() == null) {
+            doc.setContentType(ContentType.valueOf(metadata.getString(
+                    FileMetadata.COLLECTOR_CONTENT_TYPE)));
+            doc.setContentEncoding(metadata.getString(
+                    FileMetadata.COLLECTOR_CONTENT_ENCODING));
+        }
+    }
 
     //--- HTTP Document Checksum -----------------------------------------------
     private static class FileMetadataChecksumStage 
@@ -186,17 +573,77 @@ public class FileImporterPipeline extends Pipeline<ImporterPipelineContext> {
             
             IMetadataChecksummer check = 
                     ctx.getConfig().getMetadataChecksummer();
-            if (check != null) {
+            // content checksums are resolved once content is fetched
+            if (check != null && !(check instanceof FileContentChecksummer)) {
+                if (check instanceof FileSampleChecksummer) {
+                    hashSamples((FileSampleChecksummer) check, ctx);
+                }
                 String newChecksum = 
                         check.createMetadataChecksum(ctx.getMetadata());
-                return ChecksumStageUtil.resolveMetaChecksum(
+                boolean modified = ChecksumStageUtil.resolveMetaChecksum(
                         newChecksum, ctx, this);
+                if (modified && ctx.isMetadataDeferred()) {
+                    // replaced with the fetched ones
+                    ctx.getMetadata().remove(FileMetadata.COLLECTOR_SIZE);
+                    ctx.getMetadata().remove(
+                            FileMetadata.COLLECTOR_LASTMODIFIED);
+                    ctx.setMetadataDeferred(false);
+                    return fetchMetadata(ctx);
+                }
+                return modified;
             }
             return true;
         }
+        private void hashSamples(FileSampleChecksummer check,
+                FileImporterPipelineContext ctx) {
+            FileMetadata metadata = ctx.getMetadata();
+            FileObject fileObject = ctx.getFileObject();
+            try {
+                String sizeValue = 
+                        metadata.getString(FileMetadata.COLLECTOR_SIZE);
+                long size = sizeValue != null ? Long.parseLong(sizeValue)
+                        : fileObject.getContent().getSize();
+                metadata.setString(FileMetadata.COLLECTOR_SAMPLE_HASH,
+                        check.hashSamples(fileObject, size));
+            } catch (IOException e) {
+                throw new CollectorException("Cannot sample content: " 
+                        + ctx.getCrawlData().getReference(), e);
+            }
+        }
     }   
     
 
+    //--- File Content Checksum ------------------------------------------------
+    // Hashes raw content before it gets imported
+    private static class FileContentChecksumStage 
+            extends AbstractImporterStage {
+        @Override
+        public boolean executeStage(FileImporterPipelineContext ctx) {
+            IMetadataChecksummer check = 
+                    ctx.getConfig().getMetadataChecksummer();
+            if (!(check instanceof FileContentChecksummer)) {
+                return true;
+            }
+            CachedInputStream content = ctx.getDocument().getContent();
+            try {
+                // may have been read already by the fetcher
+                content.rewind();
+                String hash = ((FileContentChecksummer) check)
+                        .hashContent(content);
+                content.rewind();
+                ctx.getMetadata().setString(
+                        FileMetadata.COLLECTOR_CONTENT_HASH, hash);
+            } catch (IOException e) {
+                throw new CollectorException("Cannot hash content: " 
+                        + ctx.getCrawlData().getReference(), e);
+            }
+            String newChecksum = check.createMetadataChecksum(
+                    ctx.getMetadata());
+            return ChecksumStageUtil.resolveMetaChecksum(
+                    newChecksum, ctx, this);
+        }
+    }
+
     //--- Document Fetch -------------------------------------------------------
     private static class DocumentFetchStage 
             extends AbstractImporterStage {
@@ -205,8 +652,33 @@ public class FileImporterPipeline extends Pipeline<ImporterPipelineContext> {
             BaseCrawlData crawlData = ctx.getCrawlData();
             FileDocument doc = ctx.getDocument();
             FileObject fileObject = ctx.getFileObject();
-            CrawlState state = ctx.getConfig().getDocumentFetcher()
-                    .fetchDocument(ctx.getFileObject(), doc);
+
+            // Deferred content type detection, now that it is needed
+            IFileMetadataFetcher metaFetcher = 
+                    ctx.getConfig().getMetadataFetcher();
+            if (metaFetcher instanceof ILazyContentTypeFetcher
+                    && ((ILazyContentTypeFetcher) 
+                            metaFetcher).isLazyContentType()
+                    && !ctx.getMetadata().containsKey(
+                            FileMetadata.COLLECTOR_CONTENT_TYPE)) {
+                ((ILazyContentTypeFetcher) metaFetcher).fetchContentInfo(
+                        fileObject, ctx.getMetadata());
+                applyContentInfo(ctx);
+            }
+
+            IFileDocumentFetcher docFetcher = 
+                    ctx.getConfig().getDocumentFetcher();
+            ContentPrefetcher prefetcher = 
+                    ctx.getCrawler().getContentPrefetcher();
+            CrawlState state = null;
+            if (prefetcher != null) {
+                // already fetched by the same document fetcher
+                state = prefetcher.take(doc);
+            }
+            if (state == null) {
+                state = FetcherUtil.fetchDocument(docFetcher, 
+                        fileObject, ctx.getLocalFileStat(), doc);
+            }
             crawlData.setCrawlDate(new Date());
             crawlData.setContentType(doc.getContentType());
             crawlData.setState(state);
@@ -227,5 +699,38 @@ public class FileImporterPipeline extends Pipeline<ImporterPipelineContext> {
             return true;
         }
     }
+
+    //--- Import Module (hand-off) ---------------------------------------------
+    // Hands off the document to an import thread when configured to do
+    // so, ending this pipeline: the import thread imports and commits it.
+    // Else waits for an import permit, if a maximum number of importing 
+    // threads is set.  Only importing is timed, not waiting for it.
+    private static class HandOffImportModuleStage 
+            extends AbstractImporterStage {
+        private final IPipelineStage<ImporterPipelineContext> 
+                importModuleStage = timed(new ImportModuleStage());
+        @Override
+        public boolean executeStage(FileImporterPipelineContext ctx) {
+            if (ctx.getCrawler().handOffImport(ctx, importModuleStage)) {
+                return false;
+            }
+            Semaphore permits = ctx.getCrawler().getImportPermits();
+            if (permits == null) {
+                return importModuleStage.execute(ctx);
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CollectorException("Interrupted while waiting "
+                        + "to import: " + ctx.getCrawlData().getReference(), e);
+            }
+            try {
+                return importModuleStage.execute(ctx);
+            } finally {
+                permits.release();
+            }
+        }
+    }
 }
 
@@ -25,8 +25,10 @@ import com.norconex.collector.core.data.store.ICrawlDataStore;
 import com.norconex.collector.core.pipeline.importer.ImporterPipelineContext;
 import com.norconex.collector.fs.crawler.FilesystemCrawler;
 import com.norconex.collector.fs.crawler.FilesystemCrawlerConfig;
+import com.norconex.collector.fs.data.SeedMetadata;
 import com.norconex.collector.fs.doc.FileDocument;
 import com.norconex.collector.fs.doc.FileMetadata;
+import com.norconex.collector.fs.util.LocalFileStat;
 
 /**
  * @author Pascal Essiembre
@@ -35,6 +37,9 @@ import com.norconex.collector.fs.doc.FileMetadata;
 public class FileImporterPipelineContext extends ImporterPipelineContext {
 
     private FileObject fileObject;
+    private LocalFileStat localFileStat;
+    private SeedMetadata seedMetadata;
+    private boolean metadataDeferred;
     
     /**
      * Constructor creating a copy of supplied context.
@@ -87,6 +92,66 @@ public class FileImporterPipelineContext extends ImporterPipelineContext {
         this.fileObject = fileObject;
     }
 
+    /**
+     * Gets the attributes of a local file, read once at the beginning
+     * of the pipeline so that later stages do not have to access the 
+     * file again to obtain them.
+     * @return local file attributes, or <code>null</code> if the
+     *         file is not a local file
+     * @since 2.9.0
+     */
+    public LocalFileStat getLocalFileStat() {
+        return localFileStat;
+    }
+    /**
+     * Sets the attributes of a local file.
+     * @param localFileStat local file attributes
+     * @since 2.9.0
+     */
+    public void setLocalFileStat(LocalFileStat localFileStat) {
+        this.localFileStat = localFileStat;
+    }
+
+    /**
+     * Gets the file size, last modified date and type read from a seed
+     * file for this file, if any.
+     * @return seed metadata, or <code>null</code> if none
+     * @since 2.9.0
+     */
+    public SeedMetadata getSeedMetadata() {
+        return seedMetadata;
+    }
+    /**
+     * Sets the file size, last modified date and type read from a seed
+     * file for this file.
+     * @param seedMetadata seed metadata
+     * @since 2.9.0
+     */
+    public void setSeedMetadata(SeedMetadata seedMetadata) {
+        this.seedMetadata = seedMetadata;
+    }
+
+    /**
+     * Gets whether fetching metadata was deferred until the file is known
+     * to be modified, its metadata only holding the file size and last
+     * modified date from seed metadata until then.
+     * @return <code>true</code> if metadata fetching was deferred
+     * @since 2.9.0
+     */
+    public boolean isMetadataDeferred() {
+        return metadataDeferred;
+    }
+    /**
+     * Sets whether fetching metadata was deferred until the file is known
+     * to be modified.
+     * @param metadataDeferred <code>true</code> if metadata fetching
+     *        was deferred
+     * @since 2.9.0
+     */
+    public void setMetadataDeferred(boolean metadataDeferred) {
+        this.metadataDeferred = metadataDeferred;
+    }
+
     public FileMetadata getMetadata() {
         return getDocument().getMetadata();
     }
@@ -1,4 +1,4 @@
-/* Copyright 2013-2014 Norconex Inc.
+/* Copyright 2013-2018 Norconex Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -14,9 +14,14 @@
  */
 package com.norconex.collector.fs.pipeline.queue;
 
+import org.apache.commons.lang3.StringUtils;
+
 import com.norconex.collector.core.pipeline.BasePipelineContext;
 import com.norconex.collector.core.pipeline.queue.QueueReferenceStage;
 import com.norconex.collector.core.pipeline.queue.ReferenceFiltersStage;
+import com.norconex.collector.fs.crawler.ContentPrefetcher;
+import com.norconex.collector.fs.crawler.FilesystemCrawler;
+import com.norconex.commons.lang.pipeline.IPipelineStage;
 import com.norconex.commons.lang.pipeline.Pipeline;
 
 /**
@@ -30,10 +35,78 @@ import com.norconex.commons.lang.pipeline.Pipeline;
  */
 public final class FileQueuePipeline extends Pipeline<BasePipelineContext> {
 
+    private final QueueBatchWriter batchWriter;
+
     public FileQueuePipeline() {
+        this(null);
+    }
+    /**
+     * Creates a queue pipeline adding accepted references to a batch
+     * instead of queueing them one by one.  The same pipeline can be
+     * executed for every reference of the batch.
+     * @param batchWriter batch writer, or <code>null</code> to queue
+     *        references one by one
+     * @since 2.9.0
+     */
+    public FileQueuePipeline(QueueBatchWriter batchWriter) {
         super();
+        this.batchWriter = batchWriter;
         addStage(new ReferenceFiltersStage());
-        addStage(new QueueReferenceStage());
+        if (batchWriter != null) {
+            addStage(new QueueBatchStage(batchWriter));
+        } else {
+            addStage(new QueueReferenceStage());
+            addStage(new ContentPrefetchStage());
+        }
+    }
+
+    /**
+     * Writes references batched so far to the crawl data store, if any.
+     * Does nothing when references are queued one by one.
+     * @since 2.9.0
+     */
+    public void flush() {
+        if (batchWriter != null) {
+            batchWriter.flush();
+        }
+    }
+
+    //--- Queue Batch ----------------------------------------------------------
+    // Queued references are prefetched once the batch is written.
+    private static class QueueBatchStage
+            implements IPipelineStage<BasePipelineContext> {
+        private final QueueBatchWriter batchWriter;
+        public QueueBatchStage(QueueBatchWriter batchWriter) {
+            super();
+            this.batchWriter = batchWriter;
+        }
+        @Override
+        public boolean execute(BasePipelineContext ctx) {
+            if (StringUtils.isNotBlank(ctx.getCrawlData().getReference())) {
+                batchWriter.add(ctx.getCrawlData());
+            }
+            return true;
+        }
+    }
+
+    //--- Content Prefetch -----------------------------------------------------
+    // Only new files are prefetched, others may turn out unmodified.
+    // Also used for references queued in batches.
+    /*default*/ static class ContentPrefetchStage
+            implements IPipelineStage<BasePipelineContext> {
+        @Override
+        public boolean execute(BasePipelineContext ctx) {
+            ContentPrefetcher prefetcher = 
+                    ((FilesystemCrawler) ctx.getCrawler())
+                            .getContentPrefetcher();
+            String ref = ctx.getCrawlData().getReference();
+            if (prefetcher != null 
+                    && ctx.getCrawlDataStore().isQueued(ref)
+                    && ctx.getCrawlDataStore().getCached(ref) == null) {
+                prefetcher.prefetch(ref);
+            }
+            return true;
+        }
     }
 }
 
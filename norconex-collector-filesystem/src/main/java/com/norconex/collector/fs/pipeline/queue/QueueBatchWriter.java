@@ -0,0 +1,157 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.queue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.norconex.collector.core.crawler.event.CrawlerEvent;
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.core.pipeline.BasePipelineContext;
+import com.norconex.collector.core.pipeline.queue.QueueReferenceStage;
+import com.norconex.collector.fs.crawler.FilesystemCrawler;
+import com.norconex.collector.fs.data.store.IBatchQueueCrawlDataStore;
+import com.norconex.collector.fs.pipeline.queue.FileQueuePipeline.ContentPrefetchStage;
+
+/**
+ * Accumulates references accepted by the queue pipeline and writes them
+ * to the crawl data store in batches, with a single batch write when
+ * the store is an {@link IBatchQueueCrawlDataStore}.  Otherwise, each
+ * reference is queued by the same stages as references queued one by one.
+ * A batch is written once it holds the configured number of references,
+ * or by a timer once the configured timeout elapsed since it was started.
+ * Whatever is left must be written with {@link #flush()} (e.g., once a 
+ * folder is listed).
+ * Meant to be used by a single thread, for one folder at a time.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class QueueBatchWriter {
+
+    private static final Logger LOG = 
+            LogManager.getLogger(QueueBatchWriter.class);
+
+    private final FilesystemCrawler crawler;
+    private final ICrawlDataStore crawlDataStore;
+    private final int batchSize;
+    private final long timeout;
+    private final ScheduledExecutorService timer;
+    // keyed by reference, so a batch never holds the same one twice
+    private final Map<String, ICrawlData> batch = new LinkedHashMap<>();
+    private final QueueReferenceStage queueStage = new QueueReferenceStage();
+    private final ContentPrefetchStage prefetchStage = 
+            new ContentPrefetchStage();
+    private ScheduledFuture<?> timeoutFlush;
+
+    /**
+     * Constructor.
+     * @param crawler the crawler
+     * @param crawlDataStore crawl data store
+     * @param batchSize maximum number of references per batch
+     * @param timeout milliseconds after which a started batch is written
+     * @param timer timer writing batches once timed out, or 
+     *        <code>null</code> to only write them when full or flushed
+     */
+    public QueueBatchWriter(FilesystemCrawler crawler,
+            ICrawlDataStore crawlDataStore, int batchSize, long timeout,
+            ScheduledExecutorService timer) {
+        super();
+        this.crawler = crawler;
+        this.crawlDataStore = crawlDataStore;
+        this.batchSize = Math.max(1, batchSize);
+        this.timeout = timeout;
+        this.timer = timer;
+    }
+
+    /**
+     * Adds crawl data to be queued, unless its reference is already
+     * queued, active or processed when the batch is written.
+     * @param crawlData crawl data
+     */
+    public synchronized void add(ICrawlData crawlData) {
+        batch.put(crawlData.getReference(), crawlData);
+        if (batch.size() >= batchSize || timeout <= 0) {
+            flush();
+        } else if (timeoutFlush == null && timer != null) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Writes references added so far to the crawl data store.
+     */
+    public synchronized void flush() {
+        if (timeoutFlush != null) {
+            timeoutFlush.cancel(false);
+            timeoutFlush = null;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<ICrawlData> crawlDataBatch = new ArrayList<>(batch.values());
+        batch.clear();
+        if (!(crawlDataStore instanceof IBatchQueueCrawlDataStore)) {
+            for (ICrawlData crawlData : crawlDataBatch) {
+                BasePipelineContext ctx = newContext(crawlData);
+                queueStage.execute(ctx);
+                prefetchStage.execute(ctx);
+            }
+            return;
+        }
+        List<ICrawlData> queued = ((IBatchQueueCrawlDataStore)
+                crawlDataStore).queueBatch(crawlDataBatch);
+        for (ICrawlData crawlData : queued) {
+            BasePipelineContext ctx = newContext(crawlData);
+            ctx.fireCrawlerEvent(CrawlerEvent.DOCUMENT_QUEUED, crawlData, this);
+            prefetchStage.execute(ctx);
+        }
+    }
+
+    private BasePipelineContext newContext(ICrawlData crawlData) {
+        return new BasePipelineContext(
+                crawler, crawlDataStore, (BaseCrawlData) crawlData);
+    }
+
+    // Batches are written when full or flushed anyway, so a timer 
+    // not accepting tasks (crawler stopping) is not an issue.
+    private void scheduleFlush() {
+        try {
+            timeoutFlush = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (RuntimeException e) {
+                        LOG.error(crawler.getId() 
+                                + ": Could not queue references.", e);
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Batch not scheduled to be written.", e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Execution statistics of filesystem pipeline stages, per stage and
+ * file system scheme.  Each statistics entry is registered as a JMX
+ * MBean named
+ * <code>com.norconex.collector.fs:type=PipelineStage,crawler=(crawler
+ * id),stage=(stage name),scheme=(scheme)</code>.
+ * A summary can also be logged at regular intervals.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class PipelineStats {
+
+    private static final Logger LOG =
+            LogManager.getLogger(PipelineStats.class);
+
+    private static final String JMX_DOMAIN = "com.norconex.collector.fs";
+
+    private final String crawlerId;
+    private final ConcurrentMap<String, StageStats> stats =
+            new ConcurrentHashMap<>();
+    private final List<ObjectName> mbeanNames =
+            Collections.synchronizedList(new ArrayList<ObjectName>());
+    private final ScheduledExecutorService logScheduler;
+
+    /**
+     * Constructor.
+     * @param crawlerId crawler id
+     * @param logInterval milliseconds between summaries logged
+     *        (0 to not log)
+     */
+    public PipelineStats(final String crawlerId, long logInterval) {
+        super();
+        this.crawlerId = crawlerId;
+        if (logInterval > 0) {
+            logScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, crawlerId + "#stats");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            logScheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    logSummary();
+                }
+            }, logInterval, logInterval, TimeUnit.MILLISECONDS);
+        } else {
+            logScheduler = null;
+        }
+    }
+
+    /**
+     * Records the execution of a pipeline stage for a file reference.
+     * @param stage stage name
+     * @param reference file reference, from which the scheme is taken
+     * @param nanos execution time in nanoseconds
+     */
+    public void record(String stage, String reference, long nanos) {
+        getStageStats(stage, toScheme(reference)).record(nanos);
+    }
+
+    /**
+     * Gets execution statistics of a stage for a file system scheme,
+     * creating and registering them if they do not exist yet.
+     * @param stage stage name
+     * @param scheme file system scheme
+     * @return stage statistics
+     */
+    public StageStats getStageStats(String stage, String scheme) {
+        String key = stage + "|" + scheme;
+        StageStats stageStats = stats.get(key);
+        if (stageStats == null) {
+            StageStats newStats = new StageStats(stage, scheme);
+            stageStats = stats.putIfAbsent(key, newStats);
+            if (stageStats == null) {
+                stageStats = newStats;
+                register(stageStats);
+            }
+        }
+        return stageStats;
+    }
+
+    /**
+     * Gets all stage statistics, sorted by stage and scheme.
+     * @return stage statistics
+     */
+    public List<StageStats> getAllStageStats() {
+        return new ArrayList<>(new TreeMap<>(stats).values());
+    }
+
+    /**
+     * Logs the statistics of every stage executed so far.
+     */
+    public void logSummary() {
+        if (!LOG.isInfoEnabled() || stats.isEmpty()) {
+            return;
+        }
+        StringBuilder b = new StringBuilder(
+                crawlerId + ": Pipeline stage statistics:");
+        for (StageStats stageStats : getAllStageStats()) {
+            b.append("\n    ").append(stageStats);
+        }
+        LOG.info(b.toString());
+    }
+
+    /**
+     * Stops logging, logs a last summary and unregisters MBeans.
+     */
+    public void close() {
+        if (logScheduler != null) {
+            logScheduler.shutdownNow();
+        }
+        logSummary();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (mbeanNames) {
+            for (ObjectName name : mbeanNames) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException e) {
+                    LOG.debug("Could not unregister MBean: " + name, e);
+                }
+            }
+            mbeanNames.clear();
+        }
+    }
+
+    private void register(StageStats stageStats) {
+        try {
+            Hashtable<String, String> props = new Hashtable<>();
+            props.put("type", "PipelineStage");
+            props.put("crawler", ObjectName.quote(crawlerId));
+            props.put("stage", stageStats.getStage());
+            props.put("scheme", stageStats.getScheme());
+            ObjectName name = new ObjectName(JMX_DOMAIN, props);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    stageStats, name);
+            mbeanNames.add(name);
+        } catch (JMException e) {
+            LOG.warn("Could not register pipeline stage MBean for "
+                    + stageStats.getStage() + " [" + stageStats.getScheme()
+                    + "].", e);
+        }
+    }
+
+    // e.g., "smb://host/share/file.txt" -> "smb"
+    private static String toScheme(String reference) {
+        String scheme = StringUtils.substringBefore(reference, ":");
+        if (StringUtils.isBlank(scheme) || scheme.equals(reference)
+                || !StringUtils.isAlphanumeric(scheme)) {
+            return "unknown";
+        }
+        return scheme.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,172 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.stats;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Execution statistics of a pipeline stage, for files of one file
+ * system scheme.  Execution times are counted in a fixed histogram
+ * from which percentiles are estimated.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class StageStats implements StageStatsMBean {
+
+    private static final long[] BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500,
+            1000, 2000, 5000, 10000, 30000, 60000 };
+    private static final double P50 = 0.50;
+    private static final double P95 = 0.95;
+    private static final double P99 = 0.99;
+
+    private final String stage;
+    private final String scheme;
+    // first recorded execution end, not crawler start
+    private final long startTime;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets =
+            new AtomicLongArray(BOUNDS.length + 1);
+
+    /**
+     * Constructor.
+     * @param stage stage name
+     * @param scheme file system scheme
+     */
+    public StageStats(String stage, String scheme) {
+        super();
+        this.stage = stage;
+        this.scheme = scheme;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Records a stage execution.
+     * @param nanos execution time in nanoseconds
+     */
+    public void record(long nanos) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int i = 0;
+        while (i < BOUNDS.length && millis >= BOUNDS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+    }
+
+    @Override
+    public String getStage() {
+        return stage;
+    }
+    @Override
+    public String getScheme() {
+        return scheme;
+    }
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+    @Override
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+    }
+    @Override
+    public double getAverageMillis() {
+        long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+        return totalNanos.get() / (double) c / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    @Override
+    public long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+    @Override
+    public long getPercentile50Millis() {
+        return percentile(P50);
+    }
+    @Override
+    public long getPercentile95Millis() {
+        return percentile(P95);
+    }
+    @Override
+    public long getPercentile99Millis() {
+        return percentile(P99);
+    }
+    @Override
+    public double getThroughput() {
+        return getThroughput(System.nanoTime() - startTime);
+    }
+    /*default*/ double getThroughput(long elapsedNanos) {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return count.get() 
+                * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+    @Override
+    public long[] getHistogramBounds() {
+        return BOUNDS.clone();
+    }
+    @Override
+    public long[] getHistogram() {
+        long[] histogram = new long[buckets.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = buckets.get(i);
+        }
+        return histogram;
+    }
+
+    // Last bucket has no upper bound: use the maximum.
+    private long percentile(double fraction) {
+        long[] histogram = getHistogram();
+        long total = 0;
+        for (long c : histogram) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return BOUNDS[i];
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%s [%s]: %d executions, %.1f/s, "
+                + "avg %.1f ms, p50 %d ms, p95 %d ms, p99 %d ms, max %d ms",
+                stage, scheme, getCount(), getThroughput(), getAverageMillis(),
+                getPercentile50Millis(), getPercentile95Millis(),
+                getPercentile99Millis(), getMaxMillis());
+    }
+}
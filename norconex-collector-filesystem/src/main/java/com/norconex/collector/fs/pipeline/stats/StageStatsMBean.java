@@ -0,0 +1,91 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.stats;
+
+/**
+ * JMX view of the execution statistics of a pipeline stage, for files
+ * of one file system scheme.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public interface StageStatsMBean {
+
+    /**
+     * Gets the pipeline stage name.
+     * @return stage name
+     */
+    String getStage();
+    /**
+     * Gets the file system scheme (e.g., "file", "smb").
+     * @return scheme
+     */
+    String getScheme();
+    /**
+     * Gets how many times the stage was executed.
+     * @return execution count
+     */
+    long getCount();
+    /**
+     * Gets the total execution time.
+     * @return total time in milliseconds
+     */
+    long getTotalMillis();
+    /**
+     * Gets the average execution time.
+     * @return average time in milliseconds
+     */
+    double getAverageMillis();
+    /**
+     * Gets the longest execution time.
+     * @return maximum time in milliseconds
+     */
+    long getMaxMillis();
+    /**
+     * Gets the median execution time, as the upper bound of the
+     * histogram bucket it falls in.
+     * @return median time in milliseconds
+     */
+    long getPercentile50Millis();
+    /**
+     * Gets the 95th percentile execution time, as the upper bound of the
+     * histogram bucket it falls in.
+     * @return 95th percentile time in milliseconds
+     */
+    long getPercentile95Millis();
+    /**
+     * Gets the 99th percentile execution time, as the upper bound of the
+     * histogram bucket it falls in.
+     * @return 99th percentile time in milliseconds
+     */
+    long getPercentile99Millis();
+    /**
+     * Gets the average number of executions per second since the
+     * stage first completed for this scheme (not since the crawler
+     * started).
+     * @return executions per second
+     */
+    double getThroughput();
+    /**
+     * Gets the upper bounds of histogram buckets.  The last bucket
+     * holds longer execution times.
+     * @return bucket upper bounds in milliseconds
+     */
+    long[] getHistogramBounds();
+    /**
+     * Gets how many executions fell in each histogram bucket.
+     * @return execution counts per bucket
+     */
+    long[] getHistogram();
+}
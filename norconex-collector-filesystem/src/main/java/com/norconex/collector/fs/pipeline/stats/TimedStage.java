@@ -0,0 +1,71 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.stats;
+
+import com.norconex.collector.core.pipeline.BasePipelineContext;
+import com.norconex.collector.fs.crawler.FilesystemCrawler;
+import com.norconex.commons.lang.pipeline.IPipelineStage;
+
+/**
+ * Wraps a pipeline stage to record its execution time in the crawler
+ * {@link PipelineStats}, when enabled.  Failed executions are recorded
+ * as well.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ * @param <T> pipeline context type
+ */
+public class TimedStage<T extends BasePipelineContext>
+        implements IPipelineStage<T> {
+
+    private final String name;
+    private final IPipelineStage<T> stage;
+
+    /**
+     * Constructor, using the stage simple class name as stage name.
+     * @param stage the stage to time
+     */
+    public TimedStage(IPipelineStage<T> stage) {
+        this(stage.getClass().getSimpleName(), stage);
+    }
+    /**
+     * Constructor.
+     * @param name stage name
+     * @param stage the stage to time
+     */
+    public TimedStage(String name, IPipelineStage<T> stage) {
+        super();
+        this.name = name;
+        this.stage = stage;
+    }
+
+    @Override
+    public boolean execute(T context) {
+        PipelineStats stats = null;
+        if (context.getCrawler() instanceof FilesystemCrawler) {
+            stats = ((FilesystemCrawler)
+                    context.getCrawler()).getPipelineStats();
+        }
+        if (stats == null) {
+            return stage.execute(context);
+        }
+        long start = System.nanoTime();
+        try {
+            return stage.execute(context);
+        } finally {
+            stats.record(name, context.getCrawlData().getReference(),
+                    System.nanoTime() - start);
+        }
+    }
+}
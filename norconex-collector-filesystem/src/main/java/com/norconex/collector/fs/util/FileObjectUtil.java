@@ -0,0 +1,96 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.util;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.provider.UriParser;
+import org.apache.commons.vfs2.provider.local.LocalFileName;
+import org.apache.commons.vfs2.provider.smb.SmbFileObject;
+
+/**
+ * Utility methods for dealing with Commons VFS {@link FileObject} instances.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public final class FileObjectUtil {
+
+    private FileObjectUtil() {
+        super();
+    }
+
+    /**
+     * Gets whether a file object is on the local file system.
+     * @param fileObject the file object
+     * @return <code>true</code> if a local file
+     */
+    public static boolean isLocalFile(FileObject fileObject) {
+        return fileObject != null
+                && fileObject.getName() instanceof LocalFileName;
+    }
+
+    /**
+     * Gets the local {@link Path} matching a local file object, without
+     * attaching to it or otherwise accessing the file system.
+     * @param fileObject the file object
+     * @return local path or <code>null</code> if the file object is not
+     *         a local file
+     */
+    public static Path toLocalPath(FileObject fileObject) {
+        if (!isLocalFile(fileObject)) {
+            return null;
+        }
+        // Same as how VFS LocalFile attaches to a java.io.File
+        LocalFileName name = (LocalFileName) fileObject.getName();
+        try {
+            return new File(name.getRootFile()
+                    + name.getPathDecoded()).toPath();
+        } catch (FileSystemException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets whether a file object is from a SMB/CIFS file system.
+     * @param fileObject the file object
+     * @return <code>true</code> if a SMB file
+     */
+    public static boolean isSmbFile(FileObject fileObject) {
+        return fileObject instanceof SmbFileObject;
+    }
+
+    /**
+     * Resolves the reference of a folder child from its name only,
+     * without resolving (attaching) a child file object.
+     * The reference is the same as the URL obtained from the
+     * child file object.
+     * @param folder the parent folder
+     * @param childName the decoded child file name
+     * @return child reference
+     * @throws FileSystemException could not resolve child name
+     */
+    public static String resolveChildReference(
+            FileObject folder, String childName) throws FileSystemException {
+        FileName name = folder.getFileSystem().getFileSystemManager()
+                .resolveName(folder.getName(),
+                        UriParser.encode(childName), NameScope.CHILD);
+        return name.getURI();
+    }
+}
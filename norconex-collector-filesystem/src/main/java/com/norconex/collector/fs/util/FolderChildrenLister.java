@@ -0,0 +1,280 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.mutable.MutableBoolean;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.provider.smb.SmbFileObject;
+
+import jcifs.smb.SmbException;
+import jcifs.smb.SmbFile;
+import jcifs.smb.SmbFileFilter;
+
+/**
+ * Lists the children of a folder without first materializing them all
+ * as resolved {@link FileObject} instances.  Child references are
+ * handed over one at a time as they are read:
+ * <ul>
+ *   <li><b>Local files:</b> using a lazy {@link DirectoryStream}.</li>
+ *   <li><b>SMB/CIFS:</b> as each listing page is received from the
+ *       server (child types are known from the listing).</li>
+ *   <li><b>Others:</b> Commons VFS does not offer paged listing for other
+ *       file systems (e.g., SFTP, FTP), so their children are obtained
+ *       the regular way, then handed over one at a time.</li>
+ * </ul>
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public final class FolderChildrenLister {
+
+    private FolderChildrenLister() {
+        super();
+    }
+
+    /**
+     * Receives folder children as they are listed.
+     */
+    public interface ChildHandler {
+        /**
+         * Invoked for each child found.
+         * @param childReference child reference (URL)
+         * @param childType child type, or <code>null</code> if types
+         *        were not requested and could not be obtained from the
+         *        listing itself
+         * @return <code>true</code> to keep listing, <code>false</code>
+         *         to stop
+         * @throws FileSystemException problem handling the child
+         */
+        boolean childFound(String childReference, FileType childType)
+                throws FileSystemException;
+    }
+
+    /**
+     * Receives folder children, with their type, size and last 
+     * modified date, as they are listed.
+     */
+    public interface ChildAttributesHandler {
+        /**
+         * Invoked for each child found.
+         * @param childReference child reference (URL)
+         * @param childType child type
+         * @param size child size in bytes (always 0 for folders)
+         * @param lastModified child last modified date, in milliseconds
+         * @return <code>true</code> to keep listing, <code>false</code>
+         *         to stop
+         * @throws FileSystemException problem handling the child
+         */
+        boolean childFound(String childReference, FileType childType,
+                long size, long lastModified) throws FileSystemException;
+    }
+
+    /**
+     * Lists the children of a folder, without resolving their types
+     * unless it comes at no extra cost.
+     * @param folder the folder to list
+     * @param handler handler receiving each child reference
+     * @throws FileSystemException problem listing children
+     */
+    public static void listChildren(FileObject folder, ChildHandler handler)
+            throws FileSystemException {
+        listChildren(folder, false, handler);
+    }
+
+    /**
+     * Lists the children of a folder.
+     * @param folder the folder to list
+     * @param resolveTypes whether to always resolve child types, even
+     *        when it requires extra file system calls
+     * @param handler handler receiving each child reference
+     * @throws FileSystemException problem listing children
+     */
+    public static void listChildren(FileObject folder, boolean resolveTypes, 
+            ChildHandler handler) throws FileSystemException {
+        Path localPath = FileObjectUtil.toLocalPath(folder);
+        if (localPath != null) {
+            listLocalChildren(folder, localPath, resolveTypes, handler);
+        } else if (FileObjectUtil.isSmbFile(folder)) {
+            SmbLister.listChildren(folder, handler);
+        } else {
+            listGenericChildren(folder, resolveTypes, handler);
+        }
+    }
+
+    /**
+     * Lists the children of a folder along with their type, size and
+     * last modified date. For SMB/CIFS, these attributes are obtained
+     * from the listing itself. Local files are read one at a time, 
+     * with one call each.
+     * @param folder the folder to list
+     * @param handler handler receiving each child reference and attributes
+     * @throws FileSystemException problem listing children
+     */
+    public static void listChildren(FileObject folder, 
+            ChildAttributesHandler handler) throws FileSystemException {
+        Path localPath = FileObjectUtil.toLocalPath(folder);
+        if (localPath != null) {
+            listLocalChildren(folder, localPath, handler);
+        } else if (FileObjectUtil.isSmbFile(folder)) {
+            SmbLister.listChildren(folder, handler);
+        } else {
+            listGenericChildren(folder, handler);
+        }
+    }
+
+    private static void listLocalChildren(FileObject folder, Path path,
+            boolean resolveTypes, ChildHandler handler)
+                    throws FileSystemException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                FileType type = null;
+                if (resolveTypes) {
+                    type = Files.isDirectory(child)
+                            ? FileType.FOLDER : FileType.FILE;
+                }
+                if (!handler.childFound(FileObjectUtil.resolveChildReference(
+                        folder, child.getFileName().toString()), type)) {
+                    break;
+                }
+            }
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException | DirectoryIteratorException e) {
+            throw new FileSystemException(
+                    "vfs.provider/list-children.error", e, folder.getName());
+        }
+    }
+
+    private static void listLocalChildren(FileObject folder, Path path,
+            ChildAttributesHandler handler) throws FileSystemException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(
+                            child, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // deleted since listed
+                    continue;
+                }
+                FileType type = attrs.isDirectory()
+                        ? FileType.FOLDER : FileType.FILE;
+                if (!handler.childFound(FileObjectUtil.resolveChildReference(
+                        folder, child.getFileName().toString()), type,
+                        attrs.isDirectory() ? 0 : attrs.size(),
+                        attrs.lastModifiedTime().toMillis())) {
+                    break;
+                }
+            }
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException | DirectoryIteratorException e) {
+            throw new FileSystemException(
+                    "vfs.provider/list-children.error", e, folder.getName());
+        }
+    }
+
+    private static void listGenericChildren(FileObject folder,
+            boolean resolveTypes, ChildHandler handler)
+                    throws FileSystemException {
+        for (FileObject child : folder.getChildren()) {
+            FileType type = null;
+            if (resolveTypes) {
+                type = child.getType();
+            }
+            if (!handler.childFound(child.getURL().toString(), type)) {
+                break;
+            }
+        }
+    }
+
+    private static void listGenericChildren(FileObject folder,
+            ChildAttributesHandler handler) throws FileSystemException {
+        for (FileObject child : folder.getChildren()) {
+            FileType type = child.getType();
+            long size = type == FileType.FILE 
+                    ? child.getContent().getSize() : 0;
+            if (!handler.childFound(child.getURL().toString(), type, size,
+                    child.getContent().getLastModifiedTime())) {
+                break;
+            }
+        }
+    }
+
+    // Isolated so jcifs classes are only loaded when SMB is used.
+    private static final class SmbLister {
+        private static void listChildren(
+                FileObject folder, final ChildHandler handler)
+                        throws FileSystemException {
+            listChildren(folder, new ChildAttributesHandler() {
+                @Override
+                public boolean childFound(String childReference,
+                        FileType childType, long size, long lastModified)
+                                throws FileSystemException {
+                    return handler.childFound(childReference, childType);
+                }
+            });
+        }
+        private static void listChildren(final FileObject folder, 
+                final ChildAttributesHandler handler)
+                        throws FileSystemException {
+            // jcifs cannot be told to stop listing, so once stopped, the
+            // remaining pages are skipped through without handling them.
+            final MutableBoolean stopped = new MutableBoolean();
+            final MutableObject<FileSystemException> failure = 
+                    new MutableObject<>();
+            ((SmbFileObject) folder).listChildFiles(new SmbFileFilter() {
+                @Override
+                public boolean accept(SmbFile file) throws SmbException {
+                    if (stopped.isTrue()) {
+                        return false;
+                    }
+                    // directory names end with a slash
+                    String name = StringUtils.removeEnd(file.getName(), "/");
+                    // attributes are known from the listing, no extra call
+                    boolean isDir = file.isDirectory();
+                    FileType type = isDir ? FileType.FOLDER : FileType.FILE;
+                    try {
+                        if (!handler.childFound(FileObjectUtil
+                                .resolveChildReference(folder, name),
+                                        type, isDir ? 0 : file.length(),
+                                        file.lastModified())) {
+                            stopped.setTrue();
+                        }
+                    } catch (FileSystemException e) {
+                        failure.setValue(e);
+                        stopped.setTrue();
+                    }
+                    // never keep children in memory
+                    return false;
+                }
+            });
+            if (failure.getValue() != null) {
+                throw failure.getValue();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream reading a local file through a {@link FileChannel} which is
+ * only opened on first read.  A stream that is never read never opens 
+ * the file.  Skipping is done by moving the channel position instead of 
+ * reading and discarding bytes.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public class LazyFileInputStream extends InputStream {
+
+    private final Path path;
+    private final byte[] singleByte = new byte[1];
+    private FileChannel channel;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * @param path local file to read
+     */
+    public LazyFileInputStream(Path path) {
+        super();
+        this.path = path;
+    }
+
+    /**
+     * Gets the local file path.
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int n = read(singleByte, 0, 1);
+        if (n <= 0) {
+            return -1;
+        }
+        return singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        return channel().read(ByteBuffer.wrap(b, off, len));
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        FileChannel ch = channel();
+        long position = ch.position();
+        long newPosition = Math.min(ch.size(), position + n);
+        ch.position(newPosition);
+        return newPosition - position;
+    }
+
+    @Override
+    public int available() throws IOException {
+        FileChannel ch = channel();
+        return (int) Math.min(
+                Integer.MAX_VALUE, Math.max(0, ch.size() - ch.position()));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // Whether the file is currently open.
+    /*default*/ synchronized boolean isOpen() {
+        return channel != null;
+    }
+
+    private synchronized FileChannel channel() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed: " + path);
+        }
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        return channel;
+    }
+}
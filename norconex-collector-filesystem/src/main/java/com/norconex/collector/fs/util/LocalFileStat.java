@@ -0,0 +1,219 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+
+/**
+ * Attributes of a local file, all obtained from a single
+ * {@link Files#readAttributes(Path, String, java.nio.file.LinkOption...)}
+ * call: existence, type, size, last modified date, and POSIX or DOS
+ * attributes (whichever the file system supports).
+ * Once obtained, a local file does not need to be accessed again 
+ * for any of these.
+ * @author Pascal Essiembre
+ * @since 2.9.0
+ */
+public final class LocalFileStat {
+
+    // Attributes already captured as dedicated properties.
+    private static final Set<String> BUILT_IN_ATTRIBUTES = 
+            new HashSet<>(Arrays.asList(
+                    "size", "lastModifiedTime", "fileKey", "isRegularFile", 
+                    "isDirectory", "isSymbolicLink", "isOther"));
+    
+    private final Path path;
+    private final FileType type;
+    private final boolean regularFile;
+    private final long size;
+    private final long lastModified;
+    private final Map<String, String> attributes;
+
+    private LocalFileStat(Path path, FileType type, boolean regularFile, 
+            long size, long lastModified, Map<String, String> attributes) {
+        super();
+        this.path = path;
+        this.type = type;
+        this.regularFile = regularFile;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * Reads the attributes of a file object if it is a local file.
+     * @param fileObject the file object
+     * @return file attributes or <code>null</code> if the file object
+     *         is not a local file
+     * @throws FileSystemException could not read file attributes
+     */
+    public static LocalFileStat stat(FileObject fileObject) 
+            throws FileSystemException {
+        Path localPath = FileObjectUtil.toLocalPath(fileObject);
+        if (localPath == null) {
+            return null;
+        }
+        try {
+            return stat(localPath);
+        } catch (IOException e) {
+            throw new FileSystemException(
+                    "vfs.provider/get-type.error", e, fileObject.getName());
+        }
+    }
+
+    /**
+     * Reads the attributes of a local file.
+     * @param path local file path
+     * @return file attributes (never <code>null</code>)
+     * @throws IOException could not read file attributes
+     */
+    public static LocalFileStat stat(Path path) throws IOException {
+        Map<String, Object> attrs;
+        try {
+            attrs = Files.readAttributes(path, attributeView(path) + ":*");
+        } catch (NoSuchFileException e) {
+            return new LocalFileStat(path, FileType.IMAGINARY, false, 0, 0, 
+                    new TreeMap<String, String>());
+        }
+        // Same as how VFS resolves local file types
+        FileType type = FileType.FILE;
+        if (Boolean.TRUE.equals(attrs.get("isDirectory"))) {
+            type = FileType.FOLDER;
+        }
+        boolean regularFile = Boolean.TRUE.equals(attrs.get("isRegularFile"));
+        long size = ((Number) attrs.get("size")).longValue();
+        long lastModified = 
+                ((FileTime) attrs.get("lastModifiedTime")).toMillis();
+        
+        Map<String, String> otherAttrs = new TreeMap<>();
+        for (Entry<String, Object> en : attrs.entrySet()) {
+            if (en.getValue() != null 
+                    && !BUILT_IN_ATTRIBUTES.contains(en.getKey())) {
+                otherAttrs.put(en.getKey(), toString(en.getValue()));
+            }
+        }
+        return new LocalFileStat(
+                path, type, regularFile, size, lastModified, otherAttrs);
+    }
+    
+    private static String attributeView(Path path) {
+        Set<String> views = 
+                path.getFileSystem().supportedFileAttributeViews();
+        if (views.contains("posix")) {
+            return "posix";
+        }
+        if (views.contains("dos")) {
+            return "dos";
+        }
+        return "basic";
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static String toString(Object value) {
+        if (value instanceof UserPrincipal) {
+            return ((UserPrincipal) value).getName();
+        }
+        if (value instanceof Set) {
+            // only set returned is POSIX permissions
+            return PosixFilePermissions.toString(
+                    (Set<PosixFilePermission>) value);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Gets the local file path.
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+    /**
+     * Gets the file type, {@link FileType#IMAGINARY} if the file
+     * does not exist.
+     * @return file type
+     */
+    public FileType getType() {
+        return type;
+    }
+    /**
+     * Gets whether the file exists.
+     * @return <code>true</code> if the file exists
+     */
+    public boolean exists() {
+        return type != FileType.IMAGINARY;
+    }
+    /**
+     * Gets whether the file is a regular file (as opposed to a folder
+     * or a special file, such as a device or a named pipe).
+     * @return <code>true</code> if a regular file
+     */
+    public boolean isRegularFile() {
+        return regularFile;
+    }
+    /**
+     * Gets the file size, in bytes.
+     * @return file size
+     */
+    public long getSize() {
+        return size;
+    }
+    /**
+     * Gets the last modified date, in milliseconds.
+     * @return last modified date
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+    /**
+     * Gets other file attributes (e.g., POSIX owner and permissions, 
+     * DOS hidden flag), as strings, keyed by attribute name.
+     * @return file attributes (never <code>null</code>)
+     */
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("path", path)
+                .append("type", type)
+                .append("size", size)
+                .append("lastModified", lastModified)
+                .append("attributes", attributes)
+                .toString();
+    }
+}
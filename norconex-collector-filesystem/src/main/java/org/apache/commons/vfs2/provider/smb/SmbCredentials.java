@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.smb;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.UserAuthenticationData;
+import org.apache.commons.vfs2.util.UserAuthenticatorUtils;
+
+/**
+ * Credentials of an SMB file system (server, share and credentials),
+ * resolved once and shared by all its files and threads instead of
+ * being resolved for every file.  Passing the same
+ * {@link NtlmPasswordAuthentication} to jcifs also lets it reuse its
+ * already established server sessions.  Credentials left unused for
+ * longer than the idle timeout are discarded, and resolved again the
+ * next time they are needed.
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+public class SmbCredentials
+{
+    private final SmbFileName rootName;
+    private final FileSystemOptions opts;
+    private final long idleTimeout;
+    private volatile Resolved resolved;
+
+    /**
+     * Creates credentials for a file system.
+     * @param rootName file system root name (server and share)
+     * @param opts file system options (credentials)
+     * @param idleTimeout idle timeout in milliseconds (0 for no timeout)
+     */
+    public SmbCredentials(final SmbFileName rootName, final FileSystemOptions opts,
+                          final long idleTimeout)
+    {
+        this.rootName = rootName;
+        this.opts = opts;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Gets the authentication to use, resolving it only if not already
+     * resolved or idle for too long.  Threads resolving it at the same
+     * time get equal authentications.
+     * @return authentication or <code>null</code> to use jcifs default
+     *         credentials
+     */
+    public NtlmPasswordAuthentication getAuthentication()
+    {
+        final long now = System.currentTimeMillis();
+        Resolved r = resolved;
+        if (r == null || (idleTimeout > 0 && now - r.lastUsed > idleTimeout))
+        {
+            r = new Resolved(authenticate(rootName, opts));
+            resolved = r;
+        }
+        r.lastUsed = now;
+        return r.auth;
+    }
+
+    /**
+     * Discards resolved credentials.
+     */
+    public void clear()
+    {
+        resolved = null;
+    }
+
+    private static NtlmPasswordAuthentication authenticate(
+        final SmbFileName smbFileName, final FileSystemOptions opts)
+    {
+        UserAuthenticationData authData = null;
+        try
+        {
+            authData = UserAuthenticatorUtils.authenticate(
+                           opts, SmbFileProvider.AUTHENTICATOR_TYPES);
+
+            // if auth == null SmbFile uses default credentials
+            // ("jcifs.smb.client.domain", "?"), ("jcifs.smb.client.username", "GUEST"),
+            // ("jcifs.smb.client.password", BLANK);
+            // ANONYMOUS=("","","")
+            if (authData == null)
+            {
+                return null;
+            }
+            return new NtlmPasswordAuthentication(
+                UserAuthenticatorUtils.toString(
+                    UserAuthenticatorUtils.getData(authData, UserAuthenticationData.DOMAIN,
+                        UserAuthenticatorUtils.toChar(smbFileName.getDomain()))),
+                UserAuthenticatorUtils.toString(
+                    UserAuthenticatorUtils.getData(authData, UserAuthenticationData.USERNAME,
+                        UserAuthenticatorUtils.toChar(smbFileName.getUserName()))),
+                UserAuthenticatorUtils.toString(
+                    UserAuthenticatorUtils.getData(authData, UserAuthenticationData.PASSWORD,
+                        UserAuthenticatorUtils.toChar(smbFileName.getPassword()))));
+        }
+        finally
+        {
+            UserAuthenticatorUtils.cleanup(authData); // might be null
+        }
+    }
+
+    private static final class Resolved
+    {
+        private final NtlmPasswordAuthentication auth;
+        private volatile long lastUsed;
+        private Resolved(final NtlmPasswordAuthentication auth)
+        {
+            this.auth = auth;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.net.MalformedURLException;
 import jcifs.smb.NtlmPasswordAuthentication;
 import jcifs.smb.SmbException;
 import jcifs.smb.SmbFile;
+import jcifs.smb.SmbFileFilter;
 import jcifs.smb.SmbFileInputStream;
 import jcifs.smb.SmbFileOutputStream;
 
@@ -32,12 +33,10 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileType;
 import org.apache.commons.vfs2.FileTypeHasNoContentException;
 import org.apache.commons.vfs2.RandomAccessContent;
-import org.apache.commons.vfs2.UserAuthenticationData;
 import org.apache.commons.vfs2.provider.AbstractFileName;
 import org.apache.commons.vfs2.provider.AbstractFileObject;
 import org.apache.commons.vfs2.provider.UriParser;
 import org.apache.commons.vfs2.util.RandomAccessMode;
-import org.apache.commons.vfs2.util.UserAuthenticatorUtils;
 
 /**
  * A file in an SMB file system.
@@ -82,45 +81,45 @@ public class SmbFileObject
 
         final String path = smbFileName.getUriWithoutAuth();
 
-        UserAuthenticationData authData = null;
-        SmbFile file;
-        try
-        {
-            authData = UserAuthenticatorUtils.authenticate(
-                           getFileSystem().getFileSystemOptions(),
-                           SmbFileProvider.AUTHENTICATOR_TYPES);
+        // Credentials are the same for every file of a file system and
+        // are obtained once from the file system.
+        final NtlmPasswordAuthentication auth = getFileSystem().getAuthentication();
 
-            NtlmPasswordAuthentication auth = null;
-            if (authData != null)
-            {
-                auth = new NtlmPasswordAuthentication(
-                    UserAuthenticatorUtils.toString(
-                        UserAuthenticatorUtils.getData(authData, UserAuthenticationData.DOMAIN,
-                            UserAuthenticatorUtils.toChar(smbFileName.getDomain()))),
-                    UserAuthenticatorUtils.toString(
-                        UserAuthenticatorUtils.getData(authData, UserAuthenticationData.USERNAME,
-                            UserAuthenticatorUtils.toChar(smbFileName.getUserName()))),
-                    UserAuthenticatorUtils.toString(
-                        UserAuthenticatorUtils.getData(authData, UserAuthenticationData.PASSWORD,
-                            UserAuthenticatorUtils.toChar(smbFileName.getPassword()))));
-            }
+        // if auth == null SmbFile uses default credentials
+        SmbFile file = new SmbFile(path, auth);
 
-            // if auth == null SmbFile uses default credentials
-            // ("jcifs.smb.client.domain", "?"), ("jcifs.smb.client.username", "GUEST"),
-            // ("jcifs.smb.client.password", BLANK);
-            // ANONYMOUS=("","","")
-            file = new SmbFile(path, auth);
+        if (file.isDirectory() && !file.toString().endsWith("/"))
+        {
+            file = new SmbFile(path + "/", auth);
+        }
+        return file;
+    }
 
-            if (file.isDirectory() && !file.toString().endsWith("/"))
+    /**
+     * Gets the jcifs file backing this file object, creating it if this
+     * file object is not attached yet.
+     * @return SMB file
+     * @throws FileSystemException could not create SMB file
+     * @since 2.9.0 (Norconex Filesystem Collector)
+     */
+    public SmbFile getSmbFile() throws FileSystemException
+    {
+        synchronized (getFileSystem())
+        {
+            if (file == null)
             {
-                file = new SmbFile(path + "/", auth);
+                try
+                {
+                    file = createSmbFile(getName());
+                }
+                catch (final MalformedURLException | SmbException e)
+                {
+                    throw new FileSystemException(
+                        "vfs.provider/get-type.error", e, getName());
+                }
             }
             return file;
         }
-        finally
-        {
-            UserAuthenticatorUtils.cleanup(authData); // might be null
-        }
     }
 
     /**
@@ -162,6 +161,35 @@ public class SmbFileObject
         return UriParser.encode(file.list());
     }
 
+    /**
+     * Lists the children of this folder as they are received from the
+     * server, one listing page at a time, handing each child to the
+     * supplied filter.  Unlike {@link #getChildren()}, no child
+     * file objects are created and child attributes (e.g., whether it is
+     * a directory) are the ones obtained from the listing.
+     * Only children accepted by the filter are kept in the returned array.
+     * @param filter receives every child
+     * @return accepted children (never <code>null</code>)
+     * @throws FileSystemException could not list children
+     */
+    public SmbFile[] listChildFiles(final SmbFileFilter filter)
+        throws FileSystemException
+    {
+        if (getType() != FileType.FOLDER)
+        {
+            return new SmbFile[] {};
+        }
+        try
+        {
+            return file.listFiles(filter);
+        }
+        catch (final SmbException e)
+        {
+            throw new FileSystemException(
+                "vfs.provider/list-children.error", e, getName());
+        }
+    }
+
     /**
      * Determines if this file is hidden.
      */
@@ -18,6 +18,8 @@ package org.apache.commons.vfs2.provider.smb;
 
 import java.util.Collection;
 
+import jcifs.smb.NtlmPasswordAuthentication;
+
 import org.apache.commons.vfs2.Capability;
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
@@ -32,9 +34,33 @@ import org.apache.commons.vfs2.provider.AbstractFileSystem;
 public class SmbFileSystem
     extends AbstractFileSystem
 {
+    private final SmbCredentials credentials;
+
     protected SmbFileSystem(final FileName rootName, final FileSystemOptions fileSystemOptions)
     {
         super(rootName, null, fileSystemOptions);
+        this.credentials = new SmbCredentials((SmbFileName) rootName, fileSystemOptions,
+            SmbFileSystemConfigBuilder.getInstance().getCredentialsIdleTimeout(fileSystemOptions));
+    }
+
+    /**
+     * Gets the authentication shared by all files of this file system.
+     * @return authentication or <code>null</code> to use jcifs default
+     *         credentials
+     * @since 2.9.0 (Norconex Filesystem Collector)
+     */
+    public NtlmPasswordAuthentication getAuthentication()
+    {
+        return credentials.getAuthentication();
+    }
+
+    /**
+     * Discards resolved credentials when the file system is closed.
+     */
+    @Override
+    protected void doCloseCommunicationLink()
+    {
+        credentials.clear();
     }
 
     /**
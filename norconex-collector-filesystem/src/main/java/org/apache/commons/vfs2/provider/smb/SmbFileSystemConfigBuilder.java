@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.smb;
+
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.FileSystemConfigBuilder;
+import org.apache.commons.vfs2.FileSystemOptions;
+
+/**
+ * The config builder for various SMB configuration options.
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+public final class SmbFileSystemConfigBuilder extends FileSystemConfigBuilder
+{
+    private static final SmbFileSystemConfigBuilder BUILDER =
+        new SmbFileSystemConfigBuilder();
+
+    private static final String CREDENTIALS_IDLE_TIMEOUT =
+        SmbFileSystemConfigBuilder.class.getName() + ".CREDENTIALS_IDLE_TIMEOUT";
+
+    private SmbFileSystemConfigBuilder()
+    {
+        super("smb.");
+    }
+
+    /**
+     * Gets the singleton builder.
+     *
+     * @return the singleton builder.
+     */
+    public static SmbFileSystemConfigBuilder getInstance()
+    {
+        return BUILDER;
+    }
+
+    /**
+     * Sets how long (in milliseconds) the credentials resolved for a file
+     * system can remain unused before they are discarded and resolved
+     * again.  Zero or <code>null</code> keeps them for as long as the
+     * file system is open.  Connections to servers are managed by jcifs
+     * and are not affected.
+     *
+     * @param opts The FileSystemOptions.
+     * @param idleTimeout idle timeout in milliseconds
+     */
+    public void setCredentialsIdleTimeout(final FileSystemOptions opts, final Long idleTimeout)
+    {
+        setParam(opts, CREDENTIALS_IDLE_TIMEOUT, idleTimeout);
+    }
+
+    /**
+     * Gets how long (in milliseconds) the credentials resolved for a file
+     * system can remain unused before they are discarded.
+     *
+     * @param opts The FileSystemOptions.
+     * @return idle timeout in milliseconds
+     * @see #setCredentialsIdleTimeout(FileSystemOptions, Long)
+     */
+    public long getCredentialsIdleTimeout(final FileSystemOptions opts)
+    {
+        return getLong(opts, CREDENTIALS_IDLE_TIMEOUT, 0L);
+    }
+
+    @Override
+    protected Class<? extends FileSystem> getConfigClass()
+    {
+        return SmbFileSystem.class;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.zipentry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+
+import org.apache.commons.vfs2.RandomAccessContent;
+
+/**
+ * Reads a zip archive central directory, and the local headers of its
+ * entries, with random access.  Nothing else in the archive is read.
+ * Supports ZIP64 archives and archives with a prefix (e.g.,
+ * self-extracting ones).  Multi-volume archives are not supported.
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+final class ZipCentralDirectory
+{
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_SIG = 0x06054b50;
+    private static final int END_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_END_LENGTH = 56;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int EXTENDED_TIME_EXTRA_ID = 0x5455;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Names of entries without the UTF-8 flag are meant to be in IBM437,
+    // but many tools write them in UTF-8 anyway.
+    private static final Charset LEGACY_CHARSET = Charset.isSupported("IBM437")
+        ? Charset.forName("IBM437") : StandardCharsets.ISO_8859_1;
+
+    /**
+     * Receives entries as they are read.
+     */
+    interface EntryHandler
+    {
+        void entryFound(ZipEntryInfo entry);
+    }
+
+    private ZipCentralDirectory()
+    {
+    }
+
+    /**
+     * Reads all central directory entries of an archive.
+     * @param content the archive content
+     * @param handler receives each entry, in central directory order
+     * @throws IOException not a zip archive or unsupported one
+     */
+    static void read(final RandomAccessContent content, final EntryHandler handler)
+        throws IOException
+    {
+        final long length = content.length();
+        final int tailLength = (int) Math.min(length, END_LENGTH + MAX_COMMENT_LENGTH);
+        final byte[] tail = new byte[tailLength];
+        content.seek(length - tailLength);
+        content.readFully(tail);
+
+        int end = -1;
+        for (int i = tailLength - END_LENGTH; i >= 0; i--)
+        {
+            if (getInt(tail, i) == END_SIG
+                && i + END_LENGTH + getShort(tail, i + 20) <= tailLength)
+            {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1)
+        {
+            throw new IOException("Not a zip archive: end of central directory not found.");
+        }
+        if (getShort(tail, end + 4) != 0 && getShort(tail, end + 4) != 0xFFFF
+            || getShort(tail, end + 6) != 0 && getShort(tail, end + 6) != 0xFFFF)
+        {
+            throw new IOException("Multi-volume zip archives are not supported.");
+        }
+
+        final long endPosition = length - tailLength + end;
+        long recordPosition = endPosition;
+        long directorySize = getInt(tail, end + 12);
+        long directoryOffset = getInt(tail, end + 16);
+
+        if (endPosition >= ZIP64_LOCATOR_LENGTH)
+        {
+            final byte[] locator = new byte[ZIP64_LOCATOR_LENGTH];
+            content.seek(endPosition - ZIP64_LOCATOR_LENGTH);
+            content.readFully(locator);
+            if (getInt(locator, 0) == ZIP64_LOCATOR_SIG)
+            {
+                final byte[] record = new byte[ZIP64_END_LENGTH];
+                recordPosition = getLong(locator, 8);
+                if (!readZip64End(content, recordPosition, record))
+                {
+                    // The recorded position is relative to the archive
+                    // start, so the prefix length is added, assuming the
+                    // record is right before the locator (no extensible data).
+                    final long prefixLength =
+                        endPosition - ZIP64_LOCATOR_LENGTH - ZIP64_END_LENGTH - recordPosition;
+                    recordPosition += prefixLength;
+                    if (!readZip64End(content, recordPosition, record))
+                    {
+                        throw new IOException("ZIP64 end of central directory not found.");
+                    }
+                }
+                directorySize = getLong(record, 40);
+                directoryOffset = getLong(record, 48);
+            }
+        }
+
+        // Offsets are relative to the archive start, which is not
+        // the file start when something was prepended to the archive.
+        final long base = recordPosition - directorySize - directoryOffset;
+        if (base < 0 || directorySize < 0)
+        {
+            throw new IOException("Invalid central directory position.");
+        }
+
+        content.seek(base + directoryOffset);
+        final DataInputStream in = new DataInputStream(
+            new BufferedInputStream(content.getInputStream(), BUFFER_SIZE));
+        final Calendar calendar = Calendar.getInstance();
+        final byte[] header = new byte[CENTRAL_HEADER_LENGTH];
+        long consumed = 0;
+        while (consumed < directorySize)
+        {
+            in.readFully(header);
+            if (getInt(header, 0) != CENTRAL_HEADER_SIG)
+            {
+                throw new IOException("Invalid central directory entry at position "
+                    + (base + directoryOffset + consumed) + ".");
+            }
+            final int flags = getShort(header, 8);
+            final int method = getShort(header, 10);
+            final long dosTime = getInt(header, 12);
+            final long crc = getInt(header, 16);
+            long compressedSize = getInt(header, 20);
+            long size = getInt(header, 24);
+            final byte[] name = new byte[getShort(header, 28)];
+            final byte[] extra = new byte[getShort(header, 30)];
+            final int commentLength = getShort(header, 32);
+            long localHeaderOffset = getInt(header, 42);
+            in.readFully(name);
+            in.readFully(extra);
+            in.skipBytes(commentLength);
+            consumed += CENTRAL_HEADER_LENGTH + name.length + extra.length + commentLength;
+
+            long lastModifiedTime = dosToJavaTime(dosTime, calendar);
+            int pos = 0;
+            while (pos + 4 <= extra.length)
+            {
+                final int id = getShort(extra, pos);
+                final int data = pos + 4;
+                final int dataEnd = data + getShort(extra, pos + 2);
+                if (dataEnd > extra.length)
+                {
+                    break;
+                }
+                if (id == ZIP64_EXTRA_ID)
+                {
+                    // only the values too large for the regular fields
+                    // are present, in this order
+                    int field = data;
+                    if (size == ZIP64_MAGIC && field + 8 <= dataEnd)
+                    {
+                        size = getLong(extra, field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC && field + 8 <= dataEnd)
+                    {
+                        compressedSize = getLong(extra, field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == ZIP64_MAGIC && field + 8 <= dataEnd)
+                    {
+                        localHeaderOffset = getLong(extra, field);
+                    }
+                }
+                else if (id == EXTENDED_TIME_EXTRA_ID && dataEnd - data >= 5
+                    && (extra[data] & 1) != 0)
+                {
+                    // seconds since epoch, in UTC
+                    lastModifiedTime = ((int) getInt(extra, data + 1)) * 1000L;
+                }
+                pos = dataEnd;
+            }
+
+            final String entryName = decodeName(name, flags);
+            handler.entryFound(new ZipEntryInfo(entryName,
+                entryName.endsWith("/"), method, flags, crc, compressedSize, size,
+                lastModifiedTime, base + localHeaderOffset));
+        }
+    }
+
+    // Returns false if there is no ZIP64 end of central directory record
+    // at the given position.
+    private static boolean readZip64End(final RandomAccessContent content,
+                                        final long position, final byte[] record)
+        throws IOException
+    {
+        if (position < 0 || position + ZIP64_END_LENGTH > content.length())
+        {
+            return false;
+        }
+        content.seek(position);
+        content.readFully(record);
+        return getInt(record, 0) == ZIP64_END_SIG;
+    }
+
+    /**
+     * Returns the position of an entry data in the archive, right after
+     * its local header.
+     * @param content the archive content
+     * @param entry the entry
+     * @throws IOException invalid local header
+     */
+    static long getDataOffset(final RandomAccessContent content, final ZipEntryInfo entry)
+        throws IOException
+    {
+        final byte[] header = new byte[LOCAL_HEADER_LENGTH];
+        content.seek(entry.getLocalHeaderOffset());
+        content.readFully(header);
+        if (getInt(header, 0) != LOCAL_HEADER_SIG)
+        {
+            throw new IOException("Invalid local header for entry \"" + entry + "\".");
+        }
+        return entry.getLocalHeaderOffset() + LOCAL_HEADER_LENGTH
+            + getShort(header, 26) + getShort(header, 28);
+    }
+
+    private static String decodeName(final byte[] name, final int flags)
+    {
+        if ((flags & UTF8_FLAG) != 0)
+        {
+            return new String(name, StandardCharsets.UTF_8);
+        }
+        try
+        {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(name)).toString();
+        }
+        catch (final CharacterCodingException e)
+        {
+            return new String(name, LEGACY_CHARSET);
+        }
+    }
+
+    // MS-DOS date and time, in local time
+    private static long dosToJavaTime(final long dosTime, final Calendar calendar)
+    {
+        calendar.clear();
+        calendar.set(
+            (int) ((dosTime >> 25) & 0x7f) + 1980,
+            (int) ((dosTime >> 21) & 0x0f) - 1,
+            (int) ((dosTime >> 16) & 0x1f),
+            (int) ((dosTime >> 11) & 0x1f),
+            (int) ((dosTime >> 5) & 0x3f),
+            (int) ((dosTime << 1) & 0x3e));
+        return calendar.getTimeInMillis();
+    }
+
+    private static int getShort(final byte[] b, final int off)
+    {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8;
+    }
+
+    private static long getInt(final byte[] b, final int off)
+    {
+        return (getShort(b, off) | (long) getShort(b, off + 2) << 16) & ZIP64_MAGIC;
+    }
+
+    private static long getLong(final byte[] b, final int off)
+    {
+        return getInt(b, off) | getInt(b, off + 4) << 32;
+    }
+}
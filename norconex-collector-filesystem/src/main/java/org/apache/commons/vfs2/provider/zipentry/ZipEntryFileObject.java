@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.zipentry;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.provider.AbstractFileName;
+import org.apache.commons.vfs2.provider.AbstractFileObject;
+import org.apache.commons.vfs2.provider.UriParser;
+
+/**
+ * A zip archive entry.
+ * <p>
+ * Files have these attributes, taken from the central directory:
+ * </p>
+ * <ul>
+ * <li>{@value #ATTR_CRC}: CRC-32 of the content, in hexadecimal</li>
+ * <li>{@value #ATTR_COMPRESSED_SIZE}: size in the archive, in bytes</li>
+ * <li>{@value #ATTR_METHOD}: compression method number</li>
+ * </ul>
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+public class ZipEntryFileObject
+    extends AbstractFileObject<ZipEntryFileSystem>
+    implements FileObject
+{
+    public static final String ATTR_CRC = "crc";
+    public static final String ATTR_COMPRESSED_SIZE = "compressedsize";
+    public static final String ATTR_METHOD = "method";
+
+    private final ZipEntryInfo entry;
+
+    protected ZipEntryFileObject(final AbstractFileName name,
+                                 final ZipEntryInfo entry,
+                                 final ZipEntryFileSystem fileSystem)
+    {
+        super(name, fileSystem);
+        this.entry = entry;
+    }
+
+    /**
+     * Determines the type of the file, returns null if the file does not
+     * exist.
+     */
+    @Override
+    protected FileType doGetType() throws Exception
+    {
+        if (entry == null)
+        {
+            return FileType.IMAGINARY;
+        }
+        return entry.isFolder() ? FileType.FOLDER : FileType.FILE;
+    }
+
+    /**
+     * Lists the children of the file.  Is only called if {@link #doGetType}
+     * returns {@link FileType#FOLDER}.
+     */
+    @Override
+    protected String[] doListChildren() throws Exception
+    {
+        final List<String> names = getFileSystem().getChildren(entry);
+        return UriParser.encode(names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * Returns the size of the file content (in bytes).
+     */
+    @Override
+    protected long doGetContentSize() throws Exception
+    {
+        return entry.getSize();
+    }
+
+    /**
+     * Returns the last modified time of this file.
+     */
+    @Override
+    protected long doGetLastModifiedTime() throws Exception
+    {
+        if (entry.getLastModifiedTime() == -1)
+        {
+            return getFileSystem().getArchiveLastModifiedTime();
+        }
+        return entry.getLastModifiedTime();
+    }
+
+    @Override
+    protected Map<String, Object> doGetAttributes() throws Exception
+    {
+        if (entry == null || entry.isFolder())
+        {
+            return Collections.emptyMap();
+        }
+        final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        attributes.put(ATTR_CRC, String.format("%08x", entry.getCrc()));
+        attributes.put(ATTR_COMPRESSED_SIZE, entry.getCompressedSize());
+        attributes.put(ATTR_METHOD, entry.getMethod());
+        return attributes;
+    }
+
+    @Override
+    protected boolean doIsWriteable() throws FileSystemException
+    {
+        return false;
+    }
+
+    /**
+     * Creates an input stream to read the file content from.
+     */
+    @Override
+    protected InputStream doGetInputStream() throws Exception
+    {
+        return getFileSystem().getInputStream(entry);
+    }
+}
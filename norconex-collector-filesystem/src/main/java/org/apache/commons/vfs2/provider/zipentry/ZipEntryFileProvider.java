@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.zipentry;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.commons.vfs2.Capability;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.provider.AbstractLayeredFileProvider;
+import org.apache.commons.vfs2.provider.FileProvider;
+import org.apache.commons.vfs2.provider.LayeredFileName;
+
+/**
+ * A provider for zip archives (including jar, war and ear files), read
+ * with random access instead of being copied or extracted first.
+ * Only the archive central directory is read when the file system is
+ * created.  Each entry is then read on demand, straight from its
+ * position in the archive.  The archive must be on a file system
+ * supporting {@link Capability#RANDOM_ACCESS_READ}.
+ * <p>
+ * Entry URIs have the form
+ * <code>zipentry:&lt;archive URI&gt;!/&lt;entry path&gt;</code>.
+ * </p>
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+public class ZipEntryFileProvider
+    extends AbstractLayeredFileProvider
+    implements FileProvider
+{
+    /** The URI scheme of this provider. */
+    public static final String SCHEME = "zipentry";
+
+    static final Collection<Capability> capabilities =
+        Collections.unmodifiableCollection(Arrays.asList(new Capability[]
+            {
+                Capability.GET_TYPE,
+                Capability.GET_LAST_MODIFIED,
+                Capability.LIST_CHILDREN,
+                Capability.READ_CONTENT,
+                Capability.URI,
+                Capability.ATTRIBUTES,
+                Capability.COMPRESS,
+                Capability.VIRTUAL
+            }));
+
+    public ZipEntryFileProvider()
+    {
+        super();
+    }
+
+    /**
+     * Creates the filesystem.
+     */
+    @Override
+    protected FileSystem doCreateFileSystem(final String scheme, final FileObject file,
+                                            final FileSystemOptions fileSystemOptions)
+        throws FileSystemException
+    {
+        final FileName name =
+            new LayeredFileName(scheme, file.getName(), FileName.ROOT_PATH, FileType.FOLDER);
+        return new ZipEntryFileSystem(name, file, fileSystemOptions);
+    }
+
+    public Collection<Capability> getCapabilities()
+    {
+        return capabilities;
+    }
+}
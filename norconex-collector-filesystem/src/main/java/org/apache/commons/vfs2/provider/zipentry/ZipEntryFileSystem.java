@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.zipentry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.Capability;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.provider.AbstractFileName;
+import org.apache.commons.vfs2.provider.AbstractFileSystem;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+
+/**
+ * A zip archive file system.  Only entries descriptions are kept in
+ * memory: file objects are created as they are resolved, and entries
+ * content is read from the archive each time it is requested.
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+public class ZipEntryFileSystem
+    extends AbstractFileSystem
+{
+    private static final String ROOT_PATH = FileName.ROOT_PATH;
+
+    private final Log log = LogFactory.getLog(ZipEntryFileSystem.class);
+
+    // keyed by decoded absolute path
+    private final Map<String, ZipEntryInfo> entries = new HashMap<String, ZipEntryInfo>();
+    private final Map<String, List<String>> children = new HashMap<String, List<String>>();
+    private long archiveLastModifiedTime;
+
+    protected ZipEntryFileSystem(final FileName rootName, final FileObject parentLayer,
+                                 final FileSystemOptions fileSystemOptions)
+    {
+        super(rootName, parentLayer, fileSystemOptions);
+    }
+
+    /**
+     * Reads the archive central directory.
+     */
+    @Override
+    public void init() throws FileSystemException
+    {
+        super.init();
+
+        final FileObject archive = getParentLayer();
+        entries.put(ROOT_PATH, ZipEntryInfo.impliedFolder(ROOT_PATH));
+        children.put(ROOT_PATH, new ArrayList<String>());
+        RandomAccessContent content = null;
+        try
+        {
+            archiveLastModifiedTime = archive.getContent().getLastModifiedTime();
+            content = archive.getContent().getRandomAccessContent(RandomAccessMode.READ);
+            ZipCentralDirectory.read(content, new ZipCentralDirectory.EntryHandler()
+            {
+                @Override
+                public void entryFound(final ZipEntryInfo entry)
+                {
+                    addEntry(entry);
+                }
+            });
+        }
+        catch (final IOException e)
+        {
+            throw new FileSystemException("vfs.provider.zip/open-zip-file.error", e, archive);
+        }
+        finally
+        {
+            closeContent(content);
+        }
+    }
+
+    private void addEntry(final ZipEntryInfo entry)
+    {
+        final String path = normalize(entry.getName());
+        if (path == null || ROOT_PATH.equals(path))
+        {
+            log.debug("Ignoring zip entry: " + entry);
+            return;
+        }
+        final ZipEntryInfo existing = entries.get(path);
+        if (existing != null)
+        {
+            // an entry for a folder already implied by other entries
+            if (existing.isFolder() && entry.isFolder() && existing.getLocalHeaderOffset() == -1)
+            {
+                entries.put(path, entry);
+            }
+            return;
+        }
+        final String parentPath = addParentFolders(path);
+        if (parentPath == null)
+        {
+            log.debug("Ignoring zip entry under a file: " + entry);
+            return;
+        }
+        entries.put(path, entry);
+        children.get(parentPath).add(path.substring(path.lastIndexOf('/') + 1));
+        if (entry.isFolder())
+        {
+            children.put(path, new ArrayList<String>());
+        }
+    }
+
+    // Returns the parent path, or null if the parent is not a folder.
+    private String addParentFolders(final String path)
+    {
+        final int index = path.lastIndexOf('/');
+        final String parentPath = index == 0 ? ROOT_PATH : path.substring(0, index);
+        final ZipEntryInfo parent = entries.get(parentPath);
+        if (parent != null)
+        {
+            return parent.isFolder() ? parentPath : null;
+        }
+        final String grandParentPath = addParentFolders(parentPath);
+        if (grandParentPath == null)
+        {
+            return null;
+        }
+        entries.put(parentPath, ZipEntryInfo.impliedFolder(parentPath));
+        children.get(grandParentPath).add(parentPath.substring(parentPath.lastIndexOf('/') + 1));
+        children.put(parentPath, new ArrayList<String>());
+        return parentPath;
+    }
+
+    // Returns null for paths going outside the archive.
+    private static String normalize(final String name)
+    {
+        final StringBuilder path = new StringBuilder();
+        for (final String segment : name.replace('\\', '/').split("/"))
+        {
+            if (segment.isEmpty() || ".".equals(segment))
+            {
+                continue;
+            }
+            if ("..".equals(segment))
+            {
+                return null;
+            }
+            path.append('/').append(segment);
+        }
+        return path.length() == 0 ? ROOT_PATH : path.toString();
+    }
+
+    /**
+     * Creates a file object.
+     */
+    @Override
+    protected FileObject createFile(final AbstractFileName name) throws FileSystemException
+    {
+        return new ZipEntryFileObject(name, entries.get(name.getPathDecoded()), this);
+    }
+
+    /**
+     * Returns the capabilities of this file system.
+     */
+    @Override
+    protected void addCapabilities(final Collection<Capability> caps)
+    {
+        caps.addAll(ZipEntryFileProvider.capabilities);
+    }
+
+    /**
+     * Returns the base names of a folder children, not encoded.
+     */
+    List<String> getChildren(final ZipEntryInfo folder)
+    {
+        final List<String> names = children.get(normalize(folder.getName()));
+        return names != null ? names : new ArrayList<String>();
+    }
+
+    /**
+     * Returns the archive last modified time, given to folders
+     * without a time of their own.
+     */
+    long getArchiveLastModifiedTime()
+    {
+        return archiveLastModifiedTime;
+    }
+
+    /**
+     * Opens an entry content, from its position in the archive.
+     */
+    InputStream getInputStream(final ZipEntryInfo entry) throws IOException
+    {
+        final RandomAccessContent content =
+            getParentLayer().getContent().getRandomAccessContent(RandomAccessMode.READ);
+        try
+        {
+            return ZipEntryInputStream.open(content, entry);
+        }
+        catch (final IOException | RuntimeException e)
+        {
+            closeContent(content);
+            throw e;
+        }
+    }
+
+    private void closeContent(final RandomAccessContent content)
+    {
+        if (content == null)
+        {
+            return;
+        }
+        try
+        {
+            content.close();
+        }
+        catch (final IOException e)
+        {
+            log.warn(e.getLocalizedMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.zipentry;
+
+/**
+ * A zip archive entry, as described by the archive central directory.
+ * Folders implied by entry paths but without an entry of their own
+ * have no position in the archive and no last modified time.
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+class ZipEntryInfo
+{
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private final String name;
+    private final boolean folder;
+    private final int method;
+    private final int flags;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long lastModifiedTime;
+    private final long localHeaderOffset;
+
+    ZipEntryInfo(final String name, final boolean folder, final int method, final int flags,
+                 final long crc, final long compressedSize, final long size,
+                 final long lastModifiedTime, final long localHeaderOffset)
+    {
+        this.name = name;
+        this.folder = folder;
+        this.method = method;
+        this.flags = flags;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+        this.localHeaderOffset = localHeaderOffset;
+    }
+
+    /**
+     * Creates a folder implied by entry paths.
+     */
+    static ZipEntryInfo impliedFolder(final String name)
+    {
+        return new ZipEntryInfo(name, true, STORED, 0, 0, 0, 0, -1, -1);
+    }
+
+    /**
+     * Returns the entry name, as found in the archive.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    public boolean isFolder()
+    {
+        return folder;
+    }
+
+    /**
+     * Returns the compression method.
+     */
+    public int getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * Returns the general purpose bit flags.
+     */
+    public int getFlags()
+    {
+        return flags;
+    }
+
+    public boolean isEncrypted()
+    {
+        return (flags & 1) != 0;
+    }
+
+    /**
+     * Returns the CRC-32 of the uncompressed content.
+     */
+    public long getCrc()
+    {
+        return crc;
+    }
+
+    public long getCompressedSize()
+    {
+        return compressedSize;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the last modified time, or -1 if unknown.
+     */
+    public long getLastModifiedTime()
+    {
+        return lastModifiedTime;
+    }
+
+    /**
+     * Returns the position of the entry local header in the archive,
+     * or -1 for implied folders.
+     */
+    public long getLocalHeaderOffset()
+    {
+        return localHeaderOffset;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.zipentry;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.vfs2.RandomAccessContent;
+
+/**
+ * Streams the content of a single zip entry, straight from its position
+ * in the archive.  The entry size and CRC-32 are verified once fully read.
+ * Closing this stream closes the archive random access content it reads
+ * from.
+ * @since 2.9.0 (Norconex Filesystem Collector)
+ */
+class ZipEntryInputStream
+    extends FilterInputStream
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final RandomAccessContent content;
+    private final ZipEntryInfo entry;
+    private final Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] singleByteBuf = new byte[1];
+    private long count;
+    private boolean verified;
+    private boolean closed;
+
+    private ZipEntryInputStream(final InputStream in, final RandomAccessContent content,
+                                final ZipEntryInfo entry, final Inflater inflater)
+    {
+        super(in);
+        this.content = content;
+        this.entry = entry;
+        this.inflater = inflater;
+    }
+
+    /**
+     * Opens an entry.  The random access content is not closed if the
+     * entry cannot be opened.
+     * @param content the archive content
+     * @param entry the entry to read
+     * @throws IOException unsupported entry or invalid archive
+     */
+    static ZipEntryInputStream open(final RandomAccessContent content, final ZipEntryInfo entry)
+        throws IOException
+    {
+        if (entry.isEncrypted())
+        {
+            throw new IOException("Encrypted zip entries are not supported: \"" + entry + "\".");
+        }
+        if (entry.getMethod() != ZipEntryInfo.STORED && entry.getMethod() != ZipEntryInfo.DEFLATED)
+        {
+            throw new IOException("Unsupported compression method " + entry.getMethod()
+                + " for zip entry \"" + entry + "\".");
+        }
+
+        content.seek(ZipCentralDirectory.getDataOffset(content, entry));
+        final BoundedInputStream raw =
+            new BoundedInputStream(content.getInputStream(), entry.getCompressedSize());
+        raw.setPropagateClose(false);
+        if (entry.getMethod() == ZipEntryInfo.STORED)
+        {
+            return new ZipEntryInputStream(raw, content, entry, null);
+        }
+        final Inflater inflater = new Inflater(true);
+        return new ZipEntryInputStream(
+            new EntryInflaterInputStream(raw, inflater), content, entry, inflater);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        final int n = read(singleByteBuf, 0, 1);
+        return n == -1 ? -1 : singleByteBuf[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        final int n = in.read(b, off, len);
+        if (n > 0)
+        {
+            crc.update(b, off, n);
+            count += n;
+        }
+        else if (n == -1)
+        {
+            verify();
+        }
+        return n;
+    }
+
+    /**
+     * Skips by reading, so the content can still be verified.
+     */
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        final byte[] buf = new byte[(int) Math.min(n, BUFFER_SIZE)];
+        long skipped = 0;
+        while (skipped < n)
+        {
+            final int read = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+            if (read == -1)
+            {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            in.close();
+        }
+        finally
+        {
+            if (inflater != null)
+            {
+                inflater.end();
+            }
+            content.close();
+        }
+    }
+
+    private void verify() throws IOException
+    {
+        if (verified)
+        {
+            return;
+        }
+        verified = true;
+        if (count != entry.getSize())
+        {
+            throw new IOException("Zip entry \"" + entry + "\" has " + count
+                + " bytes instead of " + entry.getSize() + ".");
+        }
+        if (crc.getValue() != entry.getCrc())
+        {
+            throw new IOException("Invalid CRC-32 for zip entry \"" + entry + "\".");
+        }
+    }
+
+    // Inflating without zlib header requires an extra dummy byte at the
+    // end of the input.
+    private static class EntryInflaterInputStream
+        extends InflaterInputStream
+    {
+        private boolean eof;
+
+        EntryInflaterInputStream(final InputStream in, final Inflater inflater)
+        {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        protected void fill() throws IOException
+        {
+            if (eof)
+            {
+                throw new EOFException("Unexpected end of zip entry.");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1)
+            {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+    }
+}
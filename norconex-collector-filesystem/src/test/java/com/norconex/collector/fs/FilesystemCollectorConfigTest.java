@@ -59,6 +59,25 @@ public class FilesystemCollectorConfigTest {
         metaFilter.setField("field");
         metaFilter.setRegex("potato");
         crawlerCfg.setMetadataFilters(metaFilter);
+        crawlerCfg.setFolderStreaming(true);
+        crawlerCfg.setFolderBatchSize(250);
+        crawlerCfg.setFolderWalker(true);
+        crawlerCfg.setFolderWalkerThreads(3);
+        crawlerCfg.setMaxDepth(10);
+        crawlerCfg.setFolderChecksum(true);
+        crawlerCfg.setPrefetchThreads(2);
+        crawlerCfg.setPrefetchMaxBytes(1000000);
+        crawlerCfg.setImportThreads(3);
+        crawlerCfg.setImportHandOff(true);
+        crawlerCfg.setPipelineStats(true);
+        crawlerCfg.setPipelineStatsLogInterval(5000);
+        crawlerCfg.setQueueHighWaterMark(50000);
+        crawlerCfg.setWatchFolders(true);
+        crawlerCfg.setWatchQuietPeriod(3000);
+        crawlerCfg.setStartPathsThreads(3);
+        crawlerCfg.setQueueBatchSize(500);
+        crawlerCfg.setQueueBatchTimeout(2000);
+        crawlerCfg.setArchiveEntries(true);
         config.setCrawlerConfigs(new ICrawlerConfig[] {crawlerCfg});
         
         System.out.println("Writing/Reading this: " + config);
@@ -0,0 +1,55 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.checksum.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.norconex.collector.fs.checksum.impl.FileContentChecksummer.Algorithm;
+import com.norconex.commons.lang.config.XMLConfigurationUtil;
+
+public class FileContentChecksummerTest {
+
+    @Test
+    public void testHashContent() throws IOException {
+        FileContentChecksummer c = new FileContentChecksummer();
+        byte[] content = "123456789".getBytes(StandardCharsets.US_ASCII);
+        // CRC-32 check value
+        Assert.assertEquals("cbf43926_9", 
+                c.hashContent(new ByteArrayInputStream(content)));
+        c.setAlgorithm(Algorithm.ADLER32);
+        Assert.assertEquals("91e01de_9", 
+                c.hashContent(new ByteArrayInputStream(content)));
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        FileContentChecksummer c = new FileContentChecksummer();
+        c.setAlgorithm(Algorithm.ADLER32);
+        c.setKeep(true);
+        c.setTargetField("checksum");
+        System.out.println("Writing/Reading this: " + c);
+        XMLConfigurationUtil.assertWriteRead(c);
+
+        // test empty
+        c = new FileContentChecksummer();
+        System.out.println("Writing/Reading this: " + c);
+        XMLConfigurationUtil.assertWriteRead(c);
+    }
+}
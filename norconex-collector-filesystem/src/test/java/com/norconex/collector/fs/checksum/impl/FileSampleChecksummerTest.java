@@ -0,0 +1,70 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.checksum.impl;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.commons.lang.config.XMLConfigurationUtil;
+
+public class FileSampleChecksummerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testSampleOffsets() {
+        // small files are read in full
+        Assert.assertArrayEquals(new long[] {0, 10, 20}, 
+                FileSampleChecksummer.sampleOffsets(25, 10, 2));
+        // head, tail and evenly spaced blocks in between
+        Assert.assertArrayEquals(new long[] {0, 30, 60, 90}, 
+                FileSampleChecksummer.sampleOffsets(100, 10, 2));
+    }
+
+    @Test
+    public void testHashShrunkFile() throws IOException {
+        File file = tempFolder.newFile("shrunk.txt");
+        FileUtils.writeByteArrayToFile(file, new byte[100]);
+        FileObject fileObject = VFS.getManager().resolveFile(file, "");
+        FileSampleChecksummer c = new FileSampleChecksummer();
+        c.setBlockSize(10);
+        c.setSamples(2);
+        String full = c.hashSamples(fileObject, 100);
+        // size obtained before the file shrunk
+        String stale = c.hashSamples(fileObject, 250);
+        Assert.assertTrue(stale.endsWith("_250"));
+        Assert.assertNotEquals(full, stale);
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        FileSampleChecksummer c = new FileSampleChecksummer();
+        c.setBlockSize(4096);
+        c.setSamples(16);
+        c.setKeep(true);
+        c.setTargetField("checksum");
+        System.out.println("Writing/Reading this: " + c);
+        XMLConfigurationUtil.assertWriteRead(c);
+    }
+}
@@ -0,0 +1,173 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.doc.FileMetadata;
+import com.norconex.collector.fs.fetch.IFileDocumentFetcher;
+import com.norconex.collector.fs.fetch.impl.GenericFileDocumentFetcher;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.io.CachedStreamFactory;
+
+public class ContentPrefetcherTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final CachedStreamFactory streamFactory = 
+            new CachedStreamFactory(1024 * 1024, 1024 * 1024);
+    private final CountDownLatch fetchStarted = new CountDownLatch(1);
+    private ContentPrefetcher prefetcher;
+
+    @After
+    public void tearDown() {
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void testTakeFetchedDocument() throws Exception {
+        File file = newFile("content");
+        prefetcher = new ContentPrefetcher(
+                newCrawler(new GenericFileDocumentFetcher() {
+            @Override
+            public CrawlState fetchDocument(FileObject fileObject,
+                    LocalFileStat localStat, FileDocument doc) {
+                fetchStarted.countDown();
+                super.fetchDocument(fileObject, localStat, doc);
+                doc.getMetadata().setString(
+                        "fetchedBy", Thread.currentThread().getName());
+                return CrawlState.MODIFIED;
+            }
+        }), 1, 1024);
+        prefetcher.prefetch(file.toURI().toString());
+        Assert.assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+
+        // state, content and metadata from the document fetcher
+        FileDocument doc = newDocument(file);
+        Assert.assertEquals(CrawlState.MODIFIED, prefetcher.take(doc));
+        Assert.assertEquals("content", IOUtils.toString(
+                doc.getContent(), StandardCharsets.UTF_8));
+        Assert.assertTrue(doc.getMetadata().getString(
+                "fetchedBy").contains("#prefetch-"));
+        Assert.assertEquals(1, prefetcher.getHitCount());
+        Assert.assertEquals(0, prefetcher.getMissCount());
+    }
+
+    @Test
+    public void testMisses() throws Exception {
+        File file = newFile("content");
+        prefetcher = new ContentPrefetcher(
+                newCrawler(new GenericFileDocumentFetcher() {
+            @Override
+            public CrawlState fetchDocument(FileObject fileObject,
+                    LocalFileStat localStat, FileDocument doc) {
+                fetchStarted.countDown();
+                return super.fetchDocument(fileObject, localStat, doc);
+            }
+        }), 1, 1024);
+
+        // never scheduled: not a miss
+        Assert.assertNull(prefetcher.take(newDocument(file)));
+        Assert.assertEquals(0, prefetcher.getMissCount());
+
+        // changed since prefetched: a miss
+        prefetcher.prefetch(file.toURI().toString());
+        Assert.assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+        FileDocument doc = newDocument(file);
+        doc.getMetadata().setLong(FileMetadata.COLLECTOR_SIZE, 1);
+        Assert.assertNull(prefetcher.take(doc));
+        Assert.assertEquals(0, prefetcher.getHitCount());
+        Assert.assertEquals(1, prefetcher.getMissCount());
+    }
+
+    @Test
+    public void testCloseCancelsPrefetching() throws Exception {
+        File file = newFile("content");
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        prefetcher = new ContentPrefetcher(
+                newCrawler(new GenericFileDocumentFetcher() {
+            @Override
+            public CrawlState fetchDocument(FileObject fileObject,
+                    LocalFileStat localStat, FileDocument doc) {
+                fetchStarted.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    Thread.currentThread().interrupt();
+                }
+                return super.fetchDocument(fileObject, localStat, doc);
+            }
+        }), 1, 1024);
+        prefetcher.prefetch(file.toURI().toString());
+        Assert.assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+
+        prefetcher.close();
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(prefetcher.take(newDocument(file)));
+    }
+
+    private FilesystemCrawler newCrawler(IFileDocumentFetcher fetcher) {
+        FilesystemCrawlerConfig config = new FilesystemCrawlerConfig();
+        config.setId("prefetch-test");
+        config.setDocumentFetcher(fetcher);
+        return new FilesystemCrawler(config) {
+            @Override
+            FileObject resolveFile(String reference)
+                    throws FileSystemException {
+                return VFS.getManager().resolveFile(reference);
+            }
+            @Override
+            public CachedStreamFactory getStreamFactory() {
+                return streamFactory;
+            }
+        };
+    }
+    private File newFile(String content) throws IOException {
+        File file = tempFolder.newFile("prefetch.txt");
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+    // with the metadata the metadata fetcher would have obtained
+    private FileDocument newDocument(File file) throws IOException {
+        FileDocument doc = new FileDocument(
+                file.toURI().toString(), streamFactory.newInputStream());
+        doc.getMetadata().setLong(FileMetadata.COLLECTOR_SIZE, file.length());
+        doc.getMetadata().setLong(FileMetadata.COLLECTOR_LASTMODIFIED, 
+                Files.getLastModifiedTime(file.toPath()).toMillis());
+        return doc;
+    }
+}
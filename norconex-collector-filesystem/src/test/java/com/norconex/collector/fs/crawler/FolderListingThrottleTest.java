@@ -0,0 +1,233 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+public class FolderListingThrottleTest {
+
+    private static final String FOLDER = "file:///tmp/folder";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private ICrawlDataStore store;
+    private File cursorFile;
+
+    @Before
+    public void setUp() {
+        store = (ICrawlDataStore) Proxy.newProxyInstance(
+                getClass().getClassLoader(), 
+                new Class<?>[] { ICrawlDataStore.class }, 
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getQueueSize".equals(method.getName())) {
+                    return queueSize.get();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        cursorFile = new File(tempFolder.getRoot(), "cursors.properties");
+    }
+
+    @Test
+    public void testHighWater() {
+        FolderListingThrottle throttle = newThrottle(2, 60000);
+        queueSize.set(9);
+        Assert.assertFalse(throttle.isHighWater(store));
+        queueSize.set(10);
+        Assert.assertTrue(throttle.isHighWater(store));
+        queueSize.set(11);
+        Assert.assertTrue(throttle.isHighWater(store));
+    }
+
+    @Test
+    public void testPauseUntilBelowHighWater() throws InterruptedException {
+        final FolderListingThrottle throttle = newThrottle(2, 60000);
+        queueSize.set(12);
+        PauseThread listing = new PauseThread() {
+            @Override
+            void pause() {
+                throttle.pause(store, FOLDER, 500, FOLDER + "/file500");
+            }
+        };
+        listing.start();
+        Assert.assertTrue(listing.paused.await(5, TimeUnit.SECONDS));
+
+        // still paused while shrinking, until below the high-water mark
+        queueSize.set(11);
+        assertStillPaused(listing);
+        queueSize.set(10);
+        assertStillPaused(listing);
+        queueSize.set(9);
+        assertResumed(listing);
+
+        Assert.assertEquals(500, throttle.getCursorCount(FOLDER));
+        Assert.assertEquals(
+                FOLDER + "/file500", throttle.getCursorLastChild(FOLDER));
+    }
+
+    @Test
+    public void testCrawlerThreadsLeftToProcess() 
+            throws InterruptedException {
+        // three crawler threads: two can pause, one is left to process
+        final FolderListingThrottle throttle = newThrottle(3, 60000);
+        queueSize.set(10);
+        PauseThread first = new PauseThread() {
+            @Override
+            void pause() {
+                throttle.pause(store, FOLDER + "1");
+            }
+        };
+        PauseThread second = new PauseThread() {
+            @Override
+            void pause() {
+                throttle.pause(store, FOLDER + "2");
+            }
+        };
+        first.start();
+        second.start();
+        Assert.assertTrue(first.paused.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(second.paused.await(5, TimeUnit.SECONDS));
+        assertStillPaused(first);
+        assertStillPaused(second);
+
+        // no pause slot left
+        long start = System.currentTimeMillis();
+        throttle.pause(store, FOLDER + "3", 100, FOLDER + "3/file100");
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertEquals(0, throttle.getCursorCount(FOLDER + "3"));
+
+        queueSize.set(0);
+        assertResumed(first);
+        assertResumed(second);
+    }
+
+    @Test
+    public void testWalkerThreadsAllPaused() throws InterruptedException {
+        // single crawler thread: it is never paused, walkers are
+        final FolderListingThrottle throttle = newThrottle(1, 60000);
+        queueSize.set(10);
+        long start = System.currentTimeMillis();
+        throttle.pause(store, FOLDER);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+
+        PauseThread walker = new PauseThread() {
+            @Override
+            void pause() {
+                throttle.pauseWalker(store, FOLDER);
+            }
+        };
+        walker.start();
+        Assert.assertTrue(walker.paused.await(5, TimeUnit.SECONDS));
+        assertStillPaused(walker);
+        queueSize.set(5);
+        assertResumed(walker);
+
+        // stopping interrupts walker threads
+        queueSize.set(10);
+        walker = new PauseThread() {
+            @Override
+            void pause() {
+                throttle.pauseWalker(store, FOLDER);
+            }
+        };
+        walker.start();
+        Assert.assertTrue(walker.paused.await(5, TimeUnit.SECONDS));
+        walker.interrupt();
+        assertResumed(walker);
+    }
+
+    @Test
+    public void testResumeWhenQueueStalls() throws InterruptedException {
+        final FolderListingThrottle throttle = newThrottle(2, 300);
+        queueSize.set(20);
+        PauseThread listing = new PauseThread() {
+            @Override
+            void pause() {
+                throttle.pause(store, FOLDER, 10, FOLDER + "/file10");
+            }
+        };
+        listing.start();
+        Assert.assertTrue(listing.paused.await(5, TimeUnit.SECONDS));
+        assertResumed(listing);
+        Assert.assertTrue(throttle.isHighWater(store));
+    }
+
+    @Test
+    public void testCursorsOnResume() throws InterruptedException {
+        final FolderListingThrottle throttle = newThrottle(2, 100);
+        queueSize.set(10);
+        throttle.pause(store, FOLDER, 42, FOLDER + "/file42");
+        Assert.assertTrue(cursorFile.isFile());
+
+        FolderListingThrottle resumed = new FolderListingThrottle(
+                10, 2, cursorFile, true, 10, 100);
+        Assert.assertEquals(42, resumed.getCursorCount(FOLDER));
+        Assert.assertEquals(
+                FOLDER + "/file42", resumed.getCursorLastChild(FOLDER));
+        resumed.done(FOLDER);
+        Assert.assertEquals(0, resumed.getCursorCount(FOLDER));
+
+        throttle.pause(store, FOLDER, 42, FOLDER + "/file42");
+        FolderListingThrottle restarted = new FolderListingThrottle(
+                10, 2, cursorFile, false, 10, 100);
+        Assert.assertFalse(cursorFile.exists());
+        Assert.assertEquals(0, restarted.getCursorCount(FOLDER));
+    }
+
+    private FolderListingThrottle newThrottle(
+            int numThreads, long stallTimeout) {
+        return new FolderListingThrottle(
+                10, numThreads, cursorFile, false, 10, stallTimeout);
+    }
+
+    private void assertStillPaused(PauseThread thread) 
+            throws InterruptedException {
+        thread.join(100);
+        Assert.assertTrue(thread.isAlive());
+    }
+    private void assertResumed(PauseThread thread) 
+            throws InterruptedException {
+        thread.join(5000);
+        Assert.assertFalse(thread.isAlive());
+    }
+
+    private abstract static class PauseThread extends Thread {
+        private final CountDownLatch paused = new CountDownLatch(1);
+        @Override
+        public void run() {
+            paused.countDown();
+            pause();
+        }
+        abstract void pause();
+    }
+}
@@ -0,0 +1,182 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+public class FolderWatcherTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Set<String> queued = new HashSet<>();
+    private final Set<String> processed = new HashSet<>();
+    private final List<String> executed = new ArrayList<>();
+    private ICrawlDataStore store;
+    private FilesystemCrawler crawler;
+    private File folder;
+    private File foldersFile;
+    private FolderWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        store = (ICrawlDataStore) Proxy.newProxyInstance(
+                getClass().getClassLoader(), 
+                new Class<?>[] { ICrawlDataStore.class }, 
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                case "isQueued":
+                    return queued.contains(args[0]);
+                case "isProcessed":
+                    return processed.contains(args[0]);
+                case "isActive":
+                    return false;
+                case "getCached":
+                    return null;
+                case "queue":
+                    queued.add(((ICrawlData) args[0]).getReference());
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(
+                            method.getName());
+                }
+            }
+        });
+        FilesystemCrawlerConfig config = new FilesystemCrawlerConfig();
+        config.setId("watcher-test");
+        crawler = new FilesystemCrawler(config) {
+            @Override
+            FileObject resolveFile(String reference)
+                    throws FileSystemException {
+                return VFS.getManager().resolveFile(reference);
+            }
+            @Override
+            protected void executeQueuePipeline(
+                    ICrawlData crawlData, ICrawlDataStore crawlDataStore) {
+                executed.add(crawlData.getReference());
+            }
+        };
+        folder = tempFolder.newFolder("watched");
+        foldersFile = new File(tempFolder.getRoot(), "folders.txt");
+    }
+
+    @After
+    public void tearDown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testCreatedFile() throws Exception {
+        watcher = newWatcher(false);
+        watcher.watch(resolve(folder));
+        Assert.assertEquals(1, watcher.getFolderCount());
+
+        File file = new File(folder, "created.txt");
+        FileUtils.writeStringToFile(file, "created", StandardCharsets.UTF_8);
+        Assert.assertTrue(watcher.awaitChanges(store));
+        Assert.assertEquals(0, watcher.queueDeletions(store));
+        Assert.assertEquals(1, watcher.queueChanges(store));
+        Assert.assertEquals(reference(file), executed.get(0));
+        Assert.assertTrue(queued.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void testDeletedFile() throws Exception {
+        File file = new File(folder, "deleted.txt");
+        File neverProcessed = new File(folder, "new.txt");
+        FileUtils.writeStringToFile(file, "deleted", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(
+                neverProcessed, "new", StandardCharsets.UTF_8);
+        processed.add(reference(file));
+        watcher = newWatcher(false);
+        watcher.watch(resolve(folder));
+
+        // queued to be deleted by the crawler, not processed as changes
+        Assert.assertTrue(file.delete());
+        Assert.assertTrue(neverProcessed.delete());
+        Assert.assertTrue(watcher.awaitChanges(store));
+        Assert.assertEquals(1, watcher.queueDeletions(store));
+        Assert.assertTrue(queued.contains(reference(file)));
+        Assert.assertEquals(0, watcher.queueChanges(store));
+        Assert.assertTrue(executed.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void testWatchAgainOnResume() throws Exception {
+        watcher = newWatcher(false);
+        watcher.watch(resolve(folder));
+        watcher.watch(resolve(folder));
+        watcher.close();
+
+        watcher = newWatcher(true);
+        Assert.assertEquals(1, watcher.getFolderCount());
+        File file = new File(folder, "resumed.txt");
+        FileUtils.writeStringToFile(file, "resumed", StandardCharsets.UTF_8);
+        Assert.assertTrue(watcher.awaitChanges(store));
+        Assert.assertEquals(1, watcher.queueChanges(store));
+        Assert.assertEquals(reference(file), executed.get(0));
+        watcher.close();
+
+        // recorded folders are forgotten when not resuming
+        watcher = newWatcher(false);
+        Assert.assertEquals(0, watcher.getFolderCount());
+        watcher.close();
+        watcher = newWatcher(true);
+        Assert.assertEquals(0, watcher.getFolderCount());
+    }
+
+    @Test
+    public void testAwaitChangesOnceClosed() {
+        watcher = newWatcher(false);
+        watcher.close();
+        Assert.assertFalse(watcher.awaitChanges(store));
+    }
+
+    private FolderWatcher newWatcher(boolean resume) {
+        return new FolderWatcher(crawler, 100, foldersFile, resume);
+    }
+    private FileObject resolve(File file) throws FileSystemException {
+        return VFS.getManager().resolveFile(file.toURI().toString());
+    }
+    private String reference(File file) throws FileSystemException {
+        return resolve(file).getName().getURI();
+    }
+}
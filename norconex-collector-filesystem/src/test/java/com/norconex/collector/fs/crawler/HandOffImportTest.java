@@ -0,0 +1,159 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.core.pipeline.importer.ImporterPipelineContext;
+import com.norconex.collector.fs.data.FileCrawlData;
+import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.pipeline.importer.FileImporterPipelineContext;
+import com.norconex.commons.lang.io.CachedStreamFactory;
+import com.norconex.commons.lang.pipeline.IPipelineStage;
+
+public class HandOffImportTest {
+
+    private final CachedStreamFactory streamFactory = 
+            new CachedStreamFactory(1024, 1024);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Map<String, BaseCrawlData> processed = 
+            new ConcurrentHashMap<>();
+    private final IPipelineStage<ImporterPipelineContext> importStage = 
+            new IPipelineStage<ImporterPipelineContext>() {
+        @Override
+        public boolean execute(ImporterPipelineContext ctx) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    };
+    private ICrawlDataStore store;
+    private ImportExecutor executor;
+    private FilesystemCrawler crawler;
+
+    @Before
+    public void setUp() {
+        store = (ICrawlDataStore) Proxy.newProxyInstance(
+                getClass().getClassLoader(), 
+                new Class<?>[] { ICrawlDataStore.class }, 
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("processed".equals(method.getName())) {
+                    BaseCrawlData crawlData = (BaseCrawlData) args[0];
+                    processed.put(crawlData.getReference(), crawlData);
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        executor = new ImportExecutor("test", 1, 1);
+        FilesystemCrawlerConfig config = new FilesystemCrawlerConfig();
+        config.setId("handoff-test");
+        crawler = new FilesystemCrawler(config) {
+            @Override
+            public ImportExecutor getImportExecutor() {
+                return executor;
+            }
+            @Override
+            public CachedStreamFactory getStreamFactory() {
+                return streamFactory;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    public void testStoppedWithPendingImports() {
+        // one being imported, one waiting to be
+        FileImporterPipelineContext modified = newContext(
+                "file:///modified.txt", "new", newCrawlData(
+                        "file:///modified.txt", "old"));
+        FileImporterPipelineContext added = newContext(
+                "file:///added.txt", "new", null);
+        Assert.assertTrue(crawler.handOffImport(modified, importStage));
+        Assert.assertTrue(crawler.handOffImport(added, importStage));
+        Assert.assertEquals(2, executor.getPendingCount());
+
+        // What crawler threads record as processed right away is what
+        // is left should the crawler be stopped before imports are done,
+        // so the next crawl does not see those documents as unmodified.
+        assertChecksums("old", modified.getCrawlData());
+        Assert.assertEquals(
+                CrawlState.UNMODIFIED, modified.getCrawlData().getState());
+        assertChecksums(null, added.getCrawlData());
+        Assert.assertEquals(
+                CrawlState.UNMODIFIED, added.getCrawlData().getState());
+        Assert.assertTrue(processed.isEmpty());
+    }
+
+    @Test
+    public void testImportedAfterHandOff() {
+        FileImporterPipelineContext modified = newContext(
+                "file:///modified.txt", "new", newCrawlData(
+                        "file:///modified.txt", "old"));
+        Assert.assertTrue(crawler.handOffImport(modified, importStage));
+        assertChecksums("old", modified.getCrawlData());
+
+        release.countDown();
+        executor.awaitIdle();
+        BaseCrawlData imported = processed.get("file:///modified.txt");
+        Assert.assertNotNull(imported);
+        Assert.assertNotSame(modified.getCrawlData(), imported);
+        assertChecksums("new", imported);
+    }
+
+    private FileImporterPipelineContext newContext(String reference, 
+            String checksum, BaseCrawlData cachedCrawlData) {
+        BaseCrawlData crawlData = newCrawlData(reference, checksum);
+        crawlData.setState(cachedCrawlData == null 
+                ? CrawlState.NEW : CrawlState.MODIFIED);
+        return new FileImporterPipelineContext(crawler, store, 
+                new FileDocument(reference, streamFactory.newInputStream()),
+                crawlData, cachedCrawlData, null);
+    }
+    private BaseCrawlData newCrawlData(String reference, String checksum) {
+        BaseCrawlData crawlData = new FileCrawlData(reference);
+        crawlData.setMetaChecksum(checksum);
+        crawlData.setContentChecksum(checksum);
+        return crawlData;
+    }
+    private void assertChecksums(String expected, BaseCrawlData crawlData) {
+        Assert.assertEquals(expected, crawlData.getMetaChecksum());
+        Assert.assertEquals(expected, crawlData.getContentChecksum());
+    }
+}
@@ -0,0 +1,185 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.MDC;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImportExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ImportExecutor executor;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.close();
+        }
+        MDC.clear();
+    }
+
+    @Test
+    public void testHandOffDoesNotWait() throws InterruptedException {
+        executor = new ImportExecutor("test", 1, 2);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger imported = new AtomicInteger();
+        Assert.assertTrue(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                awaitRelease();
+                imported.incrementAndGet();
+            }
+        }));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        // returns right away while the first import is still running
+        Assert.assertTrue(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                imported.incrementAndGet();
+            }
+        }));
+        Assert.assertEquals(0, imported.get());
+        Assert.assertEquals(1, executor.getQueueDepth());
+        Assert.assertEquals(2, executor.getPendingCount());
+
+        release.countDown();
+        executor.awaitIdle();
+        Assert.assertEquals(2, imported.get());
+        Assert.assertEquals(0, executor.getPendingCount());
+        Assert.assertEquals(2, executor.getImportCount());
+        Assert.assertEquals(1, executor.getMaxQueueDepth());
+    }
+
+    @Test
+    public void testHandOffWaitsWhenQueueIsFull() 
+            throws InterruptedException {
+        executor = new ImportExecutor("test", 1, 1);
+        Runnable blocked = new Runnable() {
+            @Override
+            public void run() {
+                awaitRelease();
+            }
+        };
+        // one importing, one queued
+        Assert.assertTrue(executor.submit(blocked));
+        Assert.assertTrue(executor.submit(blocked));
+
+        final CountDownLatch handedOff = new CountDownLatch(1);
+        Thread crawlerThread = new Thread() {
+            @Override
+            public void run() {
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // nothing to import
+                    }
+                });
+                handedOff.countDown();
+            }
+        };
+        crawlerThread.start();
+        Assert.assertFalse(handedOff.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        Assert.assertTrue(handedOff.await(5, TimeUnit.SECONDS));
+        executor.awaitIdle();
+        Assert.assertEquals(3, executor.getImportCount());
+    }
+
+    @Test
+    public void testHandOffKeepsContext() throws InterruptedException {
+        executor = new ImportExecutor("test", 1, 1);
+        final ClassLoader classLoader = new ClassLoader() {};
+        final AtomicReference<Object> mdcValue = new AtomicReference<>();
+        final AtomicReference<ClassLoader> importClassLoader = 
+                new AtomicReference<>();
+        Thread crawlerThread = new Thread() {
+            @Override
+            public void run() {
+                MDC.put("crawler", "test");
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        mdcValue.set(MDC.get("crawler"));
+                        importClassLoader.set(Thread.currentThread()
+                                .getContextClassLoader());
+                    }
+                });
+            }
+        };
+        crawlerThread.setContextClassLoader(classLoader);
+        crawlerThread.start();
+        crawlerThread.join();
+        executor.awaitIdle();
+        Assert.assertEquals("test", mdcValue.get());
+        Assert.assertSame(classLoader, importClassLoader.get());
+
+        // not leaking to the next task
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                mdcValue.set(MDC.get("crawler"));
+            }
+        });
+        executor.awaitIdle();
+        Assert.assertNull(mdcValue.get());
+    }
+
+    @Test
+    public void testHandOffAfterClose() {
+        executor = new ImportExecutor("test", 1, 1);
+        executor.close();
+        final AtomicInteger imported = new AtomicInteger();
+        Assert.assertFalse(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                imported.incrementAndGet();
+            }
+        }));
+        executor.awaitIdle();
+        Assert.assertEquals(0, imported.get());
+        Assert.assertEquals(0, executor.getPendingCount());
+    }
+
+    @Test
+    public void testFailedImportIsDone() {
+        executor = new ImportExecutor("test", 1, 1);
+        Assert.assertTrue(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Failing on purpose.");
+            }
+        }));
+        executor.awaitIdle();
+        Assert.assertEquals(1, executor.getImportCount());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.vfs2.FileType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.fs.crawler.SeedFileReader.Seed;
+import com.norconex.collector.fs.data.SeedMetadata;
+
+public class SeedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testPlain() throws IOException {
+        File file = write("paths.txt", "/a/1.txt\n\n/a/b\n");
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            assertSeed(reader.next(), "/a/1.txt", null);
+            assertSeed(reader.next(), "/a/b", null);
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testTsv() throws IOException {
+        File file = write("inventory.tsv",
+                "path\tsize\tlastModified\ttype\tetag\n"
+              + "/a/1.txt\t12\t1500000000000\tfile\tx\n"
+              + "/a/b\t\t\tfolder\ty\n"
+              + "/a/2.txt\t34\t2017-07-14T02:40:00Z\t\tz\n");
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            assertSeed(reader.next(), "/a/1.txt",
+                    new SeedMetadata(12L, 1500000000000L, FileType.FILE));
+            assertSeed(reader.next(), "/a/b",
+                    new SeedMetadata(null, null, FileType.FOLDER));
+            assertSeed(reader.next(), "/a/2.txt",
+                    new SeedMetadata(34L, 1500000000000L, null));
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        File file = write("inventory.csv",
+                "Size,Path,MTime\n"
+              + "12,\"/a/with, comma.txt\",1500000000000\n"
+              + "34,\"/a/with \"\"quotes\"\".txt\",1500000000000\n"
+              + ",/a/3.txt,\n");
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            assertSeed(reader.next(), "/a/with, comma.txt",
+                    new SeedMetadata(12L, 1500000000000L, null));
+            assertSeed(reader.next(), "/a/with \"quotes\".txt",
+                    new SeedMetadata(34L, 1500000000000L, null));
+            assertSeed(reader.next(), "/a/3.txt", null);
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testGzipJsonLines() throws IOException {
+        File file = tempFolder.newFile("inventory.jsonl.gz");
+        try (OutputStream out =
+                new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(("{\"path\": \"/a/\\u00e9t\\u00e9.txt\", \"size\": 12, "
+                    + "\"lastModified\": 1500000000000, \"type\": \"f\"}\n"
+                    + "{\"path\":\"/a/b\",\"size\":null,\"type\":\"d\"}\n")
+                            .getBytes(StandardCharsets.UTF_8));
+        }
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            assertSeed(reader.next(), "/a/\u00e9t\u00e9.txt",
+                    new SeedMetadata(12L, 1500000000000L, FileType.FILE));
+            assertSeed(reader.next(), "/a/b",
+                    new SeedMetadata(null, null, FileType.FOLDER));
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        File file = write("inventory.tsv",
+                "path\tsize\n/a/1.txt\t12\n/a/2.txt\tbig\n");
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            reader.next();
+            reader.next();
+            Assert.fail("Invalid size should have failed.");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("line 3"));
+        }
+    }
+
+    @Test
+    public void testPathsWithoutHeader() throws IOException {
+        File file = write("paths.csv", "/a/1.txt\n/a/2.txt\n");
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            assertSeed(reader.next(), "/a/1.txt", null);
+            assertSeed(reader.next(), "/a/2.txt", null);
+            Assert.assertNull(reader.next());
+        }
+        file = write("paths.json", "\n/a/1.txt\n/a/b\n");
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            assertSeed(reader.next(), "/a/1.txt", null);
+            assertSeed(reader.next(), "/a/b", null);
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testLastModified() throws IOException {
+        File file = write("inventory.tsv",
+                "path\tmtime\n"
+              + "/a/1.txt\t1500000000\n"
+              + "/a/2.txt\t1500000000.25\n"
+              + "/a/3.txt\t2017-07-14T04:40:00.000+02:00\n");
+        try (SeedFileReader reader = new SeedFileReader(file)) {
+            assertSeed(reader.next(), "/a/1.txt",
+                    new SeedMetadata(null, 1500000000000L, null));
+            assertSeed(reader.next(), "/a/2.txt",
+                    new SeedMetadata(null, 1500000000250L, null));
+            assertSeed(reader.next(), "/a/3.txt",
+                    new SeedMetadata(null, 1500000000000L, null));
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = tempFolder.newFile(name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private void assertSeed(Seed seed, String path, SeedMetadata metadata) {
+        Assert.assertNotNull(seed);
+        Assert.assertEquals(path, seed.getPath());
+        Assert.assertEquals(metadata, seed.getMetadata());
+    }
+}
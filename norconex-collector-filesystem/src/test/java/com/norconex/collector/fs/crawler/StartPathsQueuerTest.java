@@ -0,0 +1,177 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.crawler;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.CollectorException;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+
+public class StartPathsQueuerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ICrawlDataStore store;
+    private File pendingFile;
+    private StartPathsQueuer queuer;
+
+    @Before
+    public void setUp() {
+        store = (ICrawlDataStore) Proxy.newProxyInstance(
+                getClass().getClassLoader(), 
+                new Class<?>[] { ICrawlDataStore.class }, 
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("isQueueEmpty".equals(method.getName())) {
+                    return queueSize.get() == 0;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        pendingFile = new File(tempFolder.getRoot(), "startpaths.pending");
+        queuer = new StartPathsQueuer("test", 2, pendingFile);
+    }
+
+    @After
+    public void tearDown() {
+        queuer.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void testProcessedWhileQueueing() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                queue();
+                release.await();
+                queue();
+                return 2;
+            }
+        });
+        final CountDownLatch queued = new CountDownLatch(1);
+        queuer.start(tasks, new Runnable() {
+            @Override
+            public void run() {
+                queued.countDown();
+            }
+        });
+        Assert.assertTrue(pendingFile.isFile());
+
+        // first start path is processed while others are being queued
+        Assert.assertTrue(queuer.awaitQueued(store));
+        Assert.assertEquals(1, queued.getCount());
+        queueSize.set(0);
+
+        // waits until the next one is queued
+        AwaitThread crawl = new AwaitThread();
+        crawl.start();
+        Assert.assertFalse(crawl.done.await(500, TimeUnit.MILLISECONDS));
+        release.countDown();
+        Assert.assertTrue(crawl.done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(crawl.result);
+        queueSize.set(0);
+
+        // all queued and processed
+        Assert.assertTrue(queued.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(queuer.awaitQueued(store));
+        Assert.assertFalse(pendingFile.exists());
+    }
+
+    @Test(timeout = 30000)
+    public void testStop() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                release.await();
+                return 0;
+            }
+        });
+        queuer.start(tasks, new Runnable() {
+            @Override
+            public void run() {
+                // nothing to wait for
+            }
+        });
+        AwaitThread crawl = new AwaitThread();
+        crawl.start();
+        Assert.assertFalse(crawl.done.await(500, TimeUnit.MILLISECONDS));
+        queuer.stop();
+        Assert.assertTrue(crawl.done.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(crawl.result);
+
+        // queued again when resumed
+        Assert.assertTrue(pendingFile.isFile());
+    }
+
+    @Test(timeout = 30000)
+    public void testFailure() {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                throw new IllegalStateException("Cannot read paths.");
+            }
+        });
+        queuer.start(tasks, new Runnable() {
+            @Override
+            public void run() {
+                // nothing to wait for
+            }
+        });
+        try {
+            queuer.awaitQueued(store);
+            Assert.fail("Should have failed.");
+        } catch (CollectorException e) {
+            Assert.assertTrue(pendingFile.isFile());
+        }
+    }
+
+    private void queue() {
+        queueSize.incrementAndGet();
+        queuer.queued();
+    }
+
+    private class AwaitThread extends Thread {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean result;
+        @Override
+        public void run() {
+            result = queuer.awaitQueued(store);
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.fs.data.FileCrawlData;
+import com.norconex.collector.fs.data.SeedMetadata;
+import com.norconex.commons.lang.file.ContentType;
+
+public class CompactCrawlDataStoreTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testPathTrie() {
+        PathTrie trie = new PathTrie(new ByteSegments.Direct(SEGMENT_SIZE));
+        String[] paths = { "file:///a/b/c.txt", "file:///a/b/",
+                "file:///a/b", "smb://host/share/c.txt", "/", "" };
+        int[] nodes = new int[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            nodes[i] = trie.add(paths[i]);
+        }
+        for (int i = 0; i < paths.length; i++) {
+            Assert.assertEquals(nodes[i], trie.get(paths[i]));
+            Assert.assertEquals(paths[i], trie.getPath(nodes[i]));
+        }
+        Assert.assertEquals(PathTrie.NONE, trie.get("file:///a/c.txt"));
+    }
+
+    @Test
+    public void testQueueAndProcess() throws IOException {
+        CompactCrawlDataStore store = newStore(false);
+        store.queue(newCrawlData("file:///a/1.txt"));
+        store.queue(newCrawlData("file:///a/2.txt"));
+        store.queue(newCrawlData("file:///a/1.txt"));
+        Assert.assertEquals(2, store.getQueueSize());
+        Assert.assertTrue(store.isQueued("file:///a/2.txt"));
+
+        BaseCrawlData data = (BaseCrawlData) store.nextQueued();
+        Assert.assertEquals("file:///a/1.txt", data.getReference());
+        Assert.assertEquals("meta", data.getMetaChecksum());
+        Assert.assertTrue(store.isActive("file:///a/1.txt"));
+        Assert.assertEquals(1, store.getActiveCount());
+
+        data.setState(CrawlState.NEW);
+        store.processed(data);
+        Assert.assertTrue(store.isProcessed("file:///a/1.txt"));
+        Assert.assertEquals(1, store.getProcessedCount());
+        Assert.assertEquals(0, store.getActiveCount());
+        Assert.assertEquals(1, store.getQueueSize());
+        store.close();
+    }
+
+    @Test
+    public void testQueueBatch() throws IOException {
+        CompactCrawlDataStore store = newStore(false);
+        store.queue(newCrawlData("file:///a/1.txt"));
+        BaseCrawlData data = (BaseCrawlData) store.nextQueued();
+        data.setState(CrawlState.NEW);
+        store.processed(data);
+        store.queue(newCrawlData("file:///a/2.txt"));
+        store.queue(newCrawlData("file:///a/3.txt"));
+        store.nextQueued();
+
+        // Processed, queued or active references are not queued again
+        List<ICrawlData> queued = store.queueBatch(Arrays.asList(
+                (ICrawlData) newCrawlData("file:///a/1.txt"),
+                newCrawlData("file:///a/2.txt"),
+                newCrawlData("file:///a/3.txt"),
+                newCrawlData("file:///a/4.txt"),
+                newCrawlData("file:///b/5.txt")));
+        Assert.assertEquals(2, queued.size());
+        Assert.assertEquals("file:///a/4.txt", queued.get(0).getReference());
+        Assert.assertEquals("file:///b/5.txt", queued.get(1).getReference());
+        Assert.assertEquals(3, store.getQueueSize());
+        Assert.assertEquals(1, store.getActiveCount());
+        Assert.assertTrue(store.isQueued("file:///b/5.txt"));
+        store.close();
+    }
+
+    @Test
+    public void testResumeAndCache() throws IOException {
+        CompactCrawlDataStore store = newStore(false);
+        store.queue(newCrawlData("file:///a/1.txt"));
+        store.queue(newCrawlData("file:///a/2.txt"));
+        store.queue(newCrawlData("file:///a/3.txt"));
+        BaseCrawlData data = (BaseCrawlData) store.nextQueued();
+        data.setState(CrawlState.NEW);
+        store.processed(data);
+        data = (BaseCrawlData) store.nextQueued();
+        data.setState(CrawlState.ERROR);
+        store.processed(data);
+        store.close();
+
+        // Resumed: processed remain processed, queued remain queued
+        store = newStore(true);
+        Assert.assertEquals(2, store.getProcessedCount());
+        Assert.assertEquals(1, store.getQueueSize());
+        data = (BaseCrawlData) store.nextQueued();
+        Assert.assertEquals("file:///a/3.txt", data.getReference());
+        data.setState(CrawlState.NEW);
+        store.processed(data);
+        store.close();
+
+        // Next crawl: only valid references are cached
+        store = newStore(false);
+        Assert.assertEquals(0, store.getProcessedCount());
+        Assert.assertNull(store.getCached("file:///a/2.txt"));
+        BaseCrawlData cached =
+                (BaseCrawlData) store.getCached("file:///a/3.txt");
+        Assert.assertEquals(CrawlState.NEW, cached.getState());
+        Assert.assertEquals("meta", cached.getMetaChecksum());
+        Assert.assertEquals("text/plain", cached.getContentType().toString());
+        Assert.assertEquals(1000L, cached.getCrawlDate().getTime());
+
+        // Processed cached references are no longer iterated
+        cached.setState(CrawlState.UNMODIFIED);
+        store.processed(cached);
+        int count = 0;
+        for (Iterator<ICrawlData> it = store.getCacheIterator();
+                it.hasNext();) {
+            Assert.assertEquals("file:///a/1.txt", it.next().getReference());
+            count++;
+        }
+        Assert.assertEquals(1, count);
+        store.close();
+    }
+
+    @Test
+    public void testSeedMetadata() throws IOException {
+        SeedMetadata seed = 
+                new SeedMetadata(12L, 1500000000000L, FileType.FILE);
+        FileCrawlData seeded = new FileCrawlData("file:///a/1.txt");
+        seeded.setSeedMetadata(seed);
+        CompactCrawlDataStore store = newStore(false);
+        store.queue(seeded);
+        store.queue(newCrawlData("file:///a/2.txt"));
+        store.close();
+
+        // Kept when resumed, until processed
+        store = newStore(true);
+        ICrawlData data = store.nextQueued();
+        Assert.assertEquals(seed, FileCrawlData.getSeedMetadata(data));
+        ((FileCrawlData) data).setSeedMetadata(null);
+        ((FileCrawlData) data).setState(CrawlState.NEW);
+        store.processed(data);
+        data = store.nextQueued();
+        Assert.assertNull(FileCrawlData.getSeedMetadata(data));
+        Assert.assertEquals("meta", data.getMetaChecksum());
+        store.close();
+    }
+
+    private CompactCrawlDataStore newStore(boolean resume) {
+        File dir = new File(tempFolder.getRoot(), "store");
+        return new CompactCrawlDataStore(dir, resume, SEGMENT_SIZE);
+    }
+
+    private BaseCrawlData newCrawlData(String reference) {
+        BaseCrawlData data = new BaseCrawlData(reference);
+        data.setMetaChecksum("meta");
+        data.setContentType(ContentType.valueOf("text/plain"));
+        data.setCrawlDate(new Date(1000L));
+        return data;
+    }
+}
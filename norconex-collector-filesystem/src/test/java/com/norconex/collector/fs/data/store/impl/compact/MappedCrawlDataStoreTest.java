@@ -0,0 +1,161 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.data.store.impl.compact;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.commons.lang.config.XMLConfigurationUtil;
+import com.norconex.commons.lang.file.ContentType;
+
+public class MappedCrawlDataStoreTest {
+
+    // small enough for entries to span many segments
+    private static final int SEGMENT_SIZE = 256;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws IOException {
+        MappedCrawlDataStoreFactory f = new MappedCrawlDataStoreFactory();
+        f.setSegmentSize(1024 * 1024);
+        f.setSyncBatchSize(50);
+        System.out.println("Writing/Reading this: " + f);
+        XMLConfigurationUtil.assertWriteRead(f);
+    }
+
+    @Test
+    public void testResumeAfterCrash() throws IOException {
+        MappedCrawlDataStore store = newStore(false);
+        for (int i = 0; i < 20; i++) {
+            store.queue(newCrawlData("file:///a/" + i + ".txt"));
+        }
+        for (int i = 0; i < 5; i++) {
+            BaseCrawlData data = (BaseCrawlData) store.nextQueued();
+            data.setState(i == 0 ? CrawlState.ERROR : CrawlState.NEW);
+            store.processed(data);
+        }
+        store.nextQueued();
+        // not closed, as if the crawler was killed
+
+        // Active reference is queued again
+        store = newStore(true);
+        Assert.assertEquals(5, store.getProcessedCount());
+        Assert.assertEquals(15, store.getQueueSize());
+        Assert.assertEquals(0, store.getActiveCount());
+        Assert.assertTrue(store.isQueued("file:///a/5.txt"));
+        BaseCrawlData data = (BaseCrawlData) store.nextQueued();
+        Assert.assertEquals("file:///a/5.txt", data.getReference());
+        Assert.assertEquals("meta", data.getMetaChecksum());
+        Assert.assertEquals("text/plain", data.getContentType().toString());
+        store.close();
+    }
+
+    @Test
+    public void testCorruptedEntry() throws IOException {
+        MappedCrawlDataStore store = newStore(false);
+        store.queue(newCrawlData("file:///a/1.txt"));
+        store.queue(newCrawlData("file:///a/2.txt"));
+        File file = store.getFile();
+        store.close();
+
+        // Corrupt the last entry, as if partially written
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int pos = new String(bytes, StandardCharsets.ISO_8859_1)
+                .indexOf("file:///a/2.txt");
+        bytes[pos] = 'F';
+        Files.write(file.toPath(), bytes);
+
+        store = newStore(true);
+        Assert.assertEquals(1, store.getQueueSize());
+        Assert.assertTrue(store.isQueued("file:///a/1.txt"));
+        store.queue(newCrawlData("file:///a/3.txt"));
+        store.close();
+
+        store = newStore(true);
+        Assert.assertEquals(2, store.getQueueSize());
+        Assert.assertTrue(store.isQueued("file:///a/3.txt"));
+        store.close();
+    }
+
+    @Test
+    public void testNextCrawlCache() throws IOException {
+        MappedCrawlDataStore store = newStore(false);
+        store.queue(newCrawlData("file:///a/1.txt"));
+        store.queue(newCrawlData("file:///a/2.txt"));
+        store.queue(newCrawlData("file:///a/3.txt"));
+        for (int i = 0; i < 3; i++) {
+            BaseCrawlData data = (BaseCrawlData) store.nextQueued();
+            data.setState(i == 1 ? CrawlState.ERROR : CrawlState.NEW);
+            store.processed(data);
+        }
+        File previousFile = store.getFile();
+        store.close();
+
+        // Only valid references are cached, in a new file
+        store = newStore(false);
+        Assert.assertFalse(previousFile.equals(store.getFile()));
+        Assert.assertFalse(previousFile.exists());
+        Assert.assertEquals(0, store.getProcessedCount());
+        Assert.assertNull(store.getCached("file:///a/2.txt"));
+        BaseCrawlData cached =
+                (BaseCrawlData) store.getCached("file:///a/3.txt");
+        Assert.assertEquals(CrawlState.NEW, cached.getState());
+        Assert.assertEquals(1000L, cached.getCrawlDate().getTime());
+
+        cached.setState(CrawlState.UNMODIFIED);
+        store.processed(cached);
+        int count = 0;
+        for (Iterator<ICrawlData> it = store.getCacheIterator();
+                it.hasNext();) {
+            Assert.assertEquals("file:///a/1.txt", it.next().getReference());
+            count++;
+        }
+        Assert.assertEquals(1, count);
+        store.close();
+
+        // Cache is kept when resuming
+        store = newStore(true);
+        Assert.assertEquals(1, store.getProcessedCount());
+        Assert.assertFalse(store.isCacheEmpty());
+        store.close();
+    }
+
+    private MappedCrawlDataStore newStore(boolean resume) {
+        File dir = new File(tempFolder.getRoot(), "store");
+        return new MappedCrawlDataStore(dir, resume, SEGMENT_SIZE, 2);
+    }
+
+    private BaseCrawlData newCrawlData(String reference) {
+        BaseCrawlData data = new BaseCrawlData(reference);
+        data.setMetaChecksum("meta");
+        data.setContentType(ContentType.valueOf("text/plain"));
+        data.setCrawlDate(new Date(1000L));
+        return data;
+    }
+}
@@ -0,0 +1,143 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.fetch;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.data.CrawlState;
+import com.norconex.collector.fs.doc.FileDocument;
+import com.norconex.collector.fs.doc.FileMetadata;
+import com.norconex.collector.fs.fetch.impl.GenericFileDocumentFetcher;
+import com.norconex.collector.fs.fetch.impl.GenericFileMetadataFetcher;
+import com.norconex.collector.fs.util.LocalFileStat;
+import com.norconex.commons.lang.io.CachedStreamFactory;
+import com.norconex.commons.lang.map.Properties;
+
+public class FetcherUtilTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+    
+    @Test
+    public void testLocalFileMetadata() throws IOException {
+        FileObject file = newFile();
+        LocalFileStat stat = LocalFileStat.stat(file);
+        
+        Properties metadata = new Properties();
+        FetcherUtil.fetchMetadata(
+                new GenericFileMetadataFetcher(), file, stat, metadata);
+        Assert.assertEquals(stat.getLastModified(), (long) metadata.getLong(
+                FileMetadata.COLLECTOR_LASTMODIFIED));
+        // local file attributes are opt-in
+        Assert.assertEquals(0, countAttributes(metadata));
+        
+        GenericFileMetadataFetcher fetcher = new GenericFileMetadataFetcher();
+        fetcher.setLocalFileAttributes(true);
+        metadata = new Properties();
+        FetcherUtil.fetchMetadata(fetcher, file, stat, metadata);
+        Assert.assertEquals(
+                stat.getAttributes().size(), countAttributes(metadata));
+    }
+
+    @Test
+    public void testOverriddenMetadataFetch() throws IOException {
+        FileObject file = newFile();
+        Properties metadata = new Properties();
+        FetcherUtil.fetchMetadata(new GenericFileMetadataFetcher() {
+            @Override
+            public CrawlState fetchMetadata(FileObject fileObject,
+                    LocalFileStat localStat, Properties metadata) {
+                metadata.setString("overridden", "true");
+                return super.fetchMetadata(fileObject, localStat, metadata);
+            }
+        }, file, LocalFileStat.stat(file), metadata);
+        Assert.assertEquals("true", metadata.getString("overridden"));
+        Assert.assertTrue(metadata.containsKey(FileMetadata.COLLECTOR_SIZE));
+    }
+
+    @Test
+    public void testRegularMetadataFetch() throws IOException {
+        FileObject file = newFile();
+        Properties metadata = new Properties();
+        // not accepting local file attributes
+        FetcherUtil.fetchMetadata(new IFileMetadataFetcher() {
+            @Override
+            public CrawlState fetchMetadada(
+                    FileObject fileObject, Properties metadata) {
+                metadata.setString("regular", "true");
+                return CrawlState.NEW;
+            }
+        }, file, LocalFileStat.stat(file), metadata);
+        Assert.assertEquals("true", metadata.getString("regular"));
+    }
+
+    @Test
+    public void testOverriddenDocumentFetch() throws IOException {
+        FileObject file = newFile();
+        FileDocument doc = new FileDocument(file.getName().getURI(),
+                new CachedStreamFactory(1024, 1024).newInputStream());
+        CrawlState state = FetcherUtil.fetchDocument(
+                new GenericFileDocumentFetcher() {
+            @Override
+            public CrawlState fetchDocument(FileObject fileObject, 
+                    LocalFileStat localStat, FileDocument doc) {
+                doc.getMetadata().setString("overridden", "true");
+                return super.fetchDocument(fileObject, localStat, doc);
+            }
+        }, file, LocalFileStat.stat(file), doc);
+        Assert.assertEquals(CrawlState.NEW, state);
+        Assert.assertEquals(
+                "true", doc.getMetadata().getString("overridden"));
+    }
+
+    @Test
+    public void testLocalFileDocument() throws IOException {
+        FileObject file = newFile();
+        LocalFileStat stat = LocalFileStat.stat(file);
+        file.delete();
+        // Obtained local file attributes are used instead of checking
+        // the file again, and streamed files are only opened when read.
+        GenericFileDocumentFetcher fetcher = new GenericFileDocumentFetcher();
+        fetcher.setStreamLocalFiles(true);
+        FileDocument doc = new FileDocument(file.getName().getURI(),
+                new CachedStreamFactory(1024, 1024).newInputStream());
+        Assert.assertEquals(CrawlState.NEW, 
+                FetcherUtil.fetchDocument(fetcher, file, stat, doc));
+        Assert.assertEquals(CrawlState.NOT_FOUND, 
+                fetcher.fetchDocument(file, doc));
+    }
+
+    private int countAttributes(Properties metadata) {
+        int count = 0;
+        for (String key : metadata.keySet()) {
+            if (key.startsWith(FileMetadata.COLLECTOR_PREFIX + "attribute.")) {
+                count++;
+            }
+        }
+        return count;
+    }
+    private FileObject newFile() throws IOException {
+        File file = tempFolder.newFile("test.txt");
+        return VFS.getManager().resolveFile(file.toURI().toString());
+    }
+}
@@ -0,0 +1,37 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.fetch.impl;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.norconex.commons.lang.config.XMLConfigurationUtil;
+
+public class GenericFileDocumentFetcherTest {
+    
+    @Test
+    public void testWriteRead() throws IOException {
+        GenericFileDocumentFetcher f = new GenericFileDocumentFetcher();
+        f.setStreamLocalFiles(true);
+        System.out.println("Writing/Reading this: " + f);
+        XMLConfigurationUtil.assertWriteRead(f);
+
+        // test empty
+        f = new GenericFileDocumentFetcher();
+        System.out.println("Writing/Reading this: " + f);
+        XMLConfigurationUtil.assertWriteRead(f);
+    }
+}
@@ -0,0 +1,129 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.fetch.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.provider.AbstractFileName;
+import org.apache.commons.vfs2.provider.smb.SmbFileNameParser;
+import org.apache.commons.vfs2.provider.smb.SmbFileObject;
+import org.apache.commons.vfs2.provider.smb.SmbFileSystem;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.norconex.commons.lang.map.Properties;
+
+import jcifs.smb.ACE;
+import jcifs.smb.SmbFile;
+
+public class SmbAclFetcherTest {
+
+    private static final String ROOT = "smb://server/share/";
+
+    // URIs of files and folders, once per security descriptor read
+    private final List<String> securityReads = new ArrayList<>();
+
+    @Test
+    public void testOwnACL() throws Exception {
+        TestFileSystem fs = new TestFileSystem();
+        SmbAclFetcher fetcher = new SmbAclFetcher(10, 10, 0);
+        fetcher.fetchACL(fs.file("folder/a.txt"), new Properties());
+        fetcher.fetchACL(fs.file("folder/b.txt"), new Properties());
+        fetcher.fetchACL(fs.file("folder/c.txt"), new Properties());
+        Assert.assertEquals(3, securityReads.size());
+    }
+
+    @Test
+    public void testInheritedACL() throws Exception {
+        TestFileSystem fs = new TestFileSystem();
+        SmbAclFetcher fetcher = new SmbAclFetcher(10, 10, 0);
+        fetcher.fetchInheritedACL(fs.file("folder/a.txt"), new Properties());
+        fetcher.fetchInheritedACL(fs.file("folder/b.txt"), new Properties());
+        fetcher.fetchInheritedACL(fs.file("folder/c.txt"), new Properties());
+        fetcher.fetchInheritedACL(fs.file("other/d.txt"), new Properties());
+        fetcher.fetchInheritedACL(fs.file("other/e.txt"), new Properties());
+
+        // once per folder, never for files
+        Assert.assertEquals(2, securityReads.size());
+        Assert.assertTrue(securityReads.contains(ROOT + "folder"));
+        Assert.assertTrue(securityReads.contains(ROOT + "other"));
+
+        // read again once cleared
+        fetcher.clear();
+        fetcher.fetchInheritedACL(fs.file("folder/a.txt"), new Properties());
+        Assert.assertEquals(3, securityReads.size());
+    }
+
+    private final class TestFileSystem extends SmbFileSystem {
+        private final Map<String, TestFileObject> files = new HashMap<>();
+        private TestFileSystem() throws FileSystemException {
+            super(SmbFileNameParser.getInstance().parseUri(
+                    null, null, ROOT), new FileSystemOptions());
+        }
+        private TestFileObject file(String path) throws Exception {
+            TestFileObject file = files.get(path);
+            if (file == null) {
+                file = new TestFileObject(this, path);
+                files.put(path, file);
+            }
+            return file;
+        }
+    }
+
+    private final class TestFileObject extends SmbFileObject {
+        private final TestFileSystem fs;
+        private final String path;
+        private final SmbFile smbFile;
+        private TestFileObject(TestFileSystem fs, String path) 
+                throws Exception {
+            super((AbstractFileName) SmbFileNameParser.getInstance()
+                    .parseUri(null, null, ROOT + path), fs);
+            this.fs = fs;
+            this.path = path;
+            final String uri = getName().getURI();
+            this.smbFile = new SmbFile(ROOT + path) {
+                @Override
+                public ACE[] getSecurity(boolean resolveSids)
+                        throws IOException {
+                    securityReads.add(uri);
+                    return new ACE[] {};
+                }
+            };
+        }
+        @Override
+        public SmbFile getSmbFile() {
+            return smbFile;
+        }
+        @Override
+        public FileObject getParent() throws FileSystemException {
+            int index = path.lastIndexOf('/');
+            if (index == -1) {
+                return null;
+            }
+            try {
+                return fs.file(path.substring(0, index));
+            } catch (Exception e) {
+                throw new FileSystemException(e);
+            }
+        }
+    }
+}
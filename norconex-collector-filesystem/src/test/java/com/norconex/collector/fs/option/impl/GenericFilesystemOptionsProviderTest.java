@@ -71,6 +71,8 @@ public class GenericFilesystemOptionsProviderTest {
         p.setSftpTimeout(5678);
         p.setSftpUserDirIsRoot(true);
         
+        p.setSmbCredentialsIdleTimeout(60000);
+        
         System.out.println("Writing/Reading this: " + p);
         XMLConfigurationUtil.assertWriteRead(p);
         
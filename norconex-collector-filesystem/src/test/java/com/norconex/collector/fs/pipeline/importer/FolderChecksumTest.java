@@ -0,0 +1,201 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.norconex.collector.core.crawler.ICrawler;
+import com.norconex.collector.core.crawler.ICrawlerConfig;
+import com.norconex.collector.core.crawler.ICrawlerConfig.OrphansStrategy;
+import com.norconex.collector.core.crawler.event.CrawlerEvent;
+import com.norconex.collector.core.crawler.event.ICrawlerEventListener;
+import com.norconex.collector.core.filter.IReferenceFilter;
+import com.norconex.collector.core.filter.impl.RegexReferenceFilter;
+import com.norconex.collector.fs.FilesystemCollector;
+import com.norconex.collector.fs.FilesystemCollectorConfig;
+import com.norconex.collector.fs.crawler.FilesystemCrawlerConfig;
+import com.norconex.committer.core.impl.NilCommitter;
+import com.norconex.importer.handler.filter.OnMatch;
+
+/**
+ * Crawls the same tree twice with folder checksums, to find which files
+ * of unmodified folders are carried forward and which are queued again.
+ * @author Pascal Essiembre
+ */
+public class FolderChecksumTest {
+
+    private static final String ROOT = "root";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    // Event type -> file paths relative to the root, for the last run
+    private final Map<String, Set<String>> events = 
+            Collections.synchronizedMap(new HashMap<String, Set<String>>());
+    private File root;
+    private FilesystemCrawlerConfig crawlerCfg;
+    private FilesystemCollector collector;
+
+    @Before
+    public void setUp() throws IOException {
+        root = tempFolder.newFolder(ROOT);
+        write("same/s1.txt", "s1");
+        write("same/s2.txt", "s2");
+        write("same/inner/i1.txt", "i1");
+        write("modified/m1.txt", "m1");
+        write("modified/m2.txt", "m2");
+        write("parent/p.txt", "p");
+        write("parent/nested/n1.txt", "n1");
+        write("deleted/d1.txt", "d1");
+        write("deleted/d2.txt", "d2");
+        write("filtered/f1.txt", "f1");
+
+        crawlerCfg = new FilesystemCrawlerConfig();
+        crawlerCfg.setId("checksum-crawler");
+        crawlerCfg.setCommitter(new NilCommitter());
+        crawlerCfg.setStartPaths(new String[] {root.getAbsolutePath()});
+        crawlerCfg.setWorkDir(tempFolder.newFolder("work"));
+        crawlerCfg.setFolderChecksum(true);
+        crawlerCfg.setOrphansStrategy(OrphansStrategy.DELETE);
+        crawlerCfg.setCrawlerListeners(new ICrawlerEventListener() {
+            @Override
+            public void crawlerEvent(ICrawler crawler, CrawlerEvent event) {
+                String ref = event.getCrawlData().getReference();
+                int index = ref.indexOf("/" + ROOT + "/");
+                if (index == -1 || !ref.endsWith(".txt")) {
+                    return;
+                }
+                synchronized (events) {
+                    Set<String> paths = events.get(event.getEventType());
+                    if (paths == null) {
+                        paths = new TreeSet<>();
+                        events.put(event.getEventType(), paths);
+                    }
+                    paths.add(ref.substring(index + ROOT.length() + 2));
+                }
+            }
+        });
+
+        FilesystemCollectorConfig config = new FilesystemCollectorConfig();
+        config.setId("checksum-collector");
+        config.setLogsDir(crawlerCfg.getWorkDir().getAbsolutePath());
+        config.setProgressDir(crawlerCfg.getWorkDir().getAbsolutePath());
+        config.setCrawlerConfigs(new ICrawlerConfig[] {crawlerCfg});
+        collector = new FilesystemCollector(config);
+    }
+
+    @Test
+    public void testIncrementalRun() throws IOException {
+        crawl();
+        Assert.assertEquals(paths("deleted/d1.txt", "deleted/d2.txt", 
+                "filtered/f1.txt", "modified/m1.txt", "modified/m2.txt", 
+                "parent/nested/n1.txt", "parent/p.txt", "same/inner/i1.txt",
+                "same/s1.txt", "same/s2.txt"), 
+                events(CrawlerEvent.DOCUMENT_COMMITTED_ADD));
+
+        // a file modified in place, and one in a folder of an otherwise
+        // unmodified folder
+        modify("modified/m1.txt");
+        modify("same/inner/i1.txt");
+        // a file added to a nested folder
+        write("parent/nested/n2.txt", "n2");
+        // a file deleted
+        FileUtils.forceDelete(file("deleted/d2.txt"));
+        // a folder rejected by a filter
+        crawlerCfg.setReferenceFilters(new IReferenceFilter[] {
+                new RegexReferenceFilter(".*/filtered/?", OnMatch.EXCLUDE)});
+
+        crawl();
+
+        // Files of modified folders are queued again, unmodified 
+        // ones being rejected as such once queued. A folder is modified
+        // when a sub-folder date changes (e.g., a file was added to it).
+        Assert.assertEquals(paths("deleted/d1.txt", "modified/m1.txt", 
+                "modified/m2.txt", "parent/nested/n1.txt", 
+                "parent/nested/n2.txt", "parent/p.txt", "same/inner/i1.txt"),
+                events(CrawlerEvent.DOCUMENT_QUEUED));
+        Assert.assertEquals(paths("modified/m1.txt", "parent/nested/n2.txt",
+                "same/inner/i1.txt"),
+                events(CrawlerEvent.DOCUMENT_COMMITTED_ADD));
+
+        // files of unmodified folders are carried forward, while their
+        // sub-folders are still checked
+        Set<String> carried = events(CrawlerEvent.REJECTED_UNMODIFIED);
+        carried.removeAll(events(CrawlerEvent.DOCUMENT_QUEUED));
+        Assert.assertEquals(paths("same/s1.txt", "same/s2.txt"), carried);
+
+        // deleted files and files of a rejected folder are orphans
+        Assert.assertEquals(paths("deleted/d2.txt", "filtered/f1.txt"),
+                events(CrawlerEvent.DOCUMENT_COMMITTED_REMOVE));
+    }
+
+    @Test
+    public void testUnmodifiedRun() throws IOException {
+        crawl();
+        crawl();
+        // nothing queued, committed or deleted: all carried forward
+        Assert.assertEquals(paths(), events(CrawlerEvent.DOCUMENT_QUEUED));
+        Assert.assertEquals(
+                paths(), events(CrawlerEvent.DOCUMENT_COMMITTED_ADD));
+        Assert.assertEquals(
+                paths(), events(CrawlerEvent.DOCUMENT_COMMITTED_REMOVE));
+        Assert.assertEquals(paths("deleted/d1.txt", "deleted/d2.txt", 
+                "filtered/f1.txt", "modified/m1.txt", "modified/m2.txt", 
+                "parent/nested/n1.txt", "parent/p.txt", "same/inner/i1.txt",
+                "same/s1.txt", "same/s2.txt"), 
+                events(CrawlerEvent.REJECTED_UNMODIFIED));
+    }
+
+    private void crawl() {
+        events.clear();
+        collector.start(false);
+    }
+    private Set<String> events(String eventType) {
+        Set<String> paths = events.get(eventType);
+        return paths == null ? paths() : new TreeSet<>(paths);
+    }
+    private static Set<String> paths(String... paths) {
+        return new TreeSet<>(Arrays.asList(paths));
+    }
+    private File file(String path) {
+        return new File(root, path);
+    }
+    // Same folder date, different file size and date
+    private void modify(String path) throws IOException {
+        File file = file(path);
+        long lastModified = file.lastModified();
+        write(path, path + " modified");
+        file.setLastModified(lastModified + 10000);
+    }
+    private void write(String path, String content) throws IOException {
+        FileUtils.writeStringToFile(
+                file(path), content, StandardCharsets.UTF_8);
+    }
+}
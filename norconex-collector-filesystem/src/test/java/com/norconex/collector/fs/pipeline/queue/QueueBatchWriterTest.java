@@ -0,0 +1,160 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.queue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.norconex.collector.core.crawler.event.CrawlerEvent;
+import com.norconex.collector.core.data.BaseCrawlData;
+import com.norconex.collector.core.data.ICrawlData;
+import com.norconex.collector.core.data.store.ICrawlDataStore;
+import com.norconex.collector.fs.crawler.FilesystemCrawler;
+import com.norconex.collector.fs.crawler.FilesystemCrawlerConfig;
+import com.norconex.collector.fs.data.store.IBatchQueueCrawlDataStore;
+
+public class QueueBatchWriterTest {
+
+    private final ScheduledExecutorService timer = 
+            Executors.newSingleThreadScheduledExecutor();
+    private final List<String> queued = 
+            Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> events = 
+            Collections.synchronizedList(new ArrayList<String>());
+    private final List<Integer> batchSizes = 
+            Collections.synchronizedList(new ArrayList<Integer>());
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void testBatchWrittenWhenFull() {
+        QueueBatchWriter writer = newWriter(newStore(true), 2, 60000);
+        writer.add(new BaseCrawlData("file:///a/1.txt"));
+        Assert.assertTrue(batchSizes.isEmpty());
+        writer.add(new BaseCrawlData("file:///a/2.txt"));
+        Assert.assertEquals(Collections.singletonList(2), batchSizes);
+        Assert.assertEquals(2, events.size());
+
+        // already queued references are not queued again
+        writer.add(new BaseCrawlData("file:///a/2.txt"));
+        writer.add(new BaseCrawlData("file:///a/3.txt"));
+        Assert.assertEquals(3, queued.size());
+        Assert.assertEquals(3, events.size());
+    }
+
+    @Test(timeout = 30000)
+    public void testBatchWrittenWhenTimedOut() throws InterruptedException {
+        QueueBatchWriter writer = newWriter(newStore(true), 100, 200);
+        writer.add(new BaseCrawlData("file:///a/1.txt"));
+        writer.add(new BaseCrawlData("file:///a/2.txt"));
+
+        // written without adding or flushing
+        while (queued.size() < 2) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        Assert.assertEquals(Collections.singletonList(2), batchSizes);
+
+        writer.add(new BaseCrawlData("file:///a/3.txt"));
+        writer.flush();
+        Assert.assertEquals(3, queued.size());
+        TimeUnit.MILLISECONDS.sleep(400);
+        Assert.assertEquals(2, batchSizes.size());
+    }
+
+    @Test
+    public void testQueuedOneByOne() {
+        QueueBatchWriter writer = newWriter(newStore(false), 10, 60000);
+        writer.add(new BaseCrawlData("file:///a/1.txt"));
+        writer.add(new BaseCrawlData("file:///a/2.txt"));
+        writer.add(new BaseCrawlData("file:///a/1.txt"));
+        Assert.assertTrue(queued.isEmpty());
+        writer.flush();
+        Assert.assertEquals(2, queued.size());
+        Assert.assertEquals(2, events.size());
+        writer.add(new BaseCrawlData("file:///a/1.txt"));
+        writer.flush();
+        Assert.assertEquals(2, queued.size());
+        Assert.assertEquals(2, events.size());
+    }
+
+    private QueueBatchWriter newWriter(
+            ICrawlDataStore store, int batchSize, long timeout) {
+        FilesystemCrawlerConfig config = new FilesystemCrawlerConfig();
+        config.setId("batch-test");
+        FilesystemCrawler crawler = new FilesystemCrawler(config) {
+            @Override
+            public void fireCrawlerEvent(
+                    String eventType, ICrawlData crawlData, Object subject) {
+                if (CrawlerEvent.DOCUMENT_QUEUED.equals(eventType)) {
+                    events.add(crawlData.getReference());
+                }
+            }
+        };
+        return new QueueBatchWriter(
+                crawler, store, batchSize, timeout, timer);
+    }
+
+    private ICrawlDataStore newStore(boolean batch) {
+        Class<?> type = batch 
+                ? IBatchQueueCrawlDataStore.class : ICrawlDataStore.class;
+        return (ICrawlDataStore) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { type }, 
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                case "queueBatch":
+                    List<ICrawlData> added = new ArrayList<>();
+                    for (Object data : (List<?>) args[0]) {
+                        ICrawlData crawlData = (ICrawlData) data;
+                        if (!queued.contains(crawlData.getReference())) {
+                            queued.add(crawlData.getReference());
+                            added.add(crawlData);
+                        }
+                    }
+                    batchSizes.add(((List<?>) args[0]).size());
+                    return added;
+                case "queue":
+                    queued.add(((ICrawlData) args[0]).getReference());
+                    return null;
+                case "isQueued":
+                    return queued.contains(args[0]);
+                case "isActive":
+                case "isProcessed":
+                    return false;
+                case "getCached":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(
+                            method.getName());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,48 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.stats;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelineStatsTest {
+
+    @Test
+    public void testRecordPerScheme() {
+        Locale locale = Locale.getDefault();
+        // Turkish lower case of "I" is a dotless "i"
+        Locale.setDefault(new Locale("tr", "TR"));
+        PipelineStats stats = new PipelineStats("test", 0);
+        try {
+            stats.record("stage", "FILE:///tmp/a.txt", 1000);
+            stats.record("stage", "file:///tmp/b.txt", 1000);
+            stats.record("stage", "SMB://host/share/c.txt", 1000);
+            stats.record("stage", "/tmp/d.txt", 1000);
+
+            Assert.assertEquals(3, stats.getAllStageStats().size());
+            Assert.assertEquals(2, 
+                    stats.getStageStats("stage", "file").getCount());
+            Assert.assertEquals(1, 
+                    stats.getStageStats("stage", "smb").getCount());
+            Assert.assertEquals(1, 
+                    stats.getStageStats("stage", "unknown").getCount());
+        } finally {
+            stats.close();
+            Locale.setDefault(locale);
+        }
+    }
+}
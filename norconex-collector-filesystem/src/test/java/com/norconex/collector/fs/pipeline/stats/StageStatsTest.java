@@ -0,0 +1,98 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.pipeline.stats;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StageStatsTest {
+
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void testNoExecution() {
+        StageStats stats = new StageStats("stage", "file");
+        Assert.assertEquals(0, stats.getCount());
+        Assert.assertEquals(0, stats.getAverageMillis(), DELTA);
+        Assert.assertEquals(0, stats.getPercentile50Millis());
+        Assert.assertEquals(0, stats.getPercentile99Millis());
+        Assert.assertEquals(0, stats.getThroughput(), DELTA);
+    }
+
+    @Test
+    public void testPercentiles() {
+        StageStats stats = new StageStats("stage", "file");
+        recordMillis(stats, 0, 50);
+        recordMillis(stats, 3, 45);
+        recordMillis(stats, 150, 4);
+        recordMillis(stats, 90000, 1);
+
+        Assert.assertEquals(100, stats.getCount());
+        Assert.assertEquals(90735, stats.getTotalMillis());
+        Assert.assertEquals(907.35, stats.getAverageMillis(), DELTA);
+        Assert.assertEquals(90000, stats.getMaxMillis());
+        // upper bounds of the buckets the percentiles fall in
+        Assert.assertEquals(1, stats.getPercentile50Millis());
+        Assert.assertEquals(5, stats.getPercentile95Millis());
+        Assert.assertEquals(200, stats.getPercentile99Millis());
+
+        long[] histogram = stats.getHistogram();
+        Assert.assertEquals(
+                stats.getHistogramBounds().length + 1, histogram.length);
+        Assert.assertEquals(50, histogram[0]);
+        Assert.assertEquals(45, histogram[2]);
+        Assert.assertEquals(4, histogram[7]);
+        Assert.assertEquals(1, histogram[histogram.length - 1]);
+    }
+
+    @Test
+    public void testPercentileBeyondLastBound() {
+        StageStats stats = new StageStats("stage", "file");
+        recordMillis(stats, 70000, 1);
+        recordMillis(stats, 120000, 1);
+        // last bucket has no upper bound, maximum is used instead
+        Assert.assertEquals(120000, stats.getPercentile50Millis());
+        Assert.assertEquals(120000, stats.getPercentile99Millis());
+    }
+
+    @Test
+    public void testBucketBounds() {
+        StageStats stats = new StageStats("stage", "file");
+        // a bound is the exclusive upper limit of its bucket
+        recordMillis(stats, 1, 1);
+        Assert.assertEquals(0, stats.getHistogram()[0]);
+        Assert.assertEquals(1, stats.getHistogram()[1]);
+        Assert.assertEquals(2, stats.getPercentile50Millis());
+    }
+
+    @Test
+    public void testThroughput() {
+        StageStats stats = new StageStats("stage", "file");
+        recordMillis(stats, 10, 30);
+        Assert.assertEquals(15, stats.getThroughput(
+                TimeUnit.SECONDS.toNanos(2)), DELTA);
+        Assert.assertEquals(0.5, stats.getThroughput(
+                TimeUnit.MINUTES.toNanos(1)), DELTA);
+        Assert.assertEquals(0, stats.getThroughput(0), DELTA);
+    }
+
+    private void recordMillis(StageStats stats, long millis, int times) {
+        for (int i = 0; i < times; i++) {
+            stats.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/* Copyright 2018 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.collector.fs.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LazyFileInputStreamTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testOpenOnFirstRead() throws IOException {
+        // does not exist yet: would fail if opened right away
+        Path path = tempFolder.getRoot().toPath().resolve("lazy.txt");
+        LazyFileInputStream in = new LazyFileInputStream(path);
+        Assert.assertFalse(in.isOpen());
+
+        Files.write(path, "abc".getBytes(StandardCharsets.UTF_8));
+        Assert.assertFalse(in.isOpen());
+        Assert.assertEquals('a', in.read());
+        Assert.assertTrue(in.isOpen());
+        Assert.assertEquals(1, in.skip(1));
+        Assert.assertEquals('c', in.read());
+        Assert.assertEquals(-1, in.read());
+
+        in.close();
+        Assert.assertFalse(in.isOpen());
+        try {
+            in.read();
+            Assert.fail("Should not read once closed.");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertFalse(in.isOpen());
+    }
+
+    @Test
+    public void testCloseUnread() throws IOException {
+        Path path = tempFolder.newFile("unread.txt").toPath();
+        LazyFileInputStream in = new LazyFileInputStream(path);
+        in.close();
+        Assert.assertFalse(in.isOpen());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.smb.test;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+
+import org.apache.commons.AbstractVfsTestCase;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.auth.StaticUserAuthenticator;
+import org.apache.commons.vfs2.impl.DefaultFileSystemConfigBuilder;
+import org.apache.commons.vfs2.provider.smb.SmbCredentials;
+import org.apache.commons.vfs2.provider.smb.SmbFileName;
+import org.apache.commons.vfs2.provider.smb.SmbFileNameParser;
+
+/**
+ * SMB credentials test cases.
+ */
+public class SmbCredentialsTestCase
+    extends AbstractVfsTestCase
+{
+    /**
+     * Tests credentials are resolved once.
+     * @throws Exception in case of error
+     */
+    public void testResolvedOnce() throws Exception
+    {
+        final SmbCredentials credentials = new SmbCredentials(rootName(), options(), 0);
+        final NtlmPasswordAuthentication auth = credentials.getAuthentication();
+        assertEquals("DOMAIN", auth.getDomain());
+        assertEquals("user", auth.getUsername());
+        assertEquals("secret", auth.getPassword());
+        assertSame(auth, credentials.getAuthentication());
+
+        credentials.clear();
+        final NtlmPasswordAuthentication resolved = credentials.getAuthentication();
+        assertNotSame(auth, resolved);
+        assertEquals(auth, resolved);
+    }
+
+    /**
+     * Tests credentials unused for too long are resolved again.
+     * @throws Exception in case of error
+     */
+    public void testIdleTimeout() throws Exception
+    {
+        final SmbCredentials credentials = new SmbCredentials(rootName(), options(), 50);
+        final NtlmPasswordAuthentication auth = credentials.getAuthentication();
+        assertSame(auth, credentials.getAuthentication());
+        Thread.sleep(200);
+        assertNotSame(auth, credentials.getAuthentication());
+    }
+
+    /**
+     * Tests jcifs default credentials are used without authenticator.
+     * @throws Exception in case of error
+     */
+    public void testNoAuthenticator() throws Exception
+    {
+        final SmbCredentials credentials =
+            new SmbCredentials(rootName(), new FileSystemOptions(), 0);
+        assertNull(credentials.getAuthentication());
+        assertNull(credentials.getAuthentication());
+    }
+
+    private static SmbFileName rootName() throws Exception
+    {
+        return (SmbFileName) SmbFileNameParser.getInstance().parseUri(
+            null, null, "smb://hostname/share/");
+    }
+
+    private static FileSystemOptions options() throws Exception
+    {
+        final FileSystemOptions opts = new FileSystemOptions();
+        DefaultFileSystemConfigBuilder.getInstance().setUserAuthenticator(
+            opts, new StaticUserAuthenticator("DOMAIN", "user", "secret"));
+        return opts;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.vfs2.provider.zipentry.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.AbstractVfsTestCase;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.apache.commons.vfs2.provider.zipentry.ZipEntryFileObject;
+import org.apache.commons.vfs2.provider.zipentry.ZipEntryFileProvider;
+
+/**
+ * Zip entry provider test cases.
+ */
+public class ZipEntryProviderTestCase
+    extends AbstractVfsTestCase
+{
+    private static final byte[] DEFLATED_CONTENT;
+    static
+    {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+        {
+            b.append("Line ").append(i).append('\n');
+        }
+        DEFLATED_CONTENT = b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    private static final byte[] STORED_CONTENT = "Stored".getBytes(StandardCharsets.UTF_8);
+
+    private File archive;
+    private StandardFileSystemManager manager;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        archive = File.createTempFile("zipentry", ".zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive)))
+        {
+            zip.putNextEntry(new ZipEntry("dir/sub/deflated.txt"));
+            zip.write(DEFLATED_CONTENT);
+            zip.closeEntry();
+
+            final ZipEntry stored = new ZipEntry("stored.txt");
+            final CRC32 crc = new CRC32();
+            crc.update(STORED_CONTENT);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED_CONTENT.length);
+            stored.setCompressedSize(STORED_CONTENT.length);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(STORED_CONTENT);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("dir/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("empty/"));
+            zip.closeEntry();
+        }
+        manager = new StandardFileSystemManager();
+        manager.init();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        manager.close();
+        archive.delete();
+    }
+
+    /**
+     * Tests listing entries, including folders implied by entry paths.
+     * @throws Exception in case of error
+     */
+    public void testListEntries() throws Exception
+    {
+        final FileObject root = manager.createFileSystem(
+            ZipEntryFileProvider.SCHEME, manager.resolveFile(archive.toURI().toString()));
+        assertEquals(FileType.FOLDER, root.getType());
+        assertEquals(3, root.getChildren().length);
+        assertEquals(FileType.FOLDER, root.getChild("dir").getType());
+        assertEquals(FileType.FOLDER, root.getChild("empty").getType());
+        assertEquals(0, root.getChild("empty").getChildren().length);
+        assertEquals(FileType.FILE, root.getChild("stored.txt").getType());
+
+        final FileObject sub = root.resolveFile("dir/sub");
+        assertEquals(FileType.FOLDER, sub.getType());
+        assertEquals(1, sub.getChildren().length);
+        assertEquals("deflated.txt", sub.getChildren()[0].getName().getBaseName());
+    }
+
+    /**
+     * Tests reading entries resolved from their URI.
+     * @throws Exception in case of error
+     */
+    public void testReadEntries() throws Exception
+    {
+        final String uri = ZipEntryFileProvider.SCHEME + ":" + archive.toURI() + "!/";
+
+        final FileObject deflated = manager.resolveFile(uri + "dir/sub/deflated.txt");
+        assertEquals(FileType.FILE, deflated.getType());
+        assertEquals(DEFLATED_CONTENT.length, deflated.getContent().getSize());
+        assertTrue(deflated.getContent().getLastModifiedTime() > 0);
+        assertEquals(8, deflated.getContent().getAttribute(ZipEntryFileObject.ATTR_METHOD));
+        assertEquals(DEFLATED_CONTENT, read(deflated));
+
+        final FileObject stored = manager.resolveFile(uri + "stored.txt");
+        final CRC32 crc = new CRC32();
+        crc.update(STORED_CONTENT);
+        assertEquals(String.format("%08x", crc.getValue()),
+            stored.getContent().getAttribute(ZipEntryFileObject.ATTR_CRC));
+        assertEquals(STORED_CONTENT, read(stored));
+        // twice, each read opening the archive again
+        assertEquals(STORED_CONTENT, read(stored));
+
+        assertFalse(manager.resolveFile(uri + "missing.txt").exists());
+    }
+
+    /**
+     * Tests opening a file that is not a zip archive.
+     * @throws Exception in case of error
+     */
+    public void testNotAnArchive() throws Exception
+    {
+        final File file = File.createTempFile("zipentry", ".zip");
+        try
+        {
+            try (FileOutputStream out = new FileOutputStream(file))
+            {
+                out.write(STORED_CONTENT);
+            }
+            manager.createFileSystem(
+                ZipEntryFileProvider.SCHEME, manager.resolveFile(file.toURI().toString()));
+            fail("Should not have opened a file that is not a zip archive.");
+        }
+        catch (final FileSystemException e)
+        {
+            // expected
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests reading a ZIP64 archive.
+     * @throws Exception in case of error
+     */
+    public void testZip64() throws Exception
+    {
+        assertArchive(toZip64(Files.readAllBytes(archive.toPath())));
+    }
+
+    /**
+     * Tests reading an archive with a prefix (e.g., self-extracting),
+     * with offsets relative to the archive start.
+     * @throws Exception in case of error
+     */
+    public void testPrefixedArchive() throws Exception
+    {
+        assertArchive(prefix(Files.readAllBytes(archive.toPath())));
+    }
+
+    /**
+     * Tests reading a ZIP64 archive with a prefix, the ZIP64 end of
+     * central directory position being relative to the archive start.
+     * @throws Exception in case of error
+     */
+    public void testPrefixedZip64() throws Exception
+    {
+        assertArchive(prefix(toZip64(Files.readAllBytes(archive.toPath()))));
+    }
+
+    private void assertArchive(final byte[] content) throws Exception
+    {
+        final File file = File.createTempFile("zipentry", ".zip");
+        try
+        {
+            Files.write(file.toPath(), content);
+            final FileObject root = manager.createFileSystem(
+                ZipEntryFileProvider.SCHEME, manager.resolveFile(file.toURI().toString()));
+            assertEquals(3, root.getChildren().length);
+            assertEquals(FileType.FOLDER, root.getChild("empty").getType());
+            assertEquals(DEFLATED_CONTENT, read(root.resolveFile("dir/sub/deflated.txt")));
+            assertEquals(STORED_CONTENT, read(root.getChild("stored.txt")));
+            manager.closeFileSystem(root.getFileSystem());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static byte[] prefix(final byte[] zip)
+    {
+        final byte[] prefix = "#!/bin/sh\necho self-extracting\nexit 0\n"
+            .getBytes(StandardCharsets.US_ASCII);
+        final byte[] content = Arrays.copyOf(prefix, prefix.length + zip.length);
+        System.arraycopy(zip, 0, content, prefix.length, zip.length);
+        return content;
+    }
+
+    // Replaces the end of central directory of an archive without comment
+    // by a ZIP64 one, regular fields holding their "use ZIP64" value.
+    private static byte[] toZip64(final byte[] zip)
+    {
+        final int endPosition = zip.length - 22;
+        final ByteBuffer end = ByteBuffer.wrap(zip, endPosition, 22).order(ByteOrder.LITTLE_ENDIAN);
+        final int entries = end.getShort(endPosition + 10) & 0xFFFF;
+        final long directorySize = end.getInt(endPosition + 12) & 0xFFFFFFFFL;
+        final long directoryOffset = end.getInt(endPosition + 16) & 0xFFFFFFFFL;
+
+        final ByteBuffer b = ByteBuffer.allocate(endPosition + 56 + 20 + 22)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        b.put(zip, 0, endPosition);
+        // ZIP64 end of central directory record
+        b.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45);
+        b.putInt(0).putInt(0).putLong(entries).putLong(entries);
+        b.putLong(directorySize).putLong(directoryOffset);
+        // ZIP64 end of central directory locator
+        b.putInt(0x07064b50).putInt(0).putLong(endPosition).putInt(1);
+        // end of central directory record
+        b.putInt(0x06054b50).putShort((short) 0).putShort((short) 0);
+        b.putShort((short) 0xFFFF).putShort((short) 0xFFFF);
+        b.putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) 0);
+        return b.array();
+    }
+
+    private byte[] read(final FileObject file) throws IOException
+    {
+        try (InputStream in = file.getContent().getInputStream())
+        {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static void assertEquals(final byte[] expected, final byte[] actual)
+    {
+        assertTrue("Content mismatch.", Arrays.equals(expected, actual));
+    }
+}